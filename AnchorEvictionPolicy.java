@@ -0,0 +1,65 @@
+package com.your.package.here;
+
+/**
+ * Chooses which placed object to give up when the anchor table is full and a new object is placed.
+ */
+public interface AnchorEvictionPolicy
+{
+    /**
+     * @param table   the full anchor table
+     * @param cameraX camera position in world space
+     * @param cameraY
+     * @param cameraZ
+     * @return the slot to evict
+     */
+    int selectVictim(AnchorTransformTable table, float cameraX, float cameraY, float cameraZ);
+
+    /**
+     * Evicts the object that was placed or manipulated longest ago.
+     */
+    AnchorEvictionPolicy LEAST_RECENTLY_USED = new AnchorEvictionPolicy()
+    {
+        @Override
+        public int selectVictim(AnchorTransformTable table, float cameraX, float cameraY, float cameraZ)
+        {
+            int victim = table.liveSlot(0);
+            for (int i = 1; i < table.size(); i++)
+            {
+                int slot = table.liveSlot(i);
+                if (table.getLastInteraction(slot) < table.getLastInteraction(victim))
+                {
+                    victim = slot;
+                }
+            }
+            return victim;
+        }
+    };
+
+    /**
+     * Evicts the object farthest from the camera. Objects whose position is not known yet are only
+     * evicted when no other position is known.
+     */
+    AnchorEvictionPolicy FARTHEST_FROM_CAMERA = new AnchorEvictionPolicy()
+    {
+        @Override
+        public int selectVictim(AnchorTransformTable table, float cameraX, float cameraY, float cameraZ)
+        {
+            int victim = table.liveSlot(0);
+            float farthest = -1;
+            for (int i = 0; i < table.size(); i++)
+            {
+                int slot = table.liveSlot(i);
+                float dx = table.getWorldX(slot) - cameraX;
+                float dy = table.getWorldY(slot) - cameraY;
+                float dz = table.getWorldZ(slot) - cameraZ;
+                float distanceSquared = dx * dx + dy * dy + dz * dz;
+                if (distanceSquared > farthest)
+                {
+                    farthest = distanceSquared;
+                    victim = slot;
+                }
+            }
+            return victim;
+        }
+    };
+}
@@ -0,0 +1,378 @@
+package com.your.package.here;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the ground plane (X/Z) holding a bounding sphere per placed object, used to find
+ * the object under a touch without testing every anchor. Objects are keyed by their transform slot
+ * and live in the cell containing their center, in doubly linked per-cell lists, so moving or
+ * removing one is O(1). A ray pick walks the cells under the ray front to back (2D DDA) with a
+ * neighbourhood wide enough to cover the largest sphere, and stops as soon as no closer hit is
+ * possible or the ray leaves the occupied cells.
+ */
+public class AnchorSpatialIndex
+{
+    private static final int NONE = -1;
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private final float mCellSize;
+
+    // Per-slot columns
+    private float[] mX = new float[0];
+    private float[] mY = new float[0];
+    private float[] mZ = new float[0];
+    private float[] mRadius = new float[0];
+    private long[] mCell = new long[0];
+    private int[] mNext = new int[0];
+    private int[] mPrev = new int[0];
+    private int[] mVisitStamp = new int[0];
+    private boolean[] mPresent = new boolean[0];
+    private int mVisit;
+    private float mMaxRadius;
+    private int mSize;
+
+    // Occupied cell bounds, grow-only until cleared
+    private int mMinCellX = Integer.MAX_VALUE;
+    private int mMaxCellX = Integer.MIN_VALUE;
+    private int mMinCellZ = Integer.MAX_VALUE;
+    private int mMaxCellZ = Integer.MIN_VALUE;
+
+    // Closest hit of the pick in progress
+    private int mBest;
+    private float mBestDistance;
+
+    // Open-addressed cell table, cell key to the first slot in the cell
+    private long[] mCellKeys;
+    private int[] mCellHeads;
+    private int mCellCount;
+
+    /**
+     * @param cellSize edge length of a grid cell in meters
+     */
+    public AnchorSpatialIndex(float cellSize)
+    {
+        mCellSize = cellSize;
+        mCellKeys = new long[64];
+        mCellHeads = new int[64];
+        Arrays.fill(mCellKeys, EMPTY_KEY);
+    }
+
+    /**
+     * Inserts or moves the bounding sphere of a slot.
+     *
+     * @param slot
+     * @param x      sphere center in world space
+     * @param y
+     * @param z
+     * @param radius
+     */
+    public void update(int slot, float x, float y, float z, float radius)
+    {
+        ensureSlot(slot);
+        int cellX = cellCoordinate(x);
+        int cellZ = cellCoordinate(z);
+        long cell = cellKey(cellX, cellZ);
+        mMinCellX = Math.min(mMinCellX, cellX);
+        mMaxCellX = Math.max(mMaxCellX, cellX);
+        mMinCellZ = Math.min(mMinCellZ, cellZ);
+        mMaxCellZ = Math.max(mMaxCellZ, cellZ);
+        if (!mPresent[slot])
+        {
+            mPresent[slot] = true;
+            mSize++;
+            link(slot, cell);
+        }
+        else if (mCell[slot] != cell)
+        {
+            unlink(slot);
+            link(slot, cell);
+        }
+        mX[slot] = x;
+        mY[slot] = y;
+        mZ[slot] = z;
+        mRadius[slot] = radius;
+        if (radius > mMaxRadius)
+        {
+            mMaxRadius = radius;
+        }
+    }
+
+    public void remove(int slot)
+    {
+        if (slot < mPresent.length && mPresent[slot])
+        {
+            unlink(slot);
+            mPresent[slot] = false;
+            mSize--;
+        }
+    }
+
+    public void clear()
+    {
+        Arrays.fill(mPresent, false);
+        Arrays.fill(mCellKeys, EMPTY_KEY);
+        mCellCount = 0;
+        mMaxRadius = 0;
+        mSize = 0;
+        mMinCellX = Integer.MAX_VALUE;
+        mMaxCellX = Integer.MIN_VALUE;
+        mMinCellZ = Integer.MAX_VALUE;
+        mMaxCellZ = Integer.MIN_VALUE;
+    }
+
+    public int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * Finds the closest sphere hit by a ray.
+     *
+     * @param ox          ray origin
+     * @param oy
+     * @param oz
+     * @param dx          normalized ray direction
+     * @param dy
+     * @param dz
+     * @param maxDistance farthest distance along the ray to consider
+     * @return the slot of the closest hit, or -1 if nothing was hit
+     */
+    public int pick(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance)
+    {
+        if (mSize == 0)
+        {
+            return NONE;
+        }
+        if (++mVisit == Integer.MAX_VALUE)
+        {
+            Arrays.fill(mVisitStamp, 0);
+            mVisit = 1;
+        }
+        int ring = (int) Math.ceil(mMaxRadius / mCellSize);
+
+        // Past the occupied cells, grown by the neighbourhood ring, nothing more can be hit.
+        float exitX = dx > 0 ? ((mMaxCellX + ring + 1) * mCellSize - ox) / dx
+                : dx < 0 ? ((mMinCellX - ring) * mCellSize - ox) / dx : Float.POSITIVE_INFINITY;
+        float exitZ = dz > 0 ? ((mMaxCellZ + ring + 1) * mCellSize - oz) / dz
+                : dz < 0 ? ((mMinCellZ - ring) * mCellSize - oz) / dz : Float.POSITIVE_INFINITY;
+        float exit = Math.min(maxDistance, Math.min(exitX, exitZ));
+
+        int cellX = cellCoordinate(ox);
+        int cellZ = cellCoordinate(oz);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+        // Distance along the ray to the next cell boundary on each axis and between boundaries.
+        float deltaX = dx != 0 ? Math.abs(mCellSize / dx) : Float.POSITIVE_INFINITY;
+        float deltaZ = dz != 0 ? Math.abs(mCellSize / dz) : Float.POSITIVE_INFINITY;
+        float nextX = dx != 0 ? ((cellX + (dx > 0 ? 1 : 0)) * mCellSize - ox) / dx : Float.POSITIVE_INFINITY;
+        float nextZ = dz != 0 ? ((cellZ + (dz > 0 ? 1 : 0)) * mCellSize - oz) / dz : Float.POSITIVE_INFINITY;
+
+        mBest = NONE;
+        mBestDistance = maxDistance;
+        scan(cellX - ring, cellX + ring, cellZ - ring, cellZ + ring, ox, oy, oz, dx, dy, dz);
+        while (true)
+        {
+            // Each step only adds the row or column of cells the neighbourhood moved onto.
+            float cellEnter = Math.min(nextX, nextZ);
+            if (cellEnter > mBestDistance || cellEnter > exit)
+            {
+                break;
+            }
+            if (nextX < nextZ)
+            {
+                nextX += deltaX;
+                cellX += stepX;
+                int column = cellX + stepX * ring;
+                scan(column, column, cellZ - ring, cellZ + ring, ox, oy, oz, dx, dy, dz);
+            }
+            else
+            {
+                nextZ += deltaZ;
+                cellZ += stepZ;
+                int row = cellZ + stepZ * ring;
+                scan(cellX - ring, cellX + ring, row, row, ox, oy, oz, dx, dy, dz);
+            }
+        }
+        return mBest;
+    }
+
+    private void scan(int minX, int maxX, int minZ, int maxZ,
+                      float ox, float oy, float oz, float dx, float dy, float dz)
+    {
+        for (int nx = minX; nx <= maxX; nx++)
+        {
+            for (int nz = minZ; nz <= maxZ; nz++)
+            {
+                for (int slot = findCell(cellKey(nx, nz)); slot != NONE; slot = mNext[slot])
+                {
+                    if (mVisitStamp[slot] == mVisit)
+                    {
+                        continue;
+                    }
+                    mVisitStamp[slot] = mVisit;
+                    float distance = intersect(slot, ox, oy, oz, dx, dy, dz);
+                    if (distance >= 0 && distance < mBestDistance)
+                    {
+                        mBestDistance = distance;
+                        mBest = slot;
+                    }
+                }
+            }
+        }
+    }
+
+    // Distance along the ray to the first intersection with the slot's sphere, or -1.
+    private float intersect(int slot, float ox, float oy, float oz, float dx, float dy, float dz)
+    {
+        float lx = mX[slot] - ox;
+        float ly = mY[slot] - oy;
+        float lz = mZ[slot] - oz;
+        float along = lx * dx + ly * dy + lz * dz;
+        float radius = mRadius[slot];
+        float distanceSquared = lx * lx + ly * ly + lz * lz - along * along;
+        float radiusSquared = radius * radius;
+        if (distanceSquared > radiusSquared)
+        {
+            return -1;
+        }
+        float half = (float) Math.sqrt(radiusSquared - distanceSquared);
+        float near = along - half;
+        return near >= 0 ? near : along + half >= 0 ? 0 : -1;
+    }
+
+    private int cellCoordinate(float value)
+    {
+        return (int) Math.floor(value / mCellSize);
+    }
+
+    private static long cellKey(int x, int z)
+    {
+        return ((long) x << 32) | (z & 0xffffffffL);
+    }
+
+    private void link(int slot, long cell)
+    {
+        int index = findOrInsertCell(cell);
+        int head = mCellHeads[index];
+        mCell[slot] = cell;
+        mPrev[slot] = NONE;
+        mNext[slot] = head;
+        if (head != NONE)
+        {
+            mPrev[head] = slot;
+        }
+        mCellHeads[index] = slot;
+    }
+
+    private void unlink(int slot)
+    {
+        int prev = mPrev[slot];
+        int next = mNext[slot];
+        if (prev != NONE)
+        {
+            mNext[prev] = next;
+        }
+        else
+        {
+            mCellHeads[findCellIndex(mCell[slot])] = next;
+        }
+        if (next != NONE)
+        {
+            mPrev[next] = prev;
+        }
+    }
+
+    private int findCell(long key)
+    {
+        int index = findCellIndex(key);
+        return index < 0 ? NONE : mCellHeads[index];
+    }
+
+    private int findCellIndex(long key)
+    {
+        int mask = mCellKeys.length - 1;
+        for (int index = hash(key) & mask; ; index = (index + 1) & mask)
+        {
+            long existing = mCellKeys[index];
+            if (existing == key)
+            {
+                return index;
+            }
+            if (existing == EMPTY_KEY)
+            {
+                return -1;
+            }
+        }
+    }
+
+    // Cells are never removed from the table, an emptied cell just keeps a NONE head.
+    private int findOrInsertCell(long key)
+    {
+        int index = findCellIndex(key);
+        if (index >= 0)
+        {
+            return index;
+        }
+        if ((mCellCount + 1) * 2 > mCellKeys.length)
+        {
+            rehash(mCellKeys.length * 2);
+        }
+        int mask = mCellKeys.length - 1;
+        index = hash(key) & mask;
+        while (mCellKeys[index] != EMPTY_KEY)
+        {
+            index = (index + 1) & mask;
+        }
+        mCellKeys[index] = key;
+        mCellHeads[index] = NONE;
+        mCellCount++;
+        return index;
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] keys = mCellKeys;
+        int[] heads = mCellHeads;
+        mCellKeys = new long[capacity];
+        mCellHeads = new int[capacity];
+        Arrays.fill(mCellKeys, EMPTY_KEY);
+        int mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (keys[i] != EMPTY_KEY)
+            {
+                int index = hash(keys[i]) & mask;
+                while (mCellKeys[index] != EMPTY_KEY)
+                {
+                    index = (index + 1) & mask;
+                }
+                mCellKeys[index] = keys[i];
+                mCellHeads[index] = heads[i];
+            }
+        }
+    }
+
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void ensureSlot(int slot)
+    {
+        if (slot < mPresent.length)
+        {
+            return;
+        }
+        int capacity = Math.max(16, Math.max(slot + 1, mPresent.length * 2));
+        mX = Arrays.copyOf(mX, capacity);
+        mY = Arrays.copyOf(mY, capacity);
+        mZ = Arrays.copyOf(mZ, capacity);
+        mRadius = Arrays.copyOf(mRadius, capacity);
+        mCell = Arrays.copyOf(mCell, capacity);
+        mNext = Arrays.copyOf(mNext, capacity);
+        mPrev = Arrays.copyOf(mPrev, capacity);
+        mVisitStamp = Arrays.copyOf(mVisitStamp, capacity);
+        mPresent = Arrays.copyOf(mPresent, capacity);
+    }
+}
@@ -0,0 +1,310 @@
+package com.your.package.here;
+
+/**
+ * Struct-of-arrays store for the user transforms applied to each placed anchor. Every column is a
+ * primitive array indexed by the anchor's slot, so reading and writing a transform from the gesture
+ * handling or the render loop never boxes.
+ * <p>
+ * Slots are recycled through a free list and never move, so removing an anchor is O(1) and leaves
+ * every other anchor's data in place. Callers that hold on to an anchor across frames keep a
+ * handle, which pairs the slot with a generation counter; once the slot is removed and reused the
+ * old handle stops being {@link #isValid(int) valid}. Live slots are also kept in a dense list for
+ * iteration.
+ * <p>
+ * Every change to a slot's scale, rotation or translation, and every placement into it, moves the
+ * slot's {@link #getVersion(int) version} on, so derived data such as model matrices can tell when
+ * it is stale.
+ */
+public class AnchorTransformTable
+{
+    public static final int NO_HANDLE = -1;
+
+    public static final float MIN_SCALE = 0.1f;
+    public static final float MAX_SCALE = 5.0f;
+
+    private static final int SLOT_BITS = 16;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+    private final int mCapacity;
+
+    private final float[] mScaleFactors;
+    private final float[] mRotationThetas;
+    private final float[] mTranslationX;
+    private final float[] mTranslationZ;
+    private final int[] mModelReferences;
+    private final float[] mWorldX;
+    private final float[] mWorldY;
+    private final float[] mWorldZ;
+    private final long[] mLastInteraction;
+    private final int[] mGenerations;
+    private final int[] mVersions;
+
+    // Dense list of live slots and each live slot's position in it.
+    private final int[] mLiveSlots;
+    private final int[] mLivePositions;
+    private int mLiveCount;
+
+    private final int[] mFreeSlots;
+    private int mFreeCount;
+
+    private int mLastAdded = NO_HANDLE;
+
+    /**
+     * @param capacity maximum number of anchors held at once, up to 65536
+     */
+    public AnchorTransformTable(int capacity)
+    {
+        if (capacity < 1 || capacity > SLOT_MASK + 1)
+        {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + (SLOT_MASK + 1));
+        }
+        mCapacity = capacity;
+        mScaleFactors = new float[capacity];
+        mRotationThetas = new float[capacity];
+        mTranslationX = new float[capacity];
+        mTranslationZ = new float[capacity];
+        mModelReferences = new int[capacity];
+        mWorldX = new float[capacity];
+        mWorldY = new float[capacity];
+        mWorldZ = new float[capacity];
+        mLastInteraction = new long[capacity];
+        mGenerations = new int[capacity];
+        mVersions = new int[capacity];
+        mLiveSlots = new int[capacity];
+        mLivePositions = new int[capacity];
+        mFreeSlots = new int[capacity];
+        // Hand out low slots first.
+        for (int i = 0; i < capacity; i++)
+        {
+            mFreeSlots[i] = capacity - 1 - i;
+        }
+        mFreeCount = capacity;
+    }
+
+    /**
+     * Claims a free slot with an identity user transform. Its world position is unknown, NaN, until
+     * the object is first drawn.
+     *
+     * @param modelReference index of the model drawn for this anchor
+     * @param now            time of placement, counts as the first interaction
+     * @return the handle of the new anchor, or {@link #NO_HANDLE} if the table is full
+     */
+    public int add(int modelReference, long now)
+    {
+        return add(modelReference, now, Float.NaN, Float.NaN, Float.NaN);
+    }
+
+    /**
+     * Claims a free slot with an identity user transform, at the world position of its anchor.
+     *
+     * @param modelReference index of the model drawn for this anchor
+     * @param now            time of placement, counts as the first interaction
+     * @param x              anchor position in world space
+     * @param y
+     * @param z
+     * @return the handle of the new anchor, or {@link #NO_HANDLE} if the table is full
+     */
+    public int add(int modelReference, long now, float x, float y, float z)
+    {
+        if (mFreeCount == 0)
+        {
+            return NO_HANDLE;
+        }
+        int slot = mFreeSlots[--mFreeCount];
+        mScaleFactors[slot] = 1.0f;
+        mRotationThetas[slot] = 0.0f;
+        mTranslationX[slot] = 0.0f;
+        mTranslationZ[slot] = 0.0f;
+        mModelReferences[slot] = modelReference;
+        mWorldX[slot] = x;
+        mWorldY[slot] = y;
+        mWorldZ[slot] = z;
+        mLastInteraction[slot] = now;
+        mVersions[slot]++;
+        mLivePositions[slot] = mLiveCount;
+        mLiveSlots[mLiveCount++] = slot;
+        mLastAdded = handleOf(slot);
+        return mLastAdded;
+    }
+
+    /**
+     * Releases the slot of a handle. Stale handles are ignored.
+     *
+     * @param handle
+     * @return true if the handle was live
+     */
+    public boolean remove(int handle)
+    {
+        if (!isValid(handle))
+        {
+            return false;
+        }
+        int slot = slotOf(handle);
+        mGenerations[slot] = (mGenerations[slot] + 1) & GENERATION_MASK;
+
+        // Swap the last live slot into the hole so the dense list stays packed.
+        int position = mLivePositions[slot];
+        int moved = mLiveSlots[--mLiveCount];
+        mLiveSlots[position] = moved;
+        mLivePositions[moved] = position;
+
+        mFreeSlots[mFreeCount++] = slot;
+        if (mLastAdded == handle)
+        {
+            mLastAdded = NO_HANDLE;
+        }
+        return true;
+    }
+
+    public boolean isValid(int handle)
+    {
+        if (handle < 0)
+        {
+            return false;
+        }
+        int slot = slotOf(handle);
+        return slot < mCapacity && mGenerations[slot] == handle >>> SLOT_BITS
+                && mLiveCount > mLivePositions[slot] && mLiveSlots[mLivePositions[slot]] == slot;
+    }
+
+    public static int slotOf(int handle)
+    {
+        return handle & SLOT_MASK;
+    }
+
+    /**
+     * @return the current handle of a live slot
+     */
+    public int handleOf(int slot)
+    {
+        return (mGenerations[slot] << SLOT_BITS) | slot;
+    }
+
+    public int capacity()
+    {
+        return mCapacity;
+    }
+
+    public int size()
+    {
+        return mLiveCount;
+    }
+
+    public boolean isFull()
+    {
+        return mFreeCount == 0;
+    }
+
+    /**
+     * @param index position in the dense live list, between 0 and {@link #size()}
+     * @return the slot stored at that position
+     */
+    public int liveSlot(int index)
+    {
+        return mLiveSlots[index];
+    }
+
+    /**
+     * @return the handle of the most recently placed anchor, or {@link #NO_HANDLE} if it has been
+     * removed
+     */
+    public int lastAdded()
+    {
+        return mLastAdded;
+    }
+
+    public int getModelReference(int slot)
+    {
+        return mModelReferences[slot];
+    }
+
+    /**
+     * @param slot
+     * @return a counter that changes with every change to the slot's user transform
+     */
+    public int getVersion(int slot)
+    {
+        return mVersions[slot];
+    }
+
+    public float getScaleFactor(int slot)
+    {
+        return mScaleFactors[slot];
+    }
+
+    /**
+     * Multiplies the scale of a slot, clamped between {@link #MIN_SCALE} and {@link #MAX_SCALE}.
+     *
+     * @param slot
+     * @param factor
+     */
+    public void scale(int slot, float factor)
+    {
+        mScaleFactors[slot] = Math.max(MIN_SCALE, Math.min(factor * mScaleFactors[slot], MAX_SCALE));
+        mVersions[slot]++;
+    }
+
+    public float getRotationTheta(int slot)
+    {
+        return mRotationThetas[slot];
+    }
+
+    public void rotate(int slot, float deltaTheta)
+    {
+        mRotationThetas[slot] += deltaTheta;
+        mVersions[slot]++;
+    }
+
+    public float getTranslationX(int slot)
+    {
+        return mTranslationX[slot];
+    }
+
+    public float getTranslationZ(int slot)
+    {
+        return mTranslationZ[slot];
+    }
+
+    public void translate(int slot, float deltaX, float deltaZ)
+    {
+        mTranslationX[slot] += deltaX;
+        mTranslationZ[slot] += deltaZ;
+        mVersions[slot]++;
+    }
+
+    /**
+     * Records where the object was last drawn, used by distance based eviction.
+     */
+    public void setWorldPosition(int slot, float x, float y, float z)
+    {
+        mWorldX[slot] = x;
+        mWorldY[slot] = y;
+        mWorldZ[slot] = z;
+    }
+
+    public float getWorldX(int slot)
+    {
+        return mWorldX[slot];
+    }
+
+    public float getWorldY(int slot)
+    {
+        return mWorldY[slot];
+    }
+
+    public float getWorldZ(int slot)
+    {
+        return mWorldZ[slot];
+    }
+
+    public void touch(int slot, long now)
+    {
+        mLastInteraction[slot] = now;
+    }
+
+    public long getLastInteraction(int slot)
+    {
+        return mLastInteraction[slot];
+    }
+}
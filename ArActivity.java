@@ -16,31 +16,39 @@
 
 package com.your.package.here;
 
+import android.content.res.AssetFileDescriptor;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
+import android.os.SystemClock;
 import android.support.design.widget.BaseTransientBottomBar;
 import android.support.design.widget.Snackbar;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
-import android.view.ScaleGestureDetector;
-import android.view.GestureDetector;
+import android.view.Choreographer;
 import android.view.MotionEvent;
+import android.view.Gravity;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
 import android.view.WindowManager;
+import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.your.package.here.permissions.PermissionHelper;
 import com.your.package.here.rendering.DisplayRotationHelper;
+import com.your.package.here.services.SceneStore;
 import com.your.package.here.services.SharedPreferencesService;
+import com.your.package.here.view.GestureChannel;
 import com.your.package.here.view.HorizontalListViewFragment;
-import com.your.package.here.view.RotationGestureDetector;
+import com.your.package.here.view.GestureSmoother;
+import com.your.package.here.view.MultiTouchRecognizer;
 import com.google.ar.core.Anchor;
 import com.google.ar.core.ArCoreApk;
 import com.google.ar.core.Camera;
@@ -56,18 +64,39 @@ import com.google.ar.core.Session;
 import com.google.ar.core.Trackable;
 import com.google.ar.core.TrackingState;
 import com.your.package.here.rendering.BackgroundRenderer;
+import com.your.package.here.rendering.FrustumCuller;
+import com.your.package.here.rendering.GpuMesh;
+import com.your.package.here.rendering.MeshRenderer;
+import com.your.package.here.rendering.ModelCache;
+import com.your.package.here.rendering.ModelLoader;
 import com.your.package.here.rendering.ObjectRenderer;
+import com.your.package.here.rendering.OffscreenTarget;
 import com.your.package.here.rendering.PlaneRenderer;
+import com.your.package.here.rendering.PointCloudAccumulator;
 import com.your.package.here.rendering.PointCloudRenderer;
+import com.your.package.here.rendering.RenderQueue;
+import com.your.package.here.rendering.ResolutionController;
+import com.your.package.here.rendering.VoxelCloudRenderer;
 import com.google.ar.core.exceptions.UnavailableApkTooOldException;
 import com.google.ar.core.exceptions.UnavailableArcoreNotInstalledException;
 import com.google.ar.core.exceptions.UnavailableSdkTooOldException;
 import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationException;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
@@ -96,30 +125,263 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
     private final ObjectRenderer virtualObjectShadow = new ObjectRenderer();
     private final PlaneRenderer planeRenderer = new PlaneRenderer();
     private final PointCloudRenderer pointCloud = new PointCloudRenderer();
-    private final float[] mAnchorMatrix = new float[16];
-
-    //Dynamic Model Selection
-    private boolean mModelSet = false;
+    //Feature points are merged into a voxel map instead of drawing each frame's raw points
+    private static final boolean ACCUMULATE_POINT_CLOUD = true;
+    private static final float POINT_VOXEL_SIZE = 0.02f;
+    private static final float POINT_MIN_CONFIDENCE = 0.3f;
+    private static final int MAX_POINT_VOXELS = 65536;
+    private final PointCloudAccumulator mPointAccumulator =
+            new PointCloudAccumulator(POINT_VOXEL_SIZE, POINT_MIN_CONFIDENCE, MAX_POINT_VOXELS);
+    private final VoxelCloudRenderer mVoxelCloud = new VoxelCloudRenderer();
+    private long mLastPointCloudTimestamp;
+    private final PlaneCache mPlaneCache = new PlaneCache();
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private final float[] mProjectionMatrix = new float[16];
+    private final float[] mViewMatrix = new float[16];
+    private final float[] mInstanceMatrix = new float[16];
+    private float mLightIntensity;
+
+    //Debug allocation tracking, allocations allowed per frame before it is reported. ARCore hands
+    //back fresh Frame, Camera, Pose and PointCloud wrappers every frame so zero is not reachable.
+    private static final int FRAME_ALLOCATION_BUDGET = 32;
+    private FrameAllocationBudget mAllocationBudget;
+
+    //Per-stage frame timing, cheap enough to stay on in release builds
+    private static final int STAGE_FRAME = 0;
+    private static final int STAGE_UPDATE = 1;
+    private static final int STAGE_BACKGROUND = 2;
+    private static final int STAGE_POINT_CLOUD = 3;
+    private static final int STAGE_PLANES = 4;
+    private static final int STAGE_ANCHORS = 5;
+    private static final int STAGE_MODEL_UPLOAD = 6;
+    private static final int STAGE_ANCHOR_PREP = 7;
+    private static final boolean SHOW_FRAME_STATS = false;
+    private static final long FRAME_STATS_REFRESH_MS = 500;
+    private final FrameProfiler mProfiler =
+            new FrameProfiler("frame", "update", "background", "point cloud", "planes", "anchors",
+                    "model upload", "anchor prep");
+    //Frame rate governor, renders on demand and paces frames by gesture, camera and tracking activity
+    //instead of running continuously
+    private static final boolean GOVERN_FRAME_RATE = true;
+    private static final long REDUCED_FRAME_INTERVAL_MS = 33;
+    private static final long IDLE_FRAME_INTERVAL_MS = 200;
+    private final FrameRateGovernor mRateGovernor =
+            new FrameRateGovernor(REDUCED_FRAME_INTERVAL_MS, IDLE_FRAME_INTERVAL_MS);
+    private final Choreographer.FrameCallback mRenderPacer = new Choreographer.FrameCallback()
+    {
+        @Override
+        public void doFrame(long frameTimeNanos)
+        {
+            if (mRateGovernor.shouldRender(frameTimeNanos))
+            {
+                surfaceView.requestRender();
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+    //Dynamic resolution, virtual content is rendered offscreen at a scale picked from recent frame
+    //times and stretched over the camera image. The budget leaves session.update() room within the
+    //33 ms of a 30 fps camera frame.
+    private static final boolean DYNAMIC_RESOLUTION = false;
+    private static final long RESOLUTION_FRAME_BUDGET_NS = 20000000L;
+    private static final float MIN_RESOLUTION_SCALE = 0.5f;
+    private static final float RESOLUTION_SCALE_STEP = 0.05f;
+    private final ResolutionController mResolution =
+            new ResolutionController(RESOLUTION_FRAME_BUDGET_NS, MIN_RESOLUTION_SCALE, RESOLUTION_SCALE_STEP);
+    private final OffscreenTarget mVirtualTarget = new OffscreenTarget();
+    private boolean mOffscreenReady;
+    private boolean mRenderingOffscreen;
+    private long mUpdateNanos;
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private TextView mFrameStatsView;
+    private final Runnable mFrameStatsUpdater = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            LatencyHistogram.Snapshot placement = mTapQueue.getPlacementLatency().snapshot();
+            LatencyHistogram.Snapshot modelLoad = mModelLoader.getTotalLatency().snapshot();
+            mFrameStatsView.setText(mProfiler.format() + String.format(Locale.US,
+                    "%-12s p50 %5.1f  p95 %5.1f  max %6.1f ms  dropped %d%n%-12s drawn %d  culled %d%n"
+                            + "%-12s p50 %5.1f  max %6.1f ms  (%d)%n"
+                            + "%-12s mesh %d/%d/%d  gpu %d/%d/%d hit/miss/evict", "placement",
+                    placement.p50 / 1e6, placement.p95 / 1e6, placement.max / 1e6, mTapQueue.getOverflowCount(),
+                    "objects", mCuller.getFrameDrawnCount(), mCuller.getFrameCulledCount(),
+                    "model load", modelLoad.p50 / 1e6, modelLoad.max / 1e6, modelLoad.count,
+                    "model cache", mModelCache.getMeshHits(), mModelCache.getMeshMisses(),
+                    mModelCache.getMeshEvictions(), mModelCache.getGpuHits(), mModelCache.getGpuMisses(),
+                    mModelCache.getGpuEvictions()) + mRateGovernor.format() + String.format(Locale.US,
+                    "%-12s scale %.2f  mean %.2f  changes %d  over budget %d/%d%n", "resolution",
+                    mResolution.getScale(), mResolution.getMeanScale(), mResolution.getChangeCount(),
+                    mResolution.getOverBudgetCount(), mResolution.getFrameCount()));
+            mUiHandler.postDelayed(this, FRAME_STATS_REFRESH_MS);
+        }
+    };
+
+    //Dynamic Model Selection, models are parsed in the background and uploaded a slice per frame.
+    //Objects whose model is not resident yet are drawn with the placeholder (virtualObject), resident
+    //models are drawn from their GL buffers by one MeshRenderer.
+    //Parsed meshes and resident models are cached, so switching back to a model is immediate.
+    private static final long MODEL_UPLOAD_BUDGET_BYTES = 512 * 1024;
+    private static final long MESH_CACHE_BUDGET_BYTES = 32L * 1024 * 1024;
+    private static final long GPU_CACHE_BUDGET_BYTES = 64L * 1024 * 1024;
+    private volatile boolean mModelSet = false;
     private int mCurrent = -1;
-    private final List<ObjectRenderer> mVirtualObjects = new ArrayList<ObjectRenderer>();
-    private final List<Integer> mAnchorReferences = new ArrayList<Integer>();
-    private String sideLoadedModel = null;
-    private String sideLoadedPath = null;
+    private final MeshRenderer mMeshRenderer = new MeshRenderer();
+    private final List<GpuMesh> mModelMeshes = new ArrayList<GpuMesh>();
+    private final HashMap<String, Integer> mModelIds = new HashMap<>();
+    // Per model id: cache key, mesh path and texture path, kept to reload evicted models.
+    private final List<String[]> mModelSources = new ArrayList<>();
+    private final BitSet mModelsLoading = new BitSet();
+    private final BitSet mModelsFailed = new BitSet();
+    private ModelLoader mModelLoader;
+    private final ModelCache mModelCache = new ModelCache(MESH_CACHE_BUDGET_BYTES, GPU_CACHE_BUDGET_BYTES,
+            new ModelCache.Listener()
+            {
+                @Override
+                public void onModelEvicted(int model)
+                {
+                    // Objects still using the model fall back to the placeholder until it is reloaded.
+                    mModelMeshes.set(model, null);
+                    mScene.setModelRadius(model, 0);
+                }
+            });
+    private final ModelLoader.Listener mModelListener = new ModelLoader.Listener()
+    {
+        @Override
+        public void onModelLoaded(int model, GpuMesh mesh)
+        {
+            mModelsLoading.clear(model);
+            mModelMeshes.set(model, mesh);
+            mScene.setModelRadius(model, mesh.boundingRadius);
+            mModelCache.putResident(model, mesh);
+            // The next frame replaces the placeholder, even when the governor has gone idle.
+            mRateGovernor.wake();
+        }
+
+        @Override
+        public void onModelFailed(int model, Exception e)
+        {
+            mModelsLoading.clear(model);
+            mModelsFailed.set(model);
+            Log.e(TAG, "Failed to load model " + model, e);
+            mRateGovernor.wake();
+        }
+    };
+    private final RenderQueue.Backend mObjectRendererBackend = new RenderQueue.Backend()
+    {
+        @Override
+        public void drawBatch(int model, float[] matrices, float[] scales, int first, int count)
+        {
+            GpuMesh mesh = mModelMeshes.get(model);
+            if (mesh != null)
+            {
+                // Bound once, then one draw call per instance.
+                mModelCache.touch(model);
+                mMeshRenderer.drawInstances(mesh, matrices, scales, first, count, mViewMatrix, mProjectionMatrix,
+                        mLightIntensity);
+                return;
+            }
+            // The sample's ObjectRenderer sets everything up again per draw, it is only used for the
+            // placeholder while the model loads.
+            requestModel(model);
+            for (int i = first; i < first + count; i++)
+            {
+                System.arraycopy(matrices, i * 16, mInstanceMatrix, 0, 16);
+                virtualObject.updateModelMatrix(mInstanceMatrix, scales[i]);
+                virtualObject.draw(mViewMatrix, mProjectionMatrix, mLightIntensity);
+            }
+        }
+    };
 
     //Rotation, Moving, & Scaling
-    private final List<Float> mRotationThetas = new ArrayList<Float>();
-    private GestureDetector mGestureDetector;
-    private ScaleGestureDetector mScaleDetector;
-    private RotationGestureDetector mRotationDetector;
-    private final List<Float> mScaleFactors = new ArrayList<Float>();
-    private final List<Float> mTranslationX = new ArrayList<Float>();
-    private final List<Float> mTranslationZ = new ArrayList<Float>();
+    private MultiTouchRecognizer mTouchRecognizer;
+    //Off: on the synthetic session in tools/SessionReplay neither smoothing nor prediction lowered
+    //pan jitter without lagging the object well behind the finger
+    private static final boolean SMOOTH_TOUCHES = false;
+    //With smoothing, touches are extrapolated by about a frame, the time from input to display
+    private static final long TOUCH_PREDICTION_MS = 16;
+    private final int[] mPointerIds = new int[MultiTouchRecognizer.MAX_POINTERS];
+    private final float[] mPointerX = new float[MultiTouchRecognizer.MAX_POINTERS];
+    private final float[] mPointerY = new float[MultiTouchRecognizer.MAX_POINTERS];
+    private static final int MAX_ANCHORS = 256;
+    //Model matrices are composed and objects culled on a small pool while the GL thread draws the
+    //point cloud and planes. Two cores are left to the GL and UI threads.
+    private static final int FRAME_PREP_THREADS =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 2));
+    private final ForkJoinPool mFramePool = new ForkJoinPool(FRAME_PREP_THREADS);
+    private final SceneController mScene = new SceneController(MAX_ANCHORS, mFramePool);
+    private final AnchorTransformTable mTransforms = mScene.getTransforms();
+    private final FrustumCuller mCuller = mScene.getCuller();
+    private final Anchor[] mSlotAnchors = new Anchor[MAX_ANCHORS];
+    private final SceneController.Anchors mSceneAnchors = new SceneController.Anchors()
+    {
+        @Override
+        public int getPose(int slot, float[] matrix, int offset)
+        {
+            Anchor anchor = mSlotAnchors[slot];
+            TrackingState state = anchor.getTrackingState();
+            if (state == TrackingState.TRACKING)
+            {
+                // The Anchor pose is updated during calls to session.update() as ARCore refines its
+                // estimate of the world.
+                anchor.getPose().toMatrix(matrix, offset);
+                return SceneController.TRACKING;
+            }
+            return state == TrackingState.STOPPED ? SceneController.STOPPED : SceneController.PAUSED;
+        }
+
+        @Override
+        public void onStopped(int slot)
+        {
+            // ARCore gave up on this anchor.
+            removeAnchor(slot);
+        }
+    };
+    private AnchorEvictionPolicy mEvictionPolicy = AnchorEvictionPolicy.LEAST_RECENTLY_USED;
+
+    //Scene persistence, every placed object has a store id and its edits are journaled
+    private static final int RESTORE_BATCH = 32;
+    private SceneStore mSceneStore;
+    private final long[] mSlotSceneIds = new long[MAX_ANCHORS];
+    private final float[] mScenePose = new float[SceneStore.POSE_SIZE];
+    private SceneStore.Scene mRestoringScene;
+    private int[] mRestoredModels;
+    private int mRestoredCount;
     private final float[] mOriginCameraMatrix = new float[16];
     private final float[] mCurrentCameraMatrix = new float[16];
+    private static final boolean USE_FAST_MATH = true;
+
+    //Session recording for desktop replays, see SessionLog and tools/SessionReplay
+    private static final boolean RECORD_SESSION = false;
+    private volatile SessionLog.Recorder mSessionRecorder;
+    private final int[] mRecordPlaneTypes = new int[SessionLog.MAX_PLANES];
+    private final int[] mRecordPlaneStates = new int[SessionLog.MAX_PLANES];
+    private final float[] mRecordPlanePoses = new float[SessionLog.MAX_PLANES * SessionLog.POSE_SIZE];
+    private final float[] mRecordPlaneExtents = new float[SessionLog.MAX_PLANES * 2];
 
     // Tap handling and UI.
-    private final ArrayBlockingQueue<MotionEvent> mQueuedSingleTaps = new ArrayBlockingQueue<>(16);
-    private final ArrayList<Anchor> mAnchors = new ArrayList<>();
+    private final GestureChannel mGestureChannel = new GestureChannel();
+    private final GestureChannel.Batch mGestureBatch = mGestureChannel.newBatch();
+    private volatile boolean mHasPlacedObject = false;
+
+    // Batched tap placement, every pending tap is placed within a per-frame time budget.
+    private static final int MAX_PENDING_TAPS = 64;
+    private static final float TAP_DEDUPE_RADIUS_PX = 48f;
+    private static final long TAP_PLACEMENT_BUDGET_NS = 4000000L;
+    private final TapPlacementQueue mTapQueue =
+            new TapPlacementQueue(MAX_PENDING_TAPS, TAP_DEDUPE_RADIUS_PX, TAP_PLACEMENT_BUDGET_NS);
+    private Frame mPlacementFrame;
+    private Camera mPlacementCamera;
+    private final TapPlacementQueue.Placer mAnchorPlacer = new TapPlacementQueue.Placer()
+    {
+        @Override
+        public boolean place(float x, float y)
+        {
+            return placeAnchor(mPlacementFrame, mPlacementCamera, x, y);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -130,101 +392,118 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
         //Setup Surface View
         surfaceView = findViewById(R.id.surfaceview);
         displayRotationHelper = new DisplayRotationHelper(/*context=*/ this);
+        FastMath.setEnabled(USE_FAST_MATH);
+        mSceneStore = new SceneStore(new File(getFilesDir(), "scene"), new SceneStore.Listener()
+        {
+            @Override
+            public void onLoaded(int objects, long nanos)
+            {
+                Log.i(TAG, String.format(Locale.US, "Read %d objects in %.1f ms", objects, nanos / 1e6));
+            }
 
-        //Handle Gestures - Multitouch for Scaling and Rotation
-        mScaleDetector = new ScaleGestureDetector(this, new ScaleGestureDetector.SimpleOnScaleGestureListener()
+            @Override
+            public void onError(String message, Exception e)
+            {
+                Log.e(TAG, message, e);
+            }
+        });
+        mSceneStore.open();
+        if (RECORD_SESSION)
+        {
+            startRecording(new File(getExternalFilesDir(null), "session-" + System.currentTimeMillis() + ".arsl"));
+        }
+        mModelLoader = new ModelLoader(new ModelLoader.Opener()
         {
             @Override
-            public boolean onScale(ScaleGestureDetector detector)
+            public InputStream open(String path) throws IOException
             {
-                if (mScaleFactors.size() > 0)
-                {
+                // Side loaded models come from storage, bundled ones from the assets.
+                return path.startsWith("/") ? new FileInputStream(path) : getAssets().open(path);
+            }
 
-                    mScaleFactors.set(mScaleFactors.size() - 1, Math.max(0.1f, Math.min(detector.getScaleFactor() * mScaleFactors.get(mScaleFactors.size() - 1), 5.0f)));
-                    return true;
+            @Override
+            public ByteBuffer map(String path) throws IOException
+            {
+                if (path.startsWith("/"))
+                {
+                    RandomAccessFile file = new RandomAccessFile(path, "r");
+                    try
+                    {
+                        return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                    }
+                    finally
+                    {
+                        file.close();
+                    }
+                }
+                // Only assets stored uncompressed can be mapped, see noCompress in the build script.
+                AssetFileDescriptor descriptor = getAssets().openFd(path);
+                try
+                {
+                    return descriptor.createInputStream().getChannel().map(FileChannel.MapMode.READ_ONLY,
+                            descriptor.getStartOffset(), descriptor.getLength());
+                }
+                finally
+                {
+                    descriptor.close();
                 }
-                return false;
             }
-        });
+        }, mModelCache);
 
-        mRotationDetector = new RotationGestureDetector(this, new RotationGestureDetector.OnRotationGestureListener()
+        //Handle Gestures - one pass over the pointers for tap, movement, scaling and rotation, with
+        //SMOOTH_TOUCHES every sample smoothed and extrapolated to when its frame is expected on screen
+        MultiTouchRecognizer.Listener gestures = new MultiTouchRecognizer.Listener()
         {
             @Override
-            public void OnRotation(RotationGestureDetector rotationDetector)
+            public void onDown(float x, float y, long eventTime)
             {
-                if (mRotationThetas.size() > 0)
+                if (mHasPlacedObject)
                 {
-                    mRotationThetas.set(mRotationThetas.size() - 1, (mRotationThetas.get(mRotationThetas.size() - 1) + (rotationDetector.getAngle() * -0.001f)));
+                    mGestureChannel.offerSelect(x, y, eventTime);
                 }
             }
-        });
 
-        // Handle Gestures - Single touch for Movement and Placement
-        mGestureDetector = new GestureDetector(this, new GestureDetector.SimpleOnGestureListener()
-        {
             @Override
-            public boolean onSingleTapUp(MotionEvent e)
+            public void onTap(float x, float y, long eventTime)
             {
-                onSingleTap(e);
-                return true;
+                onSingleTap(x, y, eventTime);
             }
 
             @Override
-            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY)
+            public void onPan(float dx, float dy, long eventTime)
             {
-                if (e2.getPointerCount() == 1 && mTranslationX.size() > 0 && mTranslationZ.size() > 0)
+                if (mHasPlacedObject)
                 {
+                    mGestureChannel.offerPan(dx, dy);
+                }
+            }
 
-                    double angle = findCameraAngleFromOrigin();
-                    double speed = 0.001d;
-
-                    if (angle / 90d < 1) //Quadrant 1
-                    {
-                        double transX = -(distanceY * (angle / 90d)) + (distanceX * ((90d - angle) / 90d));
-                        double transY = (distanceY * ((90d - angle) / 90d)) + (distanceX * (angle / 90d));
-//                        showSnackbarMessage("ANGLE: " + angle + ", distanceX: " + distanceX + ", distanceY: " + distanceY, false);
-                        mTranslationX.set(mTranslationX.size() - 1, (float) (mTranslationX.get(mTranslationX.size() - 1) + (transX * -speed)));
-                        mTranslationZ.set(mTranslationZ.size() - 1, (float) (mTranslationZ.get(mTranslationZ.size() - 1) + (transY * -speed)));
-                    }
-                    else if (angle / 90d < 2) //Quadrant 2
-                    {
-                        angle -= 90d;
-                        double transX = (distanceX * (angle / 90d)) + (distanceY * ((90d - angle) / 90d));
-                        double transY = (-distanceX * ((90d - angle) / 90d)) + (distanceY * (angle / 90d));
-//                        showSnackbarMessage("ANGLE: " + angle + ", distanceX: " + distanceX + ", distanceY: " + distanceY, false);
-                        mTranslationX.set(mTranslationX.size() - 1, (float) (mTranslationX.get(mTranslationX.size() - 1) + (transX * speed)));
-                        mTranslationZ.set(mTranslationZ.size() - 1, (float) (mTranslationZ.get(mTranslationZ.size() - 1) + (transY * speed)));
-                    }
-                    else if (angle / 90d < 3) //Quadrant 3
-                    {
-                        angle -= 180d;
-                        double transX = (distanceY * (angle / 90d)) + (-distanceX * ((90d - angle) / 90d));
-                        double transY = (-distanceY * ((90d - angle) / 90d)) + (-distanceX * (angle / 90d));
-//                        showSnackbarMessage("ANGLE: " + angle + ", distanceX: " + distanceX + ", distanceY: " + distanceY, false);
-                        mTranslationX.set(mTranslationX.size() - 1, (float) (mTranslationX.get(mTranslationX.size() - 1) + (transX * -speed)));
-                        mTranslationZ.set(mTranslationZ.size() - 1, (float) (mTranslationZ.get(mTranslationZ.size() - 1) + (transY * -speed)));
-                    }
-                    else  //Quadrant 4
-                    {
-                        angle -= 270d;
-                        double transX = (-distanceX * (angle / 90d)) + (-distanceY * ((90d - angle) / 90d));
-                        double transY = (distanceX * ((90d - angle) / 90d)) + (-distanceY * (angle / 90d));
-//                        showSnackbarMessage("ANGLE: " + angle + ", distanceX: " + distanceX + ", distanceY: " + distanceY, false);
-                        mTranslationX.set(mTranslationX.size() - 1, (float) (mTranslationX.get(mTranslationX.size() - 1) + (transX * speed)));
-                        mTranslationZ.set(mTranslationZ.size() - 1, (float) (mTranslationZ.get(mTranslationZ.size() - 1) + (transY * speed)));
-                    }
-                    return true;
+            @Override
+            public void onScale(float factor, long eventTime)
+            {
+                if (mHasPlacedObject)
+                {
+                    mGestureChannel.offerScale(factor);
                 }
-                return false;
             }
 
+            @Override
+            public void onRotate(float deltaRadians, long eventTime)
+            {
+                if (mHasPlacedObject)
+                {
+                    mGestureChannel.offerRotation(deltaRadians);
+                }
+            }
 
             @Override
-            public boolean onDown(MotionEvent e)
+            public void onUp(long eventTime)
             {
-                return true;
+                mGestureChannel.offerEnd();
             }
-        });
+        };
+        mTouchRecognizer = new MultiTouchRecognizer(ViewConfiguration.get(this).getScaledTouchSlop(),
+                SMOOTH_TOUCHES ? new GestureSmoother(TOUCH_PREDICTION_MS, gestures) : gestures);
 
 
         // Set up renderer.
@@ -232,71 +511,125 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
         surfaceView.setEGLContextClientVersion(2);
         surfaceView.setEGLConfigChooser(8, 8, 8, 8, 16, 0); // Alpha used for plane blending.
         surfaceView.setRenderer(this);
-        surfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+        surfaceView.setRenderMode(GOVERN_FRAME_RATE ? GLSurfaceView.RENDERMODE_WHEN_DIRTY
+                : GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+
+        if (BuildConfig.DEBUG)
+        {
+            Debug.startAllocCounting();
+            mAllocationBudget = new FrameAllocationBudget(new FrameAllocationBudget.Counter()
+            {
+                @Override
+                public long allocationCount()
+                {
+                    return Debug.getThreadAllocCount();
+                }
+            }, FRAME_ALLOCATION_BUDGET);
+        }
+
+        if (SHOW_FRAME_STATS)
+        {
+            mFrameStatsView = new TextView(this);
+            mFrameStatsView.setTypeface(android.graphics.Typeface.MONOSPACE);
+            mFrameStatsView.setTextSize(10);
+            mFrameStatsView.setTextColor(0xffffffff);
+            mFrameStatsView.setBackgroundColor(0x80000000);
+            addContentView(mFrameStatsView, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT,
+                    Gravity.TOP | Gravity.START));
+        }
 
         installRequested = false;
     }
 
     /**
-     * Gets the angle of rotation provided the 2 camera orientation values in slots 2 and 0. Since
-     * they are a function of sine and cosine, we first must determine the quadrant relative to the
-     * angle.
+     * Exposes the per-stage frame timings of the render loop.
      *
-     * @param value1
-     * @param value2
      * @return
      */
-    private double getDegree(double value1, double value2)
+    public FrameProfiler getFrameProfiler()
     {
-        double firstAngle = value1 * 90;
-        double secondAngle = value2 * 90;
-        if (secondAngle >= 0 && firstAngle >= 0)
-        {
-            return firstAngle; // first quadrant
-        }
-        else if (secondAngle < 0 && firstAngle >= 0)
-        {
-            return 90 + (90 - firstAngle); //second quadrant
-        }
-        else if (secondAngle < 0 && firstAngle < 0)
-        {
-            return 180 - firstAngle; //third quadrant
-        }
-        else
-        {
-            return 270 + (90 + firstAngle); //fourth quadrant
-        }
+        return mProfiler;
+    }
+
+    /**
+     * Exposes the render rate decisions and how long each rate was in effect.
+     *
+     * @return
+     */
+    public FrameRateGovernor getFrameRateGovernor()
+    {
+        return mRateGovernor;
+    }
+
+    /**
+     * Exposes how many objects were drawn and culled by the view frustum test.
+     *
+     * @return
+     */
+    public FrustumCuller getFrustumCuller()
+    {
+        return mCuller;
     }
 
     /**
-     * Calculates the current rotation and subtracts the original camera orientation angle to get
-     * the accurate change in angle by the camera. Ensure values will always be between 0 and
-     * 359.999->
+     * Exposes the time from a tap to its object being placed.
      *
      * @return
      */
-    private double findCameraAngleFromOrigin()
+    public LatencyHistogram getPlacementLatency()
     {
-        double angle = getDegree(mCurrentCameraMatrix[2], mCurrentCameraMatrix[0]) -
-                getDegree(mOriginCameraMatrix[2], mOriginCameraMatrix[0]);
-        if (angle < 0)
-            return angle + 360;
-        return angle;
+        return mTapQueue.getPlacementLatency();
     }
 
     /**
-     * Handle touch events by determining multi-touch handling first and then single touch second
+     * Handle touch events by copying the pointers out of the event once and handing them to the
+     * recognizer, and to the session recording when one is running. Move events batch the samples
+     * since the last one as history, each is handed on as a move of its own and in order.
      *
      * @param event
      * @return
      */
     public boolean onTouchEvent(MotionEvent event)
     {
-        boolean retVal = mScaleDetector.onTouchEvent(event);
-        if (retVal)
-            mRotationDetector.onTouchEvent(event);
-        retVal = mGestureDetector.onTouchEvent(event) || retVal;
-        return retVal || super.onTouchEvent(event);
+        mRateGovernor.wake();
+        int count = Math.min(event.getPointerCount(), MultiTouchRecognizer.MAX_POINTERS);
+        for (int i = 0; i < count; i++)
+        {
+            mPointerIds[i] = event.getPointerId(i);
+        }
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_MOVE)
+        {
+            for (int h = 0; h < event.getHistorySize(); h++)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    mPointerX[i] = event.getHistoricalX(i, h);
+                    mPointerY[i] = event.getHistoricalY(i, h);
+                }
+                dispatchTouch(event.getHistoricalEventTime(h), action, 0, count);
+            }
+        }
+        for (int i = 0; i < count; i++)
+        {
+            mPointerX[i] = event.getX(i);
+            mPointerY[i] = event.getY(i);
+        }
+        dispatchTouch(event.getEventTime(), action, event.getActionIndex(), count);
+        return true;
+    }
+
+    /**
+     * Hands one touch sample held in the pointer arrays to the recognizer and the recording.
+     */
+    private void dispatchTouch(long eventTime, int action, int actionIndex, int count)
+    {
+        if (mSessionRecorder != null)
+        {
+            recordTouch(eventTime, action, actionIndex, count);
+        }
+        mTouchRecognizer.onTouch(eventTime, action, actionIndex, count, mPointerIds, mPointerX, mPointerY);
     }
 
 
@@ -390,6 +723,15 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
         session.resume();
         surfaceView.onResume();
         displayRotationHelper.onResume();
+        if (GOVERN_FRAME_RATE)
+        {
+            Choreographer.getInstance().postFrameCallback(mRenderPacer);
+        }
+
+        if (mFrameStatsView != null)
+        {
+            mUiHandler.post(mFrameStatsUpdater);
+        }
     }
 
     /**
@@ -399,6 +741,9 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
     public void onPause()
     {
         super.onPause();
+        mUiHandler.removeCallbacks(mFrameStatsUpdater);
+        Choreographer.getInstance().removeFrameCallback(mRenderPacer);
+        mSceneStore.flushSoon();
         if (session != null)
         {
             // Note that the order matters - GLSurfaceView is paused first so that it does not try
@@ -410,6 +755,16 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
         }
     }
 
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+        mModelLoader.shutdown();
+        mFramePool.shutdown();
+        mSceneStore.close();
+        stopRecording();
+    }
+
     /**
      * Overridden onRequestPermissionsResult method designed to launch the request permission
      * settings window
@@ -465,9 +820,11 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
      * resources, it will place the digital object in the physical space. Checks if no model
      * currently set and warns the user to first select a model.
      *
-     * @param e
+     * @param x
+     * @param y
+     * @param eventTime
      */
-    private void onSingleTap(MotionEvent e)
+    private void onSingleTap(float x, float y, long eventTime)
     {
         if (!mModelSet)
         {
@@ -476,8 +833,10 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
         }
         else
         {
-            // Queue tap if there is space. Tap is lost if queue is full.
-            mQueuedSingleTaps.offer(e);
+            if (!mGestureChannel.offerTap(x, y, eventTime))
+            {
+                Log.w(TAG, "Gesture channel full, dropping tap");
+            }
         }
     }
 
@@ -508,6 +867,24 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
             Log.e(TAG, "Failed to read plane texture");
         }
         pointCloud.createOnGlThread(/*context=*/this);
+        mVoxelCloud.createOnGlThread(mPointAccumulator);
+        if (DYNAMIC_RESOLUTION)
+        {
+            mVirtualTarget.createOnGlThread();
+        }
+
+        mMeshRenderer.createOnGlThread();
+        mMeshRenderer.setMaterialProperties(0.0f, 3.5f, 1.0f, 6.0f);
+        // The placeholder is small enough to load up front, real models stream in later.
+        try
+        {
+            virtualObject.createOnGlThread(/*context=*/this, "andy.obj", "andy.png");
+            virtualObject.setMaterialProperties(0.0f, 3.5f, 1.0f, 6.0f);
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Failed to read placeholder model");
+        }
     }
 
     /**
@@ -522,14 +899,55 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
     {
         displayRotationHelper.onSurfaceChanged(width, height);
         GLES20.glViewport(0, 0, width, height);
+        mScene.setViewport(width, height);
+        mViewportWidth = width;
+        mViewportHeight = height;
+        if (DYNAMIC_RESOLUTION)
+        {
+            // Falls back to rendering at full resolution if the target cannot be created.
+            mOffscreenReady = mVirtualTarget.resize(width, height);
+            mResolution.reset();
+        }
     }
 
     @Override
     public void onDrawFrame(GL10 gl)
     {
-        //Dynamic Model Selection --- Setup new model
-        //<REMOVED>
-        //End Dynamic Model Selection --- Setup new model
+        mProfiler.begin(STAGE_FRAME);
+        if (mAllocationBudget == null)
+        {
+            drawFrame();
+        }
+        else
+        {
+            mAllocationBudget.beginFrame();
+            drawFrame();
+            if (mAllocationBudget.endFrame())
+            {
+                Log.w(TAG, "Frame allocated " + mAllocationBudget.getLastFrameAllocations()
+                        + " objects, budget is " + mAllocationBudget.getBudget());
+            }
+        }
+        long frameNanos = mProfiler.end(STAGE_FRAME);
+        if (mOffscreenReady)
+        {
+            // Waiting for the camera image says nothing about the rendering load.
+            mResolution.onFrame(frameNanos - mUpdateNanos);
+        }
+    }
+
+    /**
+     * Renders a single frame. Scratch matrices are preallocated and collections are walked by index
+     * so the steady state does not allocate beyond the wrappers handed back by ARCore.
+     */
+    private void drawFrame()
+    {
+        mUpdateNanos = 0;
+        //Dynamic Model Selection --- Upload models parsed in the background, within a byte budget
+        mProfiler.begin(STAGE_MODEL_UPLOAD);
+        long uploaded = mModelLoader.uploadPending(MODEL_UPLOAD_BUDGET_BYTES, mModelListener);
+        mProfiler.end(STAGE_MODEL_UPLOAD);
+        //End Dynamic Model Selection --- Upload models
 
         // Clear screen to notify driver it should not load any pixels from previous frame.
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
@@ -549,190 +967,540 @@ public class ArActivity extends AppCompatActivity implements GLSurfaceView.Rende
             // Obtain the current frame from ARSession. When the configuration is set to
             // UpdateMode.BLOCKING (it is by default), this will throttle the rendering to the
             // camera framerate.
+            mProfiler.begin(STAGE_UPDATE);
             Frame frame = session.update();
+            mUpdateNanos = mProfiler.end(STAGE_UPDATE);
+            Collection<Plane> updatedPlanes = frame.getUpdatedTrackables(Plane.class);
+            mPlaneCache.update(updatedPlanes);
             Camera camera = frame.getCamera();
+            if (mSessionRecorder != null)
+            {
+                recordFrame(camera, !updatedPlanes.isEmpty());
+            }
 
-            // Handle taps. Handling only one tap per frame, as taps are usually low frequency
-            // compared to frame rate.
-
-            MotionEvent tap = mQueuedSingleTaps.poll();
-            if (tap != null && camera.getTrackingState() == TrackingState.TRACKING)
+            // Apply everything the UI thread queued since the last frame. Taps are placed in one
+            // pass while the camera is tracking, and dropped otherwise.
+            mGestureChannel.drain(mGestureBatch);
+            int changed = mScene.applyGestures(mGestureBatch, SystemClock.uptimeMillis());
+            if (changed >= 0)
             {
-                for (HitResult hit : frame.hitTest(tap))
-                {
-                    // Check if any plane was hit, and if it was hit inside the plane polygon
-                    Trackable trackable = hit.getTrackable();
-                    // Creates an anchor if a plane or an oriented point was hit.
-                    if ((trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose()))
-                            || (trackable instanceof Point
-                            && ((Point) trackable).getOrientationMode()
-                            == OrientationMode.ESTIMATED_SURFACE_NORMAL))
-                    {
-                        // Hits are sorted by depth. Consider only closest hit on a plane or oriented point.
-                        // Cap the number of objects created. This avoids overloading both the
-                        // rendering system and ARCore.
-                        if (mAnchors.size() >= 20)
-                        {
-                            //Alert the user that the maximum has been reached, must call from
-                            //Handler as this is a UI action being done on a worker thread.
-                            new Handler(Looper.getMainLooper())
-                            {
-                                @Override
-                                public void handleMessage(Message message)
-                                {
-                                    Toast.makeText(self,
-                                            "You've reached the maximum!", Toast.LENGTH_LONG).show();
-                                }
-                            };
-
-                            // Alternatively, you can start detaching, however, a revision to the
-                            // mAnchorReferences and mScalingFactors should be made!
-                            // mAnchors.get(0).detach();
-                            // mAnchors.remove(0);
-                        }
-                        else
-                        {
-                            // Adding an Anchor tells ARCore that it should track this position in
-                            // space. This anchor is created on the Plane to place the 3d model
-                            // in the correct position relative both to the world and to the plane.
-                            mScaleFactors.add(1.0f);
-                            Anchor anchor = hit.createAnchor();
-                            mAnchors.add(anchor);
-                            mAnchorReferences.add(mCurrent);
-                            camera.getDisplayOrientedPose().toMatrix(mOriginCameraMatrix, 0);
-                        }
-                        break;
-                    }
-                }
+                mSceneStore.recordTransform(mSlotSceneIds[changed], mTransforms.getScaleFactor(changed),
+                        mTransforms.getRotationTheta(changed), mTransforms.getTranslationX(changed),
+                        mTransforms.getTranslationZ(changed));
+            }
+            long overflows = mTapQueue.getOverflowCount();
+            for (int t = 0; t < mGestureBatch.tapCount; t++)
+            {
+                mTapQueue.add(mGestureBatch.tapX[t], mGestureBatch.tapY[t], mGestureBatch.tapTime[t]);
             }
+            if (mTapQueue.getOverflowCount() != overflows)
+            {
+                Log.w(TAG, "Tap placement queue full, dropped " + (mTapQueue.getOverflowCount() - overflows)
+                        + " taps");
+            }
+            if (camera.getTrackingState() == TrackingState.TRACKING)
+            {
+                mPlacementFrame = frame;
+                mPlacementCamera = camera;
+                mTapQueue.placePending(mAnchorPlacer, SystemClock.uptimeMillis());
+                mPlacementFrame = null;
+                mPlacementCamera = null;
+                restoreScene();
+            }
+            else
+            {
+                mTapQueue.clear();
+            }
+            long now = SystemClock.uptimeMillis();
+            boolean active = uploaded > 0 || mTapQueue.size() > 0 || mGestureBatch.tapCount > 0
+                    || mGestureBatch.hasPan || mGestureBatch.hasScale || mGestureBatch.hasRotation
+                    || mGestureBatch.hasSelect;
 
             // Draw background.
+            mProfiler.begin(STAGE_BACKGROUND);
             backgroundRenderer.draw(frame);
+            mProfiler.end(STAGE_BACKGROUND);
 
             // If not tracking, don't draw 3d objects.
             if (camera.getTrackingState() == TrackingState.PAUSED)
             {
+                mRateGovernor.onFrame(now, SceneController.PAUSED, mCurrentCameraMatrix, active);
                 return;
             }
 
             // Get projection matrix.
-            float[] projmtx = new float[16];
+            float[] projmtx = mProjectionMatrix;
             camera.getProjectionMatrix(projmtx, 0, 0.1f, 100.0f);
 
             // Get camera matrix and draw.
-            float[] viewmtx = new float[16];
+            float[] viewmtx = mViewMatrix;
             camera.getViewMatrix(viewmtx, 0);
 
             // Compute lighting from average intensity of the image.
-            final float lightIntensity = frame.getLightEstimate().getPixelIntensity();
+            mLightIntensity = frame.getLightEstimate().getPixelIntensity();
+
+            Pose cameraPose = camera.getDisplayOrientedPose();
+            cameraPose.toMatrix(mCurrentCameraMatrix, 0);
+            mRateGovernor.onFrame(now, sceneTrackingState(camera.getTrackingState()), mCurrentCameraMatrix, active);
+            mScene.setCamera(projmtx, viewmtx, mCurrentCameraMatrix);
+            // Objects are composed and culled on the frame pool while the point cloud and planes are
+            // drawn. Anchors ARCore gave up on are dropped here.
+            mProfiler.begin(STAGE_ANCHOR_PREP);
+            mScene.beginObjects(mSceneAnchors);
+            mProfiler.end(STAGE_ANCHOR_PREP);
+
+            // Check if we detected at least one plane. If so, hide the loading message.
+            if (messageSnackbar != null && mPlaneCache.hasTrackingHorizontalPlane())
+            {
+                hideLoadingMessage();
+            }
+
+            // Visualize planes. They go straight onto the camera image: the sample's PlaneRenderer
+            // resets the destination alpha to blend with it, which would wipe the offscreen target's
+            // coverage, and it draws without writing depth, so nothing has to be tested against it.
+            mProfiler.begin(STAGE_PLANES);
+            planeRenderer.drawPlanes(mPlaneCache.getPlanes(), cameraPose, projmtx);
+            mProfiler.end(STAGE_PLANES);
+
+            // Points and objects are rendered offscreen at the controller's scale when dynamic
+            // resolution is on.
+            if (mOffscreenReady)
+            {
+                mVirtualTarget.begin(mResolution.getScale());
+                mRenderingOffscreen = true;
+            }
 
             // Visualize tracked points.
+            mProfiler.begin(STAGE_POINT_CLOUD);
             PointCloud pointCloud = frame.acquirePointCloud();
-            this.pointCloud.update(pointCloud);
-            this.pointCloud.draw(viewmtx, projmtx);
+            if (ACCUMULATE_POINT_CLOUD)
+            {
+                if (camera.getTrackingState() == TrackingState.STOPPED && mPointAccumulator.getVoxelCount() > 0)
+                {
+                    // Tracking will not come back in this session, the voxels map a world that is gone.
+                    mPointAccumulator.clear();
+                }
+                // ARCore hands back the same cloud until it has new points, merge each one once.
+                if (pointCloud.getTimestamp() != mLastPointCloudTimestamp)
+                {
+                    mLastPointCloudTimestamp = pointCloud.getTimestamp();
+                    FloatBuffer points = pointCloud.getPoints();
+                    mPointAccumulator.merge(points, points.remaining() / PointCloudAccumulator.FLOATS_PER_VOXEL);
+                    mVoxelCloud.update(mPointAccumulator);
+                }
+                mVoxelCloud.draw(mPointAccumulator, viewmtx, projmtx);
+            }
+            else
+            {
+                this.pointCloud.update(pointCloud);
+                this.pointCloud.draw(viewmtx, projmtx);
+            }
 
             // Application is responsible for releasing the point cloud resources after
             // using it.
             pointCloud.release();
+            mProfiler.end(STAGE_POINT_CLOUD);
 
-            // Check if we detected at least one plane. If so, hide the loading message.
-            if (messageSnackbar != null)
+            // Visualize anchors created by touch.
+            mProfiler.begin(STAGE_ANCHORS);
+            // Visible objects are drawn one batch per model.
+            mScene.finishObjects(mObjectRendererBackend);
+            mProfiler.end(STAGE_ANCHORS);
+
+            if (mRenderingOffscreen)
+            {
+                mRenderingOffscreen = false;
+                mVirtualTarget.end();
+            }
+        }
+        catch (Throwable t)
+        {
+            // Avoid crashing the application due to unhandled exceptions.
+            Log.e(TAG, "Exception on the OpenGL thread", t);
+            // Composition may still be running on the pool, and the next frame changes the
+            // transforms it reads before it would wait for it.
+            mScene.abandonObjects();
+            if (mRenderingOffscreen)
             {
-                for (Plane plane : session.getAllTrackables(Plane.class))
+                // Do not leave the next frame drawing into the target.
+                mRenderingOffscreen = false;
+                mVirtualTarget.end();
+            }
+        }
+    }
+
+
+    /**
+     * Hit tests a tap and anchors the current model on the closest plane or oriented point hit.
+     *
+     * @param frame
+     * @param camera
+     * @param x
+     * @param y
+     * @return true if an anchor was created
+     */
+    private boolean placeAnchor(Frame frame, Camera camera, float x, float y)
+    {
+        List<HitResult> hits = frame.hitTest(x, y);
+        for (int i = 0; i < hits.size(); i++)
+        {
+            HitResult hit = hits.get(i);
+            // Check if any plane was hit, and if it was hit inside the plane polygon
+            Trackable trackable = hit.getTrackable();
+            // Creates an anchor if a plane or an oriented point was hit.
+            if ((trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose()))
+                    || (trackable instanceof Point
+                    && ((Point) trackable).getOrientationMode()
+                    == OrientationMode.ESTIMATED_SURFACE_NORMAL))
+            {
+                // Hits are sorted by depth. Consider only closest hit on a plane or oriented point.
+                // Cap the number of objects created. This avoids overloading both the
+                // rendering system and ARCore. When the cap is reached the eviction policy gives
+                // up an existing object, its slot is recycled without moving any other object.
+                if (mTransforms.isFull())
                 {
-                    if (plane.getType() == com.google.ar.core.Plane.Type.HORIZONTAL_UPWARD_FACING
-                            && plane.getTrackingState() == TrackingState.TRACKING)
-                    {
-                        hideLoadingMessage();
-                        break;
-                    }
+                    float[] cameraMatrix = mScene.getCameraMatrix();
+                    removeAnchor(mEvictionPolicy.selectVictim(mTransforms,
+                            cameraMatrix[12], cameraMatrix[13], cameraMatrix[14]));
                 }
+
+                // Adding an Anchor tells ARCore that it should track this position in
+                // space. This anchor is created on the Plane to place the 3d model
+                // in the correct position relative both to the world and to the plane.
+                Anchor anchor = hit.createAnchor();
+                Pose pose = anchor.getPose();
+                pose.getTranslation(mScenePose, 0);
+                pose.getRotationQuaternion(mScenePose, 3);
+                int handle = mScene.add(mCurrent, SystemClock.uptimeMillis(), mScenePose[0], mScenePose[1],
+                        mScenePose[2]);
+                mModelCache.pin(mCurrent);
+                int slot = AnchorTransformTable.slotOf(handle);
+                mSlotAnchors[slot] = anchor;
+                mSlotSceneIds[slot] = mSceneStore.nextId();
+                String[] source = mModelSources.get(mCurrent);
+                mSceneStore.recordPlace(mSlotSceneIds[slot], source[1], source[2], mScenePose, 1.0f, 0.0f, 0.0f, 0.0f);
+                mHasPlacedObject = true;
+                mScene.select(handle);
+                camera.getDisplayOrientedPose().toMatrix(mOriginCameraMatrix, 0);
+                mScene.setOriginCamera(mOriginCameraMatrix);
+                recordHit(x, y, mScenePose);
+                return true;
             }
+        }
+        recordHit(x, y, null);
+        return false;
+    }
 
-            camera.getDisplayOrientedPose().toMatrix(mCurrentCameraMatrix, 0);
-            // Visualize planes.
-            planeRenderer.drawPlanes(
-                    session.getAllTrackables(Plane.class), camera.getDisplayOrientedPose(), projmtx);
+    /**
+     * Detaches the anchor of a slot, releases the slot and drops the object from the stored scene.
+     * Other slots keep their data and index.
+     *
+     * @param slot
+     */
+    private void removeAnchor(int slot)
+    {
+        mSceneStore.recordRemove(mSlotSceneIds[slot]);
+        mSlotAnchors[slot].detach();
+        mSlotAnchors[slot] = null;
+        mModelCache.unpin(mTransforms.getModelReference(slot));
+        mScene.remove(slot);
+        mHasPlacedObject = mTransforms.size() > 0;
+    }
 
-            // Visualize anchors created by touch.
-            int ac = 0;
-            for (Anchor anchor : mAnchors)
+    /**
+     * Selects the model placed by the following taps. A model that is still resident is used right
+     * away; otherwise it is loaded in the background, from the parsed mesh cache when possible, and
+     * objects placed before it is resident use the placeholder model until the upload finishes.
+     *
+     * @param meshPath    .obj file, absolute for side loaded models or relative to the assets
+     * @param texturePath diffuse texture, resolved the same way
+     */
+    public void selectModel(final String meshPath, final String texturePath)
+    {
+        mModelSet = true;
+        // Side loaded files are looked at here, off the GL thread.
+        final String key = sourceKey(meshPath, texturePath);
+        surfaceView.queueEvent(new Runnable()
+        {
+            @Override
+            public void run()
             {
-                if (anchor.getTrackingState() != TrackingState.TRACKING)
+                int model = registerModel(key, meshPath, texturePath);
+                if (!mModelCache.acquire(model))
                 {
-                    continue;
+                    mModelsFailed.clear(model);
+                    requestModel(model);
                 }
-                // Get the current pose of an Anchor in world space. The Anchor pose is updated
-                // during calls to session.update() as ARCore refines its estimate of the world.
-                anchor.getPose().toMatrix(mAnchorMatrix, 0);
+                // The selected model stays resident, so the next placement does not wait for it.
+                mModelCache.pin(model);
+                if (mCurrent >= 0)
+                {
+                    mModelCache.unpin(mCurrent);
+                }
+                mCurrent = model;
+            }
+        });
+    }
 
+    /**
+     * Gives a model source an id on first use. Loading is left to {@link #requestModel(int)}.
+     *
+     * @param key         from {@link #sourceKey(String, String)}, kept as the model's cache key
+     * @param meshPath
+     * @param texturePath
+     * @return the model id
+     */
+    private int registerModel(String key, String meshPath, String texturePath)
+    {
+        Integer model = mModelIds.get(key);
+        if (model == null)
+        {
+            model = mModelMeshes.size();
+            mModelIds.put(key, model);
+            mModelMeshes.add(null);
+            mModelSources.add(new String[]{key, meshPath, texturePath});
+        }
+        return model;
+    }
 
-                // Update and draw the model with the rotations, scaling, and translations factored
-                if (mModelSet)
-                {
-                    if (mScaleFactors.size() <= ac)
-                    {
-                        mScaleFactors.add(1.0f);
-                    }
-                    if (mRotationThetas.size() <= ac)
-                    {
-                        mRotationThetas.add(0.0f);
-                    }
-                    if (mTranslationX.size() <= ac)
-                    {
-                        mTranslationX.add(viewmtx[3]);
-                    }
-                    if (mTranslationZ.size() <= ac)
-                    {
-                        mTranslationZ.add(viewmtx[11]);
-                    }
+    /**
+     * Side loaded files can be replaced under the same path, so their key includes the modification
+     * time. Asset names are stable. Reads the file system for side loaded models, so it is taken
+     * once per selection or restore, not per load request.
+     */
+    private static String sourceKey(String meshPath, String texturePath)
+    {
+        return sourceKey(meshPath) + "|" + sourceKey(texturePath);
+    }
 
-                    translateMatrix(mTranslationX.get(ac), 0, mTranslationZ.get(ac));
-                    rotateYAxisMatrix(mRotationThetas.get(ac));
+    private static String sourceKey(String path)
+    {
+        return path.startsWith("/") ? path + "@" + new File(path).lastModified() : path;
+    }
 
-                    ObjectRenderer virtualObject = mVirtualObjects.get(mAnchorReferences.get(ac));
-                    virtualObject.updateModelMatrix(mAnchorMatrix, mScaleFactors.get(ac));
-                    virtualObject.draw(viewmtx, projmtx, lightIntensity);
-                }
-                ac++;
+    /**
+     * Starts loading a model that is not resident, unless it is already on its way or failed.
+     *
+     * @param model
+     */
+    private void requestModel(int model)
+    {
+        if (mModelsLoading.get(model) || mModelsFailed.get(model))
+        {
+            return;
+        }
+        mModelsLoading.set(model);
+        String[] source = mModelSources.get(model);
+        mModelLoader.load(model, source[0], source[1], source[2]);
+    }
+
+    public ModelCache getModelCache()
+    {
+        return mModelCache;
+    }
+
+    public ModelLoader getModelLoader()
+    {
+        return mModelLoader;
+    }
+
+    /**
+     * Recreates the objects of the stored scene once it has been read, {@link #RESTORE_BATCH} per
+     * frame so a large scene does not stall a frame. Poses are relative to the session origin. Must
+     * be called while the camera is tracking. Objects that do not fit stay in the store and are
+     * restored next time.
+     */
+    private void restoreScene()
+    {
+        if (mRestoringScene == null)
+        {
+            mRestoringScene = mSceneStore.takeRestoredScene();
+            if (mRestoringScene == null)
+            {
+                return;
             }
+            mRestoredModels = new int[mRestoringScene.meshPaths.length];
+            for (int m = 0; m < mRestoredModels.length; m++)
+            {
+                mRestoredModels[m] = registerModel(sourceKey(mRestoringScene.meshPaths[m],
+                        mRestoringScene.texturePaths[m]), mRestoringScene.meshPaths[m], mRestoringScene.texturePaths[m]);
+            }
+            mRestoredCount = 0;
         }
-        catch (Throwable t)
+        SceneStore.Scene scene = mRestoringScene;
+        int end = Math.min(scene.count, mRestoredCount + RESTORE_BATCH);
+        long now = SystemClock.uptimeMillis();
+        for (; mRestoredCount < end && !mTransforms.isFull(); mRestoredCount++)
         {
-            // Avoid crashing the application due to unhandled exceptions.
-            Log.e(TAG, "Exception on the OpenGL thread", t);
+            int i = mRestoredCount;
+            int p = i * SceneStore.POSE_SIZE;
+            Pose pose = new Pose(new float[]{scene.poses[p], scene.poses[p + 1], scene.poses[p + 2]},
+                    new float[]{scene.poses[p + 3], scene.poses[p + 4], scene.poses[p + 5], scene.poses[p + 6]});
+            int slot = AnchorTransformTable.slotOf(mScene.add(mRestoredModels[scene.models[i]], now,
+                    scene.poses[p], scene.poses[p + 1], scene.poses[p + 2]));
+            mModelCache.pin(mRestoredModels[scene.models[i]]);
+            mSlotAnchors[slot] = session.createAnchor(pose);
+            mSlotSceneIds[slot] = scene.ids[i];
+            mTransforms.scale(slot, scene.scales[i]);
+            mTransforms.rotate(slot, scene.rotations[i]);
+            mTransforms.translate(slot, scene.translationX[i], scene.translationZ[i]);
+            mHasPlacedObject = true;
+        }
+        if (mRestoredCount == scene.count || mTransforms.isFull())
+        {
+            mRestoringScene = null;
+            mRestoredModels = null;
+        }
+        else
+        {
+            // The rest comes a batch per frame, so frames must keep coming until it is all back.
+            mRateGovernor.wake();
         }
     }
 
+    /**
+     * Records the session into a log for tools/SessionReplay, until {@link #stopRecording()}.
+     *
+     * @param file
+     */
+    private void startRecording(File file)
+    {
+        try
+        {
+            mSessionRecorder = new SessionLog.Recorder(new RandomAccessFile(file, "rw").getChannel());
+            Log.i(TAG, "Recording session to " + file);
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Failed to start recording the session", e);
+        }
+    }
+
+    private void stopRecording()
+    {
+        SessionLog.Recorder recorder = mSessionRecorder;
+        mSessionRecorder = null;
+        if (recorder != null)
+        {
+            try
+            {
+                recorder.close();
+            }
+            catch (IOException e)
+            {
+                Log.e(TAG, "Failed to finish the session recording", e);
+            }
+        }
+    }
 
     /**
-     * Rotates the matrix of an object by a given angle (rotationTheta).
+     * Records the camera of this frame, and a plane snapshot when ARCore updated any plane.
      *
-     * @param rotationTheta
+     * @param camera
+     * @param planesUpdated
+     */
+    private void recordFrame(Camera camera, boolean planesUpdated)
+    {
+        SessionLog.Recorder recorder = mSessionRecorder;
+        camera.getProjectionMatrix(mProjectionMatrix, 0, 0.1f, 100.0f);
+        camera.getViewMatrix(mViewMatrix, 0);
+        camera.getDisplayOrientedPose().toMatrix(mCurrentCameraMatrix, 0);
+        try
+        {
+            recorder.frame(SystemClock.uptimeMillis(), sceneTrackingState(camera.getTrackingState()),
+                    mViewportWidth, mViewportHeight, mProjectionMatrix, mViewMatrix, mCurrentCameraMatrix);
+            if (planesUpdated)
+            {
+                int count = Math.min(mPlaneCache.size(), SessionLog.MAX_PLANES);
+                for (int i = 0; i < count; i++)
+                {
+                    Plane plane = mPlaneCache.get(i);
+                    Pose pose = plane.getCenterPose();
+                    pose.getTranslation(mRecordPlanePoses, i * SessionLog.POSE_SIZE);
+                    pose.getRotationQuaternion(mRecordPlanePoses, i * SessionLog.POSE_SIZE + 3);
+                    mRecordPlaneTypes[i] = plane.getType().ordinal();
+                    mRecordPlaneStates[i] = sceneTrackingState(plane.getTrackingState());
+                    mRecordPlaneExtents[i * 2] = plane.getExtentX();
+                    mRecordPlaneExtents[i * 2 + 1] = plane.getExtentZ();
+                }
+                recorder.planes(count, mRecordPlaneTypes, mRecordPlaneStates, mRecordPlanePoses, mRecordPlaneExtents);
+            }
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Failed to record frame, recording stopped", e);
+            stopRecording();
+        }
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param pose pose of the placed anchor, or null if the tap missed
+     */
+    private void recordHit(float x, float y, float[] pose)
+    {
+        SessionLog.Recorder recorder = mSessionRecorder;
+        if (recorder == null)
+        {
+            return;
+        }
+        try
+        {
+            recorder.hit(x, y, pose);
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Failed to record hit, recording stopped", e);
+            stopRecording();
+        }
+    }
+
+    /**
+     * Records the touch event whose pointers were just copied into the pointer arrays.
      */
-    private void rotateYAxisMatrix(float rotationTheta)
+    private void recordTouch(long eventTime, int action, int actionIndex, int count)
     {
-        if (rotationTheta != 0.0f)
+        SessionLog.Recorder recorder = mSessionRecorder;
+        try
         {
-            mAnchorMatrix[0] = (float) Math.cos(rotationTheta);
-            mAnchorMatrix[2] = (float) Math.sin(rotationTheta);
-            mAnchorMatrix[5] = 1;
-            mAnchorMatrix[8] = -(float) Math.sin(rotationTheta);
-            mAnchorMatrix[10] = (float) Math.cos(rotationTheta);
-            mAnchorMatrix[15] = 1;
+            recorder.touch(eventTime, action, actionIndex, count, mPointerIds, mPointerX, mPointerY);
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Failed to record touch, recording stopped", e);
+            stopRecording();
+        }
+    }
+
+    private static int sceneTrackingState(TrackingState state)
+    {
+        switch (state)
+        {
+            case TRACKING:
+                return SceneController.TRACKING;
+            case STOPPED:
+                return SceneController.STOPPED;
+            default:
+                return SceneController.PAUSED;
         }
     }
 
     /**
-     * Translates the matrix of an object by a given distance on all 3 axes.
+     * Chooses how objects are given up once {@link #MAX_ANCHORS} are placed.
      *
-     * @param xDistance
-     * @param yDistance
-     * @param zDistance
+     * @param policy
      */
-    private void translateMatrix(float xDistance, float yDistance, float zDistance)
+    public void setEvictionPolicy(final AnchorEvictionPolicy policy)
     {
-        Matrix.translateM(mAnchorMatrix, 0, xDistance, yDistance, zDistance);
+        surfaceView.queueEvent(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mEvictionPolicy = policy;
+            }
+        });
     }
 
     /**
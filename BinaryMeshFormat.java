@@ -0,0 +1,185 @@
+package com.your.package.here.rendering;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+import de.javagl.obj.ObjUtils;
+
+/**
+ * Versioned binary mesh file, laid out so it can be memory mapped and uploaded as is. All values
+ * are little endian.
+ * <pre>
+ *  0  int      magic "AMSH"
+ *  4  int      version
+ *  8  int      vertex count
+ * 12  int      index count
+ * 16  float[6] bounds: min x, y, z, max x, y, z
+ * 40  int      vertex data offset
+ * 44  int      index data offset
+ *     vertices position (3 floats), normal (3 floats), texture coordinate (2 floats)
+ *     indices  unsigned 16 bit triangle list
+ * </pre>
+ * Only the Obj parsing depends on anything beyond java.nio, so the desktop converter writes files
+ * with the same code the app reads them with.
+ */
+public final class BinaryMeshFormat
+{
+    public static final String EXTENSION = ".amesh";
+    public static final int MAGIC = 'A' | 'M' << 8 | 'S' << 16 | 'H' << 24;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 48;
+
+    public static final int VERTEX_STRIDE = 32;
+    public static final int POSITION_OFFSET = 0;
+    public static final int NORMAL_OFFSET = 12;
+    public static final int TEX_COORD_OFFSET = 24;
+
+    private static final int MAX_VERTICES = 1 << 16;
+
+    private BinaryMeshFormat()
+    {
+    }
+
+    /**
+     * Wraps a mapped (or fully read) file without copying. The returned vertex and index buffers are
+     * slices of the given buffer.
+     *
+     * @param file contents of a mesh file, from position 0
+     * @throws IOException if the header is not a supported mesh file or the sizes do not add up
+     */
+    public static MeshData read(ByteBuffer file) throws IOException
+    {
+        ByteBuffer header = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (header.capacity() < HEADER_SIZE || header.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a binary mesh file");
+        }
+        int version = header.getInt(4);
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported binary mesh version " + version);
+        }
+        int vertexCount = header.getInt(8);
+        int indexCount = header.getInt(12);
+        float[] bounds = new float[6];
+        for (int i = 0; i < 6; i++)
+        {
+            bounds[i] = header.getFloat(16 + i * 4);
+        }
+        int vertexOffset = header.getInt(40);
+        int indexOffset = header.getInt(44);
+        long vertexEnd = vertexOffset + (long) vertexCount * VERTEX_STRIDE;
+        long indexEnd = indexOffset + (long) indexCount * 2;
+        if (vertexCount < 0 || vertexCount > MAX_VERTICES || indexCount < 0 || vertexOffset < HEADER_SIZE
+                || indexOffset < vertexEnd || indexEnd > header.capacity())
+        {
+            throw new IOException("Corrupt binary mesh file");
+        }
+        return new MeshData(slice(header, vertexOffset, vertexCount * VERTEX_STRIDE), vertexCount,
+                slice(header, indexOffset, indexCount * 2), indexCount, bounds);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length)
+    {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes a mesh in this format.
+     *
+     * @param mesh
+     * @param out
+     * @return the number of bytes written
+     */
+    public static long write(MeshData mesh, WritableByteChannel out) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(mesh.vertexCount).putInt(mesh.indexCount);
+        for (int i = 0; i < 6; i++)
+        {
+            header.putFloat(mesh.bounds[i]);
+        }
+        int vertexOffset = HEADER_SIZE;
+        header.putInt(vertexOffset).putInt(vertexOffset + mesh.vertexCount * VERTEX_STRIDE);
+        header.flip();
+        long written = 0;
+        written += writeFully(header, out);
+        written += writeFully(mesh.vertices.duplicate(), out);
+        written += writeFully(mesh.indices.duplicate(), out);
+        return written;
+    }
+
+    private static long writeFully(ByteBuffer buffer, WritableByteChannel out) throws IOException
+    {
+        buffer.rewind();
+        long written = 0;
+        while (buffer.hasRemaining())
+        {
+            written += out.write(buffer);
+        }
+        return written;
+    }
+
+    /**
+     * Converts a parsed Obj into interleaved vertices, 16 bit indices and bounds. Missing normals or
+     * texture coordinates are written as zeros.
+     *
+     * @param obj
+     * @throws IOException if the mesh needs more vertices than 16 bit indices can address
+     */
+    public static MeshData fromObj(Obj obj) throws IOException
+    {
+        Obj renderable = ObjUtils.convertToRenderable(obj);
+        IntBuffer wideIndices = ObjData.getFaceVertexIndices(renderable, 3);
+        FloatBuffer positions = ObjData.getVertices(renderable);
+        FloatBuffer normals = ObjData.getNormals(renderable);
+        FloatBuffer texCoords = ObjData.getTexCoords(renderable, 2);
+
+        int vertexCount = positions.limit() / 3;
+        if (vertexCount > MAX_VERTICES)
+        {
+            throw new IOException("Mesh has " + vertexCount + " vertices, at most " + MAX_VERTICES + " are supported");
+        }
+        boolean hasNormals = normals.limit() >= vertexCount * 3;
+        boolean hasTexCoords = texCoords.limit() >= vertexCount * 2;
+
+        ByteBuffer vertices = ByteBuffer.allocateDirect(vertexCount * VERTEX_STRIDE).order(ByteOrder.LITTLE_ENDIAN);
+        float[] bounds = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int v = 0; v < vertexCount; v++)
+        {
+            int base = v * VERTEX_STRIDE;
+            for (int axis = 0; axis < 3; axis++)
+            {
+                float p = positions.get(v * 3 + axis);
+                vertices.putFloat(base + POSITION_OFFSET + axis * 4, p);
+                vertices.putFloat(base + NORMAL_OFFSET + axis * 4, hasNormals ? normals.get(v * 3 + axis) : 0);
+                bounds[axis] = Math.min(bounds[axis], p);
+                bounds[axis + 3] = Math.max(bounds[axis + 3], p);
+            }
+            vertices.putFloat(base + TEX_COORD_OFFSET, hasTexCoords ? texCoords.get(v * 2) : 0);
+            vertices.putFloat(base + TEX_COORD_OFFSET + 4, hasTexCoords ? texCoords.get(v * 2 + 1) : 0);
+        }
+        if (vertexCount == 0)
+        {
+            bounds = new float[6];
+        }
+
+        int indexCount = wideIndices.limit();
+        ByteBuffer indices = ByteBuffer.allocateDirect(indexCount * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < indexCount; i++)
+        {
+            indices.putShort(i * 2, (short) wideIndices.get(i));
+        }
+        return new MeshData(vertices, vertexCount, indices, indexCount, bounds);
+    }
+}
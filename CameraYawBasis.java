@@ -0,0 +1,61 @@
+package com.your.package.here.view;
+
+/**
+ * Ground-plane rotation of the camera relative to the pose it had when the last object was placed,
+ * published by the GL thread once per frame and read wherever drags are turned into translations.
+ * The cosine and sine of the relative yaw are packed into a single volatile long, so readers on any
+ * thread always see a matching pair without locking or allocating.
+ */
+public class CameraYawBasis
+{
+    private static final float MIN_PROJECTED_LENGTH = 1e-4f;
+
+    private volatile long mPacked = pack(1.0f, 0.0f);
+
+    /**
+     * Derives the relative yaw from the X axis (the camera's right vector) of both camera matrices
+     * projected onto the ground plane. Keeps the previous basis if the right vector is close to
+     * vertical, where the yaw is undefined.
+     *
+     * @param currentCameraMatrix display oriented camera pose of this frame
+     * @param originCameraMatrix  display oriented camera pose when the last object was placed
+     */
+    public void publish(float[] currentCameraMatrix, float[] originCameraMatrix)
+    {
+        float currentX = currentCameraMatrix[0];
+        float currentZ = currentCameraMatrix[2];
+        float originX = originCameraMatrix[0];
+        float originZ = originCameraMatrix[2];
+
+        // cos(current - origin) and sin(current - origin), scaled by both projected lengths.
+        float cos = currentX * originX + currentZ * originZ;
+        float sin = currentZ * originX - currentX * originZ;
+        float length = (float) Math.sqrt(cos * cos + sin * sin);
+        if (length < MIN_PROJECTED_LENGTH)
+        {
+            return;
+        }
+        mPacked = pack(cos / length, sin / length);
+    }
+
+    /**
+     * Rotates a screen-space drag into a ground-plane translation in the origin camera's frame.
+     *
+     * @param screenDx finger movement along the screen X axis, positive to the right
+     * @param screenDy finger movement along the screen Y axis, positive downwards
+     * @param out      receives the X translation at index 0 and the Z translation at index 1
+     */
+    public void toGround(float screenDx, float screenDy, float[] out)
+    {
+        long packed = mPacked;
+        float cos = Float.intBitsToFloat((int) (packed >>> 32));
+        float sin = Float.intBitsToFloat((int) packed);
+        out[0] = cos * screenDx - sin * screenDy;
+        out[1] = sin * screenDx + cos * screenDy;
+    }
+
+    private static long pack(float cos, float sin)
+    {
+        return ((long) Float.floatToRawIntBits(cos) << 32) | (Float.floatToRawIntBits(sin) & 0xffffffffL);
+    }
+}
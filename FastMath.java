@@ -0,0 +1,134 @@
+package com.your.package.here;
+
+/**
+ * Trigonometry used on the gesture and render paths, with a selectable backend. By default every
+ * call forwards to {@link java.lang.Math}; once {@link #setEnabled(boolean)} turns the fast backend
+ * on, the calls go to approximations that trade a bounded error for speed:
+ * <ul>
+ * <li>{@link #sin(float)} / {@link #cos(float)}: 4096-entry table over one period with linear
+ * interpolation, maximum absolute error 4e-7 for |x| up to 1e4 radians.</li>
+ * <li>{@link #atan2(float, float)}: octant reduction plus an 11th-order minimax polynomial for
+ * atan on [0, 1], maximum absolute error 2e-6 radians.</li>
+ * </ul>
+ * Both are well under a tenth of a degree, which is far below what a rotation gesture or a
+ * Y-axis model rotation can show on screen.
+ */
+public final class FastMath
+{
+    private static final float PI = (float) Math.PI;
+    private static final float HALF_PI = (float) (Math.PI / 2);
+
+    private static final int SIN_BITS = 12;
+    private static final int SIN_SIZE = 1 << SIN_BITS;
+    private static final int SIN_MASK = SIN_SIZE - 1;
+    private static final double SIN_STEP = Math.PI * 2 / SIN_SIZE;
+    private static final double RADIANS_TO_INDEX = SIN_SIZE / (Math.PI * 2);
+    private static final int QUARTER_PERIOD = SIN_SIZE / 4;
+    // One extra entry so interpolation never wraps inside the table.
+    private static final float[] SIN_TABLE = new float[SIN_SIZE + 1];
+
+    static
+    {
+        for (int i = 0; i <= SIN_SIZE; i++)
+        {
+            SIN_TABLE[i] = (float) Math.sin(i * SIN_STEP);
+        }
+    }
+
+    // Written rarely from a settings toggle, a stale read only means one more call on the old path.
+    private static boolean sEnabled;
+
+    private FastMath()
+    {
+    }
+
+    public static void setEnabled(boolean enabled)
+    {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled()
+    {
+        return sEnabled;
+    }
+
+    public static float sin(float radians)
+    {
+        return sEnabled ? tableSin(radians) : (float) Math.sin(radians);
+    }
+
+    public static float cos(float radians)
+    {
+        return sEnabled ? tableCos(radians) : (float) Math.cos(radians);
+    }
+
+    public static float atan2(float y, float x)
+    {
+        return sEnabled ? polyAtan2(y, x) : (float) Math.atan2(y, x);
+    }
+
+    /**
+     * Table sine, always using the fast backend.
+     *
+     * @param radians
+     * @return
+     */
+    public static float tableSin(float radians)
+    {
+        return lookup(radians * RADIANS_TO_INDEX);
+    }
+
+    /**
+     * Table cosine, always using the fast backend.
+     *
+     * @param radians
+     * @return
+     */
+    public static float tableCos(float radians)
+    {
+        return lookup(radians * RADIANS_TO_INDEX + QUARTER_PERIOD);
+    }
+
+    // Positions are in table entries and kept in double so large angles keep their fraction.
+    private static float lookup(double position)
+    {
+        double floor = Math.floor(position);
+        int index = ((int) (long) floor) & SIN_MASK;
+        float fraction = (float) (position - floor);
+        float a = SIN_TABLE[index];
+        return a + (SIN_TABLE[index + 1] - a) * fraction;
+    }
+
+    /**
+     * Polynomial atan2, always using the fast backend. Matches {@link Math#atan2(double, double)}
+     * for the quadrant and signed zero conventions, returns 0 for (0, 0) and NaN for NaN inputs.
+     *
+     * @param y
+     * @param x
+     * @return
+     */
+    public static float polyAtan2(float y, float x)
+    {
+        float ax = Math.abs(x);
+        float ay = Math.abs(y);
+        if (ax == 0.0f && ay == 0.0f)
+        {
+            return (float) Math.atan2(y, x);
+        }
+        boolean swap = ay > ax;
+        float t = swap ? ax / ay : ay / ax;
+        float t2 = t * t;
+        float angle = t * (0.99997726f + t2 * (-0.33262347f + t2 * (0.19354346f
+                + t2 * (-0.11643287f + t2 * (0.05265332f + t2 * -0.01172120f)))));
+        if (swap)
+        {
+            angle = HALF_PI - angle;
+        }
+        if (x < 0.0f)
+        {
+            angle = PI - angle;
+        }
+        // Takes the sign of y, including that of -0, as Math.atan2 does on the negative x axis.
+        return Math.copySign(angle, y);
+    }
+}
@@ -0,0 +1,76 @@
+package com.your.package.here;
+
+/**
+ * Measures how many objects the render thread allocates per frame and flags frames that go over a
+ * fixed budget. The allocation count comes from a pluggable {@link Counter}, so the same check can
+ * run against {@code android.os.Debug} on a device or against an instrumented counter on desktop.
+ */
+public class FrameAllocationBudget
+{
+    /**
+     * Source of a monotonically increasing allocation count for the calling thread.
+     */
+    public interface Counter
+    {
+        long allocationCount();
+    }
+
+    private final Counter mCounter;
+    private final int mBudget;
+    private long mFrameStart;
+    private long mLastFrameAllocations;
+    private long mFramesOverBudget;
+    private long mFrames;
+
+    /**
+     * @param counter allocation counter sampled at the start and end of every frame
+     * @param budget  maximum number of allocations a frame may make before it is flagged
+     */
+    public FrameAllocationBudget(Counter counter, int budget)
+    {
+        mCounter = counter;
+        mBudget = budget;
+    }
+
+    public void beginFrame()
+    {
+        mFrameStart = mCounter.allocationCount();
+    }
+
+    /**
+     * Closes the current frame.
+     *
+     * @return true if the frame allocated more than the budget
+     */
+    public boolean endFrame()
+    {
+        mLastFrameAllocations = mCounter.allocationCount() - mFrameStart;
+        mFrames++;
+        if (mLastFrameAllocations > mBudget)
+        {
+            mFramesOverBudget++;
+            return true;
+        }
+        return false;
+    }
+
+    public int getBudget()
+    {
+        return mBudget;
+    }
+
+    public long getLastFrameAllocations()
+    {
+        return mLastFrameAllocations;
+    }
+
+    public long getFramesOverBudget()
+    {
+        return mFramesOverBudget;
+    }
+
+    public long getFrames()
+    {
+        return mFrames;
+    }
+}
@@ -0,0 +1,93 @@
+package com.your.package.here;
+
+import java.util.Locale;
+
+/**
+ * Times named stages of the render loop. Each stage owns a {@link LatencyHistogram}; a span is
+ * opened with {@link #begin(int)} and closed with {@link #end(int)} on the render thread, which
+ * costs two {@code System.nanoTime()} calls and an atomic increment. Snapshots can be taken from
+ * any thread.
+ */
+public class FrameProfiler
+{
+    private final String[] mStageNames;
+    private final LatencyHistogram[] mHistograms;
+    private final long[] mStageStarts;
+
+    /**
+     * @param stageNames display names, the index of each name is the stage id
+     */
+    public FrameProfiler(String... stageNames)
+    {
+        mStageNames = stageNames.clone();
+        mHistograms = new LatencyHistogram[stageNames.length];
+        for (int i = 0; i < stageNames.length; i++)
+        {
+            mHistograms[i] = new LatencyHistogram();
+        }
+        mStageStarts = new long[stageNames.length];
+    }
+
+    public void begin(int stage)
+    {
+        mStageStarts[stage] = System.nanoTime();
+    }
+
+    /**
+     * Closes the span opened by the last {@link #begin(int)} of the stage.
+     *
+     * @param stage
+     * @return the duration of the span in nanoseconds
+     */
+    public long end(int stage)
+    {
+        long duration = System.nanoTime() - mStageStarts[stage];
+        mHistograms[stage].record(duration);
+        return duration;
+    }
+
+    public int getStageCount()
+    {
+        return mStageNames.length;
+    }
+
+    public String getStageName(int stage)
+    {
+        return mStageNames[stage];
+    }
+
+    public LatencyHistogram getHistogram(int stage)
+    {
+        return mHistograms[stage];
+    }
+
+    public LatencyHistogram.Snapshot snapshot(int stage)
+    {
+        return mHistograms[stage].snapshot();
+    }
+
+    public void reset()
+    {
+        for (LatencyHistogram histogram : mHistograms)
+        {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Formats one line per stage with p50/p95/p99/max in milliseconds, for logs and the debug
+     * overlay.
+     */
+    public String format()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mStageNames.length; i++)
+        {
+            LatencyHistogram.Snapshot snapshot = mHistograms[i].snapshot();
+            builder.append(String.format(Locale.US, "%-12s p50 %5.2f  p95 %5.2f  p99 %5.2f  max %6.2f ms%n",
+                    mStageNames[i],
+                    snapshot.p50 / 1e6, snapshot.p95 / 1e6, snapshot.p99 / 1e6, snapshot.max / 1e6));
+        }
+        return builder.toString();
+    }
+}
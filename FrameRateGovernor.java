@@ -0,0 +1,274 @@
+package com.your.package.here;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Picks how often the scene is rendered, so a device lying still with nothing to do stops running
+ * the GPU and CPU flat out. There are three modes:
+ * <ul>
+ * <li>{@link #FULL}: every vsync, while the user touches the scene, objects are being placed or
+ * loaded, or the camera moves.</li>
+ * <li>{@link #REDUCED}: a lower fixed rate, after a short quiet spell and while tracking is lost,
+ * so ARCore keeps getting frames to relocalize with.</li>
+ * <li>{@link #ON_DEMAND}: only when {@link #wake()} is called, e.g. on touch, plus a slow keep
+ * alive frame that shows the camera image and notices when the camera starts moving.</li>
+ * </ul>
+ * A reason for a higher rate switches to it at once, lower rates only follow after the reasons
+ * have been gone for a hold time, so the rate does not flap. Camera motion is the distance and
+ * angle from a reference pose that is moved along whenever the camera got far enough from it,
+ * which ignores tracking jitter and does not depend on how far apart the frames are.
+ * <p>
+ * {@link #onFrame} runs on the GL thread, {@link #shouldRender(long)} on the thread pacing the
+ * renderer, and {@link #wake()} and the metrics on any thread.
+ */
+public class FrameRateGovernor
+{
+    public static final int FULL = 0;
+    public static final int REDUCED = 1;
+    public static final int ON_DEMAND = 2;
+    public static final int MODE_COUNT = 3;
+
+    // Why the current mode was picked.
+    public static final int REASON_ACTIVITY = 0;
+    public static final int REASON_CAMERA_MOTION = 1;
+    public static final int REASON_TRACKING = 2;
+    public static final int REASON_IDLE = 3;
+
+    private static final String[] MODE_NAMES = {"full", "reduced", "on demand"};
+    private static final String[] REASON_NAMES = {"activity", "camera motion", "tracking", "idle"};
+
+    private static final long REDUCE_AFTER_MS = 1000;
+    private static final long IDLE_AFTER_MS = 3000;
+    private static final float MOTION_DISTANCE = 0.02f;
+    private static final float MOTION_ANGLE = (float) Math.toRadians(2);
+    // A vsync arriving this early still counts as due, so 33 ms lands on every second 60 Hz vsync.
+    private static final long VSYNC_SLACK_NANOS = 4000000;
+
+    private final long mReducedIntervalNanos;
+    private final long mIdleIntervalNanos;
+
+    // GL thread only.
+    private final float[] mReferencePose = new float[16];
+    private boolean mHasReference;
+    private long mLastBusy;
+    private long mLastFrame = -1;
+
+    // Pacing thread only.
+    private long mLastRender = Long.MIN_VALUE / 2;
+
+    private volatile int mMode = FULL;
+    private volatile int mReason = REASON_ACTIVITY;
+    private volatile boolean mWake;
+
+    private final AtomicLongArray mResidencyMillis = new AtomicLongArray(MODE_COUNT);
+    private final AtomicLongArray mEntries = new AtomicLongArray(MODE_COUNT);
+    private final AtomicLongArray mFrames = new AtomicLongArray(MODE_COUNT);
+    private final AtomicLongArray mSkipped = new AtomicLongArray(MODE_COUNT);
+
+    /**
+     * @param reducedIntervalMillis time between frames in {@link #REDUCED} mode
+     * @param idleIntervalMillis    time between keep alive frames in {@link #ON_DEMAND} mode
+     */
+    public FrameRateGovernor(long reducedIntervalMillis, long idleIntervalMillis)
+    {
+        mReducedIntervalNanos = reducedIntervalMillis * 1000000;
+        mIdleIntervalNanos = idleIntervalMillis * 1000000;
+        mEntries.set(FULL, 1);
+    }
+
+    /**
+     * Takes in a rendered frame and decides the mode for the next ones.
+     *
+     * @param nowMillis     frame time
+     * @param trackingState camera tracking state, see {@link SceneController#TRACKING}
+     * @param cameraPose    column major camera pose, only read while tracking
+     * @param active        whether gestures, placements or uploads were handled this frame
+     * @return the mode now in effect
+     */
+    public int onFrame(long nowMillis, int trackingState, float[] cameraPose, boolean active)
+    {
+        int reason = REASON_IDLE;
+        if (active || mLastFrame < 0)
+        {
+            mLastBusy = nowMillis;
+            reason = REASON_ACTIVITY;
+        }
+        if (trackingState == SceneController.TRACKING)
+        {
+            if (!mHasReference || moved(cameraPose))
+            {
+                System.arraycopy(cameraPose, 0, mReferencePose, 0, 16);
+                if (mHasReference && !active)
+                {
+                    mLastBusy = nowMillis;
+                    reason = REASON_CAMERA_MOTION;
+                }
+                mHasReference = true;
+            }
+        }
+        else
+        {
+            // The pose jumps when tracking comes back, start over from there.
+            mHasReference = false;
+        }
+
+        long quiet = nowMillis - mLastBusy;
+        int mode = quiet < REDUCE_AFTER_MS ? FULL : quiet < IDLE_AFTER_MS ? REDUCED : ON_DEMAND;
+        if (mode == FULL && reason == REASON_IDLE)
+        {
+            // Still holding on to the last reason.
+            reason = mReason;
+        }
+        if (trackingState == SceneController.PAUSED && mode == ON_DEMAND)
+        {
+            mode = REDUCED;
+            reason = REASON_TRACKING;
+        }
+
+        int previous = mMode;
+        if (mLastFrame >= 0)
+        {
+            mResidencyMillis.addAndGet(previous, nowMillis - mLastFrame);
+        }
+        mLastFrame = nowMillis;
+        mFrames.incrementAndGet(previous);
+        if (mode != previous)
+        {
+            mEntries.incrementAndGet(mode);
+            mMode = mode;
+        }
+        mReason = reason;
+        return mode;
+    }
+
+    private boolean moved(float[] pose)
+    {
+        float dx = pose[12] - mReferencePose[12];
+        float dy = pose[13] - mReferencePose[13];
+        float dz = pose[14] - mReferencePose[14];
+        if (dx * dx + dy * dy + dz * dz > MOTION_DISTANCE * MOTION_DISTANCE)
+        {
+            return true;
+        }
+        // The trace of the relative rotation is the dot product of the two rotation parts, and
+        // equals 1 + 2 cos(angle).
+        float trace = 0;
+        for (int column = 0; column < 12; column += 4)
+        {
+            trace += pose[column] * mReferencePose[column] + pose[column + 1] * mReferencePose[column + 1]
+                    + pose[column + 2] * mReferencePose[column + 2];
+        }
+        return (trace - 1) * 0.5f < Math.cos(MOTION_ANGLE);
+    }
+
+    /**
+     * Asks for a frame soon whatever the mode, e.g. because the user touched the screen.
+     */
+    public void wake()
+    {
+        mWake = true;
+    }
+
+    /**
+     * Decides whether to render at a vsync.
+     *
+     * @param frameTimeNanos vsync time
+     * @return true if a frame should be requested
+     */
+    public boolean shouldRender(long frameTimeNanos)
+    {
+        int mode = mMode;
+        long interval = mode == FULL ? 0 : mode == REDUCED ? mReducedIntervalNanos : mIdleIntervalNanos;
+        if (mWake || frameTimeNanos - mLastRender >= interval - VSYNC_SLACK_NANOS)
+        {
+            mWake = false;
+            mLastRender = frameTimeNanos;
+            return true;
+        }
+        mSkipped.incrementAndGet(mode);
+        return false;
+    }
+
+    public int getMode()
+    {
+        return mMode;
+    }
+
+    /**
+     * @return one of the REASON constants, why the current mode was picked
+     */
+    public int getReason()
+    {
+        return mReason;
+    }
+
+    /**
+     * @param mode
+     * @return milliseconds spent in the mode, up to the last frame
+     */
+    public long getResidencyMillis(int mode)
+    {
+        return mResidencyMillis.get(mode);
+    }
+
+    /**
+     * @param mode
+     * @return how often the governor switched to the mode
+     */
+    public long getEntryCount(int mode)
+    {
+        return mEntries.get(mode);
+    }
+
+    /**
+     * @param mode
+     * @return frames rendered in the mode
+     */
+    public long getFrameCount(int mode)
+    {
+        return mFrames.get(mode);
+    }
+
+    /**
+     * @param mode
+     * @return vsyncs the mode let pass without a frame
+     */
+    public long getSkippedCount(int mode)
+    {
+        return mSkipped.get(mode);
+    }
+
+    public static String getModeName(int mode)
+    {
+        return MODE_NAMES[mode];
+    }
+
+    public static String getReasonName(int reason)
+    {
+        return REASON_NAMES[reason];
+    }
+
+    /**
+     * Formats one line per mode with residency, entries, frames and skipped vsyncs, for logs and the
+     * debug overlay.
+     */
+    public String format()
+    {
+        StringBuilder builder = new StringBuilder();
+        long total = 0;
+        for (int mode = 0; mode < MODE_COUNT; mode++)
+        {
+            total += mResidencyMillis.get(mode);
+        }
+        for (int mode = 0; mode < MODE_COUNT; mode++)
+        {
+            long residency = mResidencyMillis.get(mode);
+            builder.append(String.format(Locale.US, "%-12s %5.1f%%  %7.1f s  entered %d  frames %d  skipped %d%n",
+                    MODE_NAMES[mode], total > 0 ? 100.0 * residency / total : 0.0, residency / 1000.0,
+                    mEntries.get(mode), mFrames.get(mode), mSkipped.get(mode)));
+        }
+        builder.append(String.format(Locale.US, "%-12s %s, %s%n", "rate", MODE_NAMES[mMode], REASON_NAMES[mReason]));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package com.your.package.here.rendering;
+
+/**
+ * Rejects objects outside the camera's view frustum before they are submitted for drawing. The six
+ * frustum planes are extracted once per frame from projection * view (Gribb/Hartmann) and each
+ * object is tested as a bounding sphere. Drawn and culled counts are kept for the last frame and
+ * in total.
+ */
+public class FrustumCuller
+{
+    private static final int PLANE_COUNT = 6;
+
+    private final float[] mViewProjection = new float[16];
+    // Normalized planes, 4 floats each (nx, ny, nz, d), inside when dot(n, p) + d >= 0.
+    private final float[] mPlanes = new float[PLANE_COUNT * 4];
+    private int mFrameDrawn;
+    private int mFrameCulled;
+    private long mTotalDrawn;
+    private long mTotalCulled;
+
+    /**
+     * Starts a frame by deriving the frustum planes from the camera matrices and clearing the frame
+     * counters.
+     *
+     * @param projectionMatrix
+     * @param viewMatrix
+     */
+    public void beginFrame(float[] projectionMatrix, float[] viewMatrix)
+    {
+        TransformMath.multiply(projectionMatrix, viewMatrix, mViewProjection);
+        float[] m = mViewProjection;
+        for (int plane = 0; plane < PLANE_COUNT; plane++)
+        {
+            // Planes are the fourth row plus or minus row 0 (left/right), 1 (bottom/top) and 2 (near/far).
+            int row = plane / 2;
+            float sign = (plane & 1) == 0 ? 1.0f : -1.0f;
+            float a = m[3] + sign * m[row];
+            float b = m[7] + sign * m[4 + row];
+            float c = m[11] + sign * m[8 + row];
+            float d = m[15] + sign * m[12 + row];
+            float length = (float) Math.sqrt(a * a + b * b + c * c);
+            int o = plane * 4;
+            mPlanes[o] = a / length;
+            mPlanes[o + 1] = b / length;
+            mPlanes[o + 2] = c / length;
+            mPlanes[o + 3] = d / length;
+        }
+        mFrameDrawn = 0;
+        mFrameCulled = 0;
+    }
+
+    /**
+     * Tests a bounding sphere against the frustum of the current frame and counts the result.
+     *
+     * @param x      sphere center in world space
+     * @param y
+     * @param z
+     * @param radius
+     * @return true if any part of the sphere may be visible
+     */
+    public boolean isSphereVisible(float x, float y, float z, float radius)
+    {
+        if (isSphereInside(x, y, z, radius))
+        {
+            mFrameDrawn++;
+            mTotalDrawn++;
+            return true;
+        }
+        mFrameCulled++;
+        mTotalCulled++;
+        return false;
+    }
+
+    /**
+     * Tests a bounding sphere like {@link #isSphereVisible(float, float, float, float)} without
+     * counting it, so any number of threads may test against the frame's planes at once. The
+     * results are added with {@link #addCounts(int, int)}.
+     *
+     * @param x      sphere center in world space
+     * @param y
+     * @param z
+     * @param radius
+     * @return true if any part of the sphere may be visible
+     */
+    public boolean isSphereInside(float x, float y, float z, float radius)
+    {
+        float[] p = mPlanes;
+        for (int o = 0; o < PLANE_COUNT * 4; o += 4)
+        {
+            if (p[o] * x + p[o + 1] * y + p[o + 2] * z + p[o + 3] < -radius)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts the results of {@link #isSphereInside(float, float, float, float)} tests.
+     *
+     * @param drawn
+     * @param culled
+     */
+    public void addCounts(int drawn, int culled)
+    {
+        mFrameDrawn += drawn;
+        mTotalDrawn += drawn;
+        mFrameCulled += culled;
+        mTotalCulled += culled;
+    }
+
+    public int getFrameDrawnCount()
+    {
+        return mFrameDrawn;
+    }
+
+    public int getFrameCulledCount()
+    {
+        return mFrameCulled;
+    }
+
+    public long getTotalDrawnCount()
+    {
+        return mTotalDrawn;
+    }
+
+    public long getTotalCulledCount()
+    {
+        return mTotalCulled;
+    }
+}
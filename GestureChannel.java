@@ -0,0 +1,268 @@
+package com.your.package.here.view;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer ring of gesture records handed from the UI thread to the GL
+ * thread. Records are stored in preallocated primitive columns, so neither side allocates or locks,
+ * and no {@link android.view.MotionEvent} is kept past its callback.
+ * <p>
+ * Continuous gestures (pan, scale, rotation) never fill the last {@link #TAP_RESERVE} slots; when
+ * the ring is that full they are folded into a pending record on the producer side and written once
+ * there is room again. Taps can use the whole ring, so a tap is only refused if hundreds of them
+ * arrive between two frames.
+ */
+public class GestureChannel
+{
+    public static final int TYPE_TAP = 1;
+    public static final int TYPE_PAN = 2;
+    public static final int TYPE_SCALE = 3;
+    public static final int TYPE_ROTATION = 4;
+    public static final int TYPE_SELECT = 5;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int TAP_RESERVE = 256;
+
+    private final int mCapacity;
+    private final int mMask;
+    private final int[] mTypes;
+    private final float[] mValuesA;
+    private final float[] mValuesB;
+    private final long[] mTimes;
+
+    // Written by the producer, read by the consumer.
+    private final AtomicLong mTail = new AtomicLong();
+    // Written by the consumer, read by the producer.
+    private final AtomicLong mHead = new AtomicLong();
+
+    // Producer-side state for continuous gestures that did not fit into the ring.
+    private float mPendingPanX;
+    private float mPendingPanY;
+    private boolean mHasPendingPan;
+    private float mPendingScale = 1.0f;
+    private boolean mHasPendingScale;
+    private float mPendingRotation;
+    private boolean mHasPendingRotation;
+
+    /**
+     * Gestures of one frame folded together: summed pan and rotation, multiplied scale, the latest
+     * selection and every tap in arrival order.
+     */
+    public static class Batch
+    {
+        public float panX;
+        public float panY;
+        public boolean hasPan;
+        public float scale = 1.0f;
+        public boolean hasScale;
+        public float rotation;
+        public boolean hasRotation;
+        public float selectX;
+        public float selectY;
+        public boolean hasSelect;
+        public final float[] tapX;
+        public final float[] tapY;
+        public final long[] tapTime;
+        public int tapCount;
+
+        Batch(int capacity)
+        {
+            tapX = new float[capacity];
+            tapY = new float[capacity];
+            tapTime = new long[capacity];
+        }
+
+        void clear()
+        {
+            panX = 0;
+            panY = 0;
+            hasPan = false;
+            scale = 1.0f;
+            hasScale = false;
+            rotation = 0;
+            hasRotation = false;
+            hasSelect = false;
+            tapCount = 0;
+        }
+    }
+
+    public GestureChannel()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity ring size, rounded up to a power of two and at least twice the tap reserve
+     */
+    public GestureChannel(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, TAP_RESERVE * 2) - 1) << 1;
+        mCapacity = size;
+        mMask = size - 1;
+        mTypes = new int[size];
+        mValuesA = new float[size];
+        mValuesB = new float[size];
+        mTimes = new long[size];
+    }
+
+    /**
+     * Allocates a batch large enough to hold every record the ring can deliver in one drain.
+     */
+    public Batch newBatch()
+    {
+        return new Batch(mCapacity);
+    }
+
+    // Producer (UI thread)
+
+    public boolean offerTap(float x, float y, long eventTime)
+    {
+        flushPending();
+        return write(TYPE_TAP, x, y, eventTime, mCapacity);
+    }
+
+    /**
+     * Marks the start of a gesture at a screen position, used to pick the object the following
+     * gestures apply to. Selections share the tap headroom so a new gesture is never lost.
+     */
+    public boolean offerSelect(float x, float y, long eventTime)
+    {
+        flushPending();
+        return write(TYPE_SELECT, x, y, eventTime, mCapacity);
+    }
+
+    /**
+     * @param dx finger movement along the screen X axis
+     * @param dy finger movement along the screen Y axis
+     */
+    public void offerPan(float dx, float dy)
+    {
+        flushPending();
+        if (mHasPendingPan || !write(TYPE_PAN, dx, dy, 0, mCapacity - TAP_RESERVE))
+        {
+            mPendingPanX += dx;
+            mPendingPanY += dy;
+            mHasPendingPan = true;
+        }
+    }
+
+    public void offerScale(float factor)
+    {
+        flushPending();
+        if (mHasPendingScale || !write(TYPE_SCALE, factor, 0, 0, mCapacity - TAP_RESERVE))
+        {
+            mPendingScale *= factor;
+            mHasPendingScale = true;
+        }
+    }
+
+    public void offerRotation(float deltaTheta)
+    {
+        flushPending();
+        if (mHasPendingRotation || !write(TYPE_ROTATION, deltaTheta, 0, 0, mCapacity - TAP_RESERVE))
+        {
+            mPendingRotation += deltaTheta;
+            mHasPendingRotation = true;
+        }
+    }
+
+    /**
+     * Marks the end of a gesture, the last finger going up or a cancel. Whatever was folded while
+     * the ring was full is written now, into the tap headroom if need be, instead of waiting for
+     * the next gesture to arrive.
+     */
+    public void offerEnd()
+    {
+        flushPending(mCapacity);
+    }
+
+    private void flushPending()
+    {
+        flushPending(mCapacity - TAP_RESERVE);
+    }
+
+    private void flushPending(int limit)
+    {
+        if (mHasPendingPan && write(TYPE_PAN, mPendingPanX, mPendingPanY, 0, limit))
+        {
+            mPendingPanX = 0;
+            mPendingPanY = 0;
+            mHasPendingPan = false;
+        }
+        if (mHasPendingScale && write(TYPE_SCALE, mPendingScale, 0, 0, limit))
+        {
+            mPendingScale = 1.0f;
+            mHasPendingScale = false;
+        }
+        if (mHasPendingRotation && write(TYPE_ROTATION, mPendingRotation, 0, 0, limit))
+        {
+            mPendingRotation = 0;
+            mHasPendingRotation = false;
+        }
+    }
+
+    private boolean write(int type, float a, float b, long time, int limit)
+    {
+        long tail = mTail.get();
+        if (tail - mHead.get() >= limit)
+        {
+            return false;
+        }
+        int index = (int) tail & mMask;
+        mTypes[index] = type;
+        mValuesA[index] = a;
+        mValuesB[index] = b;
+        mTimes[index] = time;
+        // Publishes the record fields before the consumer can observe the new tail.
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    // Consumer (GL thread)
+
+    /**
+     * Takes every record published so far and folds it into the batch, which is cleared first.
+     *
+     * @param batch
+     * @return the number of records consumed
+     */
+    public int drain(Batch batch)
+    {
+        batch.clear();
+        long head = mHead.get();
+        long tail = mTail.get();
+        for (long sequence = head; sequence < tail; sequence++)
+        {
+            int index = (int) sequence & mMask;
+            switch (mTypes[index])
+            {
+                case TYPE_TAP:
+                    batch.tapX[batch.tapCount] = mValuesA[index];
+                    batch.tapY[batch.tapCount] = mValuesB[index];
+                    batch.tapTime[batch.tapCount] = mTimes[index];
+                    batch.tapCount++;
+                    break;
+                case TYPE_PAN:
+                    batch.panX += mValuesA[index];
+                    batch.panY += mValuesB[index];
+                    batch.hasPan = true;
+                    break;
+                case TYPE_SCALE:
+                    batch.scale *= mValuesA[index];
+                    batch.hasScale = true;
+                    break;
+                case TYPE_ROTATION:
+                    batch.rotation += mValuesA[index];
+                    batch.hasRotation = true;
+                    break;
+                case TYPE_SELECT:
+                    batch.selectX = mValuesA[index];
+                    batch.selectY = mValuesB[index];
+                    batch.hasSelect = true;
+                    break;
+            }
+        }
+        mHead.lazySet(tail);
+        return (int) (tail - head);
+    }
+}
@@ -0,0 +1,164 @@
+package com.your.package.here.view;
+
+/**
+ * Sits between {@link MultiTouchRecognizer} and the gesture consumer and smooths pan, scale and
+ * rotation with a {@link OneEuroFilter} each. The filters run on the running total of each gesture
+ * (scale as a logarithm), sample by sample including the historical samples of batched events, and
+ * the listener gets the change of the filtered total. Optionally the total is extrapolated along
+ * the filtered speed by a lead time, to where it is expected to be once the frame is displayed.
+ * <p>
+ * When the last finger goes up the rest of the raw total is passed on, so smoothing and prediction
+ * change the path of a gesture but never where it ends.
+ */
+public class GestureSmoother implements MultiTouchRecognizer.Listener
+{
+    // Betas are per unit of speed, so they differ by the typical speed of each gesture: hundreds of
+    // pixels, but only a few radians or scale logarithms per second.
+    private static final float PAN_MIN_CUTOFF = 1.0f;
+    private static final float PAN_BETA = 0.05f;
+    private static final float SCALE_MIN_CUTOFF = 1.0f;
+    private static final float SCALE_BETA = 5.0f;
+    private static final float ROTATION_MIN_CUTOFF = 1.0f;
+    private static final float ROTATION_BETA = 2.5f;
+
+    private final MultiTouchRecognizer.Listener mListener;
+    private final float mLeadSeconds;
+
+    private final OneEuroFilter mPanX;
+    private final OneEuroFilter mPanY;
+    private final OneEuroFilter mScale;
+    private final OneEuroFilter mRotation;
+
+    // Raw totals of the current gesture and what has been passed on so far.
+    private float mRawPanX;
+    private float mRawPanY;
+    private float mRawLogScale;
+    private float mRawRotation;
+    private float mOutPanX;
+    private float mOutPanY;
+    private float mOutLogScale;
+    private float mOutRotation;
+
+    /**
+     * Smoother with the default filter settings. These were only compared on the synthetic session
+     * of tools/SessionReplay, where lowering the pan jitter cost a lag the app does not accept, so
+     * the app leaves smoothing off.
+     *
+     * @param leadMillis how far ahead to extrapolate, 0 to only smooth
+     * @param listener
+     */
+    public GestureSmoother(long leadMillis, MultiTouchRecognizer.Listener listener)
+    {
+        this(PAN_MIN_CUTOFF, PAN_BETA, SCALE_MIN_CUTOFF, SCALE_BETA, ROTATION_MIN_CUTOFF, ROTATION_BETA,
+                leadMillis, listener);
+    }
+
+    /**
+     * @param panMinCutoff      see {@link OneEuroFilter}, for pixels
+     * @param panBeta
+     * @param scaleMinCutoff    for the logarithm of the scale
+     * @param scaleBeta
+     * @param rotationMinCutoff for radians
+     * @param rotationBeta
+     * @param leadMillis        how far ahead to extrapolate, 0 to only smooth
+     * @param listener
+     */
+    public GestureSmoother(float panMinCutoff, float panBeta, float scaleMinCutoff, float scaleBeta,
+                           float rotationMinCutoff, float rotationBeta, long leadMillis,
+                           MultiTouchRecognizer.Listener listener)
+    {
+        // A derivative cutoff of 1 Hz is what the filter's authors suggest for pointing.
+        mPanX = new OneEuroFilter(panMinCutoff, panBeta, 1.0f);
+        mPanY = new OneEuroFilter(panMinCutoff, panBeta, 1.0f);
+        mScale = new OneEuroFilter(scaleMinCutoff, scaleBeta, 1.0f);
+        mRotation = new OneEuroFilter(rotationMinCutoff, rotationBeta, 1.0f);
+        mLeadSeconds = leadMillis / 1000.0f;
+        mListener = listener;
+    }
+
+    @Override
+    public void onDown(float x, float y, long eventTime)
+    {
+        mPanX.reset();
+        mPanY.reset();
+        mScale.reset();
+        mRotation.reset();
+        mRawPanX = 0;
+        mRawPanY = 0;
+        mRawLogScale = 0;
+        mRawRotation = 0;
+        mOutPanX = 0;
+        mOutPanY = 0;
+        mOutLogScale = 0;
+        mOutRotation = 0;
+        mListener.onDown(x, y, eventTime);
+    }
+
+    @Override
+    public void onTap(float x, float y, long eventTime)
+    {
+        mListener.onTap(x, y, eventTime);
+    }
+
+    @Override
+    public void onPan(float dx, float dy, long eventTime)
+    {
+        mRawPanX += dx;
+        mRawPanY += dy;
+        float x = predict(mPanX, mRawPanX, eventTime);
+        float y = predict(mPanY, mRawPanY, eventTime);
+        float outX = x - mOutPanX;
+        float outY = y - mOutPanY;
+        mOutPanX = x;
+        mOutPanY = y;
+        mListener.onPan(outX, outY, eventTime);
+    }
+
+    @Override
+    public void onScale(float factor, long eventTime)
+    {
+        mRawLogScale += (float) Math.log(factor);
+        float logScale = predict(mScale, mRawLogScale, eventTime);
+        float out = logScale - mOutLogScale;
+        mOutLogScale = logScale;
+        mListener.onScale((float) Math.exp(out), eventTime);
+    }
+
+    @Override
+    public void onRotate(float deltaRadians, long eventTime)
+    {
+        mRawRotation += deltaRadians;
+        float rotation = predict(mRotation, mRawRotation, eventTime);
+        float out = rotation - mOutRotation;
+        mOutRotation = rotation;
+        mListener.onRotate(out, eventTime);
+    }
+
+    @Override
+    public void onUp(long eventTime)
+    {
+        // Settle on the raw totals, what the filters and the prediction held back or overshot.
+        if (mRawPanX != mOutPanX || mRawPanY != mOutPanY)
+        {
+            mListener.onPan(mRawPanX - mOutPanX, mRawPanY - mOutPanY, eventTime);
+        }
+        if (mRawLogScale != mOutLogScale)
+        {
+            mListener.onScale((float) Math.exp(mRawLogScale - mOutLogScale), eventTime);
+        }
+        if (mRawRotation != mOutRotation)
+        {
+            mListener.onRotate(mRawRotation - mOutRotation, eventTime);
+        }
+        mOutPanX = mRawPanX;
+        mOutPanY = mRawPanY;
+        mOutLogScale = mRawLogScale;
+        mOutRotation = mRawRotation;
+        mListener.onUp(eventTime);
+    }
+
+    private float predict(OneEuroFilter filter, float raw, long eventTime)
+    {
+        return filter.filter(raw, eventTime) + filter.getDerivative() * mLeadSeconds;
+    }
+}
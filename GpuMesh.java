@@ -0,0 +1,28 @@
+package com.your.package.here.rendering;
+
+/**
+ * GL objects of a model whose upload has finished: an interleaved vertex buffer (stride and
+ * attribute offsets in {@link BinaryMeshFormat}), a 16 bit index buffer and a mipmapped diffuse
+ * texture. Renderers draw from these names directly.
+ */
+public class GpuMesh
+{
+    public final int vertexBufferId;
+    public final int indexBufferId;
+    public final int indexCount;
+    public final int textureId;
+    public final float boundingRadius;
+    // Buffer and texture memory including mipmaps, counted against the GPU cache budget.
+    public final long sizeBytes;
+
+    GpuMesh(int vertexBufferId, int indexBufferId, int indexCount, int textureId, float boundingRadius,
+            long sizeBytes)
+    {
+        this.vertexBufferId = vertexBufferId;
+        this.indexBufferId = indexBufferId;
+        this.indexCount = indexCount;
+        this.textureId = textureId;
+        this.boundingRadius = boundingRadius;
+        this.sizeBytes = sizeBytes;
+    }
+}
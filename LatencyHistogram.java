@@ -0,0 +1,131 @@
+package com.your.package.here;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, lock-free latency histogram. Values are bucketed log-linearly: every power of two
+ * is split into {@link #SUB_BUCKETS} linear buckets, so a reported percentile is within about 6%
+ * of the recorded value while the whole histogram stays a few kilobytes. Recording is a single
+ * atomic increment and never allocates, so it can run on the render thread while another thread
+ * takes snapshots.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values past 2^40 ns (about 18 minutes) land in the last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Immutable summary of a histogram at the time it was taken. All values are in nanoseconds.
+     */
+    public static class Snapshot
+    {
+        public final long count;
+        public final long p50;
+        public final long p95;
+        public final long p99;
+        public final long max;
+
+        Snapshot(long count, long p50, long p95, long p99, long max)
+        {
+            this.count = count;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+        }
+    }
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        mCounts.incrementAndGet(bucketIndex(value));
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value))
+        {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Clears every bucket. Recordings racing with a reset may be kept or dropped.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            mCounts.set(i, 0);
+        }
+        mMax.set(0);
+    }
+
+    public Snapshot snapshot()
+    {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        long max = mMax.get();
+        return new Snapshot(total,
+                Math.min(max, percentile(counts, total, 0.50)),
+                Math.min(max, percentile(counts, total, 0.95)),
+                Math.min(max, percentile(counts, total, 0.99)),
+                max);
+    }
+
+    private static long percentile(long[] counts, long total, double quantile)
+    {
+        if (total == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+            {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(counts.length - 1);
+    }
+
+    static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return Math.min((shift + 1) * SUB_BUCKETS + mantissa, BUCKET_COUNT - 1);
+    }
+
+    static long bucketUpperBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        int mantissa = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + mantissa + 1) << shift) - 1;
+    }
+}
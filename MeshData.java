@@ -0,0 +1,71 @@
+package com.your.package.here.rendering;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CPU side copy of a model, ready to be handed to the driver. Vertices are interleaved (position,
+ * normal, texture coordinate, {@link BinaryMeshFormat#VERTEX_STRIDE} bytes each), indices are 16
+ * bit and the diffuse texture is tightly packed RGBA rows. Everything lives in direct or mapped
+ * buffers, so the GL thread uploads them without another copy.
+ */
+public class MeshData
+{
+    public final ByteBuffer vertices;
+    public final int vertexCount;
+    public final ByteBuffer indices;
+    public final int indexCount;
+    // minX, minY, minZ, maxX, maxY, maxZ in model space
+    public final float[] bounds;
+    public final ByteBuffer texturePixels;
+    public final int textureWidth;
+    public final int textureHeight;
+
+    /**
+     * Mesh without a texture yet, see {@link #withTexture(ByteBuffer, int, int)}.
+     */
+    public MeshData(ByteBuffer vertices, int vertexCount, ByteBuffer indices, int indexCount, float[] bounds)
+    {
+        this(vertices, vertexCount, indices, indexCount, bounds, null, 0, 0);
+    }
+
+    private MeshData(ByteBuffer vertices, int vertexCount, ByteBuffer indices, int indexCount, float[] bounds,
+                     ByteBuffer texturePixels, int textureWidth, int textureHeight)
+    {
+        this.vertices = vertices;
+        this.vertexCount = vertexCount;
+        this.indices = indices;
+        this.indexCount = indexCount;
+        this.bounds = bounds;
+        this.texturePixels = texturePixels;
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+    }
+
+    /**
+     * @return the same geometry with a decoded texture, the buffers are shared
+     */
+    public MeshData withTexture(ByteBuffer texturePixels, int textureWidth, int textureHeight)
+    {
+        return new MeshData(vertices, vertexCount, indices, indexCount, bounds,
+                texturePixels, textureWidth, textureHeight);
+    }
+
+    /**
+     * @return radius of a sphere around the model origin that contains the whole mesh
+     */
+    public float getBoundingRadius()
+    {
+        float x = Math.max(Math.abs(bounds[0]), Math.abs(bounds[3]));
+        float y = Math.max(Math.abs(bounds[1]), Math.abs(bounds[4]));
+        float z = Math.max(Math.abs(bounds[2]), Math.abs(bounds[5]));
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * @return the number of bytes the GL thread has to upload for this model
+     */
+    public long getUploadSize()
+    {
+        return vertices.capacity() + indices.capacity() + (texturePixels != null ? texturePixels.capacity() : 0);
+    }
+}
@@ -0,0 +1,200 @@
+package com.your.package.here.rendering;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.util.Log;
+
+/**
+ * Draws models uploaded by {@link ModelLoader} straight from their {@link GpuMesh}: the interleaved
+ * vertex buffer laid out as in {@link BinaryMeshFormat}, the 16 bit index buffer and the mipmapped
+ * diffuse texture. One renderer and its program serve every model, so a model becoming resident
+ * only costs its upload. Lighting matches the sample's ObjectRenderer, which still draws the
+ * placeholder.
+ * <p>
+ * Copies of a model are drawn as a batch: the program, buffers, attributes, texture, light and
+ * material are set up once, and each instance only loads its two matrices and issues its draw
+ * call. GLES 2 has no instancing, so this is as far as batching goes without a newer context.
+ */
+public class MeshRenderer
+{
+    private static final String TAG = MeshRenderer.class.getSimpleName();
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 u_ModelView;\n"
+                    + "uniform mat4 u_ModelViewProjection;\n"
+                    + "attribute vec4 a_Position;\n"
+                    + "attribute vec3 a_Normal;\n"
+                    + "attribute vec2 a_TexCoord;\n"
+                    + "varying vec3 v_ViewPosition;\n"
+                    + "varying vec3 v_ViewNormal;\n"
+                    + "varying vec2 v_TexCoord;\n"
+                    + "void main() {\n"
+                    + "   v_ViewPosition = (u_ModelView * a_Position).xyz;\n"
+                    + "   v_ViewNormal = normalize((u_ModelView * vec4(a_Normal, 0.0)).xyz);\n"
+                    + "   v_TexCoord = a_TexCoord;\n"
+                    + "   gl_Position = u_ModelViewProjection * a_Position;\n"
+                    + "}";
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n"
+                    + "uniform sampler2D u_Texture;\n"
+                    + "uniform vec4 u_LightingParameters;\n"
+                    + "uniform vec4 u_MaterialParameters;\n"
+                    + "varying vec3 v_ViewPosition;\n"
+                    + "varying vec3 v_ViewNormal;\n"
+                    + "varying vec2 v_TexCoord;\n"
+                    + "void main() {\n"
+                    + "    const float kGamma = 0.4545454;\n"
+                    + "    const float kInverseGamma = 2.2;\n"
+                    + "    vec3 viewLightDirection = u_LightingParameters.xyz;\n"
+                    + "    float lightIntensity = u_LightingParameters.w;\n"
+                    + "    vec3 viewNormal = normalize(v_ViewNormal);\n"
+                    + "    vec4 objectColor = texture2D(u_Texture, vec2(v_TexCoord.x, 1.0 - v_TexCoord.y));\n"
+                    + "    objectColor.rgb = pow(objectColor.rgb, vec3(kInverseGamma));\n"
+                    + "    float diffuse = lightIntensity * u_MaterialParameters.y * 0.5\n"
+                    + "            * (dot(viewNormal, viewLightDirection) + 1.0);\n"
+                    + "    vec3 reflectedLightDirection = reflect(viewLightDirection, viewNormal);\n"
+                    + "    vec3 viewDirection = normalize(v_ViewPosition);\n"
+                    + "    float specularStrength = max(0.0, dot(viewDirection, reflectedLightDirection));\n"
+                    + "    float specular = lightIntensity * u_MaterialParameters.z\n"
+                    + "            * pow(specularStrength, u_MaterialParameters.w);\n"
+                    + "    gl_FragColor.a = objectColor.a;\n"
+                    + "    gl_FragColor.rgb = pow(objectColor.rgb * (u_MaterialParameters.x + diffuse) + specular,\n"
+                    + "            vec3(kGamma));\n"
+                    + "}";
+    // Light from above, in world space.
+    private static final float[] LIGHT_DIRECTION = {0.250f, 0.866f, 0.433f, 0.0f};
+
+    private int mProgram;
+    private int mPositionAttribute;
+    private int mNormalAttribute;
+    private int mTexCoordAttribute;
+    private int mModelViewUniform;
+    private int mModelViewProjectionUniform;
+    private int mTextureUniform;
+    private int mLightingParametersUniform;
+    private int mMaterialParametersUniform;
+
+    private float mAmbient = 0.3f;
+    private float mDiffuse = 1.0f;
+    private float mSpecular = 1.0f;
+    private float mSpecularPower = 6.0f;
+
+    private final float[] mModelMatrix = new float[16];
+    private final float[] mModelView = new float[16];
+    private final float[] mModelViewProjection = new float[16];
+    private final float[] mViewLightDirection = new float[4];
+
+    /**
+     * Compiles the program. Must be called on the OpenGL thread, typically in onSurfaceCreated().
+     */
+    public void createOnGlThread()
+    {
+        mProgram = GLES20.glCreateProgram();
+        GLES20.glAttachShader(mProgram, compile(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(mProgram, compile(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(mProgram);
+        mPositionAttribute = GLES20.glGetAttribLocation(mProgram, "a_Position");
+        mNormalAttribute = GLES20.glGetAttribLocation(mProgram, "a_Normal");
+        mTexCoordAttribute = GLES20.glGetAttribLocation(mProgram, "a_TexCoord");
+        mModelViewUniform = GLES20.glGetUniformLocation(mProgram, "u_ModelView");
+        mModelViewProjectionUniform = GLES20.glGetUniformLocation(mProgram, "u_ModelViewProjection");
+        mTextureUniform = GLES20.glGetUniformLocation(mProgram, "u_Texture");
+        mLightingParametersUniform = GLES20.glGetUniformLocation(mProgram, "u_LightingParameters");
+        mMaterialParametersUniform = GLES20.glGetUniformLocation(mProgram, "u_MaterialParameters");
+    }
+
+    private static int compile(int type, String source)
+    {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0)
+        {
+            Log.e(TAG, "Shader compilation failed: " + GLES20.glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+
+    /**
+     * Sets the surface characteristics of every model, as in ObjectRenderer.
+     *
+     * @param ambient       intensity of non-directional surface illumination
+     * @param diffuse       diffuse (matte) surface reflectivity
+     * @param specular      specular (shiny) surface reflectivity
+     * @param specularPower surface shininess, larger values result in a smaller, sharper highlight
+     */
+    public void setMaterialProperties(float ambient, float diffuse, float specular, float specularPower)
+    {
+        mAmbient = ambient;
+        mDiffuse = diffuse;
+        mSpecular = specular;
+        mSpecularPower = specularPower;
+    }
+
+    /**
+     * Draws copies of a model, in the layout of {@link RenderQueue.Backend#drawBatch}.
+     *
+     * @param mesh           resident model
+     * @param matrices       model matrices, 16 floats per instance
+     * @param scales         uniform scale applied on top of each model matrix
+     * @param first          index of the first instance
+     * @param count          number of instances
+     * @param viewMatrix
+     * @param projectionMatrix
+     * @param lightIntensity
+     */
+    public void drawInstances(GpuMesh mesh, float[] matrices, float[] scales, int first, int count,
+                              float[] viewMatrix, float[] projectionMatrix, float lightIntensity)
+    {
+        Matrix.multiplyMV(mViewLightDirection, 0, viewMatrix, 0, LIGHT_DIRECTION, 0);
+        normalizeVec3(mViewLightDirection);
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mesh.textureId);
+        GLES20.glUniform1i(mTextureUniform, 0);
+        GLES20.glUniform4f(mLightingParametersUniform, mViewLightDirection[0], mViewLightDirection[1],
+                mViewLightDirection[2], lightIntensity);
+        GLES20.glUniform4f(mMaterialParametersUniform, mAmbient, mDiffuse, mSpecular, mSpecularPower);
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mesh.vertexBufferId);
+        GLES20.glVertexAttribPointer(mPositionAttribute, 3, GLES20.GL_FLOAT, false,
+                BinaryMeshFormat.VERTEX_STRIDE, BinaryMeshFormat.POSITION_OFFSET);
+        GLES20.glVertexAttribPointer(mNormalAttribute, 3, GLES20.GL_FLOAT, false,
+                BinaryMeshFormat.VERTEX_STRIDE, BinaryMeshFormat.NORMAL_OFFSET);
+        GLES20.glVertexAttribPointer(mTexCoordAttribute, 2, GLES20.GL_FLOAT, false,
+                BinaryMeshFormat.VERTEX_STRIDE, BinaryMeshFormat.TEX_COORD_OFFSET);
+        GLES20.glEnableVertexAttribArray(mPositionAttribute);
+        GLES20.glEnableVertexAttribArray(mNormalAttribute);
+        GLES20.glEnableVertexAttribArray(mTexCoordAttribute);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mesh.indexBufferId);
+
+        for (int i = first; i < first + count; i++)
+        {
+            System.arraycopy(matrices, i * 16, mModelMatrix, 0, 16);
+            TransformMath.scale(mModelMatrix, 0, scales[i]);
+            Matrix.multiplyMM(mModelView, 0, viewMatrix, 0, mModelMatrix, 0);
+            Matrix.multiplyMM(mModelViewProjection, 0, projectionMatrix, 0, mModelView, 0);
+            GLES20.glUniformMatrix4fv(mModelViewUniform, 1, false, mModelView, 0);
+            GLES20.glUniformMatrix4fv(mModelViewProjectionUniform, 1, false, mModelViewProjection, 0);
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, mesh.indexCount, GLES20.GL_UNSIGNED_SHORT, 0);
+        }
+
+        GLES20.glDisableVertexAttribArray(mPositionAttribute);
+        GLES20.glDisableVertexAttribArray(mNormalAttribute);
+        GLES20.glDisableVertexAttribArray(mTexCoordAttribute);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+    }
+
+    private static void normalizeVec3(float[] v)
+    {
+        float reciprocalLength = 1.0f / (float) Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+        v[0] *= reciprocalLength;
+        v[1] *= reciprocalLength;
+        v[2] *= reciprocalLength;
+    }
+}
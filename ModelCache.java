@@ -0,0 +1,266 @@
+package com.your.package.here.rendering;
+
+import android.opengl.GLES20;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two level cache of loaded models, each level with its own byte budget and least recently used
+ * eviction.
+ * <ul>
+ * <li>Parsed meshes ({@link MeshData}), keyed by source (asset name, or side loaded path plus
+ * modification time). A hit skips reading and parsing. This level may be used from any thread.</li>
+ * <li>GPU resident models, keyed by model id. A hit means the model's renderer is still usable and
+ * nothing has to be uploaded. This level is only used on the GL thread, and drawing a model marks
+ * it used without allocating. Models can be pinned, e.g. by the placed objects that use them or as
+ * the selected model, and pinned models are never evicted: when the working set of the scene is
+ * larger than the budget, the budget is exceeded rather than reloading what is on screen every
+ * frame.</li>
+ * </ul>
+ * Hit, miss and eviction counts are kept per level.
+ */
+public class ModelCache
+{
+    /**
+     * Told on the GL thread after a model's GL objects were deleted to stay within the GPU budget.
+     */
+    public interface Listener
+    {
+        void onModelEvicted(int model);
+    }
+
+    private final long mMeshBudget;
+    private final LinkedHashMap<String, MeshData> mMeshes = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMeshBytes;
+    private volatile long mMeshHits;
+    private volatile long mMeshMisses;
+    private volatile long mMeshEvictions;
+
+    private final long mGpuBudget;
+    private final Listener mListener;
+    private GpuMesh[] mResident = new GpuMesh[8];
+    private long[] mLastUsed = new long[8];
+    private int[] mPins = new int[8];
+    private long mUseClock;
+    private long mGpuBytes;
+    private volatile long mGpuHits;
+    private volatile long mGpuMisses;
+    private volatile long mGpuEvictions;
+
+    /**
+     * @param meshBudgetBytes bytes of parsed meshes kept in memory
+     * @param gpuBudgetBytes  bytes of buffers and textures kept resident
+     * @param listener        told when a resident model is evicted
+     */
+    public ModelCache(long meshBudgetBytes, long gpuBudgetBytes, Listener listener)
+    {
+        mMeshBudget = meshBudgetBytes;
+        mGpuBudget = gpuBudgetBytes;
+        mListener = listener;
+    }
+
+    // Parsed meshes
+
+    /**
+     * @param key source of the mesh
+     * @return the parsed mesh, or null if it has to be read
+     */
+    public synchronized MeshData getMesh(String key)
+    {
+        MeshData data = mMeshes.get(key);
+        if (data == null)
+        {
+            mMeshMisses++;
+        }
+        else
+        {
+            mMeshHits++;
+        }
+        return data;
+    }
+
+    /**
+     * Keeps a parsed mesh, evicting the least recently used ones past the budget. A mesh larger
+     * than the whole budget is not kept.
+     *
+     * @param key
+     * @param data
+     */
+    public synchronized void putMesh(String key, MeshData data)
+    {
+        long size = data.getUploadSize();
+        if (size > mMeshBudget)
+        {
+            return;
+        }
+        MeshData previous = mMeshes.put(key, data);
+        if (previous != null)
+        {
+            mMeshBytes -= previous.getUploadSize();
+        }
+        mMeshBytes += size;
+        // Iteration runs from least to most recently used, the new entry is last and always fits.
+        Iterator<Map.Entry<String, MeshData>> entries = mMeshes.entrySet().iterator();
+        while (mMeshBytes > mMeshBudget)
+        {
+            mMeshBytes -= entries.next().getValue().getUploadSize();
+            entries.remove();
+            mMeshEvictions++;
+        }
+    }
+
+    // GPU resident models, GL thread only
+
+    /**
+     * Looks a model up when it is selected and counts the hit or miss.
+     *
+     * @param model
+     * @return true if the model is resident
+     */
+    public boolean acquire(int model)
+    {
+        if (isResident(model))
+        {
+            mGpuHits++;
+            touch(model);
+            return true;
+        }
+        mGpuMisses++;
+        return false;
+    }
+
+    public boolean isResident(int model)
+    {
+        return model < mResident.length && mResident[model] != null;
+    }
+
+    /**
+     * Keeps a model resident once it is, until {@link #unpin(int)} is called as often. The model
+     * does not have to be resident or even loading yet.
+     *
+     * @param model
+     */
+    public void pin(int model)
+    {
+        ensureCapacity(model);
+        mPins[model]++;
+    }
+
+    /**
+     * Releases a pin taken by {@link #pin(int)}. An unpinned model over the budget is evicted when
+     * the next model becomes resident.
+     *
+     * @param model
+     */
+    public void unpin(int model)
+    {
+        mPins[model]--;
+    }
+
+    public boolean isPinned(int model)
+    {
+        return model < mPins.length && mPins[model] > 0;
+    }
+
+    /**
+     * Marks a resident model as used, called whenever it is drawn.
+     *
+     * @param model
+     */
+    public void touch(int model)
+    {
+        mLastUsed[model] = ++mUseClock;
+    }
+
+    /**
+     * Registers a model that just became resident and evicts the least recently used other models
+     * that are not pinned until the GPU budget is met again, or only pinned ones are left.
+     *
+     * @param model
+     * @param mesh
+     */
+    public void putResident(int model, GpuMesh mesh)
+    {
+        ensureCapacity(model);
+        if (mResident[model] != null)
+        {
+            release(model);
+        }
+        mResident[model] = mesh;
+        mGpuBytes += mesh.sizeBytes;
+        touch(model);
+        while (mGpuBytes > mGpuBudget)
+        {
+            // Resident models are few, a scan for the oldest is cheaper than keeping an ordered list.
+            int victim = -1;
+            for (int i = 0; i < mResident.length; i++)
+            {
+                if (i != model && mResident[i] != null && mPins[i] == 0
+                        && (victim < 0 || mLastUsed[i] < mLastUsed[victim]))
+                {
+                    victim = i;
+                }
+            }
+            if (victim < 0)
+            {
+                break;
+            }
+            release(victim);
+            mGpuEvictions++;
+            mListener.onModelEvicted(victim);
+        }
+    }
+
+    private void ensureCapacity(int model)
+    {
+        if (model >= mResident.length)
+        {
+            int capacity = Math.max(model + 1, mResident.length * 2);
+            mResident = Arrays.copyOf(mResident, capacity);
+            mLastUsed = Arrays.copyOf(mLastUsed, capacity);
+            mPins = Arrays.copyOf(mPins, capacity);
+        }
+    }
+
+    private void release(int model)
+    {
+        GpuMesh mesh = mResident[model];
+        mResident[model] = null;
+        mGpuBytes -= mesh.sizeBytes;
+        GLES20.glDeleteBuffers(2, new int[]{mesh.vertexBufferId, mesh.indexBufferId}, 0);
+        GLES20.glDeleteTextures(1, new int[]{mesh.textureId}, 0);
+    }
+
+    public long getMeshHits()
+    {
+        return mMeshHits;
+    }
+
+    public long getMeshMisses()
+    {
+        return mMeshMisses;
+    }
+
+    public long getMeshEvictions()
+    {
+        return mMeshEvictions;
+    }
+
+    public long getGpuHits()
+    {
+        return mGpuHits;
+    }
+
+    public long getGpuMisses()
+    {
+        return mGpuMisses;
+    }
+
+    public long getGpuEvictions()
+    {
+        return mGpuEvictions;
+    }
+}
@@ -0,0 +1,381 @@
+package com.your.package.here.rendering;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.opengl.GLES20;
+import android.os.Process;
+
+import com.your.package.here.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import de.javagl.obj.ObjReader;
+
+/**
+ * Loads models without stalling the GL thread. A background thread maps a binary mesh
+ * ({@link BinaryMeshFormat}) or parses an .obj file, and decodes the texture into direct buffers
+ * ({@link MeshData}); the GL thread then calls
+ * {@link #uploadPending(long, Listener)} once per frame, which moves at most a given number of
+ * bytes into GL buffers and the texture and resumes where it stopped on the next frame. Parsed
+ * meshes are kept in a {@link ModelCache}, so loading the same source again skips straight to the
+ * upload. Each stage is timed into its own histogram.
+ */
+public class ModelLoader
+{
+    private static final int STAGE_VERTICES = 0;
+    private static final int STAGE_INDICES = 1;
+    private static final int STAGE_TEXTURE = 2;
+    private static final int STAGE_DONE = 3;
+
+    /**
+     * Opens the files a model is read from, so models can come from assets or from storage.
+     */
+    public interface Opener
+    {
+        InputStream open(String path) throws IOException;
+
+        /**
+         * Maps a whole file read only. Binary meshes are read through this so their data is never
+         * copied onto the heap.
+         */
+        ByteBuffer map(String path) throws IOException;
+    }
+
+    /**
+     * Told on the GL thread when a model is resident or could not be loaded.
+     */
+    public interface Listener
+    {
+        void onModelLoaded(int model, GpuMesh mesh);
+
+        void onModelFailed(int model, Exception e);
+    }
+
+    private final Opener mOpener;
+    private final ModelCache mCache;
+    private final ExecutorService mExecutor;
+    // Parsed models waiting for the GL thread, in request order.
+    private final ConcurrentLinkedQueue<Upload> mParsed = new ConcurrentLinkedQueue<>();
+    private Upload mUploading;
+
+    private final LatencyHistogram mParseLatency = new LatencyHistogram();
+    private final LatencyHistogram mDecodeLatency = new LatencyHistogram();
+    private final LatencyHistogram mUploadLatency = new LatencyHistogram();
+    private final LatencyHistogram mTotalLatency = new LatencyHistogram();
+
+    // A model in flight, filled in by the loader thread and then only touched by the GL thread.
+    private static class Upload
+    {
+        final int model;
+        final long requestedAt;
+        final MeshData data;
+        final Exception error;
+        int stage = STAGE_VERTICES;
+        int offset;
+        long uploadNanos;
+        int vertexBufferId;
+        int indexBufferId;
+        int textureId;
+
+        Upload(int model, long requestedAt, MeshData data, Exception error)
+        {
+            this.model = model;
+            this.requestedAt = requestedAt;
+            this.data = data;
+            this.error = error;
+        }
+    }
+
+    public ModelLoader(Opener opener, ModelCache cache)
+    {
+        mOpener = opener;
+        mCache = cache;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                Thread thread = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "ModelLoader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts loading a model in the background. The result is delivered through
+     * {@link #uploadPending(long, Listener)}.
+     *
+     * @param model       id passed back to the listener
+     * @param key         identifies the source in the mesh cache
+     * @param meshPath    binary mesh ({@link BinaryMeshFormat#EXTENSION}) or Wavefront .obj file
+     * @param texturePath diffuse texture in any format {@link BitmapFactory} decodes
+     */
+    public void load(final int model, final String key, final String meshPath, final String texturePath)
+    {
+        final long requestedAt = System.nanoTime();
+        mExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    MeshData data = mCache.getMesh(key);
+                    if (data == null)
+                    {
+                        data = read(meshPath, texturePath);
+                        mCache.putMesh(key, data);
+                    }
+                    mParsed.add(new Upload(model, requestedAt, data, null));
+                }
+                catch (Exception e)
+                {
+                    mParsed.add(new Upload(model, requestedAt, null, e));
+                }
+            }
+        });
+    }
+
+    private MeshData read(String meshPath, String texturePath) throws IOException
+    {
+        long start = System.nanoTime();
+        MeshData mesh;
+        if (meshPath.endsWith(BinaryMeshFormat.EXTENSION))
+        {
+            mesh = BinaryMeshFormat.read(mOpener.map(meshPath));
+        }
+        else
+        {
+            InputStream meshStream = mOpener.open(meshPath);
+            try
+            {
+                mesh = BinaryMeshFormat.fromObj(ObjReader.read(meshStream));
+            }
+            finally
+            {
+                meshStream.close();
+            }
+        }
+        long parsed = System.nanoTime();
+        mParseLatency.record(parsed - start);
+
+        Bitmap bitmap;
+        InputStream textureStream = mOpener.open(texturePath);
+        try
+        {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inPremultiplied = false;
+            bitmap = BitmapFactory.decodeStream(textureStream, null, options);
+        }
+        finally
+        {
+            textureStream.close();
+        }
+        if (bitmap == null)
+        {
+            throw new IOException("Could not decode texture " + texturePath);
+        }
+        // ARGB_8888 bitmaps are stored as RGBA bytes, which is what glTexImage2D expects.
+        ByteBuffer pixels = ByteBuffer.allocateDirect(bitmap.getByteCount()).order(ByteOrder.nativeOrder());
+        bitmap.copyPixelsToBuffer(pixels);
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        bitmap.recycle();
+        mDecodeLatency.record(System.nanoTime() - parsed);
+
+        return mesh.withTexture(pixels, width, height);
+    }
+
+    /**
+     * Uploads parsed models until the byte budget for this frame is spent. Must be called on the GL
+     * thread. A texture is uploaded in whole rows, so a frame may go over budget by at most one row.
+     *
+     * @param budgetBytes bytes that may be uploaded in this call
+     * @param listener    told about every model that became resident or failed
+     * @return the number of bytes uploaded
+     */
+    public long uploadPending(long budgetBytes, Listener listener)
+    {
+        long uploaded = 0;
+        while (uploaded < budgetBytes)
+        {
+            if (mUploading == null)
+            {
+                mUploading = mParsed.poll();
+                if (mUploading == null)
+                {
+                    break;
+                }
+                if (mUploading.error != null)
+                {
+                    listener.onModelFailed(mUploading.model, mUploading.error);
+                    mUploading = null;
+                    continue;
+                }
+            }
+            Upload upload = mUploading;
+            long start = System.nanoTime();
+            uploaded += step(upload, budgetBytes - uploaded);
+            upload.uploadNanos += System.nanoTime() - start;
+            if (upload.stage == STAGE_DONE)
+            {
+                mUploading = null;
+                mUploadLatency.record(upload.uploadNanos);
+                mTotalLatency.record(System.nanoTime() - upload.requestedAt);
+                MeshData data = upload.data;
+                // A full mipmap chain adds a third to the base level.
+                long sizeBytes = data.vertices.capacity() + data.indices.capacity()
+                        + data.texturePixels.capacity() * 4L / 3;
+                listener.onModelLoaded(upload.model, new GpuMesh(upload.vertexBufferId, upload.indexBufferId,
+                        data.indexCount, upload.textureId, data.getBoundingRadius(), sizeBytes));
+            }
+        }
+        return uploaded;
+    }
+
+    // Uploads the next piece of the current stage and advances the stage once it is complete.
+    private static long step(Upload upload, long budget)
+    {
+        MeshData data = upload.data;
+        switch (upload.stage)
+        {
+            case STAGE_VERTICES:
+                if (upload.vertexBufferId == 0)
+                {
+                    upload.vertexBufferId = createBuffer(GLES20.GL_ARRAY_BUFFER, data.vertices.capacity());
+                }
+                return uploadBufferChunk(upload, GLES20.GL_ARRAY_BUFFER, upload.vertexBufferId, data.vertices, budget);
+            case STAGE_INDICES:
+                if (upload.indexBufferId == 0)
+                {
+                    upload.indexBufferId = createBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, data.indices.capacity());
+                }
+                return uploadBufferChunk(upload, GLES20.GL_ELEMENT_ARRAY_BUFFER, upload.indexBufferId, data.indices, budget);
+            case STAGE_TEXTURE:
+                return uploadTextureRows(upload, budget);
+            default:
+                return 0;
+        }
+    }
+
+    private static int createBuffer(int target, int size)
+    {
+        int[] ids = new int[1];
+        GLES20.glGenBuffers(1, ids, 0);
+        GLES20.glBindBuffer(target, ids[0]);
+        GLES20.glBufferData(target, size, null, GLES20.GL_STATIC_DRAW);
+        GLES20.glBindBuffer(target, 0);
+        return ids[0];
+    }
+
+    private static long uploadBufferChunk(Upload upload, int target, int bufferId, ByteBuffer source, long budget)
+    {
+        int size = (int) Math.min(source.capacity() - upload.offset, budget);
+        // glBufferSubData reads from the buffer's position, a duplicate keeps the source untouched.
+        ByteBuffer chunk = source.duplicate();
+        chunk.position(upload.offset);
+        GLES20.glBindBuffer(target, bufferId);
+        GLES20.glBufferSubData(target, upload.offset, size, chunk);
+        GLES20.glBindBuffer(target, 0);
+        upload.offset += size;
+        if (upload.offset == source.capacity())
+        {
+            upload.stage++;
+            upload.offset = 0;
+        }
+        return size;
+    }
+
+    // upload.offset counts texture rows.
+    private static long uploadTextureRows(Upload upload, long budget)
+    {
+        MeshData data = upload.data;
+        int rowBytes = data.textureWidth * 4;
+        if (upload.textureId == 0)
+        {
+            int[] ids = new int[1];
+            GLES20.glGenTextures(1, ids, 0);
+            upload.textureId = ids[0];
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, upload.textureId);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, data.textureWidth, data.textureHeight,
+                    0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        }
+        else
+        {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, upload.textureId);
+        }
+        int rows = (int) Math.max(1, Math.min(data.textureHeight - upload.offset, budget / rowBytes));
+        ByteBuffer band = data.texturePixels.duplicate();
+        band.position(upload.offset * rowBytes);
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, upload.offset, data.textureWidth, rows,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, band);
+        upload.offset += rows;
+        if (upload.offset == data.textureHeight)
+        {
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+            upload.stage = STAGE_DONE;
+            upload.offset = 0;
+        }
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+        return (long) rows * rowBytes;
+    }
+
+    /**
+     * Time spent reading and parsing the mesh on the loader thread.
+     */
+    public LatencyHistogram getParseLatency()
+    {
+        return mParseLatency;
+    }
+
+    /**
+     * Time spent decoding the texture on the loader thread.
+     */
+    public LatencyHistogram getDecodeLatency()
+    {
+        return mDecodeLatency;
+    }
+
+    /**
+     * GL thread time spent uploading a model, summed over the frames it took.
+     */
+    public LatencyHistogram getUploadLatency()
+    {
+        return mUploadLatency;
+    }
+
+    /**
+     * Time from {@link #load(int, String, String, String)} until the model is resident.
+     */
+    public LatencyHistogram getTotalLatency()
+    {
+        return mTotalLatency;
+    }
+
+    /**
+     * Stops the loader thread. Models that were not parsed yet are dropped.
+     */
+    public void shutdown()
+    {
+        mExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.your.package.here;
+
+import com.your.package.here.rendering.TransformMath;
+
+/**
+ * Keeps the model matrix of every slot of an {@link AnchorTransformTable} and only composes it
+ * again when its input changed. Each slot remembers the last anchor pose it was given, with a
+ * version that moves on whenever a different pose arrives, and the pose and user transform
+ * versions its model matrix was composed from. Anchors that sit still and are not touched, which
+ * is most of them in most frames, cost a comparison and a copy instead of a composition. The sine
+ * and cosine of the user rotation are kept as well, so an anchor that ARCore refines only costs
+ * the multiplication with its new pose.
+ * <p>
+ * Poses, model matrices and versions live in flat arrays indexed by slot. Slots never share state,
+ * so disjoint ranges of slots can be updated from different threads.
+ */
+public class ModelMatrixEngine
+{
+    private static final int MATRIX_SIZE = 16;
+
+    private final float[] mPoses;
+    private final float[] mModels;
+    private final int[] mPoseVersions;
+    private final int[] mComposedPoseVersions;
+    private final int[] mComposedTransformVersions;
+    // The user transform as last composed: scaled cosine and sine of the rotation, scale, translation.
+    private final float[] mScaledCos;
+    private final float[] mScaledSin;
+    private final float[] mScales;
+    private final float[] mTranslationX;
+    private final float[] mTranslationZ;
+
+    /**
+     * @param capacity number of slots, the capacity of the transform table
+     */
+    public ModelMatrixEngine(int capacity)
+    {
+        mPoses = new float[capacity * MATRIX_SIZE];
+        mModels = new float[capacity * MATRIX_SIZE];
+        mPoseVersions = new int[capacity];
+        mComposedPoseVersions = new int[capacity];
+        mComposedTransformVersions = new int[capacity];
+        mScaledCos = new float[capacity];
+        mScaledSin = new float[capacity];
+        mScales = new float[capacity];
+        mTranslationX = new float[capacity];
+        mTranslationZ = new float[capacity];
+    }
+
+    /**
+     * Turns the anchor poses of a range of objects into their model matrices, anchor pose times
+     * user translation times Y rotation times scale. Objects whose pose and user transform are the
+     * same as when they were last composed get the stored matrix.
+     *
+     * @param transforms user transforms, must not change during the call
+     * @param slots      slot of each object
+     * @param matrices   anchor pose of each object on input, its model matrix on output, 16
+     *                   floats per object
+     * @param from       first object
+     * @param to         end of the range, exclusive
+     * @return the number of model matrices composed
+     */
+    public int update(AnchorTransformTable transforms, int[] slots, float[] matrices, int from, int to)
+    {
+        float[] poses = mPoses;
+        float[] models = mModels;
+        int composed = 0;
+        for (int k = from; k < to; k++)
+        {
+            int slot = slots[k];
+            int o = k * MATRIX_SIZE;
+            int s = slot * MATRIX_SIZE;
+            boolean changed = false;
+            for (int i = 0; i < MATRIX_SIZE; i++)
+            {
+                changed |= poses[s + i] != matrices[o + i];
+            }
+            if (changed)
+            {
+                System.arraycopy(matrices, o, poses, s, MATRIX_SIZE);
+                mPoseVersions[slot]++;
+            }
+            int transformVersion = transforms.getVersion(slot);
+            if (mComposedTransformVersions[slot] != transformVersion)
+            {
+                float scale = transforms.getScaleFactor(slot);
+                float theta = transforms.getRotationTheta(slot);
+                mScaledCos[slot] = FastMath.cos(theta) * scale;
+                mScaledSin[slot] = FastMath.sin(theta) * scale;
+                mScales[slot] = scale;
+                mTranslationX[slot] = transforms.getTranslationX(slot);
+                mTranslationZ[slot] = transforms.getTranslationZ(slot);
+                mComposedTransformVersions[slot] = transformVersion;
+                // Forces the composition below.
+                mComposedPoseVersions[slot] = mPoseVersions[slot] - 1;
+            }
+            if (mComposedPoseVersions[slot] != mPoseVersions[slot])
+            {
+                // In place, the pose is in the cache already.
+                TransformMath.composeModelMatrix(matrices, o, mTranslationX[slot], mTranslationZ[slot],
+                        mScaledCos[slot], mScaledSin[slot], mScales[slot], matrices, o);
+                System.arraycopy(matrices, o, models, s, MATRIX_SIZE);
+                mComposedPoseVersions[slot] = mPoseVersions[slot];
+                composed++;
+            }
+            else
+            {
+                System.arraycopy(models, s, matrices, o, MATRIX_SIZE);
+            }
+        }
+        return composed;
+    }
+
+    /**
+     * @param slot
+     * @return how often the anchor pose of the slot changed
+     */
+    public int getPoseVersion(int slot)
+    {
+        return mPoseVersions[slot];
+    }
+
+    /**
+     * @return model matrices by slot, 16 floats each, as of the last {@link #update}
+     */
+    public float[] getModelMatrices()
+    {
+        return mModels;
+    }
+}
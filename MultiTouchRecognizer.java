@@ -0,0 +1,364 @@
+package com.your.package.here.view;
+
+import com.your.package.here.FastMath;
+
+/**
+ * Recognizes taps, one finger pans and two finger pinch and twist in one pass over the pointers of
+ * each touch event, replacing a chain of detectors that each parsed the same event again. Events
+ * are fed as primitive arrays, so the recognizer runs on recorded touch streams off device as well.
+ * <p>
+ * The pinch span is the root mean square distance of all pointers from their centroid, summed in
+ * the same pass as the centroid. The twist angle is that of the line between the two oldest
+ * pointers, whose indices in the event are cached on every pointer down and up, so a move event is
+ * never searched for pointer ids. Every down and up re-baselines span, angle and position from the
+ * pointers that remain, so fingers joining or leaving never make the object jump. Nothing is
+ * allocated after construction.
+ */
+public class MultiTouchRecognizer
+{
+    // Masked actions, the values of android.view.MotionEvent.
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+    public static final int ACTION_POINTER_UP = 6;
+
+    public static final int MAX_POINTERS = 10;
+
+    private static final long TAP_TIMEOUT_MS = 500;
+    private static final float TWO_PI = (float) (2 * Math.PI);
+
+    /**
+     * Receives the recognized gestures, on the thread that feeds the events.
+     */
+    public interface Listener
+    {
+        /**
+         * The first finger went down.
+         */
+        void onDown(float x, float y, long eventTime);
+
+        /**
+         * A single finger went up close to where it went down, without a second finger joining.
+         */
+        void onTap(float x, float y, long eventTime);
+
+        /**
+         * @param dx        movement of a single finger along the screen X axis since the last call
+         * @param dy
+         * @param eventTime time of the sample, which may be a historical one
+         */
+        void onPan(float dx, float dy, long eventTime);
+
+        /**
+         * @param factor    span of the fingers relative to the last call
+         * @param eventTime
+         */
+        void onScale(float factor, long eventTime);
+
+        /**
+         * @param deltaRadians turn of the two oldest fingers since the last call, clockwise on
+         *                     screen is positive
+         * @param eventTime
+         */
+        void onRotate(float deltaRadians, long eventTime);
+
+        /**
+         * The last finger went up or the gesture was cancelled, after any tap it made.
+         */
+        void onUp(long eventTime);
+    }
+
+    private final Listener mListener;
+    private final float mTouchSlopSquared;
+    private final float mMinSpan;
+
+    private boolean mActive;
+    private boolean mTapCandidate;
+    private boolean mPanning;
+    private long mDownTime;
+    private float mDownX;
+    private float mDownY;
+
+    // Pointer ids and event indices of the two oldest pointers, -1 when absent.
+    private int mFirstId = -1;
+    private int mSecondId = -1;
+    private int mFirstIndex = -1;
+    private int mSecondIndex = -1;
+
+    private float mLastX;
+    private float mLastY;
+    private float mLastSpan;
+    private float mLastAngle;
+
+    /**
+     * @param touchSlop distance in pixels a finger may move and still tap
+     * @param listener
+     */
+    public MultiTouchRecognizer(float touchSlop, Listener listener)
+    {
+        mListener = listener;
+        mTouchSlopSquared = touchSlop * touchSlop;
+        // Below this the span is too noisy to scale by.
+        mMinSpan = touchSlop;
+    }
+
+    /**
+     * Feeds one touch event.
+     *
+     * @param eventTime    in milliseconds
+     * @param action       masked action
+     * @param actionIndex  index of the pointer going down or up, pointers from
+     *                     {@link #MAX_POINTERS} on are not tracked
+     * @param pointerCount pointers in the event, including one going up
+     * @param ids          pointer id per index
+     * @param x            pointer position per index
+     * @param y
+     */
+    public void onTouch(long eventTime, int action, int actionIndex, int pointerCount, int[] ids, float[] x, float[] y)
+    {
+        int count = Math.min(pointerCount, MAX_POINTERS);
+        if ((action == ACTION_POINTER_DOWN || action == ACTION_POINTER_UP) && actionIndex >= count)
+        {
+            // A finger past the ones passed in, which keep their indices. It only rules out a tap.
+            mTapCandidate = false;
+            return;
+        }
+        switch (action)
+        {
+            case ACTION_DOWN:
+                mActive = true;
+                mTapCandidate = true;
+                mPanning = false;
+                mDownTime = eventTime;
+                mDownX = x[actionIndex];
+                mDownY = y[actionIndex];
+                mFirstId = ids[actionIndex];
+                mSecondId = -1;
+                rebaseline(eventTime, count, ids, x, y, -1);
+                mListener.onDown(mDownX, mDownY, eventTime);
+                break;
+            case ACTION_POINTER_DOWN:
+                if (!mActive)
+                {
+                    return;
+                }
+                mTapCandidate = false;
+                if (mSecondId < 0)
+                {
+                    mSecondId = ids[actionIndex];
+                }
+                rebaseline(eventTime, count, ids, x, y, -1);
+                break;
+            case ACTION_MOVE:
+                if (mActive)
+                {
+                    move(eventTime, count, ids, x, y);
+                }
+                break;
+            case ACTION_POINTER_UP:
+                if (!mActive)
+                {
+                    return;
+                }
+                // The oldest remaining pointers take over from the one going up.
+                int leaving = ids[actionIndex];
+                if (leaving == mFirstId)
+                {
+                    mFirstId = mSecondId;
+                    mSecondId = -1;
+                }
+                else if (leaving == mSecondId)
+                {
+                    mSecondId = -1;
+                }
+                if (mSecondId < 0)
+                {
+                    for (int i = 0; i < count; i++)
+                    {
+                        if (i != actionIndex && ids[i] != mFirstId)
+                        {
+                            mSecondId = ids[i];
+                            break;
+                        }
+                    }
+                }
+                rebaseline(eventTime, count, ids, x, y, actionIndex);
+                // The following events no longer hold the pointer, later ones move down an index.
+                if (mFirstIndex > actionIndex)
+                {
+                    mFirstIndex--;
+                }
+                if (mSecondIndex > actionIndex)
+                {
+                    mSecondIndex--;
+                }
+                if (mActive && mSecondIndex < 0)
+                {
+                    // A finger left behind by a pinch pans from where it is now.
+                    mPanning = true;
+                }
+                break;
+            case ACTION_UP:
+                if (mActive && mTapCandidate && eventTime - mDownTime < TAP_TIMEOUT_MS)
+                {
+                    mListener.onTap(x[actionIndex], y[actionIndex], eventTime);
+                }
+                end(eventTime);
+                break;
+            case ACTION_CANCEL:
+                end(eventTime);
+                break;
+        }
+    }
+
+    private void move(long eventTime, int count, int[] ids, float[] x, float[] y)
+    {
+        if (mFirstIndex >= count || ids[mFirstIndex] != mFirstId
+                || (mSecondIndex >= 0 && (mSecondIndex >= count || ids[mSecondIndex] != mSecondId)))
+        {
+            // Indices only change on down and up, an event stream that skipped one is re-synced.
+            rebaseline(eventTime, count, ids, x, y, -1);
+            return;
+        }
+        if (mSecondIndex < 0)
+        {
+            float px = x[mFirstIndex];
+            float py = y[mFirstIndex];
+            if (!mPanning)
+            {
+                float dx = px - mDownX;
+                float dy = py - mDownY;
+                if (dx * dx + dy * dy <= mTouchSlopSquared)
+                {
+                    return;
+                }
+                mPanning = true;
+                mTapCandidate = false;
+            }
+            mListener.onPan(px - mLastX, py - mLastY, eventTime);
+            mLastX = px;
+            mLastY = py;
+            return;
+        }
+
+        float span = span(count, x, y, -1);
+        if (mLastSpan >= mMinSpan && span >= mMinSpan && span != mLastSpan)
+        {
+            mListener.onScale(span / mLastSpan, eventTime);
+        }
+        mLastSpan = span;
+
+        float angle = angle(x, y);
+        float delta = angle - mLastAngle;
+        if (delta > Math.PI)
+        {
+            delta -= TWO_PI;
+        }
+        else if (delta < -Math.PI)
+        {
+            delta += TWO_PI;
+        }
+        if (delta != 0)
+        {
+            mListener.onRotate(delta, eventTime);
+        }
+        mLastAngle = angle;
+    }
+
+    /**
+     * Looks up the indices of the two oldest pointers and takes span, angle and position of the
+     * pointers in the event, skipping one that is going up.
+     */
+    private void rebaseline(long eventTime, int count, int[] ids, float[] x, float[] y, int skip)
+    {
+        mFirstIndex = -1;
+        mSecondIndex = -1;
+        for (int i = 0; i < count; i++)
+        {
+            if (i == skip)
+            {
+                continue;
+            }
+            if (ids[i] == mFirstId)
+            {
+                mFirstIndex = i;
+            }
+            else if (ids[i] == mSecondId)
+            {
+                mSecondIndex = i;
+            }
+        }
+        if (mFirstIndex < 0)
+        {
+            // Nothing left that is known, e.g. after a cancelled pointer.
+            end(eventTime);
+            return;
+        }
+        mLastX = x[mFirstIndex];
+        mLastY = y[mFirstIndex];
+        mLastSpan = span(count, x, y, skip);
+        if (mSecondIndex >= 0)
+        {
+            mLastAngle = angle(x, y);
+        }
+    }
+
+    // Angle of the line from the oldest pointer to the second oldest, with the fast atan2 when enabled.
+    private float angle(float[] x, float[] y)
+    {
+        return FastMath.atan2(y[mSecondIndex] - y[mFirstIndex], x[mSecondIndex] - x[mFirstIndex]);
+    }
+
+    // Root mean square distance from the centroid, from sums taken in one pass. The sums are kept in
+    // double, in float the cancellation of screen sized squares would leave visible noise.
+    private static float span(int count, float[] x, float[] y, int skip)
+    {
+        double sumX = 0;
+        double sumY = 0;
+        double sumSquares = 0;
+        int n = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (i == skip)
+            {
+                continue;
+            }
+            sumX += x[i];
+            sumY += y[i];
+            sumSquares += (double) x[i] * x[i] + (double) y[i] * y[i];
+            n++;
+        }
+        if (n < 2)
+        {
+            return 0;
+        }
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double variance = sumSquares / n - meanX * meanX - meanY * meanY;
+        return variance > 0 ? (float) Math.sqrt(variance) : 0;
+    }
+
+    private void end(long eventTime)
+    {
+        boolean wasActive = mActive;
+        reset();
+        if (wasActive)
+        {
+            mListener.onUp(eventTime);
+        }
+    }
+
+    private void reset()
+    {
+        mActive = false;
+        mTapCandidate = false;
+        mPanning = false;
+        mFirstId = -1;
+        mSecondId = -1;
+        mFirstIndex = -1;
+        mSecondIndex = -1;
+        mLastSpan = 0;
+    }
+}
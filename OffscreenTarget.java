@@ -0,0 +1,213 @@
+package com.your.package.here.rendering;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Framebuffer that virtual content is rendered into at a reduced resolution, and then stretched
+ * over the camera image with a full screen quad. The color texture and depth buffer are allocated
+ * at the full viewport size once, and a scale only shrinks the part of them that is rendered to, so
+ * changing the scale never reallocates. The target is cleared to transparent each frame and content
+ * is blended into it as usual for color, but with alpha accumulated as coverage, so it holds
+ * premultiplied color and is composited as such. Renderers that set their own blend function or
+ * write destination alpha, like the sample's PlaneRenderer, have to draw outside of it.
+ */
+public class OffscreenTarget
+{
+    private static final String TAG = OffscreenTarget.class.getSimpleName();
+
+    private static final String VERTEX_SHADER =
+            "uniform vec2 u_TexScale;\n"
+                    + "attribute vec2 a_Position;\n"
+                    + "varying vec2 v_TexCoord;\n"
+                    + "void main() {\n"
+                    + "   v_TexCoord = (a_Position * 0.5 + 0.5) * u_TexScale;\n"
+                    + "   gl_Position = vec4(a_Position, 0.0, 1.0);\n"
+                    + "}";
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n"
+                    + "uniform sampler2D u_Texture;\n"
+                    + "varying vec2 v_TexCoord;\n"
+                    + "void main() {\n"
+                    + "    gl_FragColor = texture2D(u_Texture, v_TexCoord);\n"
+                    + "}";
+    private static final float[] QUAD = {-1, -1, 1, -1, -1, 1, 1, 1};
+
+    private int mProgram;
+    private int mPositionAttribute;
+    private int mTexScaleUniform;
+    private int mTextureUniform;
+    private FloatBuffer mQuad;
+
+    private int mFramebuffer;
+    private int mTexture;
+    private int mDepthBuffer;
+    private int mWidth;
+    private int mHeight;
+    private int mRenderWidth;
+    private int mRenderHeight;
+
+    /**
+     * Compiles the composite shader. Must be called on the OpenGL thread, typically in
+     * onSurfaceCreated().
+     */
+    public void createOnGlThread()
+    {
+        mProgram = GLES20.glCreateProgram();
+        GLES20.glAttachShader(mProgram, compile(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(mProgram, compile(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(mProgram);
+        mPositionAttribute = GLES20.glGetAttribLocation(mProgram, "a_Position");
+        mTexScaleUniform = GLES20.glGetUniformLocation(mProgram, "u_TexScale");
+        mTextureUniform = GLES20.glGetUniformLocation(mProgram, "u_Texture");
+        mQuad = ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        mQuad.put(QUAD).position(0);
+        // A new context has none of the old objects.
+        mFramebuffer = 0;
+        mWidth = 0;
+        mHeight = 0;
+    }
+
+    private static int compile(int type, String source)
+    {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0)
+        {
+            Log.e(TAG, "Shader compilation failed: " + GLES20.glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+
+    /**
+     * Allocates the target for a viewport size, typically in onSurfaceChanged().
+     *
+     * @param width
+     * @param height
+     * @return false if the framebuffer is incomplete, content should then be rendered directly
+     */
+    public boolean resize(int width, int height)
+    {
+        if (width == mWidth && height == mHeight && mFramebuffer != 0)
+        {
+            return true;
+        }
+        release();
+        int[] ids = new int[1];
+        GLES20.glGenTextures(1, ids, 0);
+        mTexture = ids[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0, GLES20.GL_RGBA,
+                GLES20.GL_UNSIGNED_BYTE, null);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+        GLES20.glGenRenderbuffers(1, ids, 0);
+        mDepthBuffer = ids[0];
+        GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, mDepthBuffer);
+        GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
+        GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, 0);
+
+        GLES20.glGenFramebuffers(1, ids, 0);
+        mFramebuffer = ids[0];
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebuffer);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D,
+                mTexture, 0);
+        GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+                GLES20.GL_RENDERBUFFER, mDepthBuffer);
+        int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        mWidth = width;
+        mHeight = height;
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE)
+        {
+            Log.e(TAG, "Offscreen framebuffer incomplete: 0x" + Integer.toHexString(status));
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Frees the framebuffer and its attachments.
+     */
+    public void release()
+    {
+        if (mFramebuffer != 0)
+        {
+            GLES20.glDeleteFramebuffers(1, new int[]{mFramebuffer}, 0);
+            GLES20.glDeleteRenderbuffers(1, new int[]{mDepthBuffer}, 0);
+            GLES20.glDeleteTextures(1, new int[]{mTexture}, 0);
+            mFramebuffer = 0;
+        }
+        mWidth = 0;
+        mHeight = 0;
+    }
+
+    public boolean isReady()
+    {
+        return mFramebuffer != 0;
+    }
+
+    /**
+     * Redirects rendering into the target at a scale of the viewport, clears it to transparent, which
+     * leaves the clear color at transparent, and turns on blending for the content.
+     *
+     * @param scale fraction of the viewport width and height to render
+     */
+    public void begin(float scale)
+    {
+        mRenderWidth = ResolutionController.scaled(mWidth, scale);
+        mRenderHeight = ResolutionController.scaled(mHeight, scale);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebuffer);
+        GLES20.glViewport(0, 0, mRenderWidth, mRenderHeight);
+        GLES20.glClearColor(0, 0, 0, 0);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        // Color over color as on screen, which leaves it premultiplied, and coverage over coverage for
+        // alpha. Plain GL_SRC_ALPHA for alpha would store a squared alpha and let the camera image
+        // show through where content is opaque.
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFuncSeparate(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA, GLES20.GL_ONE,
+                GLES20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Goes back to the default framebuffer and draws what was rendered since {@link #begin(float)}
+     * stretched over the whole viewport.
+     */
+    public void end()
+    {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GLES20.glViewport(0, 0, mWidth, mHeight);
+
+        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+        GLES20.glDepthMask(false);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTexture);
+        GLES20.glUniform1i(mTextureUniform, 0);
+        GLES20.glUniform2f(mTexScaleUniform, (float) mRenderWidth / mWidth, (float) mRenderHeight / mHeight);
+        GLES20.glEnableVertexAttribArray(mPositionAttribute);
+        GLES20.glVertexAttribPointer(mPositionAttribute, 2, GLES20.GL_FLOAT, false, 0, mQuad);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(mPositionAttribute);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+
+        GLES20.glDisable(GLES20.GL_BLEND);
+        GLES20.glDepthMask(true);
+        GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+    }
+}
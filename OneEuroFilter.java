@@ -0,0 +1,84 @@
+package com.your.package.here.view;
+
+/**
+ * One Euro filter (Casiez, Roussel and Vogel, CHI 2012): a low pass filter whose cutoff rises with
+ * the speed of the signal. Slow movements are smoothed hard, which removes jitter, while fast ones
+ * pass with little lag. The smoothed speed is kept as well, for extrapolation.
+ */
+public class OneEuroFilter
+{
+    private static final float MIN_INTERVAL_SECONDS = 0.001f;
+
+    private final float mMinCutoff;
+    private final float mBeta;
+    private final float mDerivativeCutoff;
+
+    private boolean mHasValue;
+    private float mValue;
+    private float mDerivative;
+    private long mLastTime;
+
+    /**
+     * @param minCutoff        cutoff in Hz while the signal is still, lower smooths more
+     * @param beta             cutoff added per unit per second of speed, higher lags less
+     * @param derivativeCutoff cutoff in Hz of the speed estimate
+     */
+    public OneEuroFilter(float minCutoff, float beta, float derivativeCutoff)
+    {
+        mMinCutoff = minCutoff;
+        mBeta = beta;
+        mDerivativeCutoff = derivativeCutoff;
+    }
+
+    /**
+     * Starts over, the next sample passes unfiltered.
+     */
+    public void reset()
+    {
+        mHasValue = false;
+        mDerivative = 0;
+    }
+
+    /**
+     * @param value
+     * @param timeMillis time of the sample, samples at the same time count as 1 ms apart
+     * @return the filtered value
+     */
+    public float filter(float value, long timeMillis)
+    {
+        if (!mHasValue)
+        {
+            mHasValue = true;
+            mValue = value;
+            mDerivative = 0;
+            mLastTime = timeMillis;
+            return value;
+        }
+        float interval = Math.max((timeMillis - mLastTime) / 1000.0f, MIN_INTERVAL_SECONDS);
+        mLastTime = timeMillis;
+        float derivative = (value - mValue) / interval;
+        mDerivative += alpha(mDerivativeCutoff, interval) * (derivative - mDerivative);
+        float cutoff = mMinCutoff + mBeta * Math.abs(mDerivative);
+        mValue += alpha(cutoff, interval) * (value - mValue);
+        return mValue;
+    }
+
+    public float getValue()
+    {
+        return mValue;
+    }
+
+    /**
+     * @return smoothed speed in units per second
+     */
+    public float getDerivative()
+    {
+        return mDerivative;
+    }
+
+    private static float alpha(float cutoff, float interval)
+    {
+        float tau = 1.0f / (2.0f * (float) Math.PI * cutoff);
+        return 1.0f / (1.0f + tau / interval);
+    }
+}
@@ -0,0 +1,138 @@
+package com.your.package.here;
+
+import com.google.ar.core.Plane;
+import com.google.ar.core.TrackingState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Live set of planes kept up to date from {@code Frame.getUpdatedTrackables(Plane.class)}, so a frame
+ * only pays for the planes that changed instead of walking every plane the session has seen.
+ * Planes that were subsumed by another plane or stopped tracking are dropped. The cache also keeps
+ * a running count of horizontal upward-facing planes that are tracking, which answers the loading
+ * check in O(1). Neither the update nor reading the planes back by index allocates an iterator.
+ */
+public class PlaneCache
+{
+    private static final int INDEX = 0;
+    private static final int HORIZONTAL_TRACKING = 1;
+
+    private final ArrayList<Plane> mPlanes = new ArrayList<>();
+    private final List<Plane> mReadOnlyPlanes = Collections.unmodifiableList(mPlanes);
+    // Per plane {index in mPlanes, 1 if counted as horizontal tracking}, mutated in place so
+    // steady-state updates do not allocate.
+    private final HashMap<Plane, int[]> mEntries = new HashMap<>();
+    private int mHorizontalTrackingCount;
+
+    /**
+     * Applies the planes ARCore reported as changed in the latest frame.
+     *
+     * @param updatedPlanes
+     */
+    public void update(Collection<Plane> updatedPlanes)
+    {
+        // Most frames update nothing.
+        if (updatedPlanes.isEmpty())
+        {
+            return;
+        }
+        // ARCore hands out an array backed list, walked by index. Any other collection is iterated.
+        if (updatedPlanes instanceof List && updatedPlanes instanceof RandomAccess)
+        {
+            List<Plane> planes = (List<Plane>) updatedPlanes;
+            for (int i = 0; i < planes.size(); i++)
+            {
+                update(planes.get(i));
+            }
+        }
+        else
+        {
+            for (Plane plane : updatedPlanes)
+            {
+                update(plane);
+            }
+        }
+    }
+
+    private void update(Plane plane)
+    {
+        int[] entry = mEntries.get(plane);
+        if (plane.getSubsumedBy() != null || plane.getTrackingState() == TrackingState.STOPPED)
+        {
+            if (entry != null)
+            {
+                remove(plane, entry);
+            }
+            return;
+        }
+        if (entry == null)
+        {
+            entry = new int[]{mPlanes.size(), 0};
+            mPlanes.add(plane);
+            mEntries.put(plane, entry);
+        }
+        int horizontalTracking = plane.getType() == Plane.Type.HORIZONTAL_UPWARD_FACING
+                && plane.getTrackingState() == TrackingState.TRACKING ? 1 : 0;
+        mHorizontalTrackingCount += horizontalTracking - entry[HORIZONTAL_TRACKING];
+        entry[HORIZONTAL_TRACKING] = horizontalTracking;
+    }
+
+    private void remove(Plane plane, int[] entry)
+    {
+        mHorizontalTrackingCount -= entry[HORIZONTAL_TRACKING];
+        mEntries.remove(plane);
+
+        // Swap the last plane into the hole so removal stays O(1).
+        int index = entry[INDEX];
+        int last = mPlanes.size() - 1;
+        Plane moved = mPlanes.remove(last);
+        if (index != last)
+        {
+            mPlanes.set(index, moved);
+            mEntries.get(moved)[INDEX] = index;
+        }
+    }
+
+    /**
+     * Forgets every plane, for when the session is recreated.
+     */
+    public void clear()
+    {
+        mPlanes.clear();
+        mEntries.clear();
+        mHorizontalTrackingCount = 0;
+    }
+
+    /**
+     * @return read-only view of the live planes, valid until the next {@link #update(Collection)}
+     */
+    public List<Plane> getPlanes()
+    {
+        return mReadOnlyPlanes;
+    }
+
+    /**
+     * @param index
+     * @return the live plane at an index below {@link #size()}, valid until the next
+     * {@link #update(Collection)}
+     */
+    public Plane get(int index)
+    {
+        return mPlanes.get(index);
+    }
+
+    public int size()
+    {
+        return mPlanes.size();
+    }
+
+    public boolean hasTrackingHorizontalPlane()
+    {
+        return mHorizontalTrackingCount > 0;
+    }
+}
@@ -0,0 +1,290 @@
+package com.your.package.here.rendering;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Accumulates ARCore feature points over time into a voxel grid, so the visualized cloud is stable
+ * and gets denser instead of flickering with each frame's raw points.
+ * <p>
+ * Each voxel keeps the confidence weighted mean position of the points that fell into it and their
+ * highest confidence, stored as x, y, z, confidence floats: the layout ARCore uses for raw points,
+ * so the voxel buffer can be drawn the same way. A voxel stops moving once it has gathered
+ * {@link #SETTLED_WEIGHT} of confidence. Voxel data and the hash table live in direct buffers of a
+ * size fixed at construction; once all voxels are taken new ones are dropped and counted.
+ * <p>
+ * Only voxels that changed noticeably since the last {@link #uploadChanges(Uploader)} are handed
+ * to the uploader, merged into contiguous runs. After {@link #markAllDirty()}, e.g. for a freshly
+ * created vertex buffer, every voxel is handed over in one run.
+ */
+public class PointCloudAccumulator
+{
+    public static final int FLOATS_PER_VOXEL = 4;
+    public static final int BYTES_PER_VOXEL = FLOATS_PER_VOXEL * 4;
+
+    private static final float SETTLED_WEIGHT = 8.0f;
+    // Dirty voxels closer than this are uploaded in one run, cheaper than a call per gap.
+    private static final int RUN_GAP = 16;
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final int COORDINATE_BITS = 21;
+    private static final int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+
+    /**
+     * Receives the changed part of the voxel buffer, e.g. through glBufferSubData.
+     */
+    public interface Uploader
+    {
+        /**
+         * @param voxels buffer of all voxels, positioned at the first byte to upload
+         * @param offset byte offset of that first byte
+         * @param size   number of bytes to upload
+         */
+        void upload(ByteBuffer voxels, int offset, int size);
+    }
+
+    private final float mVoxelSize;
+    private final float mMinConfidence;
+    private final int mCapacity;
+
+    private final ByteBuffer mVoxelBytes;
+    // Reused view handed to the uploader, positioned at each run.
+    private final ByteBuffer mUploadView;
+    private final FloatBuffer mVoxels;
+    private final FloatBuffer mWeights;
+    private final LongBuffer mKeys;
+    private final IntBuffer mIndexes;
+    private final int mTableMask;
+    private int mCount;
+
+    private final int[] mDirty;
+    private final boolean[] mIsDirty;
+    private int mDirtyCount;
+    private boolean mAllDirty;
+
+    private long mDroppedPoints;
+    private long mUploadedBytes;
+
+    /**
+     * @param voxelSize     edge length of a voxel in meters
+     * @param minConfidence points below this confidence are ignored
+     * @param maxVoxels     memory cap, every voxel costs about 40 bytes
+     */
+    public PointCloudAccumulator(float voxelSize, float minConfidence, int maxVoxels)
+    {
+        mVoxelSize = voxelSize;
+        mMinConfidence = minConfidence;
+        mCapacity = maxVoxels;
+        mVoxelBytes = ByteBuffer.allocateDirect(maxVoxels * BYTES_PER_VOXEL).order(ByteOrder.nativeOrder());
+        mVoxels = mVoxelBytes.asFloatBuffer();
+        mUploadView = mVoxelBytes.duplicate().order(ByteOrder.nativeOrder());
+        mWeights = ByteBuffer.allocateDirect(maxVoxels * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        // Open addressing at no more than half load.
+        int tableSize = Integer.highestOneBit(Math.max(maxVoxels, 2) * 2 - 1) << 1;
+        mTableMask = tableSize - 1;
+        mKeys = ByteBuffer.allocateDirect(tableSize * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        mIndexes = ByteBuffer.allocateDirect(tableSize * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        for (int i = 0; i < tableSize; i++)
+        {
+            mKeys.put(i, EMPTY_KEY);
+        }
+        mDirty = new int[maxVoxels];
+        mIsDirty = new boolean[maxVoxels];
+    }
+
+    /**
+     * Merges one frame of points.
+     *
+     * @param points x, y, z, confidence per point, read from position 0
+     * @param count  number of points
+     */
+    public void merge(FloatBuffer points, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int base = i * FLOATS_PER_VOXEL;
+            float confidence = points.get(base + 3);
+            if (confidence < mMinConfidence || confidence <= 0)
+            {
+                continue;
+            }
+            float x = points.get(base);
+            float y = points.get(base + 1);
+            float z = points.get(base + 2);
+            int voxel = findOrInsert(key(x, y, z));
+            if (voxel < 0)
+            {
+                mDroppedPoints++;
+                continue;
+            }
+            float weight = mWeights.get(voxel);
+            if (weight >= SETTLED_WEIGHT)
+            {
+                continue;
+            }
+            int v = voxel * FLOATS_PER_VOXEL;
+            float total = weight + confidence;
+            float blend = confidence / total;
+            mVoxels.put(v, mVoxels.get(v) + (x - mVoxels.get(v)) * blend);
+            mVoxels.put(v + 1, mVoxels.get(v + 1) + (y - mVoxels.get(v + 1)) * blend);
+            mVoxels.put(v + 2, mVoxels.get(v + 2) + (z - mVoxels.get(v + 2)) * blend);
+            mVoxels.put(v + 3, Math.max(mVoxels.get(v + 3), confidence));
+            mWeights.put(voxel, total);
+            // The mean moves less with every point, so it is only re-uploaded each time the weight
+            // doubles. A voxel is uploaded a handful of times before it settles.
+            if (!mIsDirty[voxel] && Math.getExponent(total) != Math.getExponent(weight))
+            {
+                mIsDirty[voxel] = true;
+                mDirty[mDirtyCount++] = voxel;
+            }
+        }
+    }
+
+    /**
+     * Hands every voxel changed since the last call to the uploader, in ascending runs.
+     *
+     * @param uploader
+     * @return the number of bytes uploaded
+     */
+    public int uploadChanges(Uploader uploader)
+    {
+        if (mAllDirty)
+        {
+            return uploadAll(uploader);
+        }
+        if (mDirtyCount == 0)
+        {
+            return 0;
+        }
+        Arrays.sort(mDirty, 0, mDirtyCount);
+        int uploaded = 0;
+        int runStart = mDirty[0];
+        int runEnd = runStart;
+        for (int i = 1; i <= mDirtyCount; i++)
+        {
+            int voxel = i < mDirtyCount ? mDirty[i] : Integer.MAX_VALUE;
+            if (voxel - runEnd <= RUN_GAP)
+            {
+                runEnd = voxel;
+                continue;
+            }
+            int offset = runStart * BYTES_PER_VOXEL;
+            int size = (runEnd - runStart + 1) * BYTES_PER_VOXEL;
+            mUploadView.position(offset);
+            uploader.upload(mUploadView, offset, size);
+            uploaded += size;
+            runStart = voxel;
+            runEnd = voxel;
+        }
+        clearDirty();
+        mUploadedBytes += uploaded;
+        return uploaded;
+    }
+
+    private int uploadAll(Uploader uploader)
+    {
+        clearDirty();
+        mAllDirty = false;
+        int size = mCount * BYTES_PER_VOXEL;
+        if (size > 0)
+        {
+            mUploadView.position(0);
+            uploader.upload(mUploadView, 0, size);
+            mUploadedBytes += size;
+        }
+        return size;
+    }
+
+    private void clearDirty()
+    {
+        for (int i = 0; i < mDirtyCount; i++)
+        {
+            mIsDirty[mDirty[i]] = false;
+        }
+        mDirtyCount = 0;
+    }
+
+    /**
+     * Makes the next {@link #uploadChanges(Uploader)} hand over every voxel, for when the buffer
+     * they were uploaded to was lost, e.g. with the GL context.
+     */
+    public void markAllDirty()
+    {
+        mAllDirty = true;
+    }
+
+    /**
+     * Forgets every voxel, e.g. when tracking is reset.
+     */
+    public void clear()
+    {
+        for (int i = 0; i <= mTableMask; i++)
+        {
+            mKeys.put(i, EMPTY_KEY);
+        }
+        clearDirty();
+        mCount = 0;
+    }
+
+    private long key(float x, float y, float z)
+    {
+        long vx = (long) Math.floor(x / mVoxelSize) & COORDINATE_MASK;
+        long vy = (long) Math.floor(y / mVoxelSize) & COORDINATE_MASK;
+        long vz = (long) Math.floor(z / mVoxelSize) & COORDINATE_MASK;
+        return vx << (2 * COORDINATE_BITS) | vy << COORDINATE_BITS | vz;
+    }
+
+    // Returns the voxel of a key, claiming a new one if needed, or -1 when all voxels are taken.
+    private int findOrInsert(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        for (int slot = (int) (h ^ (h >>> 32)) & mTableMask; ; slot = (slot + 1) & mTableMask)
+        {
+            long existing = mKeys.get(slot);
+            if (existing == key)
+            {
+                return mIndexes.get(slot);
+            }
+            if (existing == EMPTY_KEY)
+            {
+                if (mCount == mCapacity)
+                {
+                    return -1;
+                }
+                int voxel = mCount++;
+                mKeys.put(slot, key);
+                mIndexes.put(slot, voxel);
+                int v = voxel * FLOATS_PER_VOXEL;
+                mVoxels.put(v, 0).put(v + 1, 0).put(v + 2, 0).put(v + 3, 0);
+                mWeights.put(voxel, 0);
+                return voxel;
+            }
+        }
+    }
+
+    /**
+     * @return the number of voxels, which are stored contiguously from the start of the buffer
+     */
+    public int getVoxelCount()
+    {
+        return mCount;
+    }
+
+    public int getCapacity()
+    {
+        return mCapacity;
+    }
+
+    public long getDroppedPoints()
+    {
+        return mDroppedPoints;
+    }
+
+    public long getUploadedBytes()
+    {
+        return mUploadedBytes;
+    }
+}
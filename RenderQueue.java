@@ -0,0 +1,154 @@
+package com.your.package.here.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Collects the virtual objects drawn in a frame and submits them grouped by model, so every model
+ * is bound once per frame no matter how many copies of it are placed. Instances are kept in flat
+ * primitive buffers (16 floats of model matrix plus a scale per instance) and are bucketed with a
+ * counting sort on the model index, which keeps submission stable and allocation free once the
+ * buffers have grown to the scene size.
+ */
+public class RenderQueue
+{
+    private static final int MATRIX_SIZE = 16;
+    private static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Receives the grouped draw calls. Implementations wrap the actual GL calls so the grouping can
+     * be driven by a recording stand-in off device.
+     */
+    public interface Backend
+    {
+        /**
+         * Draws every instance of a model in one batch.
+         *
+         * @param model    model index shared by the batch
+         * @param matrices model matrices, 16 floats per instance
+         * @param scales   scale factor per instance
+         * @param first    index of the first instance of the batch
+         * @param count    number of instances in the batch
+         */
+        void drawBatch(int model, float[] matrices, float[] scales, int first, int count);
+    }
+
+    private float[] mMatrices;
+    private float[] mScales;
+    private int[] mModels;
+    private float[] mSortedMatrices;
+    private float[] mSortedScales;
+    private int[] mModelCounts = new int[8];
+    private int mSize;
+    private int mModelLimit;
+
+    public RenderQueue()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RenderQueue(int initialCapacity)
+    {
+        int capacity = Math.max(1, initialCapacity);
+        mMatrices = new float[capacity * MATRIX_SIZE];
+        mScales = new float[capacity];
+        mModels = new int[capacity];
+        mSortedMatrices = new float[capacity * MATRIX_SIZE];
+        mSortedScales = new float[capacity];
+    }
+
+    /**
+     * Drops everything submitted for the previous frame.
+     */
+    public void clear()
+    {
+        mSize = 0;
+        mModelLimit = 0;
+    }
+
+    public int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * Queues one instance of a model.
+     *
+     * @param model        non-negative model index
+     * @param modelMatrix  source of the instance model matrix
+     * @param matrixOffset offset of the matrix within modelMatrix
+     * @param scale        uniform scale applied on top of the model matrix
+     */
+    public void submit(int model, float[] modelMatrix, int matrixOffset, float scale)
+    {
+        if (mSize == mScales.length)
+        {
+            grow();
+        }
+        System.arraycopy(modelMatrix, matrixOffset, mMatrices, mSize * MATRIX_SIZE, MATRIX_SIZE);
+        mScales[mSize] = scale;
+        mModels[mSize] = model;
+        mSize++;
+        if (model >= mModelLimit)
+        {
+            mModelLimit = model + 1;
+        }
+    }
+
+    /**
+     * Sorts the queued instances by model and hands each group to the backend as a single batch.
+     * The queue is cleared afterwards.
+     *
+     * @param backend
+     * @return the number of batches submitted
+     */
+    public int flush(Backend backend)
+    {
+        if (mModelCounts.length < mModelLimit + 1)
+        {
+            mModelCounts = new int[Math.max(mModelLimit + 1, mModelCounts.length * 2)];
+        }
+        int[] counts = mModelCounts;
+        Arrays.fill(counts, 0, mModelLimit + 1, 0);
+        for (int i = 0; i < mSize; i++)
+        {
+            counts[mModels[i] + 1]++;
+        }
+        for (int m = 0; m < mModelLimit; m++)
+        {
+            counts[m + 1] += counts[m];
+        }
+
+        // counts[m] is now the first sorted position of model m; scatter advances it to the end.
+        for (int i = 0; i < mSize; i++)
+        {
+            int target = counts[mModels[i]]++;
+            System.arraycopy(mMatrices, i * MATRIX_SIZE, mSortedMatrices, target * MATRIX_SIZE, MATRIX_SIZE);
+            mSortedScales[target] = mScales[i];
+        }
+
+        int batches = 0;
+        int first = 0;
+        for (int m = 0; m < mModelLimit; m++)
+        {
+            int end = counts[m];
+            if (end > first)
+            {
+                backend.drawBatch(m, mSortedMatrices, mSortedScales, first, end - first);
+                batches++;
+            }
+            first = end;
+        }
+        clear();
+        return batches;
+    }
+
+    private void grow()
+    {
+        int capacity = mScales.length * 2;
+        mMatrices = Arrays.copyOf(mMatrices, capacity * MATRIX_SIZE);
+        mScales = Arrays.copyOf(mScales, capacity);
+        mModels = Arrays.copyOf(mModels, capacity);
+        mSortedMatrices = new float[capacity * MATRIX_SIZE];
+        mSortedScales = new float[capacity];
+    }
+}
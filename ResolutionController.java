@@ -0,0 +1,208 @@
+package com.your.package.here.rendering;
+
+/**
+ * Picks the scale at which virtual content is rendered from recent frame times, so a frame that
+ * runs over its budget is brought back by rendering fewer pixels instead of missing deadlines.
+ * <p>
+ * Decisions are made on the median of the last {@link #WINDOW} frames, so a single slow frame, a
+ * GC pause say, is ignored while a lasting change in load shows up within half a window. Close to
+ * the budget the scale is cut at once, by the square root of how far over a target the median is,
+ * as if all of the frame time were per pixel. Below a lower watermark it only grows one step at a
+ * time, after the frames stayed that fast for a while, and in between it is held. A step up that
+ * soon has to be taken back doubles the wait for the next one, so a load that comes and goes does
+ * not make the scale flap. After every change the window is refilled before the next decision, so
+ * it only ever judges frames rendered at the current scale. Scales are multiples of the step
+ * between the minimum scale and 1.
+ * <p>
+ * Plain Java without GL calls, so it can be driven with synthetic frame time traces on a desktop,
+ * see tools/ResolutionTrace.
+ */
+public class ResolutionController
+{
+    public static final int WINDOW = 9;
+
+    // Fractions of the budget: scale down above the first, up below the second.
+    private static final float HIGH_WATERMARK = 0.95f;
+    private static final float LOW_WATERMARK = 0.7f;
+    // What to aim for when scaling down, leaving room for noise.
+    private static final float TARGET = 0.85f;
+    private static final int UPSCALE_FRAMES = 30;
+    private static final int MAX_UPSCALE_FRAMES = 960;
+
+    private final long mBudgetNanos;
+    private final float mStep;
+    // The scale in steps.
+    private final int mMinLevel;
+    private final int mMaxLevel;
+    private int mLevel;
+
+    private final long[] mWindow = new long[WINDOW];
+    private final long[] mSorted = new long[WINDOW];
+    private int mWindowCount;
+    private int mWindowNext;
+    private int mFastFrames;
+    // Fast frames needed to scale up, doubled whenever a step up had to be taken back soon after.
+    private int mUpscaleFrames = UPSCALE_FRAMES;
+    private int mFramesSinceUpscale;
+    private boolean mUpscaleTakenBack = true;
+
+    private long mFrames;
+    private long mOverBudgetFrames;
+    private long mChanges;
+    private double mScaleSum;
+
+    /**
+     * @param budgetNanos time a frame may take
+     * @param minScale    smallest scale, relative to the viewport
+     * @param step        granularity of the scale, 1 should be a multiple of it
+     */
+    public ResolutionController(long budgetNanos, float minScale, float step)
+    {
+        mBudgetNanos = budgetNanos;
+        mStep = step;
+        mMaxLevel = Math.round(1.0f / step);
+        mMinLevel = Math.max(1, (int) Math.ceil(minScale / step - 1e-3f));
+        mLevel = mMaxLevel;
+    }
+
+    /**
+     * Takes in the time of a frame rendered at the current scale.
+     *
+     * @param frameNanos
+     * @return the scale to render the next frame at
+     */
+    public float onFrame(long frameNanos)
+    {
+        mFrames++;
+        mFramesSinceUpscale++;
+        mScaleSum += getScale();
+        if (frameNanos > mBudgetNanos)
+        {
+            mOverBudgetFrames++;
+        }
+        mWindow[mWindowNext] = frameNanos;
+        mWindowNext = (mWindowNext + 1) % WINDOW;
+        if (mWindowCount < WINDOW)
+        {
+            mWindowCount++;
+            return getScale();
+        }
+
+        long median = median();
+        int level = mLevel;
+        if (median > mBudgetNanos * HIGH_WATERMARK)
+        {
+            mFastFrames = 0;
+            // Rounded down, a cut should not fall short of the target, and at least a step.
+            double scale = getScale() * Math.sqrt(mBudgetNanos * TARGET / median);
+            level = Math.min(mLevel - 1, (int) Math.floor(scale / mStep));
+            if (!mUpscaleTakenBack && mFramesSinceUpscale < 2 * mUpscaleFrames)
+            {
+                // The load comes and goes, wait longer before trying again.
+                mUpscaleFrames = Math.min(2 * mUpscaleFrames, MAX_UPSCALE_FRAMES);
+            }
+            mUpscaleTakenBack = true;
+        }
+        else if (median < mBudgetNanos * LOW_WATERMARK)
+        {
+            if (++mFastFrames >= mUpscaleFrames)
+            {
+                mFastFrames = 0;
+                level = mLevel + 1;
+                if (!mUpscaleTakenBack)
+                {
+                    // The last step up held, be quicker again.
+                    mUpscaleFrames = Math.max(mUpscaleFrames / 2, UPSCALE_FRAMES);
+                }
+                mFramesSinceUpscale = 0;
+                mUpscaleTakenBack = false;
+            }
+        }
+        else
+        {
+            mFastFrames = 0;
+        }
+
+        level = Math.max(mMinLevel, Math.min(mMaxLevel, level));
+        if (level != mLevel)
+        {
+            mLevel = level;
+            mChanges++;
+            mWindowCount = 0;
+        }
+        return getScale();
+    }
+
+    private long median()
+    {
+        System.arraycopy(mWindow, 0, mSorted, 0, WINDOW);
+        // Insertion sort, nine elements.
+        for (int i = 1; i < WINDOW; i++)
+        {
+            long value = mSorted[i];
+            int j = i - 1;
+            while (j >= 0 && mSorted[j] > value)
+            {
+                mSorted[j + 1] = mSorted[j];
+                j--;
+            }
+            mSorted[j + 1] = value;
+        }
+        return mSorted[WINDOW / 2];
+    }
+
+    /**
+     * Goes back to full scale and forgets the frame times, e.g. when the surface changed.
+     */
+    public void reset()
+    {
+        mLevel = mMaxLevel;
+        mWindowCount = 0;
+        mFastFrames = 0;
+        mUpscaleFrames = UPSCALE_FRAMES;
+        mUpscaleTakenBack = true;
+    }
+
+    public float getScale()
+    {
+        return mLevel == mMaxLevel ? 1.0f : mLevel * mStep;
+    }
+
+    /**
+     * @param size  viewport width or height
+     * @param scale
+     * @return the size scaled and rounded, at least 1
+     */
+    public static int scaled(int size, float scale)
+    {
+        return Math.max(1, Math.round(size * scale));
+    }
+
+    public long getBudgetNanos()
+    {
+        return mBudgetNanos;
+    }
+
+    public long getFrameCount()
+    {
+        return mFrames;
+    }
+
+    public long getOverBudgetCount()
+    {
+        return mOverBudgetFrames;
+    }
+
+    public long getChangeCount()
+    {
+        return mChanges;
+    }
+
+    /**
+     * @return the scale averaged over all frames taken in
+     */
+    public float getMeanScale()
+    {
+        return mFrames > 0 ? (float) (mScaleSum / mFrames) : getScale();
+    }
+}
@@ -1,87 +0,0 @@
-package com.disney.tig.redshiftar.view;
-
-import android.content.Context;
-import android.support.v4.app.ActivityCompat;
-import android.view.MotionEvent;
-
-/**
- * Created by reubb002 on 3/2/18.
- */
-
-public class RotationGestureDetector {
-    private Context mContext;
-
-    private static final int INVALID_POINTER_ID = -1;
-    private float fX, fY, sX, sY;
-    private int ptrID1, ptrID2;
-    private float mAngle;
-
-    private OnRotationGestureListener mListener;
-
-    public float getAngle() {
-        return mAngle;
-    }
-
-    public RotationGestureDetector(Context context, OnRotationGestureListener listener){
-        mContext = context;
-        mListener = listener;
-        ptrID1 = INVALID_POINTER_ID;
-        ptrID2 = INVALID_POINTER_ID;
-    }
-
-    public boolean onTouchEvent(MotionEvent event){
-        switch (event.getActionMasked()) {
-            case MotionEvent.ACTION_DOWN:
-                ptrID1 = event.getPointerId(event.getActionIndex());
-                break;
-            case MotionEvent.ACTION_POINTER_DOWN:
-                ptrID2 = event.getPointerId(event.getActionIndex());
-                sX = event.getX(event.findPointerIndex(ptrID1));
-                sY = event.getY(event.findPointerIndex(ptrID1));
-                fX = event.getX(event.findPointerIndex(ptrID2));
-                fY = event.getY(event.findPointerIndex(ptrID2));
-                break;
-            case MotionEvent.ACTION_MOVE:
-                if(ptrID1 != INVALID_POINTER_ID && ptrID2 != INVALID_POINTER_ID){
-                    float nfX, nfY, nsX, nsY;
-                    nsX = event.getX(event.findPointerIndex(ptrID1));
-                    nsY = event.getY(event.findPointerIndex(ptrID1));
-                    nfX = event.getX(event.findPointerIndex(ptrID2));
-                    nfY = event.getY(event.findPointerIndex(ptrID2));
-
-                    mAngle = angleBetweenLines(fX, fY, sX, sY, nfX, nfY, nsX, nsY);
-
-                    if (mListener != null) {
-                        mListener.OnRotation(this);
-                    }
-                }
-                break;
-            case MotionEvent.ACTION_UP:
-                ptrID1 = INVALID_POINTER_ID;
-                break;
-            case MotionEvent.ACTION_POINTER_UP:
-                ptrID2 = INVALID_POINTER_ID;
-                break;
-            case MotionEvent.ACTION_CANCEL:
-                ptrID1 = INVALID_POINTER_ID;
-                ptrID2 = INVALID_POINTER_ID;
-                break;
-        }
-        return true;
-    }
-
-    private float angleBetweenLines (float fX, float fY, float sX, float sY, float nfX, float nfY, float nsX, float nsY)
-    {
-        float angle1 = (float) Math.atan2( (fY - sY), (fX - sX) );
-        float angle2 = (float) Math.atan2( (nfY - nsY), (nfX - nsX) );
-
-        float angle = ((float)Math.toDegrees(angle1 - angle2)) % 360;
-        if (angle < -180.f) angle += 360.0f;
-        if (angle > 180.f) angle -= 360.0f;
-        return angle;
-    }
-
-    public static interface OnRotationGestureListener {
-        public void OnRotation(RotationGestureDetector rotationDetector);
-    }
-}
@@ -0,0 +1,540 @@
+package com.your.package.here;
+
+import com.your.package.here.rendering.FrustumCuller;
+import com.your.package.here.rendering.RenderQueue;
+import com.your.package.here.rendering.TransformMath;
+import com.your.package.here.view.CameraYawBasis;
+import com.your.package.here.view.GestureChannel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The placed objects and everything done to them once per frame: gestures, picking, culling and
+ * queueing for drawing. It only sees anchors through {@link Anchors} and draws through a
+ * {@link RenderQueue.Backend}, so it has no Android or ARCore dependency. The activity drives it
+ * on the GL thread, and session replays drive it on a desktop JVM.
+ * <p>
+ * Drawing the objects is split in two so the CPU work can run on a worker pool while the GL thread
+ * draws something else: {@link #beginObjects(Anchors)} reads the anchor poses and hands model
+ * matrix composition and culling to the pool, {@link #finishObjects(RenderQueue.Backend)} waits
+ * for it and issues the draw calls. The results land in a {@link Snapshot}, which is reused from
+ * frame to frame and holds the last finished one until the next begins.
+ * Model matrices come from a {@link ModelMatrixEngine}, which only composes those of objects whose
+ * anchor pose or user transform changed.
+ */
+public class SceneController
+{
+    public static final int TRACKING = 0;
+    public static final int PAUSED = 1;
+    public static final int STOPPED = 2;
+
+    private static final float DRAG_SPEED = 0.001f;
+    // Radius of the placeholder, used for models that did not report their own.
+    private static final float PLACEHOLDER_BOUNDING_RADIUS = 0.15f;
+    private static final float PICK_CELL_SIZE = 0.5f;
+    private static final float PICK_DISTANCE = 100.0f;
+    // Below this many tracking objects the pool costs more than it saves, they are done inline.
+    private static final int PARALLEL_THRESHOLD = 64;
+    // Fewest objects per pool task.
+    private static final int MIN_TASK_SIZE = 32;
+
+    /**
+     * Source of the anchor pose behind each slot.
+     */
+    public interface Anchors
+    {
+        /**
+         * @param slot
+         * @param matrix receives the anchor pose while it is tracking
+         * @param offset
+         * @return {@link #TRACKING}, {@link #PAUSED} or {@link #STOPPED}
+         */
+        int getPose(int slot, float[] matrix, int offset);
+
+        /**
+         * Called when an anchor is lost for good. The implementation releases it and must call
+         * {@link #remove(int)} for the slot.
+         *
+         * @param slot
+         */
+        void onStopped(int slot);
+    }
+
+    /**
+     * The objects of one frame as prepared for drawing, in the order of the live slots that were
+     * tracking.
+     */
+    public static class Snapshot
+    {
+        public int count;
+        public int[] slots;
+        public int[] models;
+        public float[] scales;
+        // Bounding radius of the model, times the scale once composed.
+        public float[] radii;
+        // Anchor pose on input, model matrix once composed, 16 floats per object.
+        public float[] matrices;
+        public boolean[] visible;
+        public int drawn;
+        // Model matrices that had to be composed again, the others were unchanged.
+        public int composed;
+
+        Snapshot(int capacity)
+        {
+            slots = new int[capacity];
+            models = new int[capacity];
+            scales = new float[capacity];
+            radii = new float[capacity];
+            matrices = new float[capacity * 16];
+            visible = new boolean[capacity];
+        }
+    }
+
+    /**
+     * Composes and culls a range of the snapshot. Instances are reused from frame to frame.
+     */
+    private class ComposeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        int mFrom;
+        int mTo;
+        int mComposed;
+
+        @Override
+        protected void compute()
+        {
+            mComposed = compose(mFrame, mFrom, mTo);
+        }
+    }
+
+    private final AnchorTransformTable mTransforms;
+    private final ModelMatrixEngine mMatrixEngine;
+    private final AnchorSpatialIndex mSpatialIndex = new AnchorSpatialIndex(PICK_CELL_SIZE);
+    private final CameraYawBasis mCameraBasis = new CameraYawBasis();
+    private final RenderQueue mRenderQueue = new RenderQueue();
+    private final FrustumCuller mCuller = new FrustumCuller();
+    private int mSelectedHandle = AnchorTransformTable.NO_HANDLE;
+    // Unscaled bounding radius by model, 0 where the placeholder's applies.
+    private float[] mModelRadii = new float[0];
+
+    private final ForkJoinPool mPool;
+    private final ComposeTask[] mTasks;
+    private int mTasksForked;
+    private final Snapshot mFrame;
+
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private final float[] mProjectionMatrix = new float[16];
+    private final float[] mViewMatrix = new float[16];
+    private final float[] mCameraMatrix = new float[16];
+    private final float[] mOriginCameraMatrix = new float[16];
+    private final float[] mScrollTranslation = new float[2];
+    private final float[] mViewProjectionMatrix = new float[16];
+    private final float[] mInverseViewProjection = new float[16];
+    private final float[] mRayNear = new float[4];
+    private final float[] mRayFar = new float[4];
+    private final float[] mNdcPoint = new float[4];
+
+    /**
+     * @param capacity maximum number of objects placed at once
+     */
+    public SceneController(int capacity)
+    {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity maximum number of objects placed at once
+     * @param pool     runs frame preparation for larger scenes, or null to do everything on the
+     *                 calling thread
+     */
+    public SceneController(int capacity, ForkJoinPool pool)
+    {
+        mTransforms = new AnchorTransformTable(capacity);
+        mMatrixEngine = new ModelMatrixEngine(capacity);
+        mFrame = new Snapshot(capacity);
+        mPool = pool;
+        int tasks = pool != null ? Math.max(1, Math.min(pool.getParallelism(), capacity / MIN_TASK_SIZE)) : 0;
+        mTasks = new ComposeTask[tasks];
+        for (int t = 0; t < tasks; t++)
+        {
+            mTasks[t] = new ComposeTask();
+        }
+    }
+
+    public void setViewport(int width, int height)
+    {
+        mViewportWidth = width;
+        mViewportHeight = height;
+    }
+
+    /**
+     * Takes this frame's camera. Gestures applied before this call still pick with the previous
+     * frame's camera, which is the one the user saw when touching.
+     *
+     * @param projectionMatrix
+     * @param viewMatrix
+     * @param cameraMatrix     display oriented camera pose
+     */
+    public void setCamera(float[] projectionMatrix, float[] viewMatrix, float[] cameraMatrix)
+    {
+        System.arraycopy(projectionMatrix, 0, mProjectionMatrix, 0, 16);
+        System.arraycopy(viewMatrix, 0, mViewMatrix, 0, 16);
+        System.arraycopy(cameraMatrix, 0, mCameraMatrix, 0, 16);
+        mCameraBasis.publish(mCameraMatrix, mOriginCameraMatrix);
+    }
+
+    /**
+     * Sets the camera pose drags are measured against, normally the one an object was placed with.
+     *
+     * @param cameraMatrix
+     */
+    public void setOriginCamera(float[] cameraMatrix)
+    {
+        System.arraycopy(cameraMatrix, 0, mOriginCameraMatrix, 0, 16);
+    }
+
+    /**
+     * Sets the radius of a sphere around a model's origin that contains the whole model, which its
+     * objects are culled and picked with at their scale. Models without one are treated as the size
+     * of the placeholder. Must not be called between {@link #beginObjects(Anchors)} and
+     * {@link #finishObjects(RenderQueue.Backend)}.
+     *
+     * @param model
+     * @param radius unscaled radius, or 0 while the model is drawn as the placeholder
+     */
+    public void setModelRadius(int model, float radius)
+    {
+        if (model >= mModelRadii.length)
+        {
+            mModelRadii = Arrays.copyOf(mModelRadii, Math.max(model + 1, mModelRadii.length * 2));
+        }
+        mModelRadii[model] = radius;
+    }
+
+    private float modelRadius(int model)
+    {
+        float radius = model < mModelRadii.length ? mModelRadii[model] : 0;
+        return radius > 0 ? radius : PLACEHOLDER_BOUNDING_RADIUS;
+    }
+
+    /**
+     * @param model
+     * @param now   time of placement in milliseconds
+     * @return the handle of the new object, the table must not be full
+     */
+    public int add(int model, long now)
+    {
+        return mTransforms.add(model, now);
+    }
+
+    /**
+     * @param model
+     * @param now   time of placement in milliseconds
+     * @param x     anchor position in world space, where the object is until it is first drawn
+     * @param y
+     * @param z
+     * @return the handle of the new object, the table must not be full
+     */
+    public int add(int model, long now, float x, float y, float z)
+    {
+        return mTransforms.add(model, now, x, y, z);
+    }
+
+    /**
+     * Makes an object the target of the following gestures.
+     *
+     * @param handle
+     */
+    public void select(int handle)
+    {
+        mSelectedHandle = handle;
+    }
+
+    /**
+     * Drops an object. Other slots keep their data and index.
+     *
+     * @param slot
+     */
+    public void remove(int slot)
+    {
+        mSpatialIndex.remove(slot);
+        mTransforms.remove(mTransforms.handleOf(slot));
+    }
+
+    /**
+     * Applies the gestures folded into a batch to the selected object, or the most recently placed
+     * one if nothing was picked or the selection was evicted. A selection in the batch is resolved
+     * before the gestures are applied. Taps are left to the caller.
+     *
+     * @param batch
+     * @param now   current time in milliseconds
+     * @return the slot whose transform changed, or -1
+     */
+    public int applyGestures(GestureChannel.Batch batch, long now)
+    {
+        if (batch.hasSelect)
+        {
+            int picked = pick(batch.selectX, batch.selectY);
+            if (picked >= 0)
+            {
+                mSelectedHandle = mTransforms.handleOf(picked);
+            }
+        }
+        int handle = mTransforms.isValid(mSelectedHandle) ? mSelectedHandle : mTransforms.lastAdded();
+        if (!mTransforms.isValid(handle) || !(batch.hasScale || batch.hasRotation || batch.hasPan))
+        {
+            return -1;
+        }
+        int slot = AnchorTransformTable.slotOf(handle);
+        mTransforms.touch(slot, now);
+        if (batch.hasScale)
+        {
+            mTransforms.scale(slot, batch.scale);
+        }
+        if (batch.hasRotation)
+        {
+            mTransforms.rotate(slot, batch.rotation);
+        }
+        if (batch.hasPan)
+        {
+            mCameraBasis.toGround(batch.panX * DRAG_SPEED, batch.panY * DRAG_SPEED, mScrollTranslation);
+            mTransforms.translate(slot, mScrollTranslation[0], mScrollTranslation[1]);
+        }
+        return slot;
+    }
+
+    /**
+     * Casts a ray through a screen position with the last camera and returns the closest placed
+     * object it hits.
+     *
+     * @param x
+     * @param y
+     * @return the slot of the picked object, or -1
+     */
+    public int pick(float x, float y)
+    {
+        if (mViewportWidth == 0 || mViewportHeight == 0)
+        {
+            return -1;
+        }
+        TransformMath.multiply(mProjectionMatrix, mViewMatrix, mViewProjectionMatrix);
+        if (!TransformMath.invert(mViewProjectionMatrix, mInverseViewProjection))
+        {
+            return -1;
+        }
+        mNdcPoint[0] = 2.0f * x / mViewportWidth - 1.0f;
+        mNdcPoint[1] = 1.0f - 2.0f * y / mViewportHeight;
+        mNdcPoint[3] = 1.0f;
+        mNdcPoint[2] = -1.0f;
+        TransformMath.multiplyVector(mInverseViewProjection, mNdcPoint, mRayNear);
+        mNdcPoint[2] = 1.0f;
+        TransformMath.multiplyVector(mInverseViewProjection, mNdcPoint, mRayFar);
+
+        float ox = mRayNear[0] / mRayNear[3];
+        float oy = mRayNear[1] / mRayNear[3];
+        float oz = mRayNear[2] / mRayNear[3];
+        float dx = mRayFar[0] / mRayFar[3] - ox;
+        float dy = mRayFar[1] / mRayFar[3] - oy;
+        float dz = mRayFar[2] / mRayFar[3] - oz;
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return mSpatialIndex.pick(ox, oy, oz, dx / length, dy / length, dz / length, PICK_DISTANCE);
+    }
+
+    /**
+     * Positions every tracking object on its anchor, culls it against the camera set by
+     * {@link #setCamera(float[], float[], float[])} and draws the visible ones, one batch per model.
+     * Anchors reported as stopped are removed along the way.
+     *
+     * @param anchors
+     * @param backend
+     * @return the number of objects drawn
+     */
+    public int drawObjects(Anchors anchors, RenderQueue.Backend backend)
+    {
+        beginObjects(anchors);
+        return finishObjects(backend);
+    }
+
+    /**
+     * Reads the pose of every tracking object and starts composing model matrices and culling, on
+     * the pool if the scene is large enough. Anchors reported as stopped are removed here. Until
+     * {@link #finishObjects(RenderQueue.Backend)} the objects, their transforms and the camera
+     * must not be changed.
+     *
+     * @param anchors
+     */
+    public void beginObjects(Anchors anchors)
+    {
+        // A frame abandoned halfway may still have tasks writing the snapshot.
+        awaitTasks();
+        Snapshot frame = mFrame;
+        frame.composed = 0;
+        int count = 0;
+        for (int i = 0; i < mTransforms.size(); i++)
+        {
+            int ac = mTransforms.liveSlot(i);
+            int state = anchors.getPose(ac, frame.matrices, count * 16);
+            if (state == STOPPED)
+            {
+                // The last live slot moves into position i.
+                anchors.onStopped(ac);
+                i--;
+                continue;
+            }
+            if (state != TRACKING)
+            {
+                continue;
+            }
+            frame.slots[count] = ac;
+            frame.models[count] = mTransforms.getModelReference(ac);
+            frame.scales[count] = mTransforms.getScaleFactor(ac);
+            frame.radii[count] = modelRadius(frame.models[count]);
+            count++;
+        }
+        frame.count = count;
+        mCuller.beginFrame(mProjectionMatrix, mViewMatrix);
+
+        mTasksForked = 0;
+        if (mPool == null || count < PARALLEL_THRESHOLD)
+        {
+            frame.composed = compose(frame, 0, count);
+            return;
+        }
+        int tasks = Math.min(mTasks.length, (count + MIN_TASK_SIZE - 1) / MIN_TASK_SIZE);
+        for (int t = 0; t < tasks; t++)
+        {
+            ComposeTask task = mTasks[t];
+            task.reinitialize();
+            task.mFrom = count * t / tasks;
+            task.mTo = count * (t + 1) / tasks;
+            mPool.execute(task);
+        }
+        mTasksForked = tasks;
+    }
+
+    // Runs on pool threads, only touches its own range of the snapshot and of the engine's slots.
+    private int compose(Snapshot snapshot, int from, int to)
+    {
+        // The rotations, scaling, and translations factored in.
+        int composed = mMatrixEngine.update(mTransforms, snapshot.slots, snapshot.matrices, from, to);
+        float[] m = snapshot.matrices;
+        for (int k = from; k < to; k++)
+        {
+            int o = k * 16;
+            float radius = snapshot.radii[k] * snapshot.scales[k];
+            snapshot.radii[k] = radius;
+            snapshot.visible[k] = mCuller.isSphereInside(m[o + 12], m[o + 13], m[o + 14], radius);
+        }
+        return composed;
+    }
+
+    /**
+     * Waits for the work started by {@link #beginObjects(Anchors)}, updates the pick index and
+     * draws the visible objects, one batch per model.
+     *
+     * @param backend
+     * @return the number of objects drawn
+     */
+    public int finishObjects(RenderQueue.Backend backend)
+    {
+        awaitTasks();
+
+        Snapshot frame = mFrame;
+        float[] m = frame.matrices;
+        int drawn = 0;
+        mRenderQueue.clear();
+        for (int k = 0; k < frame.count; k++)
+        {
+            int ac = frame.slots[k];
+            int o = k * 16;
+            mSpatialIndex.update(ac, m[o + 12], m[o + 13], m[o + 14], frame.radii[k]);
+            mTransforms.setWorldPosition(ac, m[o + 12], m[o + 13], m[o + 14]);
+            // Only objects that may be on screen are submitted, already scaled.
+            if (frame.visible[k])
+            {
+                mRenderQueue.submit(frame.models[k], m, o, 1.0f);
+                drawn++;
+            }
+        }
+        mCuller.addCounts(drawn, frame.count - drawn);
+        mRenderQueue.flush(backend);
+        frame.drawn = drawn;
+        return drawn;
+    }
+
+    private void awaitTasks()
+    {
+        int forked = mTasksForked;
+        // Cleared up front, a failed task must not be joined and thrown again by every later frame.
+        mTasksForked = 0;
+        RuntimeException failure = null;
+        for (int t = 0; t < forked; t++)
+        {
+            // All of them are waited for, so none is still running when the next frame forks it.
+            try
+            {
+                mTasks[t].join();
+                mFrame.composed += mTasks[t].mComposed;
+            }
+            catch (RuntimeException e)
+            {
+                if (failure == null)
+                {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Waits for the work started by {@link #beginObjects(Anchors)} of a frame that will not be
+     * finished, e.g. because drawing it failed, so the objects and their transforms may be changed
+     * again. A failure of that work is dropped, the caller already deals with the frame's.
+     */
+    public void abandonObjects()
+    {
+        try
+        {
+            awaitTasks();
+        }
+        catch (RuntimeException e)
+        {
+            // The frame is dropped either way.
+        }
+    }
+
+    /**
+     * @return the objects as of the last finished frame, owned by the thread drawing them and only
+     *         valid until the next {@link #beginObjects(Anchors)}
+     */
+    public Snapshot getSnapshot()
+    {
+        return mFrame;
+    }
+
+    public AnchorTransformTable getTransforms()
+    {
+        return mTransforms;
+    }
+
+    public FrustumCuller getCuller()
+    {
+        return mCuller;
+    }
+
+    /**
+     * @return the camera pose of the last {@link #setCamera(float[], float[], float[])}
+     */
+    public float[] getCameraMatrix()
+    {
+        return mCameraMatrix;
+    }
+}
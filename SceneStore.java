@@ -0,0 +1,683 @@
+package com.your.package.here.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persists the placed objects of a scene: anchor pose, model and the user transform of each object.
+ * <p>
+ * The scene is stored as a binary snapshot, written column by column so it is read back with bulk
+ * copies, plus an append-only journal of the edits made since. The GL thread only appends small
+ * records to an in-memory staging buffer; a background thread appends them to the journal every
+ * {@link #FLUSH_INTERVAL_MS}, keeps an in-memory copy of the scene up to date and, once the journal
+ * grows past {@link #COMPACT_JOURNAL_BYTES}, writes a new snapshot and truncates the journal. Every
+ * record carries absolute values, so replaying a journal over a newer snapshot is harmless.
+ * <p>
+ * Objects are identified by a 64 bit id from {@link #nextId()}, unique across sessions.
+ * <p>
+ * A snapshot that cannot be read is moved aside to {@code scene.snapshot.bad} rather than being
+ * overwritten by the next compaction. A store opened on a directory whose previous store is still
+ * closing, as happens when the activity is recreated, waits on its own thread for that close to
+ * finish before reading.
+ * <p>
+ * Plain Java: failures and load times go to a {@link Listener}, which the activity logs, so the
+ * store runs in desktop tests as well.
+ */
+public class SceneStore
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final int POSE_SIZE = 7;
+
+    private static final int SNAPSHOT_MAGIC = 'S' | 'C' << 8 | 'N' << 16 | 'S' << 24;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long FLUSH_INTERVAL_MS = 500;
+    private static final long COMPACT_JOURNAL_BYTES = 256 * 1024;
+
+    private static final byte OP_PLACE = 1;
+    private static final byte OP_TRANSFORM = 2;
+    private static final byte OP_REMOVE = 3;
+    // Record header: payload length and op code.
+    private static final int RECORD_HEADER = 5;
+    private static final int TRANSFORM_PAYLOAD = 8 + 4 * 4;
+    // Id, model index, pose and transform of one object in a snapshot.
+    private static final int SNAPSHOT_OBJECT_BYTES = 8 + 4 + (POSE_SIZE + 4) * 4;
+
+    // Closes still writing, by directory.
+    private static final HashMap<File, Future<?>> sClosing = new HashMap<>();
+    // Shared by the stores of one process, which may be created within the same second.
+    private static final AtomicInteger sIdCounter = new AtomicInteger();
+
+    /**
+     * Hears from the store thread. Nothing is thrown at the caller, a store that cannot write keeps
+     * the scene in memory only.
+     */
+    public interface Listener
+    {
+        /**
+         * @param objects number of objects read back
+         * @param nanos   time taken to read the snapshot and journal
+         */
+        void onLoaded(int objects, long nanos);
+
+        void onError(String message, Exception e);
+    }
+
+    /**
+     * A scene read back from storage, as parallel columns. Poses are translation x, y, z followed by
+     * the rotation quaternion x, y, z, w.
+     */
+    public static class Scene
+    {
+        public final int count;
+        public final long[] ids;
+        public final int[] models;
+        public final float[] poses;
+        public final float[] scales;
+        public final float[] rotations;
+        public final float[] translationX;
+        public final float[] translationZ;
+        // Mesh and texture path of each model index.
+        public final String[] meshPaths;
+        public final String[] texturePaths;
+
+        Scene(int count, int modelCount)
+        {
+            this.count = count;
+            ids = new long[count];
+            models = new int[count];
+            poses = new float[count * POSE_SIZE];
+            scales = new float[count];
+            rotations = new float[count];
+            translationX = new float[count];
+            translationZ = new float[count];
+            meshPaths = new String[modelCount];
+            texturePaths = new String[modelCount];
+        }
+    }
+
+    // An object of the in-memory scene, only touched by the store thread.
+    private static class Record
+    {
+        String meshPath;
+        String texturePath;
+        final float[] pose = new float[POSE_SIZE];
+        float scale;
+        float rotation;
+        float translationX;
+        float translationZ;
+    }
+
+    private final Listener mListener;
+    private final File mDirectory;
+    private final File mSnapshotFile;
+    private final File mTempFile;
+    private final File mJournalFile;
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final long mSessionStamp = System.currentTimeMillis() / 1000;
+    private final AtomicReference<Scene> mRestored = new AtomicReference<>();
+
+    // Records appended by the GL thread, swapped out by the store thread.
+    private final Object mLock = new Object();
+    private ByteBuffer mStaging = allocate(4096);
+    private ByteBuffer mSpare = allocate(4096);
+
+    // Store thread state
+    private final LinkedHashMap<Long, Record> mScene = new LinkedHashMap<>();
+    private RandomAccessFile mJournal;
+
+    /**
+     * @param directory where the snapshot and journal live, created if needed
+     * @param listener
+     */
+    public SceneStore(File directory, Listener listener)
+    {
+        mListener = listener;
+        directory.mkdirs();
+        mDirectory = directory.getAbsoluteFile();
+        mSnapshotFile = new File(directory, "scene.snapshot");
+        mTempFile = new File(directory, "scene.snapshot.tmp");
+        mJournalFile = new File(directory, "scene.journal");
+    }
+
+    /**
+     * Reads the stored scene in the background and starts the periodic journal writes. The scene
+     * becomes available through {@link #takeRestoredScene()}.
+     */
+    public void open()
+    {
+        mExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                load();
+            }
+        });
+        mExecutor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                flush();
+            }
+        }, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the scene read by {@link #open()} the first time it is called after loading finished,
+     * null before that and afterwards
+     */
+    public Scene takeRestoredScene()
+    {
+        return mRestored.getAndSet(null);
+    }
+
+    public long nextId()
+    {
+        return mSessionStamp << 32 | (sIdCounter.incrementAndGet() & 0xffffffffL);
+    }
+
+    // GL thread, appends to the staging buffer only
+
+    /**
+     * Records a newly placed object.
+     *
+     * @param pose translation followed by rotation quaternion, {@link #POSE_SIZE} floats
+     */
+    public void recordPlace(long id, String meshPath, String texturePath, float[] pose,
+                            float scale, float rotation, float translationX, float translationZ)
+    {
+        byte[] mesh = meshPath.getBytes(UTF_8);
+        byte[] texture = texturePath.getBytes(UTF_8);
+        int payload = 8 + 2 + mesh.length + 2 + texture.length + (POSE_SIZE + 4) * 4;
+        synchronized (mLock)
+        {
+            ByteBuffer out = reserve(RECORD_HEADER + payload);
+            out.putInt(payload).put(OP_PLACE).putLong(id);
+            out.putShort((short) mesh.length).put(mesh);
+            out.putShort((short) texture.length).put(texture);
+            for (int i = 0; i < POSE_SIZE; i++)
+            {
+                out.putFloat(pose[i]);
+            }
+            out.putFloat(scale).putFloat(rotation).putFloat(translationX).putFloat(translationZ);
+        }
+    }
+
+    public void recordTransform(long id, float scale, float rotation, float translationX, float translationZ)
+    {
+        synchronized (mLock)
+        {
+            ByteBuffer out = reserve(RECORD_HEADER + TRANSFORM_PAYLOAD);
+            out.putInt(TRANSFORM_PAYLOAD).put(OP_TRANSFORM).putLong(id);
+            out.putFloat(scale).putFloat(rotation).putFloat(translationX).putFloat(translationZ);
+        }
+    }
+
+    public void recordRemove(long id)
+    {
+        synchronized (mLock)
+        {
+            reserve(RECORD_HEADER + 8).putInt(8).put(OP_REMOVE).putLong(id);
+        }
+    }
+
+    private ByteBuffer reserve(int size)
+    {
+        if (mStaging.remaining() < size)
+        {
+            ByteBuffer grown = allocate(Math.max(mStaging.capacity() * 2, mStaging.position() + size));
+            mStaging.flip();
+            grown.put(mStaging);
+            mStaging = grown;
+        }
+        return mStaging;
+    }
+
+    private static ByteBuffer allocate(int capacity)
+    {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the pending records soon, without waiting for the next periodic flush. Call when the
+     * app goes to the background.
+     */
+    public void flushSoon()
+    {
+        mExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Writes the pending records, compacts the journal into the snapshot and stops the store
+     * thread. Records made afterwards are dropped. Returns right away, a store opened on the same
+     * directory meanwhile waits for the close to finish.
+     */
+    public void close()
+    {
+        Future<?> closing = mExecutor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                flush();
+                try
+                {
+                    compact();
+                    if (mJournal != null)
+                    {
+                        mJournal.close();
+                    }
+                }
+                catch (IOException e)
+                {
+                    mListener.onError("Failed to compact scene", e);
+                }
+            }
+        });
+        synchronized (sClosing)
+        {
+            sClosing.put(mDirectory, closing);
+        }
+        mExecutor.shutdown();
+    }
+
+    // Store thread
+
+    private void load()
+    {
+        awaitPreviousClose();
+        long start = System.nanoTime();
+        if (mSnapshotFile.exists())
+        {
+            try
+            {
+                readSnapshot();
+            }
+            catch (IOException e)
+            {
+                setSnapshotAside(e);
+            }
+            catch (RuntimeException e)
+            {
+                // A corrupt file runs the reads past the end or indexes outside the columns.
+                setSnapshotAside(e);
+            }
+        }
+        try
+        {
+            // Opened whatever became of the snapshot, so this session's edits are kept.
+            mJournal = new RandomAccessFile(mJournalFile, "rw");
+            FileChannel channel = mJournal.getChannel();
+            long length = channel.size();
+            long valid = 0;
+            if (length > 0)
+            {
+                valid = apply(channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN));
+            }
+            // A record cut short by a crash is dropped so new records start on a boundary.
+            channel.truncate(valid);
+            channel.position(valid);
+        }
+        catch (IOException e)
+        {
+            mListener.onError("Failed to read scene journal", e);
+        }
+        mRestored.set(toScene());
+        mListener.onLoaded(mScene.size(), System.nanoTime() - start);
+    }
+
+    private void awaitPreviousClose()
+    {
+        Future<?> closing;
+        synchronized (sClosing)
+        {
+            closing = sClosing.remove(mDirectory);
+        }
+        if (closing == null)
+        {
+            return;
+        }
+        try
+        {
+            closing.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            mListener.onError("Previous scene store failed to close", e);
+        }
+    }
+
+    // Keeps an unreadable snapshot for inspection, the next compaction would overwrite it.
+    private void setSnapshotAside(Exception e)
+    {
+        mListener.onError("Failed to read scene snapshot, moving it aside", e);
+        mScene.clear();
+        File bad = new File(mDirectory, "scene.snapshot.bad");
+        bad.delete();
+        if (!mSnapshotFile.renameTo(bad))
+        {
+            mListener.onError("Could not move aside " + mSnapshotFile, null);
+        }
+    }
+
+    private void flush()
+    {
+        ByteBuffer pending;
+        synchronized (mLock)
+        {
+            if (mStaging.position() == 0)
+            {
+                return;
+            }
+            pending = mStaging;
+            mStaging = mSpare;
+        }
+        pending.flip();
+        try
+        {
+            apply(pending.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+            if (mJournal != null)
+            {
+                FileChannel channel = mJournal.getChannel();
+                while (pending.hasRemaining())
+                {
+                    channel.write(pending);
+                }
+                if (channel.size() > COMPACT_JOURNAL_BYTES)
+                {
+                    compact();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            mListener.onError("Failed to write scene journal", e);
+        }
+        pending.clear();
+        synchronized (mLock)
+        {
+            mSpare = pending;
+        }
+    }
+
+    /**
+     * Applies journal records to the in-memory scene, up to the first one that is cut short or
+     * does not parse.
+     *
+     * @return the position after the last complete record
+     */
+    private long apply(ByteBuffer records)
+    {
+        int end = records.limit();
+        while (records.remaining() >= RECORD_HEADER)
+        {
+            int start = records.position();
+            int payload = records.getInt();
+            byte op = records.get();
+            if (payload < 0 || records.remaining() < payload)
+            {
+                return start;
+            }
+            // Reads of a damaged record stop at its end.
+            records.limit(start + RECORD_HEADER + payload);
+            try
+            {
+                applyRecord(records, op);
+            }
+            catch (BufferUnderflowException e)
+            {
+                records.limit(end);
+                return start;
+            }
+            records.limit(end);
+            records.position(start + RECORD_HEADER + payload);
+        }
+        return records.position();
+    }
+
+    private void applyRecord(ByteBuffer records, byte op)
+    {
+        long id = records.getLong();
+        Record record;
+        switch (op)
+        {
+            case OP_PLACE:
+                record = new Record();
+                record.meshPath = getString(records);
+                record.texturePath = getString(records);
+                for (int i = 0; i < POSE_SIZE; i++)
+                {
+                    record.pose[i] = records.getFloat();
+                }
+                readTransform(records, record);
+                mScene.put(id, record);
+                break;
+            case OP_TRANSFORM:
+                record = mScene.get(id);
+                if (record != null)
+                {
+                    readTransform(records, record);
+                }
+                break;
+            case OP_REMOVE:
+                mScene.remove(id);
+                break;
+        }
+    }
+
+    private static void readTransform(ByteBuffer in, Record record)
+    {
+        record.scale = in.getFloat();
+        record.rotation = in.getFloat();
+        record.translationX = in.getFloat();
+        record.translationZ = in.getFloat();
+    }
+
+    private static String getString(ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getShort() & 0xffff];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes)
+    {
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    private Scene toScene()
+    {
+        // Models are stored once and referenced by index.
+        HashMap<String, Integer> modelIndexes = new HashMap<>();
+        ArrayList<Record> modelRecords = new ArrayList<>();
+        for (Record record : mScene.values())
+        {
+            String key = record.meshPath + '\u0000' + record.texturePath;
+            if (!modelIndexes.containsKey(key))
+            {
+                modelIndexes.put(key, modelRecords.size());
+                modelRecords.add(record);
+            }
+        }
+        Scene scene = new Scene(mScene.size(), modelRecords.size());
+        for (int m = 0; m < modelRecords.size(); m++)
+        {
+            scene.meshPaths[m] = modelRecords.get(m).meshPath;
+            scene.texturePaths[m] = modelRecords.get(m).texturePath;
+        }
+        int i = 0;
+        for (Map.Entry<Long, Record> entry : mScene.entrySet())
+        {
+            Record record = entry.getValue();
+            scene.ids[i] = entry.getKey();
+            scene.models[i] = modelIndexes.get(record.meshPath + '\u0000' + record.texturePath);
+            System.arraycopy(record.pose, 0, scene.poses, i * POSE_SIZE, POSE_SIZE);
+            scene.scales[i] = record.scale;
+            scene.rotations[i] = record.rotation;
+            scene.translationX[i] = record.translationX;
+            scene.translationZ[i] = record.translationZ;
+            i++;
+        }
+        return scene;
+    }
+
+    /*
+     * Snapshot layout, little endian: magic, version, model count, then per model the mesh and
+     * texture path (16 bit length and UTF-8 bytes), object count, then one column after the other:
+     * ids, model indexes, poses, scales, rotations, translation x, translation z.
+     */
+    private void readSnapshot() throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(mSnapshotFile, "r");
+        ByteBuffer in;
+        try
+        {
+            in = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        finally
+        {
+            file.close();
+        }
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION)
+        {
+            throw new IOException("Unsupported scene snapshot");
+        }
+        int modelCount = in.getInt();
+        // Every model takes at least its two string lengths.
+        if (modelCount < 0 || modelCount > in.remaining() / 4)
+        {
+            throw new IOException("Corrupt scene snapshot, " + modelCount + " models");
+        }
+        String[] meshPaths = new String[modelCount];
+        String[] texturePaths = new String[modelCount];
+        for (int m = 0; m < modelCount; m++)
+        {
+            meshPaths[m] = getString(in);
+            texturePaths[m] = getString(in);
+        }
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / SNAPSHOT_OBJECT_BYTES)
+        {
+            throw new IOException("Corrupt scene snapshot, " + count + " objects");
+        }
+        Scene scene = new Scene(count, 0);
+        in.asLongBuffer().get(scene.ids);
+        in.position(in.position() + count * 8);
+        in.asIntBuffer().get(scene.models);
+        in.position(in.position() + count * 4);
+        float[][] columns = {scene.poses, scene.scales, scene.rotations, scene.translationX, scene.translationZ};
+        for (float[] column : columns)
+        {
+            in.asFloatBuffer().get(column);
+            in.position(in.position() + column.length * 4);
+        }
+        for (int i = 0; i < count; i++)
+        {
+            if (scene.models[i] < 0 || scene.models[i] >= modelCount)
+            {
+                throw new IOException("Corrupt scene snapshot, model " + scene.models[i]);
+            }
+        }
+        for (int i = 0; i < count; i++)
+        {
+            Record record = new Record();
+            record.meshPath = meshPaths[scene.models[i]];
+            record.texturePath = texturePaths[scene.models[i]];
+            System.arraycopy(scene.poses, i * POSE_SIZE, record.pose, 0, POSE_SIZE);
+            record.scale = scene.scales[i];
+            record.rotation = scene.rotations[i];
+            record.translationX = scene.translationX[i];
+            record.translationZ = scene.translationZ[i];
+            mScene.put(scene.ids[i], record);
+        }
+    }
+
+    private void compact() throws IOException
+    {
+        Scene scene = toScene();
+        int size = 16;
+        byte[][] strings = new byte[scene.meshPaths.length * 2][];
+        for (int m = 0; m < scene.meshPaths.length; m++)
+        {
+            strings[m * 2] = scene.meshPaths[m].getBytes(UTF_8);
+            strings[m * 2 + 1] = scene.texturePaths[m].getBytes(UTF_8);
+            size += 4 + strings[m * 2].length + strings[m * 2 + 1].length;
+        }
+        size += scene.count * (8 + 4 + (POSE_SIZE + 4) * 4);
+
+        ByteBuffer out = allocate(size);
+        out.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(scene.meshPaths.length);
+        for (byte[] string : strings)
+        {
+            putString(out, string);
+        }
+        out.putInt(scene.count);
+        out.asLongBuffer().put(scene.ids);
+        out.position(out.position() + scene.count * 8);
+        out.asIntBuffer().put(scene.models);
+        out.position(out.position() + scene.count * 4);
+        float[][] columns = {scene.poses, scene.scales, scene.rotations, scene.translationX, scene.translationZ};
+        for (float[] column : columns)
+        {
+            out.asFloatBuffer().put(column);
+            out.position(out.position() + column.length * 4);
+        }
+        out.flip();
+
+        // The snapshot replaces the old one atomically, only then is the journal emptied.
+        RandomAccessFile file = new RandomAccessFile(mTempFile, "rw");
+        try
+        {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            while (out.hasRemaining())
+            {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        finally
+        {
+            file.close();
+        }
+        if (!mTempFile.renameTo(mSnapshotFile))
+        {
+            throw new IOException("Could not replace " + mSnapshotFile);
+        }
+        if (mJournal != null)
+        {
+            mJournal.getChannel().truncate(0);
+            mJournal.getChannel().position(0);
+        }
+    }
+}
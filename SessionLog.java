@@ -0,0 +1,331 @@
+package com.your.package.here;
+
+import com.your.package.here.view.MultiTouchRecognizer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact binary log of what an AR session fed into the scene: camera matrices per frame, plane
+ * snapshots, hit test results and raw touch streams. Replaying it drives the gesture, transform and
+ * render queue code without a device or ARCore, see {@code tools/SessionReplay}.
+ * <p>
+ * The file starts with the magic "ARSL" and a version, followed by records of a type byte, a
+ * payload length int and the payload. All values are little endian. Records are written in the
+ * order they happened across threads, so touches land between the frames that drained them.
+ * <pre>
+ * FRAME   long uptime ms, byte tracking state, int viewport width, height,
+ *         float[16] projection, float[16] view, float[16] display oriented camera pose
+ * PLANES  int count, per plane: byte type, byte tracking state, float[7] center pose,
+ *         float extent x, extent z
+ * HIT     float x, y, byte hit, float[7] pose of the anchor if hit
+ * TOUCH   long event time ms, byte action, byte action index, byte pointer count,
+ *         per pointer: int id, float x, float y
+ * </pre>
+ * Poses are tx, ty, tz, qx, qy, qz, qw and tracking states are the {@link SceneController} ones.
+ */
+public final class SessionLog
+{
+    public static final int MAGIC = 'A' | 'R' << 8 | 'S' << 16 | 'L' << 24;
+    public static final int VERSION = 1;
+
+    public static final int FRAME = 1;
+    public static final int PLANES = 2;
+    public static final int HIT = 3;
+    public static final int TOUCH = 4;
+
+    public static final int POSE_SIZE = 7;
+    public static final int MAX_POINTERS = MultiTouchRecognizer.MAX_POINTERS;
+    public static final int MAX_PLANES = 256;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 5;
+
+    private SessionLog()
+    {
+    }
+
+    /**
+     * Appends records to a file. Every method may be called from any thread; records are staged in
+     * memory and written out whenever the staging buffer fills up and on {@link #close()}.
+     */
+    public static class Recorder
+    {
+        private static final int STAGING_SIZE = 256 * 1024;
+
+        private final FileChannel mChannel;
+        private final ByteBuffer mStaging = ByteBuffer.allocateDirect(STAGING_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long mBytesWritten;
+
+        /**
+         * @param channel empty, writable file
+         */
+        public Recorder(FileChannel channel) throws IOException
+        {
+            mChannel = channel;
+            mStaging.putInt(MAGIC).putInt(VERSION);
+            flush();
+        }
+
+        public synchronized void frame(long uptime, int trackingState, int viewportWidth, int viewportHeight,
+                                       float[] projection, float[] view, float[] camera) throws IOException
+        {
+            begin(FRAME, 8 + 1 + 8 + 3 * 16 * 4);
+            mStaging.putLong(uptime).put((byte) trackingState).putInt(viewportWidth).putInt(viewportHeight);
+            putFloats(projection, 16);
+            putFloats(view, 16);
+            putFloats(camera, 16);
+        }
+
+        /**
+         * @param count         number of planes, snapshots are capped at {@link #MAX_PLANES}
+         * @param types
+         * @param trackingStates
+         * @param poses         center pose per plane
+         * @param extents       extent x and z per plane
+         */
+        public synchronized void planes(int count, int[] types, int[] trackingStates, float[] poses,
+                                        float[] extents) throws IOException
+        {
+            count = Math.min(count, MAX_PLANES);
+            begin(PLANES, 4 + count * (2 + (POSE_SIZE + 2) * 4));
+            mStaging.putInt(count);
+            for (int i = 0; i < count; i++)
+            {
+                mStaging.put((byte) types[i]).put((byte) trackingStates[i]);
+                for (int p = 0; p < POSE_SIZE; p++)
+                {
+                    mStaging.putFloat(poses[i * POSE_SIZE + p]);
+                }
+                mStaging.putFloat(extents[i * 2]).putFloat(extents[i * 2 + 1]);
+            }
+        }
+
+        /**
+         * @param x
+         * @param y
+         * @param pose pose of the created anchor, or null if the tap hit nothing
+         */
+        public synchronized void hit(float x, float y, float[] pose) throws IOException
+        {
+            begin(HIT, 4 + 4 + 1 + POSE_SIZE * 4);
+            mStaging.putFloat(x).putFloat(y).put((byte) (pose != null ? 1 : 0));
+            for (int i = 0; i < POSE_SIZE; i++)
+            {
+                mStaging.putFloat(pose != null ? pose[i] : 0);
+            }
+        }
+
+        /**
+         * @param eventTime
+         * @param action       masked action
+         * @param actionIndex
+         * @param pointerCount
+         * @param ids          pointer ids
+         * @param x
+         * @param y
+         */
+        public synchronized void touch(long eventTime, int action, int actionIndex, int pointerCount,
+                                       int[] ids, float[] x, float[] y) throws IOException
+        {
+            int count = Math.min(pointerCount, MAX_POINTERS);
+            begin(TOUCH, 8 + 3 + count * 12);
+            mStaging.putLong(eventTime).put((byte) action).put((byte) actionIndex).put((byte) count);
+            for (int i = 0; i < count; i++)
+            {
+                mStaging.putInt(ids[i]).putFloat(x[i]).putFloat(y[i]);
+            }
+        }
+
+        public synchronized long getBytesWritten()
+        {
+            return mBytesWritten + mStaging.position();
+        }
+
+        /**
+         * Writes out what is staged and closes the file.
+         */
+        public synchronized void close() throws IOException
+        {
+            flush();
+            mChannel.force(false);
+            mChannel.close();
+        }
+
+        private void begin(int type, int length) throws IOException
+        {
+            if (mStaging.remaining() < RECORD_HEADER_SIZE + length)
+            {
+                flush();
+            }
+            mStaging.put((byte) type).putInt(length);
+        }
+
+        private void putFloats(float[] values, int count)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                mStaging.putFloat(values[i]);
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            mStaging.flip();
+            while (mStaging.hasRemaining())
+            {
+                mBytesWritten += mChannel.write(mStaging);
+            }
+            mStaging.clear();
+        }
+    }
+
+    /**
+     * Walks the records of a log held in a buffer, typically a mapped file. The fields of the
+     * current record are reused from record to record, so reading does not allocate.
+     */
+    public static class Reader
+    {
+        private final ByteBuffer mLog;
+
+        public int type;
+
+        // FRAME
+        public long uptime;
+        public int trackingState;
+        public int viewportWidth;
+        public int viewportHeight;
+        public final float[] projection = new float[16];
+        public final float[] view = new float[16];
+        public final float[] camera = new float[16];
+
+        // PLANES
+        public int planeCount;
+        public final int[] planeTypes = new int[MAX_PLANES];
+        public final int[] planeTrackingStates = new int[MAX_PLANES];
+        public final float[] planePoses = new float[MAX_PLANES * POSE_SIZE];
+        public final float[] planeExtents = new float[MAX_PLANES * 2];
+
+        // HIT
+        public float hitX;
+        public float hitY;
+        public boolean hit;
+        public final float[] hitPose = new float[POSE_SIZE];
+
+        // TOUCH
+        public long eventTime;
+        public int action;
+        public int actionIndex;
+        public int pointerCount;
+        public final int[] pointerIds = new int[MAX_POINTERS];
+        public final float[] pointerX = new float[MAX_POINTERS];
+        public final float[] pointerY = new float[MAX_POINTERS];
+
+        /**
+         * @param log whole log from position 0
+         * @throws IOException if it is not a supported session log
+         */
+        public Reader(ByteBuffer log) throws IOException
+        {
+            mLog = log.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            if (mLog.remaining() < HEADER_SIZE || mLog.getInt() != MAGIC)
+            {
+                throw new IOException("Not a session log");
+            }
+            int version = mLog.getInt();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported session log version " + version);
+            }
+        }
+
+        /**
+         * Moves back to the first record.
+         */
+        public void rewind()
+        {
+            mLog.position(HEADER_SIZE);
+        }
+
+        /**
+         * Reads the next record into the public fields. Unknown record types are skipped, a record
+         * cut off at the end of the log ends it.
+         *
+         * @return false at the end of the log
+         */
+        public boolean next()
+        {
+            while (mLog.remaining() >= RECORD_HEADER_SIZE)
+            {
+                int recordType = mLog.get();
+                int length = mLog.getInt();
+                if (length < 0 || length > mLog.remaining())
+                {
+                    mLog.position(mLog.limit());
+                    return false;
+                }
+                int end = mLog.position() + length;
+                type = recordType;
+                switch (recordType)
+                {
+                    case FRAME:
+                        uptime = mLog.getLong();
+                        trackingState = mLog.get();
+                        viewportWidth = mLog.getInt();
+                        viewportHeight = mLog.getInt();
+                        getFloats(projection, 16);
+                        getFloats(view, 16);
+                        getFloats(camera, 16);
+                        break;
+                    case PLANES:
+                        planeCount = Math.min(mLog.getInt(), MAX_PLANES);
+                        for (int i = 0; i < planeCount; i++)
+                        {
+                            planeTypes[i] = mLog.get();
+                            planeTrackingStates[i] = mLog.get();
+                            for (int p = 0; p < POSE_SIZE; p++)
+                            {
+                                planePoses[i * POSE_SIZE + p] = mLog.getFloat();
+                            }
+                            planeExtents[i * 2] = mLog.getFloat();
+                            planeExtents[i * 2 + 1] = mLog.getFloat();
+                        }
+                        break;
+                    case HIT:
+                        hitX = mLog.getFloat();
+                        hitY = mLog.getFloat();
+                        hit = mLog.get() != 0;
+                        getFloats(hitPose, POSE_SIZE);
+                        break;
+                    case TOUCH:
+                        eventTime = mLog.getLong();
+                        action = mLog.get();
+                        actionIndex = mLog.get();
+                        pointerCount = Math.min(mLog.get(), MAX_POINTERS);
+                        for (int i = 0; i < pointerCount; i++)
+                        {
+                            pointerIds[i] = mLog.getInt();
+                            pointerX[i] = mLog.getFloat();
+                            pointerY[i] = mLog.getFloat();
+                        }
+                        break;
+                    default:
+                        mLog.position(end);
+                        continue;
+                }
+                mLog.position(end);
+                return true;
+            }
+            return false;
+        }
+
+        private void getFloats(float[] values, int count)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                values[i] = mLog.getFloat();
+            }
+        }
+    }
+}
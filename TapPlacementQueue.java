@@ -0,0 +1,155 @@
+package com.your.package.here;
+
+/**
+ * Holds the taps waiting to be turned into anchors and places as many of them as fit into a time
+ * budget each frame. Taps landing within {@link #getDedupeRadius()} pixels of a tap that is already
+ * waiting are dropped as duplicates. Taps that do not fit into this frame's budget stay queued, in
+ * order, for the next one. The time from each tap to its placement is recorded in a
+ * {@link LatencyHistogram}.
+ */
+public class TapPlacementQueue
+{
+    /**
+     * Performs the actual placement of a single tap, typically a hit test plus anchor creation.
+     */
+    public interface Placer
+    {
+        /**
+         * @return true if an object was placed for the tap
+         */
+        boolean place(float x, float y);
+    }
+
+    private final float[] mX;
+    private final float[] mY;
+    private final long[] mEventTimes;
+    private final float mDedupeRadiusSquared;
+    private final float mDedupeRadius;
+    private final long mBudgetNanos;
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+    private int mCount;
+    private long mDuplicates;
+    private long mOverflows;
+
+    /**
+     * @param capacity      maximum number of taps kept waiting
+     * @param dedupeRadius  distance in pixels under which a new tap counts as a duplicate
+     * @param budgetNanos   time a frame may spend placing taps
+     */
+    public TapPlacementQueue(int capacity, float dedupeRadius, long budgetNanos)
+    {
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mEventTimes = new long[capacity];
+        mDedupeRadius = dedupeRadius;
+        mDedupeRadiusSquared = dedupeRadius * dedupeRadius;
+        mBudgetNanos = budgetNanos;
+    }
+
+    /**
+     * Queues a tap unless a waiting tap is close enough to be the same placement.
+     *
+     * @param x
+     * @param y
+     * @param eventTime event time in milliseconds, on the same clock as the one passed to
+     *                  {@link #placePending(Placer, long)}
+     * @return true if the tap was queued
+     */
+    public boolean add(float x, float y, long eventTime)
+    {
+        for (int i = 0; i < mCount; i++)
+        {
+            float dx = mX[i] - x;
+            float dy = mY[i] - y;
+            if (dx * dx + dy * dy <= mDedupeRadiusSquared)
+            {
+                mDuplicates++;
+                return false;
+            }
+        }
+        if (mCount == mX.length)
+        {
+            mOverflows++;
+            return false;
+        }
+        mX[mCount] = x;
+        mY[mCount] = y;
+        mEventTimes[mCount] = eventTime;
+        mCount++;
+        return true;
+    }
+
+    /**
+     * Places waiting taps in arrival order until the queue is empty or the frame budget is spent.
+     * At least one tap is placed per call so a slow hit test cannot stall placement entirely.
+     *
+     * @param placer
+     * @param nowMillis current time on the clock of the tap event times, the time placement starts;
+     *                  the latency of each tap is taken when its own placement returns
+     * @return the number of taps taken off the queue
+     */
+    public int placePending(Placer placer, long nowMillis)
+    {
+        long start = System.nanoTime();
+        int processed = 0;
+        while (processed < mCount)
+        {
+            boolean placed = placer.place(mX[processed], mY[processed]);
+            long elapsed = System.nanoTime() - start;
+            if (placed)
+            {
+                mLatency.record((nowMillis - mEventTimes[processed]) * 1000000L + elapsed);
+            }
+            processed++;
+            if (elapsed > mBudgetNanos)
+            {
+                break;
+            }
+        }
+        int remaining = mCount - processed;
+        System.arraycopy(mX, processed, mX, 0, remaining);
+        System.arraycopy(mY, processed, mY, 0, remaining);
+        System.arraycopy(mEventTimes, processed, mEventTimes, 0, remaining);
+        mCount = remaining;
+        return processed;
+    }
+
+    /**
+     * Drops every waiting tap, used when the camera is not tracking and taps cannot be placed.
+     */
+    public void clear()
+    {
+        mCount = 0;
+    }
+
+    public int size()
+    {
+        return mCount;
+    }
+
+    public float getDedupeRadius()
+    {
+        return mDedupeRadius;
+    }
+
+    /**
+     * @return time from tap to placement, for every tap that produced an object
+     */
+    public LatencyHistogram getPlacementLatency()
+    {
+        return mLatency;
+    }
+
+    public long getDuplicateCount()
+    {
+        return mDuplicates;
+    }
+
+    /**
+     * @return taps refused because the queue already held its capacity of taps
+     */
+    public long getOverflowCount()
+    {
+        return mOverflows;
+    }
+}
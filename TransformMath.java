@@ -0,0 +1,233 @@
+package com.your.package.here.rendering;
+
+import com.your.package.here.FastMath;
+
+/**
+ * Column-major 4x4 matrix helpers used to place virtual objects on their anchors. They mirror the
+ * {@code android.opengl.Matrix} operations the activity used, but are plain Java so they can be run
+ * and benchmarked off device.
+ */
+public final class TransformMath
+{
+    private TransformMath()
+    {
+    }
+
+    /**
+     * Translates the matrix in place by a given distance on all 3 axes, equivalent to
+     * {@code Matrix.translateM(m, offset, x, y, z)}.
+     *
+     * @param m
+     * @param offset
+     * @param x
+     * @param y
+     * @param z
+     */
+    public static void translate(float[] m, int offset, float x, float y, float z)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            int mi = offset + i;
+            m[12 + mi] += m[mi] * x + m[4 + mi] * y + m[8 + mi] * z;
+        }
+    }
+
+    /**
+     * Scales the upper 3x3 of the matrix in place, equivalent to multiplying it on the right by a
+     * uniform scale matrix.
+     *
+     * @param m
+     * @param offset
+     * @param scale
+     */
+    public static void scale(float[] m, int offset, float scale)
+    {
+        for (int i = 0; i < 12; i++)
+        {
+            m[offset + i] *= scale;
+        }
+    }
+
+    /**
+     * Builds the model matrix of a placed object from its anchor pose and user transform: the pose
+     * times a translation on the ground plane, a Y rotation and a uniform scale, so the anchor's own
+     * orientation is kept. The product is written out directly, a column of the result only mixes
+     * the pose columns, which keeps it to a short unit-stride loop without temporaries.
+     *
+     * @param poseMatrix  anchor pose matrix
+     * @param poseOffset
+     * @param translationX
+     * @param translationZ
+     * @param rotationTheta
+     * @param scale
+     * @param out         receives the model matrix, may be the pose matrix itself
+     * @param outOffset
+     */
+    public static void composeModelMatrix(float[] poseMatrix, int poseOffset,
+                                          float translationX, float translationZ, float rotationTheta, float scale,
+                                          float[] out, int outOffset)
+    {
+        composeModelMatrix(poseMatrix, poseOffset, translationX, translationZ,
+                FastMath.cos(rotationTheta) * scale, FastMath.sin(rotationTheta) * scale, scale, out, outOffset);
+    }
+
+    /**
+     * {@link #composeModelMatrix(float[], int, float, float, float, float, float[], int)} with the
+     * sine and cosine of the rotation already worked out, for callers that keep them while only
+     * the pose changes.
+     *
+     * @param poseMatrix   anchor pose matrix
+     * @param poseOffset
+     * @param translationX
+     * @param translationZ
+     * @param scaledCos    cosine of the rotation times the scale
+     * @param scaledSin    sine of the rotation times the scale
+     * @param scale
+     * @param out          receives the model matrix, may be the pose matrix itself
+     * @param outOffset
+     */
+    public static void composeModelMatrix(float[] poseMatrix, int poseOffset,
+                                          float translationX, float translationZ,
+                                          float scaledCos, float scaledSin, float scale,
+                                          float[] out, int outOffset)
+    {
+        // Columns of T * Ry * S: (c, 0, s, 0) k, (0, 1, 0, 0) k, (-s, 0, c, 0) k, (tx, 0, tz, 1),
+        // with the rotation in the sense the objects have always been turned in.
+        for (int row = 0; row < 4; row++)
+        {
+            // Each row is read in full before it is written, so out may alias the pose.
+            float x = poseMatrix[poseOffset + row];
+            float y = poseMatrix[poseOffset + 4 + row];
+            float z = poseMatrix[poseOffset + 8 + row];
+            float w = poseMatrix[poseOffset + 12 + row];
+            out[outOffset + row] = scaledCos * x + scaledSin * z;
+            out[outOffset + 4 + row] = scale * y;
+            out[outOffset + 8 + row] = scaledCos * z - scaledSin * x;
+            out[outOffset + 12 + row] = w + translationX * x + translationZ * z;
+        }
+    }
+
+    /**
+     * Multiplies two matrices, equivalent to {@code Matrix.multiplyMM(out, 0, lhs, 0, rhs, 0)}.
+     *
+     * @param lhs
+     * @param rhs
+     * @param out receives lhs * rhs, must not be either input
+     */
+    public static void multiply(float[] lhs, float[] rhs, float[] out)
+    {
+        for (int column = 0; column < 4; column++)
+        {
+            for (int row = 0; row < 4; row++)
+            {
+                out[column * 4 + row] = lhs[row] * rhs[column * 4]
+                        + lhs[4 + row] * rhs[column * 4 + 1]
+                        + lhs[8 + row] * rhs[column * 4 + 2]
+                        + lhs[12 + row] * rhs[column * 4 + 3];
+            }
+        }
+    }
+
+    /**
+     * Multiplies a matrix with a 4 component vector, equivalent to {@code Matrix.multiplyMV}.
+     *
+     * @param m
+     * @param v
+     * @param out receives m * v, must not be v
+     */
+    public static void multiplyVector(float[] m, float[] v, float[] out)
+    {
+        for (int row = 0; row < 4; row++)
+        {
+            out[row] = m[row] * v[0] + m[4 + row] * v[1] + m[8 + row] * v[2] + m[12 + row] * v[3];
+        }
+    }
+
+    /**
+     * Inverts a general matrix through its cofactors, equivalent to {@code Matrix.invertM}.
+     *
+     * @param m
+     * @param out receives the inverse, must not be m
+     * @return false if the matrix is singular, out is then undefined
+     */
+    public static boolean invert(float[] m, float[] out)
+    {
+        out[0] = m[5] * m[10] * m[15] - m[5] * m[11] * m[14] - m[9] * m[6] * m[15]
+                + m[9] * m[7] * m[14] + m[13] * m[6] * m[11] - m[13] * m[7] * m[10];
+        out[4] = -m[4] * m[10] * m[15] + m[4] * m[11] * m[14] + m[8] * m[6] * m[15]
+                - m[8] * m[7] * m[14] - m[12] * m[6] * m[11] + m[12] * m[7] * m[10];
+        out[8] = m[4] * m[9] * m[15] - m[4] * m[11] * m[13] - m[8] * m[5] * m[15]
+                + m[8] * m[7] * m[13] + m[12] * m[5] * m[11] - m[12] * m[7] * m[9];
+        out[12] = -m[4] * m[9] * m[14] + m[4] * m[10] * m[13] + m[8] * m[5] * m[14]
+                - m[8] * m[6] * m[13] - m[12] * m[5] * m[10] + m[12] * m[6] * m[9];
+        out[1] = -m[1] * m[10] * m[15] + m[1] * m[11] * m[14] + m[9] * m[2] * m[15]
+                - m[9] * m[3] * m[14] - m[13] * m[2] * m[11] + m[13] * m[3] * m[10];
+        out[5] = m[0] * m[10] * m[15] - m[0] * m[11] * m[14] - m[8] * m[2] * m[15]
+                + m[8] * m[3] * m[14] + m[12] * m[2] * m[11] - m[12] * m[3] * m[10];
+        out[9] = -m[0] * m[9] * m[15] + m[0] * m[11] * m[13] + m[8] * m[1] * m[15]
+                - m[8] * m[3] * m[13] - m[12] * m[1] * m[11] + m[12] * m[3] * m[9];
+        out[13] = m[0] * m[9] * m[14] - m[0] * m[10] * m[13] - m[8] * m[1] * m[14]
+                + m[8] * m[2] * m[13] + m[12] * m[1] * m[10] - m[12] * m[2] * m[9];
+        out[2] = m[1] * m[6] * m[15] - m[1] * m[7] * m[14] - m[5] * m[2] * m[15]
+                + m[5] * m[3] * m[14] + m[13] * m[2] * m[7] - m[13] * m[3] * m[6];
+        out[6] = -m[0] * m[6] * m[15] + m[0] * m[7] * m[14] + m[4] * m[2] * m[15]
+                - m[4] * m[3] * m[14] - m[12] * m[2] * m[7] + m[12] * m[3] * m[6];
+        out[10] = m[0] * m[5] * m[15] - m[0] * m[7] * m[13] - m[4] * m[1] * m[15]
+                + m[4] * m[3] * m[13] + m[12] * m[1] * m[7] - m[12] * m[3] * m[5];
+        out[14] = -m[0] * m[5] * m[14] + m[0] * m[6] * m[13] + m[4] * m[1] * m[14]
+                - m[4] * m[2] * m[13] - m[12] * m[1] * m[6] + m[12] * m[2] * m[5];
+        out[3] = -m[1] * m[6] * m[11] + m[1] * m[7] * m[10] + m[5] * m[2] * m[11]
+                - m[5] * m[3] * m[10] - m[9] * m[2] * m[7] + m[9] * m[3] * m[6];
+        out[7] = m[0] * m[6] * m[11] - m[0] * m[7] * m[10] - m[4] * m[2] * m[11]
+                + m[4] * m[3] * m[10] + m[8] * m[2] * m[7] - m[8] * m[3] * m[6];
+        out[11] = -m[0] * m[5] * m[11] + m[0] * m[7] * m[9] + m[4] * m[1] * m[11]
+                - m[4] * m[3] * m[9] - m[8] * m[1] * m[7] + m[8] * m[3] * m[5];
+        out[15] = m[0] * m[5] * m[10] - m[0] * m[6] * m[9] - m[4] * m[1] * m[10]
+                + m[4] * m[2] * m[9] + m[8] * m[1] * m[6] - m[8] * m[2] * m[5];
+
+        float determinant = m[0] * out[0] + m[1] * out[4] + m[2] * out[8] + m[3] * out[12];
+        if (determinant == 0.0f)
+        {
+            return false;
+        }
+        float inverse = 1.0f / determinant;
+        for (int i = 0; i < 16; i++)
+        {
+            out[i] *= inverse;
+        }
+        return true;
+    }
+
+    /**
+     * Converts a pose stored as translation and rotation quaternion into a matrix, equivalent to
+     * ARCore's {@code Pose.toMatrix}.
+     *
+     * @param pose       tx, ty, tz, qx, qy, qz, qw
+     * @param poseOffset
+     * @param out
+     * @param outOffset
+     */
+    public static void poseToMatrix(float[] pose, int poseOffset, float[] out, int outOffset)
+    {
+        float x = pose[poseOffset + 3];
+        float y = pose[poseOffset + 4];
+        float z = pose[poseOffset + 5];
+        float w = pose[poseOffset + 6];
+        out[outOffset] = 1 - 2 * (y * y + z * z);
+        out[outOffset + 1] = 2 * (x * y + w * z);
+        out[outOffset + 2] = 2 * (x * z - w * y);
+        out[outOffset + 3] = 0;
+        out[outOffset + 4] = 2 * (x * y - w * z);
+        out[outOffset + 5] = 1 - 2 * (x * x + z * z);
+        out[outOffset + 6] = 2 * (y * z + w * x);
+        out[outOffset + 7] = 0;
+        out[outOffset + 8] = 2 * (x * z + w * y);
+        out[outOffset + 9] = 2 * (y * z - w * x);
+        out[outOffset + 10] = 1 - 2 * (x * x + y * y);
+        out[outOffset + 11] = 0;
+        out[outOffset + 12] = pose[poseOffset];
+        out[outOffset + 13] = pose[poseOffset + 1];
+        out[outOffset + 14] = pose[poseOffset + 2];
+        out[outOffset + 15] = 1;
+    }
+}
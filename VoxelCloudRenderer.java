@@ -0,0 +1,144 @@
+package com.your.package.here.rendering;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Draws the voxels of a {@link PointCloudAccumulator} as points. The vertex buffer is sized for the
+ * accumulator's capacity once, and each frame only the changed voxels are written into it. A buffer
+ * created again, with a new GL context, is filled with every voxel on the next update.
+ */
+public class VoxelCloudRenderer
+{
+    private static final String TAG = VoxelCloudRenderer.class.getSimpleName();
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 u_ModelViewProjection;\n"
+                    + "uniform float u_PointSize;\n"
+                    + "attribute vec4 a_Position;\n"
+                    + "varying float v_Confidence;\n"
+                    + "void main() {\n"
+                    + "   v_Confidence = a_Position.w;\n"
+                    + "   gl_Position = u_ModelViewProjection * vec4(a_Position.xyz, 1.0);\n"
+                    + "   gl_PointSize = u_PointSize;\n"
+                    + "}";
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n"
+                    + "uniform vec4 u_Color;\n"
+                    + "varying float v_Confidence;\n"
+                    + "void main() {\n"
+                    + "    gl_FragColor = vec4(u_Color.rgb, u_Color.a * clamp(v_Confidence, 0.25, 1.0));\n"
+                    + "}";
+
+    private int mVbo;
+    private int mProgram;
+    private int mPositionAttribute;
+    private int mModelViewProjectionUniform;
+    private int mColorUniform;
+    private int mPointSizeUniform;
+    private final float[] mModelViewProjection = new float[16];
+
+    private final PointCloudAccumulator.Uploader mUploader = new PointCloudAccumulator.Uploader()
+    {
+        @Override
+        public void upload(ByteBuffer voxels, int offset, int size)
+        {
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, offset, size, voxels);
+        }
+    };
+
+    /**
+     * Allocates and initializes OpenGL resources needed by the renderer. Must be called on the
+     * OpenGL thread, typically in onSurfaceCreated().
+     *
+     * @param accumulator the voxels drawn, which the buffer is sized for and filled from
+     */
+    public void createOnGlThread(PointCloudAccumulator accumulator)
+    {
+        int capacity = accumulator.getCapacity();
+        // The voxels uploaded so far went to the previous buffer.
+        accumulator.markAllDirty();
+        int[] buffers = new int[1];
+        GLES20.glGenBuffers(1, buffers, 0);
+        mVbo = buffers[0];
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, capacity * PointCloudAccumulator.BYTES_PER_VOXEL, null,
+                GLES20.GL_DYNAMIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        mProgram = GLES20.glCreateProgram();
+        GLES20.glAttachShader(mProgram, compile(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+        GLES20.glAttachShader(mProgram, compile(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        GLES20.glLinkProgram(mProgram);
+        mPositionAttribute = GLES20.glGetAttribLocation(mProgram, "a_Position");
+        mModelViewProjectionUniform = GLES20.glGetUniformLocation(mProgram, "u_ModelViewProjection");
+        mColorUniform = GLES20.glGetUniformLocation(mProgram, "u_Color");
+        mPointSizeUniform = GLES20.glGetUniformLocation(mProgram, "u_PointSize");
+    }
+
+    private static int compile(int type, String source)
+    {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0)
+        {
+            Log.e(TAG, "Shader compilation failed: " + GLES20.glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+
+    /**
+     * Writes the voxels changed since the last update into the vertex buffer.
+     *
+     * @param accumulator
+     * @return the number of bytes uploaded
+     */
+    public int update(PointCloudAccumulator accumulator)
+    {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        int uploaded = accumulator.uploadChanges(mUploader);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        return uploaded;
+    }
+
+    /**
+     * Renders the accumulated voxels.
+     *
+     * @param accumulator source of the voxel count
+     * @param cameraView  the camera view matrix for this frame
+     * @param cameraPerspective the camera projection matrix for this frame
+     */
+    public void draw(PointCloudAccumulator accumulator, float[] cameraView, float[] cameraPerspective)
+    {
+        Matrix.multiplyMM(mModelViewProjection, 0, cameraPerspective, 0, cameraView, 0);
+
+        GLES20.glUseProgram(mProgram);
+        GLES20.glEnableVertexAttribArray(mPositionAttribute);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVbo);
+        GLES20.glVertexAttribPointer(mPositionAttribute, 4, GLES20.GL_FLOAT, false,
+                PointCloudAccumulator.BYTES_PER_VOXEL, 0);
+        GLES20.glUniform4f(mColorUniform, 31.0f / 255.0f, 188.0f / 255.0f, 210.0f / 255.0f, 1.0f);
+        GLES20.glUniformMatrix4fv(mModelViewProjectionUniform, 1, false, mModelViewProjection, 0);
+        GLES20.glUniform1f(mPointSizeUniform, 5.0f);
+
+        // Low confidence voxels fade out, whether drawn onto the camera image or into an offscreen
+        // target, so alpha accumulates as coverage as OffscreenTarget expects.
+        boolean blending = GLES20.glIsEnabled(GLES20.GL_BLEND);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFuncSeparate(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA, GLES20.GL_ONE,
+                GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20.glDrawArrays(GLES20.GL_POINTS, 0, accumulator.getVoxelCount());
+        if (!blending)
+        {
+            GLES20.glDisable(GLES20.GL_BLEND);
+        }
+        GLES20.glDisableVertexAttribArray(mPositionAttribute);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+}
@@ -0,0 +1,113 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.AnchorSpatialIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ray pick latency over scenes of placed objects, against a linear scan of every sphere.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnchorSpatialIndexBenchmark
+{
+    private static final int RAYS = 1024;
+    private static final int MASK = RAYS - 1;
+
+    @Param({"100", "1000", "5000"})
+    public int objects;
+
+    private final AnchorSpatialIndex mIndex = new AnchorSpatialIndex(0.5f);
+    private float[] mSpheres;
+    private final float[] mRays = new float[RAYS * 6];
+    private int mRay;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        // Objects spread over a 20m x 20m room, on the floor and up to table height.
+        mSpheres = new float[objects * 4];
+        for (int i = 0; i < objects; i++)
+        {
+            float x = random.nextFloat() * 20f - 10f;
+            float y = random.nextFloat() * 0.8f - 1.5f;
+            float z = random.nextFloat() * 20f - 10f;
+            float radius = 0.15f * (0.5f + random.nextFloat());
+            mIndex.update(i, x, y, z, radius);
+            mSpheres[i * 4] = x;
+            mSpheres[i * 4 + 1] = y;
+            mSpheres[i * 4 + 2] = z;
+            mSpheres[i * 4 + 3] = radius;
+        }
+        // Rays from eye height pointing down into the room, like touches on a held phone.
+        for (int i = 0; i < RAYS; i++)
+        {
+            float dx = random.nextFloat() * 2f - 1f;
+            float dy = -0.2f - random.nextFloat() * 0.6f;
+            float dz = random.nextFloat() * 2f - 1f;
+            float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            mRays[i * 6] = random.nextFloat() * 16f - 8f;
+            mRays[i * 6 + 1] = 0f;
+            mRays[i * 6 + 2] = random.nextFloat() * 16f - 8f;
+            mRays[i * 6 + 3] = dx / length;
+            mRays[i * 6 + 4] = dy / length;
+            mRays[i * 6 + 5] = dz / length;
+        }
+    }
+
+    @Benchmark
+    public int gridPick()
+    {
+        int r = (mRay = (mRay + 1) & MASK) * 6;
+        float[] ray = mRays;
+        return mIndex.pick(ray[r], ray[r + 1], ray[r + 2], ray[r + 3], ray[r + 4], ray[r + 5], 100f);
+    }
+
+    @Benchmark
+    public int linearPick()
+    {
+        int r = (mRay = (mRay + 1) & MASK) * 6;
+        float[] ray = mRays;
+        float ox = ray[r], oy = ray[r + 1], oz = ray[r + 2];
+        float dx = ray[r + 3], dy = ray[r + 4], dz = ray[r + 5];
+        int best = -1;
+        float bestDistance = 100f;
+        for (int i = 0; i < objects; i++)
+        {
+            float lx = mSpheres[i * 4] - ox;
+            float ly = mSpheres[i * 4 + 1] - oy;
+            float lz = mSpheres[i * 4 + 2] - oz;
+            float radius = mSpheres[i * 4 + 3];
+            float along = lx * dx + ly * dy + lz * dz;
+            float distanceSquared = lx * lx + ly * ly + lz * lz - along * along;
+            if (distanceSquared <= radius * radius)
+            {
+                float near = along - (float) Math.sqrt(radius * radius - distanceSquared);
+                if (near >= 0 && near < bestDistance)
+                {
+                    bestDistance = near;
+                    best = i;
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,82 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.FastMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fast trig backend against {@link java.lang.Math} on the same inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastMathBenchmark
+{
+    private static final int SAMPLES = 1024;
+    private static final int MASK = SAMPLES - 1;
+
+    private final float[] mAngles = new float[SAMPLES];
+    private final float[] mXs = new float[SAMPLES];
+    private final float[] mYs = new float[SAMPLES];
+    private int mIndex;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            mAngles[i] = (random.nextFloat() - 0.5f) * 20f;
+            mXs[i] = (random.nextFloat() - 0.5f) * 2000f;
+            mYs[i] = (random.nextFloat() - 0.5f) * 2000f;
+        }
+    }
+
+    private int next()
+    {
+        return mIndex = (mIndex + 1) & MASK;
+    }
+
+    @Benchmark
+    public float mathSinCos()
+    {
+        float angle = mAngles[next()];
+        return (float) Math.sin(angle) + (float) Math.cos(angle);
+    }
+
+    @Benchmark
+    public float fastSinCos()
+    {
+        float angle = mAngles[next()];
+        return FastMath.tableSin(angle) + FastMath.tableCos(angle);
+    }
+
+    @Benchmark
+    public float mathAtan2()
+    {
+        int i = next();
+        return (float) Math.atan2(mYs[i], mXs[i]);
+    }
+
+    @Benchmark
+    public float fastAtan2()
+    {
+        int i = next();
+        return FastMath.polyAtan2(mYs[i], mXs[i]);
+    }
+}
@@ -0,0 +1,141 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.AnchorTransformTable;
+import com.your.package.here.SceneController;
+import com.your.package.here.rendering.RenderQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to prepare and queue the placed objects of a frame, all on the calling thread against
+ * composition and culling on a frame pool. In the app the GL thread draws the point cloud and
+ * planes between beginning and finishing, so the pooled score is an upper bound of what it waits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramePrepBenchmark
+{
+    private static final int MODELS = 4;
+
+    @Param({"10", "100", "500", "1000"})
+    public int objects;
+
+    @Param({"3"})
+    public int threads;
+
+    private ForkJoinPool mPool;
+    private SceneController mSerial;
+    private SceneController mPooled;
+    private float[] mPoses;
+    private int mDrawn;
+
+    private final SceneController.Anchors mAnchors = new SceneController.Anchors()
+    {
+        @Override
+        public int getPose(int slot, float[] matrix, int offset)
+        {
+            System.arraycopy(mPoses, slot * 16, matrix, offset, 16);
+            return SceneController.TRACKING;
+        }
+
+        @Override
+        public void onStopped(int slot)
+        {
+        }
+    };
+
+    private final RenderQueue.Backend mBackend = new RenderQueue.Backend()
+    {
+        @Override
+        public void drawBatch(int model, float[] matrices, float[] scales, int first, int count)
+        {
+            mDrawn += count;
+        }
+    };
+
+    @Setup
+    public void setup()
+    {
+        mPool = new ForkJoinPool(threads);
+        mSerial = new SceneController(objects);
+        mPooled = new SceneController(objects, mPool);
+        Random random = new Random(42);
+        mPoses = new float[objects * 16];
+        for (int a = 0; a < objects; a++)
+        {
+            int o = a * 16;
+            mPoses[o] = 1;
+            mPoses[o + 5] = 1;
+            mPoses[o + 10] = 1;
+            mPoses[o + 12] = random.nextFloat() * 8 - 4;
+            mPoses[o + 13] = random.nextFloat() - 1.5f;
+            mPoses[o + 14] = random.nextFloat() * 8 - 4;
+            mPoses[o + 15] = 1;
+        }
+        // A camera at eye height looking down -Z, seeing about half the objects.
+        float[] projection = new float[16];
+        float f = 1.0f / (float) Math.tan(Math.toRadians(30));
+        projection[0] = f * 9 / 16;
+        projection[5] = f;
+        projection[10] = -100.1f / 99.9f;
+        projection[11] = -1;
+        projection[14] = -2 * 100 * 0.1f / 99.9f;
+        float[] view = new float[16];
+        view[0] = 1;
+        view[5] = 1;
+        view[10] = 1;
+        view[15] = 1;
+        float[] camera = view.clone();
+        for (SceneController scene : new SceneController[]{mSerial, mPooled})
+        {
+            // The same objects in both scenes.
+            random = new Random(7);
+            for (int a = 0; a < objects; a++)
+            {
+                int slot = AnchorTransformTable.slotOf(scene.add(a % MODELS, 0));
+                scene.getTransforms().rotate(slot, random.nextFloat() * 6);
+                scene.getTransforms().translate(slot, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+            }
+            scene.setViewport(1080, 1920);
+            scene.setCamera(projection, view, camera);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        mPool.shutdown();
+    }
+
+    @Benchmark
+    public int serial()
+    {
+        return mSerial.drawObjects(mAnchors, mBackend);
+    }
+
+    @Benchmark
+    public int pooled()
+    {
+        mPooled.beginObjects(mAnchors);
+        return mPooled.finishObjects(mBackend);
+    }
+}
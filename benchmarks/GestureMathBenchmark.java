@@ -0,0 +1,145 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.FastMath;
+import com.your.package.here.view.CameraYawBasis;
+import com.your.package.here.view.MultiTouchRecognizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-event gesture math: a two finger move through {@link MultiTouchRecognizer},
+ * which takes the span and twist angle, and the drag onto the ground plane. Run with
+ * {@code -prof gc} to get the allocation rate next to the scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GestureMathBenchmark
+{
+    private static final int SAMPLES = 1024;
+    private static final int MASK = SAMPLES - 1;
+
+    // Twist angles with the polynomial atan2 or java.lang.Math.
+    @Param({"false", "true"})
+    public boolean fastMath;
+
+    private final float[] mPoints = new float[SAMPLES * 4];
+    private final int[] mIds = {0, 1};
+    private final float[] mX = new float[2];
+    private final float[] mY = new float[2];
+    private MultiTouchRecognizer mRecognizer;
+    private float mGestureSum;
+    private final float[][] mCameraMatrices = new float[SAMPLES][16];
+    private final float[] mOriginMatrix = new float[16];
+    private final float[] mScroll = new float[SAMPLES * 2];
+    private final float[] mTranslation = new float[2];
+    private final CameraYawBasis mBasis = new CameraYawBasis();
+    private int mIndex;
+
+    @Setup
+    public void setup()
+    {
+        FastMath.setEnabled(fastMath);
+        Random random = new Random(42);
+        for (int i = 0; i < mPoints.length; i++)
+        {
+            mPoints[i] = random.nextFloat() * 1080f;
+        }
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            double yaw = random.nextDouble() * 2 * Math.PI;
+            mCameraMatrices[i][0] = (float) Math.cos(yaw);
+            mCameraMatrices[i][2] = (float) Math.sin(yaw);
+        }
+        mOriginMatrix[0] = 1;
+        for (int i = 0; i < mScroll.length; i++)
+        {
+            mScroll[i] = random.nextFloat() * 40f - 20f;
+        }
+
+        mRecognizer = new MultiTouchRecognizer(8f, new MultiTouchRecognizer.Listener()
+        {
+            @Override
+            public void onDown(float x, float y, long eventTime)
+            {
+            }
+
+            @Override
+            public void onTap(float x, float y, long eventTime)
+            {
+            }
+
+            @Override
+            public void onPan(float dx, float dy, long eventTime)
+            {
+                mGestureSum += dx + dy;
+            }
+
+            @Override
+            public void onScale(float factor, long eventTime)
+            {
+                mGestureSum += factor;
+            }
+
+            @Override
+            public void onRotate(float deltaRadians, long eventTime)
+            {
+                mGestureSum += deltaRadians;
+            }
+
+            @Override
+            public void onUp(long eventTime)
+            {
+            }
+        });
+        // Two fingers down, every benchmarked event moves both.
+        mX[0] = 100;
+        mY[0] = 100;
+        mX[1] = 600;
+        mY[1] = 900;
+        mRecognizer.onTouch(0, MultiTouchRecognizer.ACTION_DOWN, 0, 1, mIds, mX, mY);
+        mRecognizer.onTouch(0, MultiTouchRecognizer.ACTION_POINTER_DOWN, 1, 2, mIds, mX, mY);
+    }
+
+    private int next()
+    {
+        return mIndex = (mIndex + 1) & MASK;
+    }
+
+    @Benchmark
+    public float twoFingerMove()
+    {
+        int p = next() * 4;
+        mX[0] = mPoints[p];
+        mY[0] = mPoints[p + 1];
+        mX[1] = mPoints[p + 2];
+        mY[1] = mPoints[p + 3];
+        mRecognizer.onTouch(p, MultiTouchRecognizer.ACTION_MOVE, 0, 2, mIds, mX, mY);
+        return mGestureSum;
+    }
+
+    @Benchmark
+    public float[] dragTranslation()
+    {
+        int i = next();
+        mBasis.publish(mCameraMatrices[i], mOriginMatrix);
+        mBasis.toGround(mScroll[i * 2], mScroll[i * 2 + 1], mTranslation);
+        return mTranslation;
+    }
+}
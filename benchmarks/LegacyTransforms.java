@@ -0,0 +1,38 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.FastMath;
+
+/**
+ * The per-anchor rotation the scene used before model matrices were composed, kept only as the old
+ * path the benchmarks compare against. It overwrites the rotation part of the pose instead of
+ * multiplying into it, which drops the anchor's own orientation and any scale, so the matrices it
+ * produces are wrong and must not be drawn.
+ */
+final class LegacyTransforms
+{
+    private LegacyTransforms()
+    {
+    }
+
+    /**
+     * Overwrites the rotation elements of a matrix with a rotation by an angle around the Y axis.
+     *
+     * @param m
+     * @param offset
+     * @param rotationTheta
+     */
+    static void rotateYAxis(float[] m, int offset, float rotationTheta)
+    {
+        if (rotationTheta != 0.0f)
+        {
+            float cos = FastMath.cos(rotationTheta);
+            float sin = FastMath.sin(rotationTheta);
+            m[offset] = cos;
+            m[offset + 2] = sin;
+            m[offset + 5] = 1;
+            m[offset + 8] = -sin;
+            m[offset + 10] = cos;
+            m[offset + 15] = 1;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.rendering.BinaryMeshFormat;
+import com.your.package.here.rendering.MeshData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import de.javagl.obj.ObjReader;
+
+/**
+ * Time to get a model's geometry from disk into the buffers handed to the driver, parsing .obj text
+ * against mapping the converted binary file. Both paths end with the copy the GL upload makes, so
+ * the mapped path pays for faulting in its vertex and index pages and not only for the header. Run
+ * with -prof gc to compare the heap each path allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshLoadBenchmark
+{
+    // Latitude/longitude sphere with (segments + 1)^2 vertices.
+    @Param({"32", "128"})
+    public int segments;
+
+    private File mObjFile;
+    private File mMeshFile;
+    // Stand in for the GL buffers the upload copies into.
+    private ByteBuffer mUploadVertices;
+    private ByteBuffer mUploadIndices;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        mObjFile = File.createTempFile("sphere", ".obj");
+        mMeshFile = File.createTempFile("sphere", BinaryMeshFormat.EXTENSION);
+        Writer writer = new FileWriter(mObjFile);
+        try
+        {
+            for (int lat = 0; lat <= segments; lat++)
+            {
+                double theta = Math.PI * lat / segments;
+                for (int lon = 0; lon <= segments; lon++)
+                {
+                    double phi = 2 * Math.PI * lon / segments;
+                    double x = Math.sin(theta) * Math.cos(phi);
+                    double y = Math.cos(theta);
+                    double z = Math.sin(theta) * Math.sin(phi);
+                    writer.write(String.format(Locale.US, "v %f %f %f%nvn %f %f %f%nvt %f %f%n",
+                            x, y, z, x, y, z, (double) lon / segments, (double) lat / segments));
+                }
+            }
+            int row = segments + 1;
+            for (int lat = 0; lat < segments; lat++)
+            {
+                for (int lon = 0; lon < segments; lon++)
+                {
+                    int a = lat * row + lon + 1;
+                    int b = a + row;
+                    writer.write(String.format(Locale.US, "f %d/%d/%d %d/%d/%d %d/%d/%d%nf %d/%d/%d %d/%d/%d %d/%d/%d%n",
+                            a, a, a, b, b, b, a + 1, a + 1, a + 1, b, b, b, b + 1, b + 1, b + 1, a + 1, a + 1, a + 1));
+                }
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+        MeshData mesh = readObj();
+        mUploadVertices = ByteBuffer.allocateDirect(mesh.vertices.capacity());
+        mUploadIndices = ByteBuffer.allocateDirect(mesh.indices.capacity());
+        RandomAccessFile out = new RandomAccessFile(mMeshFile, "rw");
+        try
+        {
+            BinaryMeshFormat.write(mesh, out.getChannel());
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        mObjFile.delete();
+        mMeshFile.delete();
+    }
+
+    @Benchmark
+    public long parseObj() throws IOException
+    {
+        return upload(readObj());
+    }
+
+    @Benchmark
+    public long mapBinary() throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(mMeshFile, "r");
+        try
+        {
+            return upload(BinaryMeshFormat.read(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length())));
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+
+    private MeshData readObj() throws IOException
+    {
+        InputStream in = new FileInputStream(mObjFile);
+        try
+        {
+            return BinaryMeshFormat.fromObj(ObjReader.read(in));
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    // Copies the geometry as glBufferData would, which reads every byte of it.
+    private long upload(MeshData mesh)
+    {
+        mUploadVertices.clear();
+        mUploadVertices.put(mesh.vertices.duplicate());
+        mUploadIndices.clear();
+        mUploadIndices.put(mesh.indices.duplicate());
+        return mUploadVertices.getLong(0) + mUploadIndices.getShort(mUploadIndices.position() - 2);
+    }
+}
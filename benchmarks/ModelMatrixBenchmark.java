@@ -0,0 +1,124 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.AnchorTransformTable;
+import com.your.package.here.ModelMatrixEngine;
+import com.your.package.here.rendering.TransformMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to turn a frame's anchor poses into model matrices. {@code perAnchor} is the path the scene
+ * used before ({@link LegacyTransforms}), translating and overwriting the rotation of each pose in
+ * place, {@code composeAll} composes every matrix correctly, and {@code engine} goes through
+ * {@link ModelMatrixEngine} with a share of the anchors moving every frame. Every variant starts
+ * from the poses copied into the frame buffer, as the anchors deliver them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelMatrixBenchmark
+{
+    @Param({"10", "100", "500", "1000"})
+    public int anchors;
+
+    // Anchors whose pose changes from frame to frame, for the engine.
+    @Param({"0", "10", "100"})
+    public int movingPercent;
+
+    private AnchorTransformTable mTransforms;
+    private ModelMatrixEngine mEngine;
+    private int[] mSlots;
+    private float[] mPoses;
+    private float[] mMatrices;
+    private int mMoving;
+    private float mNudge = 0.001f;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        mTransforms = new AnchorTransformTable(anchors);
+        mEngine = new ModelMatrixEngine(anchors);
+        mSlots = new int[anchors];
+        mPoses = new float[anchors * 16];
+        mMatrices = new float[anchors * 16];
+        float[] pose = new float[7];
+        for (int a = 0; a < anchors; a++)
+        {
+            mSlots[a] = AnchorTransformTable.slotOf(mTransforms.add(0, 0));
+            mTransforms.scale(mSlots[a], 0.5f + random.nextFloat());
+            mTransforms.rotate(mSlots[a], random.nextFloat() * 6.28f);
+            mTransforms.translate(mSlots[a], random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+            // Anchors on planes, turned about the vertical.
+            float half = random.nextFloat() * 3.14f;
+            pose[0] = random.nextFloat() * 4 - 2;
+            pose[1] = random.nextFloat() - 1;
+            pose[2] = random.nextFloat() * 4 - 2;
+            pose[3] = 0;
+            pose[4] = (float) Math.sin(half);
+            pose[5] = 0;
+            pose[6] = (float) Math.cos(half);
+            TransformMath.poseToMatrix(pose, 0, mPoses, a * 16);
+        }
+        mMoving = anchors * movingPercent / 100;
+    }
+
+    @Benchmark
+    public float[] perAnchor()
+    {
+        System.arraycopy(mPoses, 0, mMatrices, 0, anchors * 16);
+        for (int k = 0; k < anchors; k++)
+        {
+            int slot = mSlots[k];
+            int o = k * 16;
+            TransformMath.translate(mMatrices, o, mTransforms.getTranslationX(slot), 0,
+                    mTransforms.getTranslationZ(slot));
+            LegacyTransforms.rotateYAxis(mMatrices, o, mTransforms.getRotationTheta(slot));
+        }
+        return mMatrices;
+    }
+
+    @Benchmark
+    public float[] composeAll()
+    {
+        System.arraycopy(mPoses, 0, mMatrices, 0, anchors * 16);
+        for (int k = 0; k < anchors; k++)
+        {
+            int slot = mSlots[k];
+            int o = k * 16;
+            TransformMath.composeModelMatrix(mMatrices, o, mTransforms.getTranslationX(slot),
+                    mTransforms.getTranslationZ(slot), mTransforms.getRotationTheta(slot),
+                    mTransforms.getScaleFactor(slot), mMatrices, o);
+        }
+        return mMatrices;
+    }
+
+    @Benchmark
+    public int engine()
+    {
+        // ARCore refines the first anchors a little every frame.
+        mNudge = -mNudge;
+        for (int k = 0; k < mMoving; k++)
+        {
+            mPoses[k * 16 + 12] += mNudge;
+        }
+        System.arraycopy(mPoses, 0, mMatrices, 0, anchors * 16);
+        return mEngine.update(mTransforms, mSlots, mMatrices, 0, anchors);
+    }
+}
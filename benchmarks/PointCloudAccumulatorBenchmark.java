@@ -0,0 +1,133 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.rendering.PointCloudAccumulator;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of merging a synthetic feature point cloud into the voxel accumulator and the
+ * bytes it would upload, against re-uploading the raw points every frame. The clouds are noisy
+ * observations of fixed features on a floor and a table top, as ARCore reports while the user
+ * looks around a room.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointCloudAccumulatorBenchmark
+{
+    private static final int FRAMES = 256;
+
+    @Param({"300", "2000"})
+    public int pointsPerFrame;
+
+    private FloatBuffer[] mFrames;
+    private ByteBuffer mRawTarget;
+    private PointCloudAccumulator mAccumulator;
+    private int mFrame;
+
+    /**
+     * Bytes that would go to the GPU per frame, reported next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Uploads
+    {
+        public long bytes;
+    }
+
+    private final PointCloudAccumulator.Uploader mNullUploader = new PointCloudAccumulator.Uploader()
+    {
+        @Override
+        public void upload(ByteBuffer voxels, int offset, int size)
+        {
+        }
+    };
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        // Feature points are fixed landmarks on a floor and a table top, each frame observes a
+        // random subset of those in view with a few millimeters of noise.
+        int landmarks = 20000;
+        float[] landmark = new float[landmarks * 3];
+        for (int i = 0; i < landmarks; i++)
+        {
+            landmark[i * 3] = random.nextFloat() * 6f - 1f;
+            landmark[i * 3 + 1] = random.nextInt(4) == 0 ? -0.7f : -1.5f;
+            landmark[i * 3 + 2] = random.nextFloat() * 2f - 3f;
+        }
+        mFrames = new FloatBuffer[FRAMES];
+        for (int f = 0; f < FRAMES; f++)
+        {
+            // The view drifts slowly across the room.
+            float centerX = (f % 128) * 0.03f;
+            FloatBuffer points = ByteBuffer.allocateDirect(pointsPerFrame * 16).order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            for (int p = 0; p < pointsPerFrame; p++)
+            {
+                int k;
+                do
+                {
+                    k = random.nextInt(landmarks);
+                }
+                while (Math.abs(landmark[k * 3] - centerX - 1f) > 1f);
+                points.put(landmark[k * 3] + (float) random.nextGaussian() * 0.003f);
+                points.put(landmark[k * 3 + 1] + (float) random.nextGaussian() * 0.003f);
+                points.put(landmark[k * 3 + 2] + (float) random.nextGaussian() * 0.003f);
+                points.put(random.nextFloat());
+            }
+            points.flip();
+            mFrames[f] = points;
+        }
+        mRawTarget = ByteBuffer.allocateDirect(pointsPerFrame * 16).order(ByteOrder.nativeOrder());
+    }
+
+    @Setup(Level.Iteration)
+    public void resetAccumulator()
+    {
+        mAccumulator = new PointCloudAccumulator(0.02f, 0.3f, 65536);
+    }
+
+    @Benchmark
+    public int accumulate(Uploads uploads)
+    {
+        FloatBuffer points = mFrames[mFrame++ & (FRAMES - 1)];
+        mAccumulator.merge(points, pointsPerFrame);
+        int bytes = mAccumulator.uploadChanges(mNullUploader);
+        uploads.bytes += bytes;
+        return bytes;
+    }
+
+    @Benchmark
+    public int rawUpload(Uploads uploads)
+    {
+        // Stands in for the full re-upload the raw renderer does, a copy of every point.
+        FloatBuffer points = mFrames[mFrame++ & (FRAMES - 1)];
+        mRawTarget.clear();
+        mRawTarget.asFloatBuffer().put(points.duplicate());
+        uploads.bytes += pointsPerFrame * 16;
+        return mRawTarget.capacity();
+    }
+}
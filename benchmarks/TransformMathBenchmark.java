@@ -0,0 +1,101 @@
+package com.your.package.here.benchmark;
+
+import com.your.package.here.rendering.TransformMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-anchor matrix work done every frame. Run with {@code -prof gc} to get the
+ * allocation rate next to the scores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformMathBenchmark
+{
+    @Param({"20", "200"})
+    public int anchors;
+
+    private float[] mPoses;
+    private float[] mTranslationX;
+    private float[] mTranslationZ;
+    private float[] mRotations;
+    private float[] mScales;
+    private final float[] mScratch = new float[16];
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        mPoses = new float[anchors * 16];
+        mTranslationX = new float[anchors];
+        mTranslationZ = new float[anchors];
+        mRotations = new float[anchors];
+        mScales = new float[anchors];
+        for (int a = 0; a < anchors; a++)
+        {
+            int o = a * 16;
+            mPoses[o] = 1;
+            mPoses[o + 5] = 1;
+            mPoses[o + 10] = 1;
+            mPoses[o + 12] = random.nextFloat() * 4 - 2;
+            mPoses[o + 13] = random.nextFloat() - 1;
+            mPoses[o + 14] = random.nextFloat() * 4 - 2;
+            mPoses[o + 15] = 1;
+            mTranslationX[a] = random.nextFloat() - 0.5f;
+            mTranslationZ[a] = random.nextFloat() - 0.5f;
+            mRotations[a] = random.nextFloat() * 6.28f;
+            mScales[a] = 0.5f + random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public float[] translate()
+    {
+        for (int a = 0; a < anchors; a++)
+        {
+            System.arraycopy(mPoses, a * 16, mScratch, 0, 16);
+            TransformMath.translate(mScratch, 0, mTranslationX[a], 0, mTranslationZ[a]);
+        }
+        return mScratch;
+    }
+
+    // The rotation the scene applied before composeModelMatrix, see LegacyTransforms.
+    @Benchmark
+    public float[] rotateYAxis()
+    {
+        for (int a = 0; a < anchors; a++)
+        {
+            System.arraycopy(mPoses, a * 16, mScratch, 0, 16);
+            LegacyTransforms.rotateYAxis(mScratch, 0, mRotations[a]);
+        }
+        return mScratch;
+    }
+
+    @Benchmark
+    public float[] composeModelMatrix()
+    {
+        for (int a = 0; a < anchors; a++)
+        {
+            TransformMath.composeModelMatrix(mPoses, a * 16,
+                    mTranslationX[a], mTranslationZ[a], mRotations[a], mScales[a], mScratch, 0);
+        }
+        return mScratch;
+    }
+}
@@ -0,0 +1,258 @@
+package com.your.package.here;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnchorSpatialIndexTest
+{
+    private static final float CELL = 0.5f;
+    private static final float MAX_DISTANCE = 20f;
+    private static final int CAPACITY = 1000;
+
+    private final AnchorSpatialIndex mIndex = new AnchorSpatialIndex(CELL);
+    // What was put into the index, for the brute force scan: x, y, z and radius per slot.
+    private final float[] mSpheres = new float[CAPACITY * 4];
+    private final boolean[] mPresent = new boolean[CAPACITY];
+
+    private void put(int slot, float x, float y, float z, float radius)
+    {
+        mIndex.update(slot, x, y, z, radius);
+        mSpheres[slot * 4] = x;
+        mSpheres[slot * 4 + 1] = y;
+        mSpheres[slot * 4 + 2] = z;
+        mSpheres[slot * 4 + 3] = radius;
+        mPresent[slot] = true;
+    }
+
+    private void remove(int slot)
+    {
+        mIndex.remove(slot);
+        mPresent[slot] = false;
+    }
+
+    // Distance along a normalized ray to where it enters the sphere, 0 from inside it, or -1.
+    private double hitDistance(int slot, double ox, double oy, double oz, double dx, double dy, double dz)
+    {
+        double lx = ox - mSpheres[slot * 4];
+        double ly = oy - mSpheres[slot * 4 + 1];
+        double lz = oz - mSpheres[slot * 4 + 2];
+        double radius = mSpheres[slot * 4 + 3];
+        double b = lx * dx + ly * dy + lz * dz;
+        double c = lx * lx + ly * ly + lz * lz - radius * radius;
+        double discriminant = b * b - c;
+        if (discriminant < 0)
+        {
+            return -1;
+        }
+        double root = Math.sqrt(discriminant);
+        if (-b + root < 0)
+        {
+            return -1;
+        }
+        return Math.max(0, -b - root);
+    }
+
+    /**
+     * Picks with the index and by testing every sphere, and checks both find a hit at the same
+     * distance. Ties, such as two spheres around the origin, may pick either.
+     *
+     * @return whether anything was hit
+     */
+    private boolean assertPicksClosest(float ox, float oy, float oz, float dx, float dy, float dz)
+    {
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx /= length;
+        dy /= length;
+        dz /= length;
+        int closest = -1;
+        double closestDistance = MAX_DISTANCE;
+        for (int slot = 0; slot < CAPACITY; slot++)
+        {
+            if (mPresent[slot])
+            {
+                double distance = hitDistance(slot, ox, oy, oz, dx, dy, dz);
+                if (distance >= 0 && distance < closestDistance)
+                {
+                    closest = slot;
+                    closestDistance = distance;
+                }
+            }
+        }
+
+        int picked = mIndex.pick(ox, oy, oz, dx, dy, dz, MAX_DISTANCE);
+        String ray = String.format("ray (%f, %f, %f) -> (%f, %f, %f)", ox, oy, oz, dx, dy, dz);
+        if (closest < 0)
+        {
+            assertEquals(ray, -1, picked);
+            return false;
+        }
+        assertTrue(ray + " missed slot " + closest, picked >= 0);
+        assertEquals(ray + " picked " + picked + " over " + closest, closestDistance,
+                hitDistance(picked, ox, oy, oz, dx, dy, dz), 1e-4);
+        return true;
+    }
+
+    // Rays from eye height down into the area, some along the grid axes and some straight down.
+    private int assertRandomRays(Random random, int count, float extent)
+    {
+        int hits = 0;
+        for (int i = 0; i < count; i++)
+        {
+            float ox = (random.nextFloat() * 2 - 1) * extent;
+            float oz = (random.nextFloat() * 2 - 1) * extent;
+            float dx = random.nextFloat() * 2 - 1;
+            float dy = -0.1f - random.nextFloat();
+            float dz = random.nextFloat() * 2 - 1;
+            switch (i % 8)
+            {
+                case 0:
+                    dx = 0;
+                    break;
+                case 1:
+                    dz = 0;
+                    break;
+                case 2:
+                    dx = 0;
+                    dz = 0;
+                    break;
+                default:
+                    break;
+            }
+            if (assertPicksClosest(ox, 1.5f, oz, dx, dy, dz))
+            {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Test
+    public void pickMatchesBruteForceOnRandomObjects()
+    {
+        Random random = new Random(11);
+        for (int slot = 0; slot < 400; slot++)
+        {
+            put(slot, random.nextFloat() * 10 - 5, random.nextFloat() - 0.5f, random.nextFloat() * 10 - 5,
+                    0.05f + random.nextFloat() * 0.25f);
+        }
+        // Origins reach past the objects, so some rays start outside the occupied cells.
+        int hits = assertRandomRays(random, 4000, 7);
+        assertTrue(hits > 400);
+    }
+
+    @Test
+    public void objectsStraddlingCellBordersAreFound()
+    {
+        Random random = new Random(12);
+        int slot = 0;
+        for (int x = -6; x <= 6; x += 2)
+        {
+            for (int z = -6; z <= 6; z += 3)
+            {
+                // Centered just either side of a cell corner, reaching well into the cells around it.
+                float cx = x * CELL + (random.nextFloat() - 0.5f) * 0.02f;
+                float cz = z * CELL + (random.nextFloat() - 0.5f) * 0.02f;
+                put(slot++, cx, 0, cz, 0.2f);
+            }
+        }
+        for (int i = 0; i < slot; i++)
+        {
+            float cx = mSpheres[i * 4];
+            float cz = mSpheres[i * 4 + 2];
+            // Aim at points of the sphere that lie in each of the neighbouring cells.
+            for (int corner = 0; corner < 4; corner++)
+            {
+                float tx = cx + ((corner & 1) == 0 ? 0.1f : -0.1f);
+                float tz = cz + ((corner & 2) == 0 ? 0.1f : -0.1f);
+                assertTrue(assertPicksClosest(tx, 2, tz, 0, -1, 0));
+                assertTrue(assertPicksClosest(tx - 1.3f, 1.5f, tz + 0.7f, 1.3f, -1.5f, -0.7f));
+                assertTrue(assertPicksClosest(tx + 2, 0.05f, tz, -2, -0.05f, 0));
+            }
+        }
+        assertRandomRays(random, 2000, 4);
+    }
+
+    @Test
+    public void spheresLargerThanACellAreFound()
+    {
+        Random random = new Random(13);
+        for (int slot = 0; slot < 200; slot++)
+        {
+            put(slot, random.nextFloat() * 10 - 5, random.nextFloat() - 0.5f, random.nextFloat() * 10 - 5,
+                    0.05f + random.nextFloat() * 0.15f);
+        }
+        // Spanning five cells, their rims are cells away from the one they are kept in.
+        int[] large = {200, 201, 202};
+        put(large[0], -2.2f, 0, 1.3f, 1.2f);
+        put(large[1], 3.05f, 0.5f, -3.1f, 1.2f);
+        put(large[2], 0.25f, -0.5f, 0.25f, 0.7f);
+        for (int slot : large)
+        {
+            float cx = mSpheres[slot * 4];
+            float cy = mSpheres[slot * 4 + 1];
+            float cz = mSpheres[slot * 4 + 2];
+            float radius = mSpheres[slot * 4 + 3];
+            for (int i = 0; i < 16; i++)
+            {
+                // Towards points near the rim, from above and from the side.
+                double angle = i * Math.PI / 8;
+                float tx = cx + (float) Math.cos(angle) * radius * 0.95f;
+                float tz = cz + (float) Math.sin(angle) * radius * 0.95f;
+                assertTrue(assertPicksClosest(tx, 3, tz, 0, -1, 0));
+                assertTrue(assertPicksClosest(tx + (tx - cx) * 4, cy + 0.1f, tz + (tz - cz) * 4, cx - tx,
+                        -0.02f, cz - tz));
+            }
+        }
+        assertRandomRays(random, 3000, 6);
+    }
+
+    @Test
+    public void pickFollowsMovesAndRemoves()
+    {
+        Random random = new Random(14);
+        for (int slot = 0; slot < 300; slot++)
+        {
+            put(slot, random.nextFloat() * 10 - 5, random.nextFloat() - 0.5f, random.nextFloat() * 10 - 5,
+                    0.05f + random.nextFloat() * 0.25f);
+        }
+        put(300, 1, 0, 1, 1.5f);
+        assertRandomRays(random, 1000, 6);
+
+        // Moved within their cell, into another cell and off to where nothing was yet.
+        for (int slot = 0; slot < 300; slot += 2)
+        {
+            float x = mSpheres[slot * 4];
+            float z = mSpheres[slot * 4 + 2];
+            switch (slot % 3)
+            {
+                case 0:
+                    put(slot, x + 0.01f, 0, z - 0.01f, 0.1f);
+                    break;
+                case 1:
+                    put(slot, x + random.nextFloat() * 2 - 1, 0.2f, z + random.nextFloat() * 2 - 1, 0.3f);
+                    break;
+                default:
+                    put(slot, x + 8, 0, z - 8, 0.2f);
+                    break;
+            }
+        }
+        for (int slot = 1; slot < 300; slot += 4)
+        {
+            remove(slot);
+        }
+        remove(300);
+        assertEquals(300 - 75, mIndex.size());
+        assertTrue(assertRandomRays(random, 3000, 10) > 100);
+
+        mIndex.clear();
+        for (int slot = 0; slot <= 300; slot++)
+        {
+            mPresent[slot] = false;
+        }
+        assertEquals(-1, mIndex.pick(0, 1.5f, 0, 0, -1, 0, MAX_DISTANCE));
+    }
+}
@@ -0,0 +1,221 @@
+package com.your.package.here;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnchorTransformTableTest
+{
+    @Test
+    public void addStartsWithIdentityTransform()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(4);
+        int slot = AnchorTransformTable.slotOf(table.add(3, 100));
+        table.scale(slot, 2);
+        table.rotate(slot, 1);
+        table.translate(slot, 0.5f, -0.5f);
+        table.remove(table.handleOf(slot));
+
+        int again = AnchorTransformTable.slotOf(table.add(7, 200));
+        assertEquals(slot, again);
+        assertEquals(1.0f, table.getScaleFactor(again), 0);
+        assertEquals(0.0f, table.getRotationTheta(again), 0);
+        assertEquals(0.0f, table.getTranslationX(again), 0);
+        assertEquals(0.0f, table.getTranslationZ(again), 0);
+        assertEquals(7, table.getModelReference(again));
+        assertEquals(200, table.getLastInteraction(again));
+    }
+
+    @Test
+    public void addResetsWorldPosition()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(1);
+        int slot = AnchorTransformTable.slotOf(table.add(0, 0));
+        assertTrue(Float.isNaN(table.getWorldX(slot)));
+        table.setWorldPosition(slot, 1, 2, 3);
+        table.remove(table.handleOf(slot));
+
+        // The next object in the slot does not inherit where the last one was drawn.
+        table.add(0, 0);
+        assertTrue(Float.isNaN(table.getWorldY(slot)));
+        table.remove(table.handleOf(slot));
+        table.add(0, 0, 4, 5, 6);
+        assertEquals(4, table.getWorldX(slot), 0);
+        assertEquals(5, table.getWorldY(slot), 0);
+        assertEquals(6, table.getWorldZ(slot), 0);
+    }
+
+    @Test
+    public void farthestEvictionSkipsUnknownPositions()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(3);
+        int unknown = AnchorTransformTable.slotOf(table.add(0, 0));
+        int near = AnchorTransformTable.slotOf(table.add(0, 0, 1, 0, 0));
+        int far = AnchorTransformTable.slotOf(table.add(0, 0, 9, 0, 0));
+        assertEquals(far, AnchorEvictionPolicy.FARTHEST_FROM_CAMERA.selectVictim(table, 0, 0, 0));
+        table.remove(table.handleOf(far));
+        table.remove(table.handleOf(near));
+        assertEquals(unknown, AnchorEvictionPolicy.FARTHEST_FROM_CAMERA.selectVictim(table, 0, 0, 0));
+    }
+
+    @Test
+    public void reusedSlotInvalidatesOldHandle()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(2);
+        int first = table.add(0, 0);
+        assertTrue(table.isValid(first));
+        assertTrue(table.remove(first));
+        assertFalse(table.isValid(first));
+        // Removing twice is ignored.
+        assertFalse(table.remove(first));
+
+        int second = table.add(0, 0);
+        assertEquals(AnchorTransformTable.slotOf(first), AnchorTransformTable.slotOf(second));
+        assertNotEquals(first, second);
+        assertFalse(table.isValid(first));
+        assertTrue(table.isValid(second));
+        assertFalse(table.isValid(AnchorTransformTable.NO_HANDLE));
+    }
+
+    @Test
+    public void removeSwapsLastLiveSlotIntoHole()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(4);
+        int a = table.add(0, 0);
+        int b = table.add(1, 0);
+        int c = table.add(2, 0);
+        table.scale(AnchorTransformTable.slotOf(c), 3);
+
+        assertTrue(table.remove(a));
+        assertEquals(2, table.size());
+        assertEquals(AnchorTransformTable.slotOf(c), table.liveSlot(0));
+        assertEquals(AnchorTransformTable.slotOf(b), table.liveSlot(1));
+        // The moved slot keeps its data and handle.
+        assertTrue(table.isValid(c));
+        assertEquals(3.0f, table.getScaleFactor(AnchorTransformTable.slotOf(c)), 0);
+        assertEquals(2, table.getModelReference(AnchorTransformTable.slotOf(c)));
+
+        assertTrue(table.remove(c));
+        assertEquals(1, table.size());
+        assertEquals(AnchorTransformTable.slotOf(b), table.liveSlot(0));
+        assertTrue(table.isValid(b));
+    }
+
+    @Test
+    public void fillsEmptiesAndFillsAgain()
+    {
+        int capacity = 8;
+        AnchorTransformTable table = new AnchorTransformTable(capacity);
+        int[] handles = new int[capacity];
+        for (int round = 0; round < 3; round++)
+        {
+            for (int i = 0; i < capacity; i++)
+            {
+                assertFalse(table.isFull());
+                handles[i] = table.add(i, 0);
+                assertNotEquals(AnchorTransformTable.NO_HANDLE, handles[i]);
+                assertEquals(handles[i], table.lastAdded());
+            }
+            assertTrue(table.isFull());
+            assertEquals(AnchorTransformTable.NO_HANDLE, table.add(0, 0));
+
+            // Every slot handed out once per round.
+            boolean[] seen = new boolean[capacity];
+            for (int i = 0; i < capacity; i++)
+            {
+                int slot = AnchorTransformTable.slotOf(handles[i]);
+                assertFalse(seen[slot]);
+                seen[slot] = true;
+            }
+
+            // Release from the middle outwards.
+            for (int i = 0; i < capacity; i++)
+            {
+                int index = (i * 3 + capacity / 2) % capacity;
+                assertTrue(table.remove(handles[index]));
+                assertEquals(capacity - 1 - i, table.size());
+            }
+            assertEquals(AnchorTransformTable.NO_HANDLE, table.lastAdded());
+        }
+    }
+
+    @Test
+    public void versionMovesOnEveryChange()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(1);
+        int slot = AnchorTransformTable.slotOf(table.add(0, 0));
+        int version = table.getVersion(slot);
+        table.scale(slot, 1.5f);
+        assertNotEquals(version, version = table.getVersion(slot));
+        table.rotate(slot, 0.1f);
+        assertNotEquals(version, version = table.getVersion(slot));
+        table.translate(slot, 0.1f, 0);
+        assertNotEquals(version, version = table.getVersion(slot));
+        table.remove(table.handleOf(slot));
+        table.add(0, 0);
+        assertNotEquals(version, table.getVersion(slot));
+    }
+
+    @Test
+    public void scaleIsClamped()
+    {
+        AnchorTransformTable table = new AnchorTransformTable(1);
+        int slot = AnchorTransformTable.slotOf(table.add(0, 0));
+        table.scale(slot, 1000);
+        assertEquals(AnchorTransformTable.MAX_SCALE, table.getScaleFactor(slot), 0);
+        table.scale(slot, 0);
+        assertEquals(AnchorTransformTable.MIN_SCALE, table.getScaleFactor(slot), 0);
+    }
+
+    @Test
+    public void gesturesAndIterationDoNotAllocate()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        AnchorTransformTable table = new AnchorTransformTable(64);
+        // Warm up, so class loading and compilation are out of the way.
+        float sum = exercise(table, 10000);
+        // The JVM may still allocate on the thread now and then, e.g. when a method is recompiled,
+        // so the fewest bytes of a few runs are taken.
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++)
+        {
+            long before = threads.getThreadAllocatedBytes(thread);
+            sum += exercise(table, 10000);
+            allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+        }
+        assertTrue(sum != 0);
+        assertEquals("bytes allocated", 0, allocated);
+    }
+
+    // Placement, gestures, the draw loop's reads and eviction, as the activity runs them per frame.
+    private static float exercise(AnchorTransformTable table, int frames)
+    {
+        float sum = 0;
+        for (int frame = 0; frame < frames; frame++)
+        {
+            if (table.isFull())
+            {
+                table.remove(table.handleOf(table.liveSlot(frame % table.size())));
+            }
+            int slot = AnchorTransformTable.slotOf(table.add(frame & 3, frame));
+            table.scale(slot, 1.01f);
+            table.rotate(slot, 0.01f);
+            table.translate(slot, 0.001f, -0.001f);
+            table.touch(slot, frame);
+            for (int i = 0; i < table.size(); i++)
+            {
+                int live = table.liveSlot(i);
+                sum += table.getScaleFactor(live) + table.getRotationTheta(live) + table.getTranslationX(live)
+                        + table.getTranslationZ(live) + table.getModelReference(live);
+                table.setWorldPosition(live, sum, 0, -sum);
+            }
+        }
+        return sum;
+    }
+}
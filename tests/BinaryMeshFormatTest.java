@@ -0,0 +1,169 @@
+package com.your.package.here.rendering;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import de.javagl.obj.ObjReader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryMeshFormatTest
+{
+    // A unit quad in the XZ plane lifted to y = 0.5, with normals and texture coordinates.
+    private static final String QUAD_OBJ = "v -1 0.5 -1\nv 1 0.5 -1\nv 1 0.5 1\nv -1 0.5 1\n"
+            + "vn 0 1 0\nvt 0 0\nvt 1 0\nvt 1 1\nvt 0 1\n"
+            + "f 1/1/1 2/2/1 3/3/1 4/4/1\n";
+
+    private static MeshData parse(String obj) throws IOException
+    {
+        return BinaryMeshFormat.fromObj(ObjReader.read(new ByteArrayInputStream(obj.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    private static byte[] write(MeshData mesh) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = BinaryMeshFormat.write(mesh, Channels.newChannel(out));
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    private static ByteBuffer whole(ByteBuffer buffer)
+    {
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+        return view;
+    }
+
+    @Test
+    public void readGivesBackWhatWasWritten() throws IOException
+    {
+        MeshData mesh = parse(QUAD_OBJ);
+        assertEquals(4, mesh.vertexCount);
+        assertEquals(6, mesh.indexCount);
+
+        byte[] file = write(mesh);
+        assertEquals(BinaryMeshFormat.HEADER_SIZE + 4 * BinaryMeshFormat.VERTEX_STRIDE + 6 * 2, file.length);
+        MeshData read = BinaryMeshFormat.read(ByteBuffer.wrap(file));
+        assertEquals(mesh.vertexCount, read.vertexCount);
+        assertEquals(mesh.indexCount, read.indexCount);
+        assertArrayEquals(mesh.bounds, read.bounds, 0);
+        assertArrayEquals(new float[]{-1, 0.5f, -1, 1, 0.5f, 1}, read.bounds, 0);
+        assertEquals(whole(mesh.vertices), whole(read.vertices));
+        assertEquals(whole(mesh.indices), whole(read.indices));
+
+        // The slices are little endian and start at the first vertex and index.
+        assertEquals(ByteOrder.LITTLE_ENDIAN, read.vertices.order());
+        assertEquals(1.0f, read.vertices.getFloat(BinaryMeshFormat.NORMAL_OFFSET + 4), 0);
+        for (int i = 0; i < read.indexCount; i++)
+        {
+            int index = read.indices.getShort(i * 2) & 0xffff;
+            assertTrue(index < read.vertexCount);
+        }
+    }
+
+    @Test
+    public void emptyMeshRoundTrips() throws IOException
+    {
+        MeshData mesh = new MeshData(ByteBuffer.allocateDirect(0), 0, ByteBuffer.allocateDirect(0), 0, new float[6]);
+        MeshData read = BinaryMeshFormat.read(ByteBuffer.wrap(write(mesh)));
+        assertEquals(0, read.vertexCount);
+        assertEquals(0, read.indexCount);
+    }
+
+    @Test
+    public void rejectsBadMagic() throws IOException
+    {
+        byte[] file = write(parse(QUAD_OBJ));
+        file[0] = 'X';
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsOtherVersions() throws IOException
+    {
+        byte[] file = write(parse(QUAD_OBJ));
+        ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).putInt(4, BinaryMeshFormat.VERSION + 1);
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsTruncatedFiles() throws IOException
+    {
+        byte[] file = write(parse(QUAD_OBJ));
+        // Into the index section, into the vertex section, into the header.
+        assertRejected(Arrays.copyOf(file, file.length - 1));
+        assertRejected(Arrays.copyOf(file, BinaryMeshFormat.HEADER_SIZE + BinaryMeshFormat.VERTEX_STRIDE));
+        assertRejected(Arrays.copyOf(file, BinaryMeshFormat.HEADER_SIZE - 4));
+    }
+
+    @Test
+    public void rejectsOverlappingSections() throws IOException
+    {
+        byte[] file = write(parse(QUAD_OBJ));
+        ByteBuffer header = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int vertexEnd = header.getInt(40) + 4 * BinaryMeshFormat.VERTEX_STRIDE;
+        header.putInt(44, vertexEnd - 2);
+        assertRejected(file);
+
+        header.putInt(44, vertexEnd);
+        header.putInt(40, BinaryMeshFormat.HEADER_SIZE - 4);
+        assertRejected(file);
+    }
+
+    @Test
+    public void rejectsMoreVerticesThanShortIndicesAddress()
+    {
+        // A grid of 257 x 256 vertices, 65792 in all, every one used by a face.
+        int columns = 257;
+        int rows = 256;
+        StringBuilder obj = new StringBuilder();
+        for (int row = 0; row < rows; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                obj.append("v ").append(column).append(" 0 ").append(row).append('\n');
+            }
+        }
+        for (int row = 0; row + 1 < rows; row++)
+        {
+            for (int column = 0; column + 1 < columns; column++)
+            {
+                int a = row * columns + column + 1;
+                obj.append("f ").append(a).append(' ').append(a + 1).append(' ').append(a + columns + 1)
+                        .append(' ').append(a + columns).append('\n');
+            }
+        }
+        try
+        {
+            parse(obj.toString());
+            fail("converted a mesh with " + columns * rows + " vertices");
+        }
+        catch (IOException expected)
+        {
+            assertTrue(expected.getMessage().contains("65792"));
+        }
+    }
+
+    private static void assertRejected(byte[] file)
+    {
+        try
+        {
+            BinaryMeshFormat.read(ByteBuffer.wrap(file));
+            fail("read a broken mesh file");
+        }
+        catch (IOException expected)
+        {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.your.package.here;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastMathTest
+{
+    // The bounds documented on FastMath.
+    private static final double SIN_ERROR = 4e-7;
+    private static final double ATAN2_ERROR = 2e-6;
+    private static final float SIN_RANGE = 1e4f;
+
+    @Test
+    public void tableSinAndCosStayWithinBound()
+    {
+        double worst = 0;
+        // Every float in [-pi, pi] that is a multiple of 2^-20, and a dense sweep out to 1e4.
+        for (int i = -(int) (Math.PI * (1 << 20)); i <= (int) (Math.PI * (1 << 20)); i++)
+        {
+            worst = Math.max(worst, sinCosError((float) i / (1 << 20)));
+        }
+        for (float x = -SIN_RANGE; x <= SIN_RANGE; x += 0.0137f)
+        {
+            worst = Math.max(worst, sinCosError(x));
+        }
+        assertTrue("worst error " + worst, worst <= SIN_ERROR);
+    }
+
+    @Test
+    public void tableSinAtRangeLimits()
+    {
+        for (float x : new float[]{SIN_RANGE, -SIN_RANGE, Math.nextDown(SIN_RANGE), 0.0f, -0.0f})
+        {
+            assertTrue("x " + x, sinCosError(x) <= SIN_ERROR);
+        }
+    }
+
+    private static double sinCosError(float x)
+    {
+        return Math.max(Math.abs(FastMath.tableSin(x) - Math.sin(x)), Math.abs(FastMath.tableCos(x) - Math.cos(x)));
+    }
+
+    @Test
+    public void polyAtan2StaysWithinBound()
+    {
+        double worst = 0;
+        // Points on circles of several radii, densely spaced in angle, so every octant is covered.
+        float[] radii = {1e-30f, 1e-3f, 1.0f, 3.7f, 1e3f, 1e30f};
+        int steps = 1 << 20;
+        for (float radius : radii)
+        {
+            for (int i = 0; i < steps; i++)
+            {
+                double angle = (i + 0.5) * 2 * Math.PI / steps - Math.PI;
+                float y = (float) (radius * Math.sin(angle));
+                float x = (float) (radius * Math.cos(angle));
+                worst = Math.max(worst, Math.abs(FastMath.polyAtan2(y, x) - Math.atan2(y, x)));
+            }
+        }
+        assertTrue("worst error " + worst, worst <= ATAN2_ERROR);
+    }
+
+    @Test
+    public void polyAtan2MatchesMathOnAxesAndSignedZeros()
+    {
+        float[] values = {0.0f, -0.0f, 1.0f, -1.0f, Float.MIN_VALUE, -Float.MIN_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE};
+        for (float y : values)
+        {
+            for (float x : values)
+            {
+                float expected = (float) Math.atan2(y, x);
+                float actual = FastMath.polyAtan2(y, x);
+                assertEquals("atan2(" + y + ", " + x + ")", expected, actual, ATAN2_ERROR);
+                // The sign matters on the negative x axis, where it is the difference between pi and -pi.
+                assertEquals("sign of atan2(" + y + ", " + x + ")", Math.copySign(1.0f, expected),
+                        Math.copySign(1.0f, actual), 0);
+            }
+        }
+        assertEquals(-Math.PI, FastMath.polyAtan2(-0.0f, -1.0f), ATAN2_ERROR);
+        assertEquals(Math.PI, FastMath.polyAtan2(0.0f, -1.0f), ATAN2_ERROR);
+    }
+
+    @Test
+    public void polyAtan2PropagatesNaN()
+    {
+        assertTrue(Float.isNaN(FastMath.polyAtan2(Float.NaN, 1.0f)));
+        assertTrue(Float.isNaN(FastMath.polyAtan2(1.0f, Float.NaN)));
+    }
+
+    @Test
+    public void backendSwitchForwardsToMath()
+    {
+        boolean enabled = FastMath.isEnabled();
+        try
+        {
+            FastMath.setEnabled(false);
+            assertEquals((float) Math.sin(0.3), FastMath.sin(0.3f), 0);
+            assertEquals((float) Math.atan2(-0.0, -1.0), FastMath.atan2(-0.0f, -1.0f), 0);
+            FastMath.setEnabled(true);
+            assertEquals(FastMath.tableSin(0.3f), FastMath.sin(0.3f), 0);
+            assertEquals(FastMath.tableCos(0.3f), FastMath.cos(0.3f), 0);
+            assertEquals(FastMath.polyAtan2(0.2f, -0.7f), FastMath.atan2(0.2f, -0.7f), 0);
+        }
+        finally
+        {
+            FastMath.setEnabled(enabled);
+        }
+    }
+}
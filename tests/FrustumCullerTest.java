@@ -0,0 +1,108 @@
+package com.your.package.here.rendering;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrustumCullerTest
+{
+    private static final float NEAR = 0.1f;
+    private static final float FAR = 100f;
+
+    private final float[] mProjection = new float[16];
+    private final float[] mView = new float[16];
+    private final FrustumCuller mCuller = new FrustumCuller();
+
+    // As Matrix.perspectiveM with a 90 degree field of view and a square viewport, so the side planes
+    // are at 45 degrees: at depth d the view is d wide to each side.
+    @Before
+    public void setUp()
+    {
+        mProjection[0] = 1;
+        mProjection[5] = 1;
+        mProjection[10] = (FAR + NEAR) / (NEAR - FAR);
+        mProjection[11] = -1;
+        mProjection[14] = 2 * FAR * NEAR / (NEAR - FAR);
+    }
+
+    // Camera at (0, 0, z) looking down -Z.
+    private void lookDownNegativeZFrom(float z)
+    {
+        for (int i = 0; i < 16; i++)
+        {
+            mView[i] = i % 5 == 0 ? 1 : 0;
+        }
+        mView[14] = -z;
+        mCuller.beginFrame(mProjection, mView);
+    }
+
+    @Test
+    public void keepsSpheresInViewAndCullsTheRest()
+    {
+        lookDownNegativeZFrom(5);
+        assertTrue("in view", mCuller.isSphereInside(0, 0, 0, 0.1f));
+        assertTrue("off axis but in view", mCuller.isSphereInside(3, -3, 0, 0.1f));
+        assertFalse("behind the camera", mCuller.isSphereInside(0, 0, 10, 0.5f));
+        assertFalse("to the side", mCuller.isSphereInside(8, 0, 0, 1));
+        assertFalse("above", mCuller.isSphereInside(0, 8, 0, 1));
+        assertFalse("past the far plane", mCuller.isSphereInside(0, 0, -100, 1));
+        assertTrue("reaching over the far plane", mCuller.isSphereInside(0, 0, -96, 2));
+        assertFalse("in front of the near plane", mCuller.isSphereInside(0, 0, 4.95f, 0.01f));
+    }
+
+    @Test
+    public void keepsSpheresStraddlingAnEdge()
+    {
+        lookDownNegativeZFrom(5);
+        // The center is outside the right plane, about 0.35 from it.
+        assertTrue(mCuller.isSphereInside(5.5f, 0, 0, 1));
+        assertFalse(mCuller.isSphereInside(5.5f, 0, 0, 0.2f));
+        assertTrue(mCuller.isSphereInside(0, -5.5f, 0, 1));
+    }
+
+    @Test
+    public void followsATurnedCamera()
+    {
+        // Camera at the origin turned to look down +X: the view maps world X onto -Z.
+        for (int i = 0; i < 16; i++)
+        {
+            mView[i] = 0;
+        }
+        mView[2] = -1;
+        mView[5] = 1;
+        mView[8] = 1;
+        mView[15] = 1;
+        mCuller.beginFrame(mProjection, mView);
+        assertTrue(mCuller.isSphereInside(5, 0, 0, 0.1f));
+        assertTrue(mCuller.isSphereInside(5, 0, 4, 0.1f));
+        assertFalse(mCuller.isSphereInside(-5, 0, 0, 1));
+        assertFalse(mCuller.isSphereInside(0, 0, -5, 1));
+    }
+
+    @Test
+    public void countsPerFrameAndInTotal()
+    {
+        lookDownNegativeZFrom(5);
+        assertTrue(mCuller.isSphereVisible(0, 0, 0, 0.1f));
+        assertFalse(mCuller.isSphereVisible(0, 0, 10, 0.5f));
+        assertFalse(mCuller.isSphereVisible(8, 0, 0, 1));
+        mCuller.addCounts(4, 1);
+        assertEquals(5, mCuller.getFrameDrawnCount());
+        assertEquals(3, mCuller.getFrameCulledCount());
+
+        // A new frame starts its counts over, the totals carry on.
+        lookDownNegativeZFrom(5);
+        assertEquals(0, mCuller.getFrameDrawnCount());
+        assertEquals(0, mCuller.getFrameCulledCount());
+        mCuller.isSphereVisible(0, 0, 0, 0.1f);
+        assertEquals(1, mCuller.getFrameDrawnCount());
+        assertEquals(6, mCuller.getTotalDrawnCount());
+        assertEquals(3, mCuller.getTotalCulledCount());
+        // Testing without counting leaves the counters alone.
+        mCuller.isSphereInside(8, 0, 0, 1);
+        assertEquals(3, mCuller.getTotalCulledCount());
+    }
+}
@@ -0,0 +1,69 @@
+package com.your.package.here.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GestureChannelTest
+{
+    // The smallest ring, of which continuous gestures may fill all but the 256 slots kept for taps.
+    private static final int CAPACITY = 512;
+    private static final int CONTINUOUS_LIMIT = 256;
+
+    @Test
+    public void foldedGesturesArriveWhenTheGestureEnds()
+    {
+        GestureChannel channel = new GestureChannel(CAPACITY);
+        GestureChannel.Batch batch = channel.newBatch();
+        for (int i = 0; i < CONTINUOUS_LIMIT; i++)
+        {
+            channel.offerPan(1, 0);
+        }
+        // These no longer fit and are folded on the producer side.
+        channel.offerPan(2, 0);
+        channel.offerRotation(0.5f);
+        channel.offerScale(2);
+        channel.offerEnd();
+
+        // The consumer drains once, nothing is offered afterwards.
+        channel.drain(batch);
+        assertEquals(CONTINUOUS_LIMIT + 2, batch.panX, 0);
+        assertEquals(0.5f, batch.rotation, 0);
+        assertEquals(2, batch.scale, 0);
+        assertEquals(0, channel.drain(batch));
+        assertFalse(batch.hasPan);
+    }
+
+    @Test
+    public void endWithNothingPendingWritesNothing()
+    {
+        GestureChannel channel = new GestureChannel(CAPACITY);
+        GestureChannel.Batch batch = channel.newBatch();
+        channel.offerPan(1, 2);
+        channel.offerEnd();
+        assertEquals(1, channel.drain(batch));
+        assertTrue(batch.hasPan);
+        assertEquals(2, batch.panY, 0);
+    }
+
+    @Test
+    public void tapsUseTheReserve()
+    {
+        GestureChannel channel = new GestureChannel(CAPACITY);
+        GestureChannel.Batch batch = channel.newBatch();
+        for (int i = 0; i < CONTINUOUS_LIMIT; i++)
+        {
+            channel.offerRotation(0.01f);
+        }
+        for (int i = 0; i < CAPACITY - CONTINUOUS_LIMIT; i++)
+        {
+            assertTrue(channel.offerTap(i, i, i));
+        }
+        assertFalse(channel.offerTap(0, 0, 0));
+        channel.drain(batch);
+        assertEquals(CAPACITY - CONTINUOUS_LIMIT, batch.tapCount);
+        assertEquals(CAPACITY - CONTINUOUS_LIMIT - 1, batch.tapTime[batch.tapCount - 1]);
+    }
+}
@@ -0,0 +1,241 @@
+package com.your.package.here.view;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiTouchRecognizerTest
+{
+    private static final float SLOP = 10;
+
+    // Totals of what the recognizer reported.
+    private static class RecordingListener implements MultiTouchRecognizer.Listener
+    {
+        int downs;
+        int taps;
+        int ups;
+        int pans;
+        float panX;
+        float panY;
+        int scales;
+        float scale = 1;
+        int rotations;
+        float rotation;
+
+        @Override
+        public void onDown(float x, float y, long eventTime)
+        {
+            downs++;
+        }
+
+        @Override
+        public void onTap(float x, float y, long eventTime)
+        {
+            taps++;
+        }
+
+        @Override
+        public void onPan(float dx, float dy, long eventTime)
+        {
+            pans++;
+            panX += dx;
+            panY += dy;
+        }
+
+        @Override
+        public void onScale(float factor, long eventTime)
+        {
+            scales++;
+            scale *= factor;
+        }
+
+        @Override
+        public void onRotate(float deltaRadians, long eventTime)
+        {
+            rotations++;
+            rotation += deltaRadians;
+        }
+
+        @Override
+        public void onUp(long eventTime)
+        {
+            ups++;
+        }
+    }
+
+    private RecordingListener mListener;
+    private MultiTouchRecognizer mRecognizer;
+    private final int[] mIds = new int[MultiTouchRecognizer.MAX_POINTERS];
+    private final float[] mX = new float[MultiTouchRecognizer.MAX_POINTERS];
+    private final float[] mY = new float[MultiTouchRecognizer.MAX_POINTERS];
+    private long mTime;
+
+    @Before
+    public void setUp()
+    {
+        mListener = new RecordingListener();
+        mRecognizer = new MultiTouchRecognizer(SLOP, mListener);
+    }
+
+    // Sets pointer i of the next event.
+    private void pointer(int index, int id, float x, float y)
+    {
+        mIds[index] = id;
+        mX[index] = x;
+        mY[index] = y;
+    }
+
+    private void event(int action, int actionIndex, int pointerCount)
+    {
+        mTime += 10;
+        mRecognizer.onTouch(mTime, action, actionIndex, pointerCount, mIds, mX, mY);
+    }
+
+    @Test
+    public void quickUpInPlaceIsATap()
+    {
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        pointer(0, 0, 103, 102);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 1);
+        event(MultiTouchRecognizer.ACTION_UP, 0, 1);
+        assertEquals(1, mListener.downs);
+        assertEquals(1, mListener.taps);
+        assertEquals(0, mListener.pans);
+        assertEquals(1, mListener.ups);
+    }
+
+    @Test
+    public void panStartsPastTheSlopWithTheWholeMovement()
+    {
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        pointer(0, 0, 130, 90);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 1);
+        pointer(0, 0, 140, 90);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 1);
+        event(MultiTouchRecognizer.ACTION_UP, 0, 1);
+        assertEquals(2, mListener.pans);
+        assertEquals(40, mListener.panX, 0);
+        assertEquals(-10, mListener.panY, 0);
+        assertEquals(0, mListener.taps);
+    }
+
+    @Test
+    public void secondFingerDownRebaselinesWithoutAJump()
+    {
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        // The second finger lands far away: neither a scale nor a pan from the landing itself.
+        pointer(1, 1, 500, 100);
+        event(MultiTouchRecognizer.ACTION_POINTER_DOWN, 1, 2);
+        assertEquals(0, mListener.scales);
+        assertEquals(0, mListener.rotations);
+
+        // Both fingers spread to twice the distance.
+        pointer(0, 0, -100, 100);
+        pointer(1, 1, 700, 100);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 2);
+        assertEquals(2, mListener.scale, 1e-5);
+        assertEquals(0, mListener.rotation, 1e-6);
+        assertEquals(0, mListener.pans);
+
+        // A third finger at the centroid changes the span, not the scale.
+        pointer(2, 2, 300, 100);
+        event(MultiTouchRecognizer.ACTION_POINTER_DOWN, 2, 3);
+        assertEquals(2, mListener.scale, 1e-5);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 3);
+        assertEquals(2, mListener.scale, 1e-5);
+        assertEquals(0, mListener.taps);
+    }
+
+    @Test
+    public void twistOfTheTwoOldestFingersRotates()
+    {
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        pointer(1, 1, 300, 100);
+        event(MultiTouchRecognizer.ACTION_POINTER_DOWN, 1, 2);
+        // A quarter turn, clockwise on screen, in steps.
+        for (int step = 1; step <= 9; step++)
+        {
+            double angle = step * Math.PI / 18;
+            pointer(0, 0, 200 - 100 * (float) Math.cos(angle), 100 - 100 * (float) Math.sin(angle));
+            pointer(1, 1, 200 + 100 * (float) Math.cos(angle), 100 + 100 * (float) Math.sin(angle));
+            event(MultiTouchRecognizer.ACTION_MOVE, 0, 2);
+        }
+        assertEquals(Math.PI / 2, mListener.rotation, 1e-5);
+        assertEquals(1, mListener.scale, 1e-5);
+    }
+
+    @Test
+    public void firstFingerUpWhilePinchingLeavesTheOtherPanning()
+    {
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        pointer(1, 1, 300, 100);
+        event(MultiTouchRecognizer.ACTION_POINTER_DOWN, 1, 2);
+        pointer(0, 0, 90, 100);
+        pointer(1, 1, 310, 100);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 2);
+        assertEquals(1, mListener.scales);
+
+        // The first finger lifts; the event still holds it at index 0.
+        event(MultiTouchRecognizer.ACTION_POINTER_UP, 0, 2);
+        assertEquals(0, mListener.pans);
+        // The remaining finger moved down to index 0 and pans from where it is, no jump to the
+        // first finger's position and no slop to cross again.
+        pointer(0, 1, 315, 102);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 1);
+        assertEquals(1, mListener.pans);
+        assertEquals(5, mListener.panX, 0);
+        assertEquals(2, mListener.panY, 0);
+        assertEquals(1, mListener.scales);
+
+        event(MultiTouchRecognizer.ACTION_UP, 0, 1);
+        assertEquals(0, mListener.taps);
+        assertEquals(1, mListener.ups);
+    }
+
+    @Test
+    public void cancelEndsWithoutTapAndIgnoresTheRest()
+    {
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        event(MultiTouchRecognizer.ACTION_CANCEL, 0, 1);
+        assertEquals(1, mListener.ups);
+        pointer(0, 0, 200, 200);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, 1);
+        event(MultiTouchRecognizer.ACTION_UP, 0, 1);
+        assertEquals(0, mListener.pans);
+        assertEquals(0, mListener.taps);
+        assertEquals(1, mListener.ups);
+    }
+
+    @Test
+    public void fingersPastTheTrackedOnesAreIgnored()
+    {
+        int max = MultiTouchRecognizer.MAX_POINTERS;
+        pointer(0, 0, 100, 100);
+        event(MultiTouchRecognizer.ACTION_DOWN, 0, 1);
+        for (int i = 1; i < max; i++)
+        {
+            pointer(i, i, 100 + i * 20, 300);
+            event(MultiTouchRecognizer.ACTION_POINTER_DOWN, i, i + 1);
+        }
+        // An eleventh finger: the arrays only hold ten, the event reports it at index ten.
+        event(MultiTouchRecognizer.ACTION_POINTER_DOWN, max, max + 1);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, max + 1);
+        event(MultiTouchRecognizer.ACTION_POINTER_UP, max, max + 1);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, max);
+        assertEquals(0, mListener.pans);
+        assertEquals(0, mListener.ups);
+
+        // Still tracking the oldest two.
+        pointer(1, 1, 120 + 50, 300);
+        event(MultiTouchRecognizer.ACTION_MOVE, 0, max);
+        assertTrue(mListener.rotations > 0 || mListener.scales > 0);
+    }
+}
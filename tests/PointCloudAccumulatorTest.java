@@ -0,0 +1,88 @@
+package com.your.package.here.rendering;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class PointCloudAccumulatorTest
+{
+    // Counts the runs and bytes handed over, as glBufferSubData calls would.
+    private static class CountingUploader implements PointCloudAccumulator.Uploader
+    {
+        int runs;
+        int bytes;
+        int lastOffset;
+
+        @Override
+        public void upload(ByteBuffer voxels, int offset, int size)
+        {
+            assertEquals(offset, voxels.position());
+            runs++;
+            bytes += size;
+            lastOffset = offset;
+        }
+    }
+
+    // One confident point per voxel of 10 cm, spread along x.
+    private static FloatBuffer points(int count, float confidence)
+    {
+        FloatBuffer points = ByteBuffer.allocateDirect(count * PointCloudAccumulator.BYTES_PER_VOXEL)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        for (int i = 0; i < count; i++)
+        {
+            points.put(i * 4, i * 0.1f + 0.05f).put(i * 4 + 1, 0.05f).put(i * 4 + 2, 0.05f).put(i * 4 + 3, confidence);
+        }
+        return points;
+    }
+
+    @Test
+    public void uploadsOnlyChangedVoxels()
+    {
+        PointCloudAccumulator accumulator = new PointCloudAccumulator(0.1f, 0.1f, 100);
+        CountingUploader uploader = new CountingUploader();
+        accumulator.merge(points(10, 1.0f), 10);
+        assertEquals(10, accumulator.getVoxelCount());
+        assertEquals(10 * PointCloudAccumulator.BYTES_PER_VOXEL, accumulator.uploadChanges(uploader));
+        assertEquals(1, uploader.runs);
+        assertEquals(0, accumulator.uploadChanges(uploader));
+    }
+
+    @Test
+    public void markAllDirtyUploadsEveryVoxelOnce()
+    {
+        PointCloudAccumulator accumulator = new PointCloudAccumulator(0.1f, 0.1f, 100);
+        CountingUploader uploader = new CountingUploader();
+        accumulator.merge(points(20, 1.0f), 20);
+        accumulator.uploadChanges(uploader);
+
+        // A new buffer: nothing changed, yet everything has to be written again.
+        accumulator.markAllDirty();
+        uploader = new CountingUploader();
+        assertEquals(20 * PointCloudAccumulator.BYTES_PER_VOXEL, accumulator.uploadChanges(uploader));
+        assertEquals(1, uploader.runs);
+        assertEquals(0, uploader.lastOffset);
+        assertEquals(0, accumulator.uploadChanges(uploader));
+
+        // Pending changes are covered by the full upload and not handed over again.
+        accumulator.merge(points(30, 1.0f), 30);
+        accumulator.markAllDirty();
+        uploader = new CountingUploader();
+        accumulator.uploadChanges(uploader);
+        assertEquals(30 * PointCloudAccumulator.BYTES_PER_VOXEL, uploader.bytes);
+        assertEquals(0, accumulator.uploadChanges(uploader));
+    }
+
+    @Test
+    public void markAllDirtyOnEmptyCloudUploadsNothing()
+    {
+        PointCloudAccumulator accumulator = new PointCloudAccumulator(0.1f, 0.1f, 100);
+        CountingUploader uploader = new CountingUploader();
+        accumulator.markAllDirty();
+        assertEquals(0, accumulator.uploadChanges(uploader));
+        assertEquals(0, uploader.runs);
+    }
+}
@@ -0,0 +1,134 @@
+package com.your.package.here.rendering;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RenderQueueTest
+{
+    /**
+     * Stands in for the GL backend: a batch is one bind of a model's program, buffers and texture,
+     * every instance in it one draw call. Records what each draw call would have drawn.
+     */
+    private static class RecordingBackend implements RenderQueue.Backend
+    {
+        int binds;
+        int draws;
+        final List<Integer> boundModels = new ArrayList<>();
+        final List<Float> drawnX = new ArrayList<>();
+        final List<Float> drawnScales = new ArrayList<>();
+
+        @Override
+        public void drawBatch(int model, float[] matrices, float[] scales, int first, int count)
+        {
+            binds++;
+            boundModels.add(model);
+            for (int i = first; i < first + count; i++)
+            {
+                draws++;
+                drawnX.add(matrices[i * 16 + 12]);
+                drawnScales.add(scales[i]);
+            }
+        }
+    }
+
+    private static float[] matrixAt(float x)
+    {
+        float[] matrix = new float[16];
+        matrix[0] = 1;
+        matrix[5] = 1;
+        matrix[10] = 1;
+        matrix[12] = x;
+        matrix[15] = 1;
+        return matrix;
+    }
+
+    @Test
+    public void bindsEachModelOnce()
+    {
+        RenderQueue queue = new RenderQueue();
+        RecordingBackend backend = new RecordingBackend();
+        // Twenty copies of three models, interleaved as anchors come.
+        for (int i = 0; i < 60; i++)
+        {
+            queue.submit(i % 3, matrixAt(i), 0, 1.0f);
+        }
+        assertEquals(3, queue.flush(backend));
+        assertEquals(3, backend.binds);
+        assertEquals(60, backend.draws);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void groupsByModelInSubmissionOrder()
+    {
+        RenderQueue queue = new RenderQueue();
+        RecordingBackend backend = new RecordingBackend();
+        int[] models = {2, 0, 2, 1, 0, 2};
+        for (int i = 0; i < models.length; i++)
+        {
+            queue.submit(models[i], matrixAt(i), 0, 0.5f + i);
+        }
+        queue.flush(backend);
+
+        assertEquals(3, backend.boundModels.size());
+        assertEquals(0, (int) backend.boundModels.get(0));
+        assertEquals(1, (int) backend.boundModels.get(1));
+        assertEquals(2, (int) backend.boundModels.get(2));
+        // Stable within a model, and every matrix keeps its scale.
+        float[] expectedX = {1, 4, 3, 0, 2, 5};
+        for (int i = 0; i < expectedX.length; i++)
+        {
+            assertEquals(expectedX[i], backend.drawnX.get(i), 0);
+            assertEquals(0.5f + expectedX[i], backend.drawnScales.get(i), 0);
+        }
+    }
+
+    @Test
+    public void readsMatricesAtOffset()
+    {
+        RenderQueue queue = new RenderQueue();
+        RecordingBackend backend = new RecordingBackend();
+        float[] matrices = new float[48];
+        System.arraycopy(matrixAt(7), 0, matrices, 16, 16);
+        System.arraycopy(matrixAt(9), 0, matrices, 32, 16);
+        queue.submit(0, matrices, 16, 1.0f);
+        queue.submit(0, matrices, 32, 1.0f);
+        queue.flush(backend);
+        assertArrayEquals(new Object[]{7.0f, 9.0f}, backend.drawnX.toArray());
+    }
+
+    @Test
+    public void growsPastInitialCapacityAndSkipsUnusedModels()
+    {
+        RenderQueue queue = new RenderQueue(2);
+        RecordingBackend backend = new RecordingBackend();
+        for (int i = 0; i < 100; i++)
+        {
+            queue.submit(i % 2 == 0 ? 3 : 40, matrixAt(i), 0, 1.0f);
+        }
+        assertEquals(2, queue.flush(backend));
+        assertEquals(3, (int) backend.boundModels.get(0));
+        assertEquals(40, (int) backend.boundModels.get(1));
+        assertEquals(100, backend.draws);
+    }
+
+    @Test
+    public void flushClearsTheQueue()
+    {
+        RenderQueue queue = new RenderQueue();
+        RecordingBackend backend = new RecordingBackend();
+        queue.submit(1, matrixAt(0), 0, 1.0f);
+        queue.flush(backend);
+        assertEquals(0, queue.flush(backend));
+        assertEquals(1, backend.binds);
+
+        queue.submit(1, matrixAt(0), 0, 1.0f);
+        queue.clear();
+        assertEquals(0, queue.flush(backend));
+    }
+}
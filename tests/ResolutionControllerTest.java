@@ -0,0 +1,25 @@
+package com.your.package.here.rendering;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResolutionControllerTest
+{
+    private static final long BUDGET_NANOS = 20000000L;
+    private static final float MIN_SCALE = 0.5f;
+    private static final float STEP = 0.05f;
+
+    // Load scenarios are run in tools/ResolutionTraceTest, on the same model ResolutionTrace prints.
+    @Test
+    public void singleSlowFrameIsIgnored()
+    {
+        ResolutionController controller = new ResolutionController(BUDGET_NANOS, MIN_SCALE, STEP);
+        for (int frame = 0; frame < 100; frame++)
+        {
+            controller.onFrame(frame == 50 ? 5 * BUDGET_NANOS : BUDGET_NANOS / 2);
+        }
+        assertEquals(0, controller.getChangeCount());
+        assertEquals(1, controller.getOverBudgetCount());
+    }
+}
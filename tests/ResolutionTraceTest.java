@@ -0,0 +1,70 @@
+package com.your.package.here.tools;
+
+import com.your.package.here.rendering.ResolutionController;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResolutionTraceTest
+{
+    // The scenarios and frame model are the ones ResolutionTrace prints, at its default budget.
+    private static ResolutionController run(ResolutionTrace.Scenario scenario)
+    {
+        return ResolutionTrace.run(ResolutionTrace.DEFAULT_BUDGET_MS, scenario).controller;
+    }
+
+    private static double overBudgetRate(ResolutionController controller)
+    {
+        return (double) controller.getOverBudgetCount() / controller.getFrameCount();
+    }
+
+    @Test
+    public void steadyLoadWithinBudgetKeepsFullScale()
+    {
+        ResolutionController controller = run(ResolutionTrace.STEADY);
+        assertEquals(0, controller.getChangeCount());
+        assertEquals(1.0f, controller.getScale(), 0);
+        // Only the long frames go over.
+        assertTrue(overBudgetRate(controller) < 0.04);
+    }
+
+    @Test
+    public void loadStepIsAbsorbedAndUndone()
+    {
+        ResolutionTrace.Trace trace = ResolutionTrace.run(ResolutionTrace.DEFAULT_BUDGET_MS, ResolutionTrace.LOAD_STEP);
+        // Over a third of the frames would miss the budget at full scale.
+        assertTrue(trace.overFull > ResolutionTrace.FRAMES / 4);
+        assertTrue(overBudgetRate(trace.controller) < 0.04);
+        assertTrue(trace.controller.getChangeCount() <= 10);
+        assertEquals(1.0f, trace.controller.getScale(), 0);
+    }
+
+    @Test
+    public void thermalRampIsFollowed()
+    {
+        ResolutionController controller = run(ResolutionTrace.THERMAL);
+        assertTrue(overBudgetRate(controller) < 0.04);
+        assertTrue(controller.getChangeCount() <= 10);
+        assertTrue(controller.getScale() < 0.8f);
+    }
+
+    @Test
+    public void comingAndGoingLoadDoesNotFlap()
+    {
+        ResolutionController controller = run(ResolutionTrace.FLAPPING);
+        assertTrue(overBudgetRate(controller) < 0.04);
+        // Scaling back up is tried less and less often.
+        assertTrue(controller.getChangeCount() <= 15);
+    }
+
+    @Test
+    public void overloadStopsAtMinimumScale()
+    {
+        ResolutionTrace.Trace trace = ResolutionTrace.run(ResolutionTrace.DEFAULT_BUDGET_MS, ResolutionTrace.OVERLOAD);
+        assertEquals(ResolutionTrace.MIN_SCALE, trace.controller.getScale(), 1e-6f);
+        assertEquals(ResolutionTrace.MIN_SCALE, trace.lowestScale, 1e-6f);
+        assertEquals(1, trace.controller.getChangeCount());
+    }
+}
@@ -0,0 +1,141 @@
+package com.your.package.here;
+
+import com.your.package.here.rendering.RenderQueue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SceneControllerTest
+{
+    // Past the size from which frames are prepared on the pool.
+    private static final int OBJECTS = 200;
+    private static final int FRAMES = 4;
+
+    /**
+     * Anchors in rows in front of the camera, wider than the view so some are culled.
+     */
+    private static final SceneController.Anchors ANCHORS = new SceneController.Anchors()
+    {
+        @Override
+        public int getPose(int slot, float[] matrix, int offset)
+        {
+            for (int i = 0; i < 16; i++)
+            {
+                matrix[offset + i] = i % 5 == 0 ? 1 : 0;
+            }
+            matrix[offset + 12] = (slot % 20 - 10) * 0.5f;
+            matrix[offset + 13] = -0.5f;
+            matrix[offset + 14] = -1 - (slot / 20) * 0.5f;
+            return SceneController.TRACKING;
+        }
+
+        @Override
+        public void onStopped(int slot)
+        {
+        }
+    };
+
+    /**
+     * Records the model and matrix of every draw call, in order.
+     */
+    private static class RecordingBackend implements RenderQueue.Backend
+    {
+        final List<Integer> models = new ArrayList<>();
+        final List<Float> values = new ArrayList<>();
+
+        @Override
+        public void drawBatch(int model, float[] matrices, float[] scales, int first, int count)
+        {
+            for (int i = first; i < first + count; i++)
+            {
+                models.add(model);
+                for (int j = 0; j < 16; j++)
+                {
+                    values.add(matrices[i * 16 + j] * scales[i]);
+                }
+            }
+        }
+    }
+
+    private static SceneController scene(ForkJoinPool pool)
+    {
+        SceneController scene = new SceneController(OBJECTS, pool);
+        float[] identity = new float[16];
+        for (int i = 0; i < 16; i += 5)
+        {
+            identity[i] = 1;
+        }
+        // A 90 degree perspective looking down -Z from the origin.
+        float[] projection = new float[16];
+        projection[0] = 1;
+        projection[5] = 1;
+        projection[10] = -100.1f / 99.9f;
+        projection[11] = -1;
+        projection[14] = -20f / 99.9f;
+        scene.setViewport(1000, 1000);
+        scene.setCamera(projection, identity, identity);
+        AnchorTransformTable transforms = scene.getTransforms();
+        for (int i = 0; i < OBJECTS; i++)
+        {
+            int slot = AnchorTransformTable.slotOf(scene.add(i % 3, 0));
+            transforms.scale(slot, 0.5f + (i % 7) * 0.1f);
+            transforms.rotate(slot, i * 0.3f);
+            transforms.translate(slot, (i % 5) * 0.01f, -(i % 4) * 0.01f);
+        }
+        return scene;
+    }
+
+    // Draws a few frames, turning a few objects between them so some matrices are composed again.
+    private static RecordingBackend draw(SceneController scene, int[] drawn, int[] composed)
+    {
+        RecordingBackend backend = new RecordingBackend();
+        AnchorTransformTable transforms = scene.getTransforms();
+        for (int frame = 0; frame < FRAMES; frame++)
+        {
+            for (int i = frame; i < OBJECTS; i += 17)
+            {
+                transforms.rotate(transforms.liveSlot(i), 0.1f);
+            }
+            drawn[frame] = scene.drawObjects(ANCHORS, backend);
+            composed[frame] = scene.getSnapshot().composed;
+        }
+        return backend;
+    }
+
+    @Test
+    public void poolDrawsWhatTheCallingThreadDraws()
+    {
+        int[] serialDrawn = new int[FRAMES];
+        int[] serialComposed = new int[FRAMES];
+        RecordingBackend serial = draw(scene(null), serialDrawn, serialComposed);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            int[] parallelDrawn = new int[FRAMES];
+            int[] parallelComposed = new int[FRAMES];
+            RecordingBackend parallel = draw(scene(pool), parallelDrawn, parallelComposed);
+            for (int frame = 0; frame < FRAMES; frame++)
+            {
+                assertEquals(serialDrawn[frame], parallelDrawn[frame]);
+                assertEquals(serialComposed[frame], parallelComposed[frame]);
+            }
+            assertEquals(serial.models, parallel.models);
+            assertEquals(serial.values, parallel.values);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        // Some objects are culled, and after the first frame only the turned ones are composed.
+        assertTrue(serialDrawn[0] > 0 && serialDrawn[0] < OBJECTS);
+        assertEquals(OBJECTS, serialComposed[0]);
+        assertTrue(serialComposed[1] < OBJECTS / 10);
+    }
+}
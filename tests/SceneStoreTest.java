@@ -0,0 +1,296 @@
+package com.your.package.here.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SceneStoreTest
+{
+    private static final long TIMEOUT_MS = 10000;
+    // Journal record sizes for the paths below: header, id, two strings, pose and transform.
+    private static final int PLACE_BYTES = 5 + 8 + 2 + 8 + 2 + 8 + 11 * 4;
+    private static final int TRANSFORM_BYTES = 5 + 8 + 4 * 4;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final List<String> mErrors = new ArrayList<>();
+    private final SceneStore.Listener mListener = new SceneStore.Listener()
+    {
+        @Override
+        public void onLoaded(int objects, long nanos)
+        {
+        }
+
+        @Override
+        public void onError(String message, Exception e)
+        {
+            synchronized (mErrors)
+            {
+                mErrors.add(message);
+            }
+        }
+    };
+
+    private SceneStore open(File directory)
+    {
+        SceneStore store = new SceneStore(directory, mListener);
+        store.open();
+        return store;
+    }
+
+    private static SceneStore.Scene restore(SceneStore store) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        SceneStore.Scene scene;
+        while ((scene = store.takeRestoredScene()) == null && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertNotNull("scene was not read in time", scene);
+        return scene;
+    }
+
+    // The store thread writes the journal in the background, wait until it holds the records.
+    private static void awaitLength(File file, long length) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (file.length() != length && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertEquals(file.getName(), length, file.length());
+    }
+
+    // What a crash would leave: the files as they are while the store is still running.
+    private File copyOf(File directory, long journalLength) throws IOException
+    {
+        File copy = mFolder.newFolder();
+        File snapshot = new File(directory, "scene.snapshot");
+        if (snapshot.exists())
+        {
+            Files.copy(snapshot.toPath(), new File(copy, "scene.snapshot").toPath());
+        }
+        byte[] journal = Files.readAllBytes(new File(directory, "scene.journal").toPath());
+        FileOutputStream out = new FileOutputStream(new File(copy, "scene.journal"));
+        try
+        {
+            out.write(journal, 0, (int) journalLength);
+        }
+        finally
+        {
+            out.close();
+        }
+        return copy;
+    }
+
+    private static float[] pose(float x)
+    {
+        return new float[]{x, 0.5f, -x, 0, 0.6f, 0, 0.8f};
+    }
+
+    private static void place(SceneStore store, long id, float x)
+    {
+        store.recordPlace(id, "andy.obj", "andy.png", pose(x), 1.5f, 0.25f, 0.1f, -0.1f);
+    }
+
+    private static int indexOf(SceneStore.Scene scene, long id)
+    {
+        for (int i = 0; i < scene.count; i++)
+        {
+            if (scene.ids[i] == id)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void assertPlaced(SceneStore.Scene scene, long id, float x)
+    {
+        int i = indexOf(scene, id);
+        assertTrue("object " + id + " missing", i >= 0);
+        assertArrayEquals(pose(x), Arrays.copyOfRange(scene.poses, i * SceneStore.POSE_SIZE,
+                (i + 1) * SceneStore.POSE_SIZE), 0);
+        assertEquals("andy.obj", scene.meshPaths[scene.models[i]]);
+        assertEquals("andy.png", scene.texturePaths[scene.models[i]]);
+    }
+
+    @Test
+    public void closedSceneIsCompactedAndRestored() throws Exception
+    {
+        File directory = mFolder.newFolder();
+        SceneStore store = open(directory);
+        assertEquals(0, restore(store).count);
+        long kept = store.nextId();
+        long removed = store.nextId();
+        place(store, kept, 1);
+        place(store, removed, 2);
+        store.recordTransform(kept, 2.0f, 1.0f, 0.3f, 0.4f);
+        store.recordRemove(removed);
+        store.close();
+
+        // Opening waits for the close, which moved everything into the snapshot.
+        store = open(directory);
+        SceneStore.Scene scene = restore(store);
+        assertTrue(new File(directory, "scene.snapshot").exists());
+        assertEquals(0, new File(directory, "scene.journal").length());
+        assertEquals(1, scene.count);
+        assertPlaced(scene, kept, 1);
+        assertEquals(2.0f, scene.scales[0], 0);
+        assertEquals(1.0f, scene.rotations[0], 0);
+        assertEquals(0.3f, scene.translationX[0], 0);
+        assertEquals(0.4f, scene.translationZ[0], 0);
+
+        // Edits after the snapshot are only in the journal when the process dies.
+        long added = store.nextId();
+        place(store, added, 3);
+        store.flushSoon();
+        awaitLength(new File(directory, "scene.journal"), PLACE_BYTES);
+        File crashed = copyOf(directory, PLACE_BYTES);
+        store.close();
+
+        store = open(crashed);
+        scene = restore(store);
+        store.close();
+        assertEquals(2, scene.count);
+        assertPlaced(scene, kept, 1);
+        assertPlaced(scene, added, 3);
+        assertTrue(mErrors.toString(), mErrors.isEmpty());
+    }
+
+    @Test
+    public void tornJournalTailIsCut() throws Exception
+    {
+        File directory = mFolder.newFolder();
+        SceneStore store = open(directory);
+        restore(store);
+        long first = store.nextId();
+        long second = store.nextId();
+        place(store, first, 1);
+        place(store, second, 2);
+        store.flushSoon();
+        File journal = new File(directory, "scene.journal");
+        awaitLength(journal, 2 * PLACE_BYTES);
+        // The crash hit while the second record was being written.
+        File crashed = copyOf(directory, 2 * PLACE_BYTES - 3);
+        store.close();
+
+        store = open(crashed);
+        SceneStore.Scene scene = restore(store);
+        assertEquals(1, scene.count);
+        assertPlaced(scene, first, 1);
+        // Cut back to the last complete record, so the next one starts on a boundary.
+        assertEquals(PLACE_BYTES, new File(crashed, "scene.journal").length());
+
+        long third = store.nextId();
+        place(store, third, 3);
+        store.flushSoon();
+        awaitLength(new File(crashed, "scene.journal"), 2 * PLACE_BYTES);
+        File crashedAgain = copyOf(crashed, 2 * PLACE_BYTES);
+        store.close();
+
+        store = open(crashedAgain);
+        scene = restore(store);
+        store.close();
+        assertEquals(2, scene.count);
+        assertPlaced(scene, first, 1);
+        assertPlaced(scene, third, 3);
+        assertTrue(mErrors.toString(), mErrors.isEmpty());
+    }
+
+    @Test
+    public void longJournalIsCompactedWhileRunning() throws Exception
+    {
+        File directory = mFolder.newFolder();
+        SceneStore store = open(directory);
+        restore(store);
+        long id = store.nextId();
+        place(store, id, 1);
+        // Past the 256 KiB the journal may grow to.
+        int transforms = 256 * 1024 / TRANSFORM_BYTES + 1;
+        for (int i = 1; i <= transforms; i++)
+        {
+            store.recordTransform(id, 1, i, 0, 0);
+        }
+        store.flushSoon();
+        File snapshot = new File(directory, "scene.snapshot");
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!snapshot.exists() && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(snapshot.exists());
+        awaitLength(new File(directory, "scene.journal"), 0);
+        File crashed = copyOf(directory, 0);
+        store.close();
+
+        store = open(crashed);
+        SceneStore.Scene scene = restore(store);
+        store.close();
+        assertEquals(1, scene.count);
+        assertPlaced(scene, id, 1);
+        assertEquals(transforms, scene.rotations[0], 0);
+    }
+
+    @Test
+    public void unreadableSnapshotIsMovedAsideAndJournalKept() throws Exception
+    {
+        File directory = mFolder.newFolder();
+        SceneStore store = open(directory);
+        restore(store);
+        long inSnapshot = store.nextId();
+        place(store, inSnapshot, 1);
+        store.close();
+
+        store = open(directory);
+        restore(store);
+        long inJournal = store.nextId();
+        place(store, inJournal, 2);
+        store.flushSoon();
+        awaitLength(new File(directory, "scene.journal"), PLACE_BYTES);
+        File cut = copyOf(directory, PLACE_BYTES);
+        File garbage = copyOf(directory, PLACE_BYTES);
+        store.close();
+
+        // A snapshot cut after its header and one that is not a snapshot at all.
+        RandomAccessFile file = new RandomAccessFile(new File(cut, "scene.snapshot"), "rw");
+        try
+        {
+            file.setLength(20);
+        }
+        finally
+        {
+            file.close();
+        }
+        Files.write(new File(garbage, "scene.snapshot").toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        for (File crashed : new File[]{cut, garbage})
+        {
+            mErrors.clear();
+            store = open(crashed);
+            SceneStore.Scene scene = restore(store);
+            assertEquals(1, scene.count);
+            assertPlaced(scene, inJournal, 2);
+            assertFalse(new File(crashed, "scene.snapshot").exists());
+            assertTrue(new File(crashed, "scene.snapshot.bad").exists());
+            assertEquals(1, mErrors.size());
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.your.package.here.tools;
+
+import com.your.package.here.FastMath;
+import com.your.package.here.SessionLog;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class SessionReplayTest
+{
+    // 240 frames from SessionReplay --synthesize: taps, a drag and a pinch with a twist.
+    private static final String GOLDEN_LOG = "/golden.arsl";
+    // Printed by: SessionReplay tests/resources/golden.arsl. Changes whenever what the scene draws
+    // does, which has to be deliberate; update it along with that change.
+    private static final int GOLDEN_CHECKSUM = 0xc431f0a7;
+
+    private static SessionLog.Reader readGolden() throws IOException
+    {
+        InputStream in = SessionReplayTest.class.getResourceAsStream(GOLDEN_LOG);
+        assertNotNull(GOLDEN_LOG, in);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0; )
+            {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return new SessionLog.Reader(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    @Test
+    public void goldenLogReplaysToItsChecksum() throws IOException
+    {
+        boolean enabled = FastMath.isEnabled();
+        try
+        {
+            assertEquals(String.format("%08x", GOLDEN_CHECKSUM),
+                    String.format("%08x", SessionReplay.checksum(readGolden(), null)));
+        }
+        finally
+        {
+            FastMath.setEnabled(enabled);
+        }
+    }
+
+    @Test
+    public void goldenLogReplaysToItsChecksumOnAPool() throws IOException
+    {
+        // The golden scene stays below the size that is split across the pool, SceneControllerTest
+        // compares the split itself; this checks the replay's threaded path end to end.
+        boolean enabled = FastMath.isEnabled();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            assertEquals(String.format("%08x", GOLDEN_CHECKSUM),
+                    String.format("%08x", SessionReplay.checksum(readGolden(), pool)));
+        }
+        finally
+        {
+            pool.shutdown();
+            FastMath.setEnabled(enabled);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.your.package.here;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TapPlacementQueueTest
+{
+    private static final long MILLI = 1000000L;
+
+    // Places every tap and takes the given time doing it.
+    private static class SlowPlacer implements TapPlacementQueue.Placer
+    {
+        final long mNanos;
+        int mPlaced;
+
+        SlowPlacer(long nanos)
+        {
+            mNanos = nanos;
+        }
+
+        @Override
+        public boolean place(float x, float y)
+        {
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < mNanos)
+            {
+                // Busy, like a hit test.
+            }
+            mPlaced++;
+            return true;
+        }
+    }
+
+    @Test
+    public void latencyIncludesThePlacementsBeforeEachTap()
+    {
+        TapPlacementQueue queue = new TapPlacementQueue(8, 10, 1000 * MILLI);
+        for (int i = 0; i < 4; i++)
+        {
+            queue.add(i * 100, 0, 1000);
+        }
+        SlowPlacer placer = new SlowPlacer(5 * MILLI);
+        assertEquals(4, queue.placePending(placer, 1000));
+        LatencyHistogram.Snapshot latency = queue.getPlacementLatency().snapshot();
+        assertEquals(4, latency.count);
+        // The last tap waited for all four placements, not for none.
+        assertTrue("max " + latency.max, latency.max >= 20 * MILLI);
+    }
+
+    @Test
+    public void budgetLeavesTheRestQueued()
+    {
+        TapPlacementQueue queue = new TapPlacementQueue(8, 10, MILLI);
+        for (int i = 0; i < 3; i++)
+        {
+            queue.add(i * 100, 0, 0);
+        }
+        // Each placement spends the whole budget, but one tap is placed per frame regardless.
+        SlowPlacer placer = new SlowPlacer(2 * MILLI);
+        assertEquals(1, queue.placePending(placer, 0));
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.placePending(placer, 0));
+        assertEquals(1, queue.placePending(placer, 0));
+        assertEquals(0, queue.size());
+        assertEquals(3, placer.mPlaced);
+    }
+
+    @Test
+    public void duplicatesAndOverflowsAreCounted()
+    {
+        TapPlacementQueue queue = new TapPlacementQueue(2, 10, MILLI);
+        assertTrue(queue.add(0, 0, 0));
+        assertFalse(queue.add(5, 5, 0));
+        assertTrue(queue.add(100, 0, 0));
+        assertFalse(queue.add(200, 0, 0));
+        assertFalse(queue.add(300, 0, 0));
+        assertEquals(1, queue.getDuplicateCount());
+        assertEquals(2, queue.getOverflowCount());
+        assertEquals(2, queue.size());
+    }
+}
@@ -0,0 +1,104 @@
+package com.your.package.here.tools;
+
+import com.your.package.here.rendering.BinaryMeshFormat;
+import com.your.package.here.rendering.MeshData;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import de.javagl.obj.ObjReader;
+
+/**
+ * Desktop converter from Wavefront .obj to the binary mesh format the app maps at load time. Every
+ * written file is mapped back and compared with the converted mesh before the tool reports success.
+ * <p>
+ * Usage: ObjToMesh input.obj [output.amesh]
+ */
+public class ObjToMesh
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1 || args.length > 2)
+        {
+            System.err.println("Usage: ObjToMesh input.obj [output" + BinaryMeshFormat.EXTENSION + "]");
+            System.exit(2);
+        }
+        String input = args[0];
+        String output = args.length == 2 ? args[1]
+                : input.replaceFirst("\\.obj$", "") + BinaryMeshFormat.EXTENSION;
+
+        long start = System.nanoTime();
+        MeshData mesh;
+        InputStream in = new FileInputStream(input);
+        try
+        {
+            mesh = BinaryMeshFormat.fromObj(ObjReader.read(in));
+        }
+        finally
+        {
+            in.close();
+        }
+        long parsed = System.nanoTime();
+
+        long size;
+        RandomAccessFile file = new RandomAccessFile(output, "rw");
+        try
+        {
+            file.setLength(0);
+            size = BinaryMeshFormat.write(mesh, file.getChannel());
+        }
+        finally
+        {
+            file.close();
+        }
+
+        long mapStart = System.nanoTime();
+        MeshData mapped;
+        file = new RandomAccessFile(output, "r");
+        try
+        {
+            mapped = BinaryMeshFormat.read(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+        finally
+        {
+            file.close();
+        }
+        long mappedAt = System.nanoTime();
+        verify(mesh, mapped);
+
+        System.out.printf("%s: %d vertices, %d indices, %d bytes%n", output, mesh.vertexCount, mesh.indexCount, size);
+        System.out.printf("obj parse %.2f ms, binary map %.3f ms%n", (parsed - start) / 1e6, (mappedAt - mapStart) / 1e6);
+    }
+
+    private static void verify(MeshData expected, MeshData actual) throws IOException
+    {
+        if (expected.vertexCount != actual.vertexCount || expected.indexCount != actual.indexCount)
+        {
+            throw new IOException("Round trip changed the vertex or index count");
+        }
+        for (int i = 0; i < 6; i++)
+        {
+            if (Float.compare(expected.bounds[i], actual.bounds[i]) != 0)
+            {
+                throw new IOException("Round trip changed the bounds");
+            }
+        }
+        if (!sameBytes(expected.vertices, actual.vertices) || !sameBytes(expected.indices, actual.indices))
+        {
+            throw new IOException("Round trip changed the vertex or index data");
+        }
+    }
+
+    private static boolean sameBytes(ByteBuffer a, ByteBuffer b)
+    {
+        ByteBuffer left = a.duplicate();
+        ByteBuffer right = b.duplicate();
+        left.clear();
+        right.clear();
+        return left.equals(right);
+    }
+}
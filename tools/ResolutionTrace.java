@@ -0,0 +1,169 @@
+package com.your.package.here.tools;
+
+import com.your.package.here.rendering.ResolutionController;
+
+import java.util.Random;
+
+/**
+ * Drives {@link ResolutionController} with synthetic frame time traces on the desktop. Each frame
+ * costs a fixed part plus a per pixel part that shrinks with the square of the scale, plus noise
+ * and the odd long frame. For every scenario the tool prints how many frames went over budget at
+ * full resolution and with the controller, the mean and lowest scale and how often it changed.
+ * <p>
+ * Usage: ResolutionTrace [budget ms]
+ */
+public class ResolutionTrace
+{
+    static final float DEFAULT_BUDGET_MS = 20f;
+    static final float MIN_SCALE = 0.5f;
+    static final float SCALE_STEP = 0.05f;
+    static final int FRAMES = 3600;
+
+    /**
+     * Frame cost at full resolution.
+     */
+    interface Scenario
+    {
+        /**
+         * @param frame
+         * @return milliseconds per pixel dependent work at full scale
+         */
+        float pixelMillis(int frame);
+    }
+
+    static final Scenario STEADY = new Scenario()
+    {
+        @Override
+        public float pixelMillis(int frame)
+        {
+            return 12;
+        }
+    };
+
+    static final Scenario LOAD_STEP = new Scenario()
+    {
+        @Override
+        public float pixelMillis(int frame)
+        {
+            // More objects on screen for the middle third.
+            return frame >= FRAMES / 3 && frame < 2 * FRAMES / 3 ? 28 : 10;
+        }
+    };
+
+    static final Scenario THERMAL = new Scenario()
+    {
+        @Override
+        public float pixelMillis(int frame)
+        {
+            // The GPU slows down steadily as it heats up.
+            return 10 + 25f * frame / FRAMES;
+        }
+    };
+
+    static final Scenario FLAPPING = new Scenario()
+    {
+        @Override
+        public float pixelMillis(int frame)
+        {
+            // Objects moving in and out of view every second.
+            return (frame / 60) % 2 == 0 ? 24 : 12;
+        }
+    };
+
+    static final Scenario OVERLOAD = new Scenario()
+    {
+        @Override
+        public float pixelMillis(int frame)
+        {
+            // More than even the lowest scale can absorb.
+            return 72;
+        }
+    };
+
+    /**
+     * Outcome of one scenario.
+     */
+    static class Trace
+    {
+        /**
+         * The controller after the last frame, with its counters.
+         */
+        final ResolutionController controller;
+        /**
+         * Frames that would have gone over budget at full resolution.
+         */
+        final long overFull;
+        final float lowestScale;
+
+        Trace(ResolutionController controller, long overFull, float lowestScale)
+        {
+            this.controller = controller;
+            this.overFull = overFull;
+            this.lowestScale = lowestScale;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        float budget = args.length > 0 ? Float.parseFloat(args[0]) : DEFAULT_BUDGET_MS;
+        System.out.printf("budget %.1f ms, min scale %.2f, step %.2f, %d frames per scenario%n", budget, MIN_SCALE,
+                SCALE_STEP, FRAMES);
+        System.out.printf("%-12s %12s %12s %8s %8s %8s%n", "scenario", "over full", "over scaled", "mean",
+                "lowest", "changes");
+        print("steady", run(budget, STEADY));
+        print("load step", run(budget, LOAD_STEP));
+        print("thermal", run(budget, THERMAL));
+        print("flapping", run(budget, FLAPPING));
+        print("overload", run(budget, OVERLOAD));
+    }
+
+    private static void print(String name, Trace trace)
+    {
+        ResolutionController controller = trace.controller;
+        System.out.printf("%-12s %11.1f%% %11.1f%% %8.2f %8.2f %8d%n", name, 100.0 * trace.overFull / FRAMES,
+                100.0 * controller.getOverBudgetCount() / FRAMES, controller.getMeanScale(), trace.lowestScale,
+                controller.getChangeCount());
+    }
+
+    /**
+     * Runs {@link #FRAMES} frames of a scenario, once at full resolution and once with a controller.
+     *
+     * @param budgetMs
+     * @param scenario
+     */
+    static Trace run(float budgetMs, Scenario scenario)
+    {
+        ResolutionController controller = new ResolutionController((long) (budgetMs * 1e6), MIN_SCALE, SCALE_STEP);
+        // The same noise for both runs, so they differ only by the scale.
+        Random noise = new Random(7);
+        Random scaledNoise = new Random(7);
+        float fixedMs = 4;
+        long overFull = 0;
+        float scale = 1.0f;
+        float lowest = 1.0f;
+        for (int frame = 0; frame < FRAMES; frame++)
+        {
+            float pixelMs = scenario.pixelMillis(frame);
+            float full = frameMillis(fixedMs, pixelMs, 1.0f, noise);
+            if (full > budgetMs)
+            {
+                overFull++;
+            }
+            float scaled = frameMillis(fixedMs, pixelMs, scale, scaledNoise);
+            scale = controller.onFrame((long) (scaled * 1e6));
+            lowest = Math.min(lowest, scale);
+        }
+        return new Trace(controller, overFull, lowest);
+    }
+
+    private static float frameMillis(float fixedMs, float pixelMs, float scale, Random noise)
+    {
+        float ms = fixedMs + pixelMs * scale * scale + (float) noise.nextGaussian() * 0.8f;
+        // A long frame now and then, from GC or the camera.
+        if (noise.nextInt(50) == 0)
+        {
+            ms += 15;
+        }
+        return Math.max(0.5f, ms);
+    }
+}
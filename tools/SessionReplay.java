@@ -0,0 +1,731 @@
+package com.your.package.here.tools;
+
+import com.your.package.here.AnchorEvictionPolicy;
+import com.your.package.here.AnchorTransformTable;
+import com.your.package.here.FastMath;
+import com.your.package.here.FrameRateGovernor;
+import com.your.package.here.LatencyHistogram;
+import com.your.package.here.SceneController;
+import com.your.package.here.SessionLog;
+import com.your.package.here.TapPlacementQueue;
+import com.your.package.here.rendering.RenderQueue;
+import com.your.package.here.rendering.TransformMath;
+import com.your.package.here.view.GestureChannel;
+import com.your.package.here.view.GestureSmoother;
+import com.your.package.here.view.MultiTouchRecognizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Desktop replay of a recorded session (see {@link SessionLog}) through the same gesture channel,
+ * tap placement queue and {@link SceneController} the app runs on the GL thread, drawing into a
+ * backend that only counts. Prints per-frame latency, throughput and a checksum of everything that
+ * was drawn, which stays the same from run to run as long as the scene logic behaves the same.
+ * <p>
+ * Hit tests are answered from the recorded hits in order. Anchors keep the pose they were created
+ * with, ARCore's later refinements are not recorded. Touches go through the app's
+ * {@link MultiTouchRecognizer}.
+ * <p>
+ * Touches are not smoothed by default, as in the app; --filter smooth or predict puts a
+ * {@link GestureSmoother} in between. Per frame of movement the jitter (second difference of the
+ * applied total) and the deviation from the raw total are reported, to compare the settings on the
+ * same touch stream.
+ * <p>
+ * A {@link FrameRateGovernor} is run alongside, with every recorded frame as a vsync, and reports
+ * which render rate it would have picked how much of the time and how many frames it would have
+ * skipped. All frames are replayed either way.
+ * <p>
+ * With --threads the scene prepares frames on a pool of that many workers as in the app, the
+ * checksum has to match a run without. With --expect the replay exits with status 1 if a loop's
+ * checksum differs from the given one, so it can gate a build; {@code tests/resources/golden.arsl}
+ * is a short synthesized session whose checksum SessionReplayTest checks.
+ * <p>
+ * Usage: SessionReplay session.arsl [--loops N] [--filter off|smooth|predict] [--threads N]
+ * [--expect checksum]<br>
+ * SessionReplay --synthesize session.arsl [frames] writes a scripted session to replay without a
+ * device.
+ */
+public class SessionReplay
+{
+    private static final int MAX_ANCHORS = 256;
+    private static final int MAX_PENDING_TAPS = 64;
+    private static final float TAP_DEDUPE_RADIUS_PX = 48f;
+    private static final long TAP_PLACEMENT_BUDGET_NS = 4000000L;
+    private static final int MAX_HITS_PER_FRAME = 64;
+    private static final int MAX_TOUCHES_PER_FRAME = 256;
+    // The recording does not carry the device's touch slop, this is a typical one.
+    private static final float TOUCH_SLOP_PX = 24f;
+    // Lead of --filter predict, as the app would use it. -1 leaves touches unsmoothed, as the app does.
+    private static final long PREDICTION_MS = 16;
+    private static final long DEFAULT_LEAD_MS = -1;
+    private static final long REDUCED_FRAME_INTERVAL_MS = 33;
+    private static final long IDLE_FRAME_INTERVAL_MS = 200;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length >= 2 && args[0].equals("--synthesize"))
+        {
+            int frames = args.length > 2 ? Integer.parseInt(args[2]) : 3600;
+            synthesize(new File(args[1]), frames);
+            return;
+        }
+        String path = null;
+        int loops = 1;
+        long lead = DEFAULT_LEAD_MS;
+        int threads = 0;
+        String expected = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--loops") && i + 1 < args.length)
+            {
+                loops = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--filter") && i + 1 < args.length)
+            {
+                String filter = args[++i];
+                lead = filter.equals("off") ? -1 : filter.equals("smooth") ? 0 : PREDICTION_MS;
+            }
+            else if (args[i].equals("--threads") && i + 1 < args.length)
+            {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--expect") && i + 1 < args.length)
+            {
+                expected = args[++i];
+            }
+            else if (path == null)
+            {
+                path = args[i];
+            }
+            else
+            {
+                path = null;
+                break;
+            }
+        }
+        if (path == null)
+        {
+            System.err.println("Usage: SessionReplay session.arsl [--loops N] [--filter off|smooth|predict]"
+                    + " [--threads N] [--expect checksum]");
+            System.err.println("       SessionReplay --synthesize session.arsl [frames]");
+            System.exit(2);
+        }
+
+        SessionLog.Reader reader;
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try
+        {
+            reader = new SessionLog.Reader(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        }
+        finally
+        {
+            file.close();
+        }
+
+        FastMath.setEnabled(true);
+        ForkJoinPool pool = threads > 0 ? new ForkJoinPool(threads) : null;
+        boolean mismatch = false;
+        for (int loop = 0; loop < loops; loop++)
+        {
+            reader.rewind();
+            Replay replay = new Replay(lead, pool);
+            long start = System.nanoTime();
+            replay.run(reader);
+            long elapsed = System.nanoTime() - start;
+            LatencyHistogram.Snapshot frame = replay.mFrameLatency.snapshot();
+            System.out.printf("loop %d: %d frames in %.1f ms, %.0f frames/s%n", loop + 1, frame.count,
+                    elapsed / 1e6, frame.count / (elapsed / 1e9));
+            System.out.printf("  frame    p50 %7.1f  p95 %7.1f  p99 %7.1f  max %8.1f us%n",
+                    frame.p50 / 1e3, frame.p95 / 1e3, frame.p99 / 1e3, frame.max / 1e3);
+            System.out.printf("  touches %d, taps %d, placed %d, missed %d, misaligned %d, evicted %d, objects %d%n",
+                    replay.mTouches, replay.mTaps, replay.mPlaced, replay.mMissed, replay.mMisaligned,
+                    replay.mEvicted, replay.mScene.getTransforms().size());
+            LatencyHistogram.Snapshot placement = replay.mTapQueue.getPlacementLatency().snapshot();
+            System.out.printf("  placement p50 %7.1f  max %8.1f us, duplicate taps %d, dropped %d%n",
+                    placement.p50 / 1e3, placement.max / 1e3, replay.mTapQueue.getDuplicateCount(),
+                    replay.mTapQueue.getOverflowCount());
+            System.out.printf("  gestures: pans %d, scale log sum %.3f, rotated %.3f rad%n",
+                    replay.mPans, replay.mScaling, replay.mRotating);
+            System.out.printf("  pan      jitter %6.3f px   deviation %6.3f px   per frame of movement%n",
+                    replay.mPanJitter / replay.mPanFrames, replay.mPanDeviation / replay.mPanFrames);
+            System.out.printf("  rotation jitter %6.4f rad  deviation %6.4f rad%n",
+                    replay.mRotationJitter / replay.mRotationFrames,
+                    replay.mRotationDeviation / replay.mRotationFrames);
+            System.out.print(replay.mGovernor.format().replaceAll("(?m)^", "  "));
+            System.out.printf("  drawn %d, culled %d, batches %d, plane snapshots %d, checksum %08x%n",
+                    replay.mScene.getCuller().getTotalDrawnCount(), replay.mScene.getCuller().getTotalCulledCount(),
+                    replay.mBatches, replay.mPlaneSnapshots, Float.floatToIntBits(replay.mChecksum));
+            System.out.printf("  model matrices composed %d of %d (%.1f%%)%n", replay.mComposed, replay.mPrepared,
+                    replay.mPrepared > 0 ? 100.0 * replay.mComposed / replay.mPrepared : 0.0);
+            String checksum = String.format("%08x", Float.floatToIntBits(replay.mChecksum));
+            if (expected != null && !checksum.equalsIgnoreCase(expected))
+            {
+                System.err.printf("loop %d: checksum %s, expected %s%n", loop + 1, checksum, expected);
+                mismatch = true;
+            }
+        }
+        if (pool != null)
+        {
+            pool.shutdown();
+        }
+        if (mismatch)
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays a log once as main does with the default settings, fast trig backend included.
+     *
+     * @param reader
+     * @param pool   frame preparation pool, or null
+     * @return the checksum main prints
+     */
+    static int checksum(SessionLog.Reader reader, ForkJoinPool pool)
+    {
+        FastMath.setEnabled(true);
+        reader.rewind();
+        Replay replay = new Replay(DEFAULT_LEAD_MS, pool);
+        replay.run(reader);
+        return Float.floatToIntBits(replay.mChecksum);
+    }
+
+    /**
+     * One pass over a log with fresh scene state.
+     */
+    private static class Replay
+    {
+        final SceneController mScene;
+        final AnchorTransformTable mTransforms;
+        final GestureChannel mChannel = new GestureChannel();
+        final GestureChannel.Batch mBatch = mChannel.newBatch();
+        final FrameRateGovernor mGovernor =
+                new FrameRateGovernor(REDUCED_FRAME_INTERVAL_MS, IDLE_FRAME_INTERVAL_MS);
+        boolean mHasObjects;
+        final MultiTouchRecognizer mRecognizer;
+
+        // What reaches the gesture channel.
+        final MultiTouchRecognizer.Listener mSink = new MultiTouchRecognizer.Listener()
+        {
+            @Override
+            public void onDown(float x, float y, long eventTime)
+            {
+                if (mHasObjects)
+                {
+                    mChannel.offerSelect(x, y, eventTime);
+                }
+            }
+
+            @Override
+            public void onTap(float x, float y, long eventTime)
+            {
+                mChannel.offerTap(x, y, eventTime);
+            }
+
+            @Override
+            public void onPan(float dx, float dy, long eventTime)
+            {
+                if (mHasObjects)
+                {
+                    mPans++;
+                    mChannel.offerPan(dx, dy);
+                }
+            }
+
+            @Override
+            public void onScale(float factor, long eventTime)
+            {
+                if (mHasObjects)
+                {
+                    mScaling += Math.log(factor);
+                    mChannel.offerScale(factor);
+                }
+            }
+
+            @Override
+            public void onRotate(float deltaRadians, long eventTime)
+            {
+                if (mHasObjects)
+                {
+                    mRotating += deltaRadians;
+                    mChannel.offerRotation(deltaRadians);
+                }
+            }
+
+            @Override
+            public void onUp(long eventTime)
+            {
+                mChannel.offerEnd();
+            }
+        };
+
+        // Totals straight from the recognizer, ahead of any smoothing.
+        float mRawPanX;
+        float mRawPanY;
+        float mRawRotation;
+
+        /**
+         * @param leadMillis touch prediction as in {@link GestureSmoother}, or -1 for no smoothing
+         * @param pool       frame preparation pool, or null
+         */
+        Replay(long leadMillis, ForkJoinPool pool)
+        {
+            mScene = new SceneController(MAX_ANCHORS, pool);
+            mTransforms = mScene.getTransforms();
+            final MultiTouchRecognizer.Listener smoothed =
+                    leadMillis < 0 ? mSink : new GestureSmoother(leadMillis, mSink);
+            mRecognizer = new MultiTouchRecognizer(TOUCH_SLOP_PX, new MultiTouchRecognizer.Listener()
+            {
+                @Override
+                public void onDown(float x, float y, long eventTime)
+                {
+                    smoothed.onDown(x, y, eventTime);
+                }
+
+                @Override
+                public void onTap(float x, float y, long eventTime)
+                {
+                    smoothed.onTap(x, y, eventTime);
+                }
+
+                @Override
+                public void onPan(float dx, float dy, long eventTime)
+                {
+                    if (mHasObjects)
+                    {
+                        mRawPanX += dx;
+                        mRawPanY += dy;
+                    }
+                    smoothed.onPan(dx, dy, eventTime);
+                }
+
+                @Override
+                public void onScale(float factor, long eventTime)
+                {
+                    smoothed.onScale(factor, eventTime);
+                }
+
+                @Override
+                public void onRotate(float deltaRadians, long eventTime)
+                {
+                    if (mHasObjects)
+                    {
+                        mRawRotation += deltaRadians;
+                    }
+                    smoothed.onRotate(deltaRadians, eventTime);
+                }
+
+                @Override
+                public void onUp(long eventTime)
+                {
+                    smoothed.onUp(eventTime);
+                }
+            });
+        }
+        final TapPlacementQueue mTapQueue =
+                new TapPlacementQueue(MAX_PENDING_TAPS, TAP_DEDUPE_RADIUS_PX, TAP_PLACEMENT_BUDGET_NS);
+        final LatencyHistogram mFrameLatency = new LatencyHistogram();
+
+        // Anchor pose per slot, as created.
+        final float[] mAnchorPoses = new float[MAX_ANCHORS * 16];
+
+        // The frame waiting for its hits, and the touches that arrived after it.
+        boolean mHasFrame;
+        long mFrameUptime;
+        int mFrameTrackingState;
+        int mViewportWidth;
+        int mViewportHeight;
+        final float[] mProjection = new float[16];
+        final float[] mView = new float[16];
+        final float[] mCamera = new float[16];
+        final float[] mHits = new float[MAX_HITS_PER_FRAME * (2 + 1 + SessionLog.POSE_SIZE)];
+        int mHitCount;
+        int mNextHit;
+        final long[] mTouchTimes = new long[MAX_TOUCHES_PER_FRAME];
+        final int[] mTouchActions = new int[MAX_TOUCHES_PER_FRAME];
+        final int[] mTouchCounts = new int[MAX_TOUCHES_PER_FRAME];
+        final int[] mTouchIndexes = new int[MAX_TOUCHES_PER_FRAME];
+        final int[] mTouchIds = new int[MAX_TOUCHES_PER_FRAME * SessionLog.MAX_POINTERS];
+        final float[] mTouchX = new float[MAX_TOUCHES_PER_FRAME * SessionLog.MAX_POINTERS];
+        final float[] mTouchY = new float[MAX_TOUCHES_PER_FRAME * SessionLog.MAX_POINTERS];
+        int mTouchCount;
+        final int[] mPointerIds = new int[SessionLog.MAX_POINTERS];
+        final float[] mPointerX = new float[SessionLog.MAX_POINTERS];
+        final float[] mPointerY = new float[SessionLog.MAX_POINTERS];
+
+        long mTouches;
+        long mPans;
+        // Applied totals of the last two frames, and jitter and deviation summed over frames with
+        // movement.
+        float mPanX;
+        float mPanY;
+        float mLastPanX;
+        float mLastPanY;
+        float mRotation;
+        float mLastRotation;
+        double mPanJitter;
+        double mPanDeviation;
+        long mPanFrames;
+        double mRotationJitter;
+        double mRotationDeviation;
+        long mRotationFrames;
+        // Sum of the logarithms of the scale factors, their product overflows over long sessions.
+        double mScaling;
+        float mRotating;
+        long mTaps;
+        long mPlaced;
+        long mMissed;
+        long mMisaligned;
+        long mEvicted;
+        long mBatches;
+        long mPlaneSnapshots;
+        long mPrepared;
+        long mComposed;
+        float mChecksum;
+
+        final SceneController.Anchors mAnchors = new SceneController.Anchors()
+        {
+            @Override
+            public int getPose(int slot, float[] matrix, int offset)
+            {
+                // Anchors track exactly while the camera does.
+                if (mFrameTrackingState != SceneController.TRACKING)
+                {
+                    return SceneController.PAUSED;
+                }
+                System.arraycopy(mAnchorPoses, slot * 16, matrix, offset, 16);
+                return SceneController.TRACKING;
+            }
+
+            @Override
+            public void onStopped(int slot)
+            {
+                mScene.remove(slot);
+            }
+        };
+
+        final RenderQueue.Backend mBackend = new RenderQueue.Backend()
+        {
+            @Override
+            public void drawBatch(int model, float[] matrices, float[] scales, int first, int count)
+            {
+                mBatches++;
+                for (int i = first; i < first + count; i++)
+                {
+                    mChecksum += matrices[i * 16 + 12] + matrices[i * 16 + 14] + matrices[i * 16] * scales[i];
+                }
+            }
+        };
+
+        final TapPlacementQueue.Placer mPlacer = new TapPlacementQueue.Placer()
+        {
+            @Override
+            public boolean place(float x, float y)
+            {
+                if (mNextHit == mHitCount)
+                {
+                    // The app placed fewer taps this frame, e.g. because its budget ran out.
+                    return false;
+                }
+                int h = mNextHit++ * (3 + SessionLog.POSE_SIZE);
+                if (mHits[h] != x || mHits[h + 1] != y)
+                {
+                    // The replayed taps went out of step with the recorded ones.
+                    mMisaligned++;
+                }
+                if (mHits[h + 2] == 0)
+                {
+                    mMissed++;
+                    return false;
+                }
+                if (mTransforms.isFull())
+                {
+                    float[] camera = mScene.getCameraMatrix();
+                    mScene.remove(AnchorEvictionPolicy.LEAST_RECENTLY_USED.selectVictim(mTransforms,
+                            camera[12], camera[13], camera[14]));
+                    mEvicted++;
+                }
+                int handle = mScene.add(0, mFrameUptime, mHits[h + 3], mHits[h + 4], mHits[h + 5]);
+                TransformMath.poseToMatrix(mHits, h + 3, mAnchorPoses, AnchorTransformTable.slotOf(handle) * 16);
+                mScene.select(handle);
+                mScene.setOriginCamera(mCamera);
+                mPlaced++;
+                return true;
+            }
+        };
+
+        void run(SessionLog.Reader reader)
+        {
+            while (reader.next())
+            {
+                switch (reader.type)
+                {
+                    case SessionLog.FRAME:
+                        if (mHasFrame)
+                        {
+                            replayFrame();
+                        }
+                        feedTouches();
+                        mHasFrame = true;
+                        mFrameUptime = reader.uptime;
+                        mFrameTrackingState = reader.trackingState;
+                        mViewportWidth = reader.viewportWidth;
+                        mViewportHeight = reader.viewportHeight;
+                        System.arraycopy(reader.projection, 0, mProjection, 0, 16);
+                        System.arraycopy(reader.view, 0, mView, 0, 16);
+                        System.arraycopy(reader.camera, 0, mCamera, 0, 16);
+                        mHitCount = 0;
+                        mNextHit = 0;
+                        break;
+                    case SessionLog.HIT:
+                        if (mHitCount < MAX_HITS_PER_FRAME)
+                        {
+                            int h = mHitCount++ * (3 + SessionLog.POSE_SIZE);
+                            mHits[h] = reader.hitX;
+                            mHits[h + 1] = reader.hitY;
+                            mHits[h + 2] = reader.hit ? 1 : 0;
+                            System.arraycopy(reader.hitPose, 0, mHits, h + 3, SessionLog.POSE_SIZE);
+                        }
+                        break;
+                    case SessionLog.TOUCH:
+                        if (mTouchCount < MAX_TOUCHES_PER_FRAME)
+                        {
+                            int t = mTouchCount++;
+                            mTouchTimes[t] = reader.eventTime;
+                            mTouchActions[t] = reader.action;
+                            mTouchIndexes[t] = reader.actionIndex;
+                            mTouchCounts[t] = reader.pointerCount;
+                            int o = t * SessionLog.MAX_POINTERS;
+                            System.arraycopy(reader.pointerIds, 0, mTouchIds, o, reader.pointerCount);
+                            System.arraycopy(reader.pointerX, 0, mTouchX, o, reader.pointerCount);
+                            System.arraycopy(reader.pointerY, 0, mTouchY, o, reader.pointerCount);
+                        }
+                        break;
+                    case SessionLog.PLANES:
+                        mPlaneSnapshots++;
+                        break;
+                }
+            }
+            if (mHasFrame)
+            {
+                replayFrame();
+            }
+        }
+
+        /**
+         * Hands the touches recorded since the last frame to the recognizer, which feeds the
+         * gesture channel the next frame drains, as the UI thread does in the app.
+         */
+        void feedTouches()
+        {
+            mHasObjects = mTransforms.size() > 0;
+            for (int t = 0; t < mTouchCount; t++)
+            {
+                int o = t * SessionLog.MAX_POINTERS;
+                System.arraycopy(mTouchIds, o, mPointerIds, 0, mTouchCounts[t]);
+                System.arraycopy(mTouchX, o, mPointerX, 0, mTouchCounts[t]);
+                System.arraycopy(mTouchY, o, mPointerY, 0, mTouchCounts[t]);
+                mRecognizer.onTouch(mTouchTimes[t], mTouchActions[t], mTouchIndexes[t], mTouchCounts[t],
+                        mPointerIds, mPointerX, mPointerY);
+            }
+            if (mTouchCount > 0)
+            {
+                mGovernor.wake();
+            }
+            mTouches += mTouchCount;
+            mTouchCount = 0;
+        }
+
+        /**
+         * Compares the gestures applied this frame with the raw ones.
+         */
+        void measureSmoothing()
+        {
+            float panX = mPanX + (mBatch.hasPan ? mBatch.panX : 0);
+            float panY = mPanY + (mBatch.hasPan ? mBatch.panY : 0);
+            if (mBatch.hasPan)
+            {
+                mPanJitter += Math.hypot(panX - 2 * mPanX + mLastPanX, panY - 2 * mPanY + mLastPanY);
+                mPanDeviation += Math.hypot(panX - mRawPanX, panY - mRawPanY);
+                mPanFrames++;
+            }
+            mLastPanX = mPanX;
+            mLastPanY = mPanY;
+            mPanX = panX;
+            mPanY = panY;
+
+            float rotation = mRotation + (mBatch.hasRotation ? mBatch.rotation : 0);
+            if (mBatch.hasRotation)
+            {
+                mRotationJitter += Math.abs(rotation - 2 * mRotation + mLastRotation);
+                mRotationDeviation += Math.abs(rotation - mRawRotation);
+                mRotationFrames++;
+            }
+            mLastRotation = mRotation;
+            mRotation = rotation;
+        }
+
+        /**
+         * The GL thread's share of a frame, in the order drawFrame runs it.
+         */
+        void replayFrame()
+        {
+            long start = System.nanoTime();
+            mScene.setViewport(mViewportWidth, mViewportHeight);
+            mChannel.drain(mBatch);
+            mScene.applyGestures(mBatch, mFrameUptime);
+            measureSmoothing();
+            for (int t = 0; t < mBatch.tapCount; t++)
+            {
+                mTapQueue.add(mBatch.tapX[t], mBatch.tapY[t], mBatch.tapTime[t]);
+            }
+            mTaps += mBatch.tapCount;
+            if (mFrameTrackingState == SceneController.TRACKING)
+            {
+                mTapQueue.placePending(mPlacer, mFrameUptime);
+            }
+            else
+            {
+                mTapQueue.clear();
+            }
+            if (mGovernor.shouldRender(mFrameUptime * 1000000L))
+            {
+                boolean active = mTapQueue.size() > 0 || mBatch.tapCount > 0 || mBatch.hasPan || mBatch.hasScale
+                        || mBatch.hasRotation || mBatch.hasSelect;
+                mGovernor.onFrame(mFrameUptime, mFrameTrackingState, mCamera, active);
+            }
+            if (mFrameTrackingState != SceneController.PAUSED)
+            {
+                mScene.setCamera(mProjection, mView, mCamera);
+                mScene.drawObjects(mAnchors, mBackend);
+                mPrepared += mScene.getSnapshot().count;
+                mComposed += mScene.getSnapshot().composed;
+            }
+            mFrameLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes a scripted session: the camera orbits a floor at 60 frames per second while the user
+     * keeps tapping to place objects, drags the latest one and pinches it, with noisy touch samples.
+     * Every 20 seconds the user stops touching for 10 seconds, and holds the camera still for 8 of
+     * them.
+     */
+    private static void synthesize(File output, int frames) throws IOException
+    {
+        int width = 1080;
+        int height = 1920;
+        float[] projection = new float[16];
+        float[] view = new float[16];
+        float[] camera = new float[16];
+        float[] pose = new float[SessionLog.POSE_SIZE];
+        int[] ids = {0, 1};
+        float[] x = new float[2];
+        float[] y = new float[2];
+        int[] planeTypes = {0};
+        int[] planeStates = {SceneController.TRACKING};
+        float[] planePoses = {0, -1.5f, 0, 0, 0, 0, 1};
+        float[] planeExtents = {8, 8};
+        // Touch noise of about a pixel, seeded so every synthesized session is the same.
+        Random noise = new Random(42);
+
+        // Perspective projection, 60 degrees vertical field of view, near 0.1, far 100.
+        float f = 1.0f / (float) Math.tan(Math.toRadians(30));
+        projection[0] = f * height / width;
+        projection[5] = f;
+        projection[10] = -100.1f / 99.9f;
+        projection[11] = -1;
+        projection[14] = -2 * 100 * 0.1f / 99.9f;
+
+        RandomAccessFile file = new RandomAccessFile(output, "rw");
+        file.setLength(0);
+        SessionLog.Recorder recorder = new SessionLog.Recorder(file.getChannel());
+        long uptime = 1000;
+        double yaw = 0;
+        for (int frame = 0; frame < frames; frame++, uptime += 16)
+        {
+            boolean touching = frame % 1200 < 600;
+            // The camera circles the origin, looking at it.
+            if (frame % 1200 < 600 || frame % 1200 >= 1100)
+            {
+                yaw += 0.002;
+            }
+            float cos = (float) Math.cos(yaw);
+            float sin = (float) Math.sin(yaw);
+            camera[0] = cos;
+            camera[2] = -sin;
+            camera[5] = 1;
+            camera[8] = sin;
+            camera[10] = cos;
+            camera[12] = 3 * sin;
+            camera[14] = 3 * cos;
+            camera[15] = 1;
+            TransformMath.invert(camera, view);
+            int trackingState = frame % 1200 < 1170 ? SceneController.TRACKING : SceneController.PAUSED;
+            recorder.frame(uptime, trackingState, width, height, projection, view, camera);
+            if (frame % 300 == 0)
+            {
+                recorder.planes(1, planeTypes, planeStates, planePoses, planeExtents);
+            }
+
+            // A tap every 20 frames, hit on the floor around the origin.
+            int step = frame % 120;
+            if (touching && step % 20 == 0 && step < 60 && trackingState == SceneController.TRACKING)
+            {
+                x[0] = 200 + (frame * 37) % 700;
+                y[0] = 800 + (frame * 53) % 900;
+                recorder.touch(uptime + 2, 0, 0, 1, ids, x, y);
+                recorder.touch(uptime + 10, 1, 0, 1, ids, x, y);
+            }
+            // The app places a tap in the frame after it, the hit is recorded there.
+            if (touching && step % 20 == 1 && step < 60 && frame % 1200 < 1170)
+            {
+                boolean hit = (frame / 20) % 7 != 3;
+                pose[0] = ((frame * 31) % 400) / 100f - 2;
+                pose[1] = -1.5f;
+                pose[2] = ((frame * 17) % 400) / 100f - 2;
+                pose[6] = 1;
+                x[0] = 200 + ((frame - 1) * 37) % 700;
+                y[0] = 800 + ((frame - 1) * 53) % 900;
+                recorder.hit(x[0], y[0], hit ? pose : null);
+            }
+            // A drag from frame 70 to 89, then a pinch with a twist from 95 to 114. Moves come as
+            // three samples per frame, as batched events with history do, with a little noise.
+            if (touching && step >= 70 && step < 90)
+            {
+                int action = step == 70 ? 0 : step == 89 ? 1 : 2;
+                for (int sample = action == 2 ? 0 : 2; sample < 3; sample++)
+                {
+                    float t = step - 70 + sample / 3.0f;
+                    x[0] = 540 + t * 12 + (float) noise.nextGaussian();
+                    y[0] = 1200 - t * 6 + (float) noise.nextGaussian();
+                    recorder.touch(uptime + 4 + sample * 5, action, 0, 1, ids, x, y);
+                }
+            }
+            if (touching && step >= 95 && step < 115)
+            {
+                int action = step == 95 ? 0 : step == 96 ? 5 : step == 113 ? 6 : step == 114 ? 1 : 2;
+                int count = step == 95 || step == 114 ? 1 : 2;
+                for (int sample = action == 2 ? 0 : 2; sample < 3; sample++)
+                {
+                    float t = step - 95 + sample / 3.0f;
+                    float spread = 200 + t * 10;
+                    float twist = t * 0.02f;
+                    x[0] = 540 - spread * (float) Math.cos(twist) + (float) noise.nextGaussian();
+                    y[0] = 960 - spread * (float) Math.sin(twist) + (float) noise.nextGaussian();
+                    x[1] = 540 + spread * (float) Math.cos(twist) + (float) noise.nextGaussian();
+                    y[1] = 960 + spread * (float) Math.sin(twist) + (float) noise.nextGaussian();
+                    recorder.touch(uptime + 4 + sample * 5, action, action == 5 || action == 6 ? 1 : 0, count,
+                            ids, x, y);
+                }
+            }
+        }
+        recorder.close();
+        System.out.printf("%s: %d frames, %d bytes%n", output, frames, output.length());
+    }
+}